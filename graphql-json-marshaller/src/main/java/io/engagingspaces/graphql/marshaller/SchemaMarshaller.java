@@ -17,6 +17,8 @@
 package io.engagingspaces.graphql.marshaller;
 
 import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
+import io.engagingspaces.graphql.marshaller.instrumentation.InstrumentationContext;
 import io.engagingspaces.graphql.marshaller.json.JsonSerializable;
 import io.engagingspaces.graphql.marshaller.schema.Marshaller;
 import io.engagingspaces.graphql.marshaller.schema.SchemaContext;
@@ -40,7 +42,7 @@ public interface SchemaMarshaller {
      */
     static JsonObject toJson(GraphQLSchema schema) {
         Objects.requireNonNull(schema, "GraphQLSchema cannot be null");
-        return ((JsonSerializable) decorateSchema(schema)).toJson();
+        return toJson(schema, Marshaller.createContext());
     }
 
     /**
@@ -51,18 +53,33 @@ public interface SchemaMarshaller {
      * @return the json data
      */
     static JsonObject toJson(GraphQLSchema schema, SchemaMarshallerOptions options) {
-        return ((JsonSerializable) decorateSchema(schema, options)).toJson();
+        Objects.requireNonNull(options, "Schema marshaller options cannot be null");
+        return toJson(schema, Marshaller.createContext(options));
     }
 
     /**
      * Marshals the {@link GraphQLSchema} instance to its json representation, using the provided schema context.
+     * <p>
+     * Marshalling is reported to the {@link Instrumentation} of the marshaller options.
      *
      * @param schema  the graphql schema
      * @param context the schema context
      * @return the json data
      */
     static JsonObject toJson(GraphQLSchema schema, SchemaContext context) {
-        return ((JsonSerializable) decorateSchema(schema, context)).toJson();
+        Objects.requireNonNull(schema, "GraphQLSchema cannot be null");
+        SchemaContext schemaContext = Marshaller.createContextIfMissing(context);
+        InstrumentationContext<JsonObject> instrumentation =
+                schemaContext.options().instrumentation().beginMarshal(schema);
+        JsonObject json;
+        try {
+            json = ((JsonSerializable) schemaContext.decoratorOf(schema)).toJson();
+        } catch (RuntimeException ex) {
+            instrumentation.onEnd(null, ex);
+            throw ex;
+        }
+        instrumentation.onEnd(json, null);
+        return json;
     }
 
     /**
@@ -74,7 +91,7 @@ public interface SchemaMarshaller {
      */
     static GraphQLSchema fromJson(JsonObject json) {
         Objects.requireNonNull(json, "Json serialization data cannot be null");
-        return Unmarshaller.unmarshall(json, Unmarshaller.createContext(json), null);
+        return fromJson(json, Unmarshaller.createContext(json));
     }
 
     /**
@@ -88,11 +105,13 @@ public interface SchemaMarshaller {
     static GraphQLSchema fromJson(JsonObject json, SchemaMarshallerOptions options) {
         Objects.requireNonNull(json, "Json serialization data cannot be null");
         Objects.requireNonNull(options, "Schema marshaller options cannot be null");
-        return Unmarshaller.unmarshall(json, Unmarshaller.createContext(options, json), null);
+        return fromJson(json, Unmarshaller.createContext(options, json));
     }
 
     /**
      * Un-marshals the json data to a {@link GraphQLSchema} instance, using the provided schema context.
+     * <p>
+     * Un-marshalling is reported to the {@link Instrumentation} of the marshaller options.
      *
      * @param json    the json
      * @param context the schema context (created if null)
@@ -101,7 +120,18 @@ public interface SchemaMarshaller {
      */
     static GraphQLSchema fromJson(JsonObject json, SchemaContext context) {
         Objects.requireNonNull(json, "Json serialization data cannot be null");
-        return Unmarshaller.unmarshall(json, Unmarshaller.createContextIfMissing(context, json), null);
+        SchemaContext schemaContext = Unmarshaller.createContextIfMissing(context, json);
+        InstrumentationContext<GraphQLSchema> instrumentation =
+                schemaContext.options().instrumentation().beginUnmarshal(json);
+        GraphQLSchema schema;
+        try {
+            schema = Unmarshaller.unmarshall(json, schemaContext, null);
+        } catch (RuntimeException ex) {
+            instrumentation.onEnd(null, ex);
+            throw ex;
+        }
+        instrumentation.onEnd(schema, null);
+        return schema;
     }
 
     /**
@@ -16,6 +16,10 @@
 
 package io.engagingspaces.graphql.marshaller;
 
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
+
+import java.util.Objects;
+
 /**
  * Options for marshaling and un-marshalling {@link graphql.schema.GraphQLSchema} instances.
  *
@@ -25,6 +29,7 @@ public class SchemaMarshallerOptions {
 
     private boolean includeIntrospectionTypes;
     private boolean includeDirectives;
+    private Instrumentation instrumentation = Instrumentation.NOOP;
 
     /**
      * Protected constructor (use {@code SchemaMarshallerOptions.create()}).
@@ -80,4 +85,26 @@ public class SchemaMarshallerOptions {
         includeDirectives = include;
         return this;
     }
+
+    /**
+     * Gets the instrumentation that is notified of marshalling, and of data fetcher and type resolver invocations
+     * on decorated schema's.
+     *
+     * @return the instrumentation, {@link Instrumentation#NOOP} by default
+     */
+    public Instrumentation instrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Sets the instrumentation that is notified of marshalling, and of data fetcher and type resolver invocations
+     * on decorated schema's.
+     *
+     * @param instrumentation the instrumentation
+     * @return the marshaller options for fluent coding
+     */
+    public SchemaMarshallerOptions setInstrumentation(Instrumentation instrumentation) {
+        this.instrumentation = Objects.requireNonNull(instrumentation, "Instrumentation cannot be null");
+        return this;
+    }
  }
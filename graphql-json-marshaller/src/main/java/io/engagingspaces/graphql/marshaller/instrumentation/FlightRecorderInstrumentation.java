@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.marshaller.instrumentation;
+
+import io.engagingspaces.graphql.marshaller.instrumentation.impl.FlightRecorderInstrumentationImpl;
+
+/**
+ * Factory for the {@link Instrumentation} that emits Java Flight Recorder events for schema marshalling and the
+ * query lifecycle.
+ * <p>
+ * The events are only emitted while a recording with the {@code io.engagingspaces.graphql} events enabled is
+ * running, otherwise the overhead is limited to a check per instrumented step. This makes the instrumentation
+ * suitable for always-on production use, where recordings can be started on demand (e.g. with {@code jcmd}) to
+ * correlate garbage collection and allocation with specific queries and schema loads.
+ * <p>
+ * The JFR event classes are only loaded when the instrumentation is created. On JVM's without the {@code jdk.jfr}
+ * module the no-op instrumentation is returned instead.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class FlightRecorderInstrumentation {
+
+    private static final boolean AVAILABLE = isClassAvailable("jdk.jfr.Event");
+
+    private FlightRecorderInstrumentation() {
+    }
+
+    /**
+     * @return {@code true} if the JVM supports Java Flight Recorder events, {@code false} otherwise
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Creates the flight recorder instrumentation.
+     *
+     * @return the flight recorder instrumentation, or {@link Instrumentation#NOOP} if flight recorder is not available
+     */
+    public static Instrumentation create() {
+        return AVAILABLE ? new FlightRecorderInstrumentationImpl() : Instrumentation.NOOP;
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, FlightRecorderInstrumentation.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+}
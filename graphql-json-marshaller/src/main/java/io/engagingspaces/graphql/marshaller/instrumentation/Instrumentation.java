@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.marshaller.instrumentation;
+
+import graphql.ExecutionResult;
+import graphql.language.Document;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Service provider interface for instrumenting schema marshalling and the query lifecycle, e.g. with timers,
+ * samplers or tracers.
+ * <p>
+ * Every instrumented step calls a {@code begin} method when it starts, and the returned
+ * {@link InstrumentationContext} when it ends. All methods have a default implementation that returns the no-op
+ * context, so implementations only override the steps they are interested in. With the {@link #NOOP}
+ * instrumentation the calls are monomorphic and empty, so the JIT compiler inlines them to nothing.
+ * <p>
+ * The query lifecycle consists of the following steps:
+ * <ul>
+ * <li>query: from receiving the query until the result is replied to the caller (includes all other steps)</li>
+ * <li>parse: parsing the query text</li>
+ * <li>validation: validating the parsed query against the schema</li>
+ * <li>execution: executing the validated query</li>
+ * <li>fetch data and resolve type: invocations of data fetchers and type resolvers during execution</li>
+ * </ul>
+ * Implementations must be thread-safe, and should not throw exceptions.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public interface Instrumentation {
+
+    /**
+     * Instrumentation that does nothing (the default).
+     */
+    Instrumentation NOOP = new Instrumentation() {
+    };
+
+    /**
+     * Invoked when a schema is marshaled to json.
+     *
+     * @param schema the graphql schema
+     * @return the context that is invoked with the json result
+     */
+    default InstrumentationContext<JsonObject> beginMarshal(GraphQLSchema schema) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when a schema is un-marshaled from json.
+     *
+     * @param json the json data
+     * @return the context that is invoked with the schema result
+     */
+    default InstrumentationContext<GraphQLSchema> beginUnmarshal(JsonObject json) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when a query is received by a service.
+     *
+     * @param schemaName the name of the schema
+     * @param query      the graphql query, or {@code null} if it is not known yet (e.g. persisted queries)
+     * @return the context that is invoked with the query result when it is replied
+     */
+    default InstrumentationContext<Object> beginQuery(String schemaName, String query) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when a query is parsed.
+     *
+     * @param schemaName the name of the schema
+     * @param query      the graphql query
+     * @return the context that is invoked with the parsed document
+     */
+    default InstrumentationContext<Document> beginParse(String schemaName, String query) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when a parsed query is validated.
+     *
+     * @param schemaName the name of the schema
+     * @param document   the parsed query
+     * @return the context that is invoked with the validation errors
+     */
+    default InstrumentationContext<List<ValidationError>> beginValidation(String schemaName, Document document) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when a validated query is executed.
+     *
+     * @param schemaName the name of the schema
+     * @param document   the parsed query
+     * @return the context that is invoked with the execution result
+     */
+    default InstrumentationContext<ExecutionResult> beginExecution(String schemaName, Document document) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when data is fetched for a field.
+     *
+     * @param dataFetcherId the id of the data fetcher
+     * @param environment   the data fetching environment, or {@code null} if not available
+     * @return the context that is invoked with the fetched data
+     */
+    default InstrumentationContext<Object> beginFetchData(String dataFetcherId, DataFetchingEnvironment environment) {
+        return InstrumentationContext.noop();
+    }
+
+    /**
+     * Invoked when the concrete object type of an interface or union value is resolved.
+     *
+     * @param typeResolverId the id of the type resolver
+     * @param value          the value to resolve the type of
+     * @return the context that is invoked with the resolved type
+     */
+    default InstrumentationContext<GraphQLObjectType> beginResolveType(String typeResolverId, Object value) {
+        return InstrumentationContext.noop();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.marshaller.instrumentation;
+
+/**
+ * Callback that is returned by the {@code begin} methods of {@link Instrumentation}, and is invoked when the
+ * instrumented step ends.
+ *
+ * @param <T> the result type of the instrumented step
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@FunctionalInterface
+public interface InstrumentationContext<T> {
+
+    /**
+     * Invoked when the instrumented step ends.
+     *
+     * @param result the result of the step, or {@code null} if it failed
+     * @param error  the failure cause, or {@code null} if the step succeeded
+     */
+    void onEnd(T result, Throwable error);
+
+    /**
+     * Gets the instrumentation context that does nothing.
+     *
+     * @param <T> the result type of the instrumented step
+     * @return the no-op instrumentation context
+     */
+    @SuppressWarnings("unchecked")
+    static <T> InstrumentationContext<T> noop() {
+        return (InstrumentationContext<T>) NoopInstrumentationContext.INSTANCE;
+    }
+}
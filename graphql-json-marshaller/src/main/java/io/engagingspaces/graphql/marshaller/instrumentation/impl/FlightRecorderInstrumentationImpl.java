@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.marshaller.instrumentation.impl;
+
+import graphql.ExecutionResult;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
+import io.engagingspaces.graphql.marshaller.instrumentation.InstrumentationContext;
+import io.vertx.core.json.JsonObject;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Instrumentation that emits Java Flight Recorder events. Use
+ * {@link io.engagingspaces.graphql.marshaller.instrumentation.FlightRecorderInstrumentation#create()} to create
+ * instances, so the JFR classes are only loaded when available.
+ * <p>
+ * Event fields that are expensive to compute (e.g. payload sizes) are only filled in if the event is committed,
+ * i.e. when it is enabled and exceeds the duration threshold of the recording.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class FlightRecorderInstrumentationImpl implements Instrumentation {
+
+    private static final String EVENT_PREFIX = "io.engagingspaces.graphql.";
+
+    @Override
+    public InstrumentationContext<JsonObject> beginMarshal(GraphQLSchema schema) {
+        SchemaMarshalEvent event = new SchemaMarshalEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (json, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schemaName(schema);
+                event.typeCount = schema.getAllTypesAsList().size();
+                event.payloadBytes = payloadBytes(json);
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<GraphQLSchema> beginUnmarshal(JsonObject json) {
+        SchemaUnmarshalEvent event = new SchemaUnmarshalEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (schema, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schema == null ? null : schemaName(schema);
+                event.typeCount = schema == null ? 0 : schema.getAllTypesAsList().size();
+                event.payloadBytes = payloadBytes(json);
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginQuery(String schemaName, String query) {
+        QueryEvent event = new QueryEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (result, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schemaName;
+                event.queryLength = query == null ? 0 : query.length();
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<Document> beginParse(String schemaName, String query) {
+        QueryParseEvent event = new QueryParseEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (document, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schemaName;
+                event.queryLength = query == null ? 0 : query.length();
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<List<ValidationError>> beginValidation(String schemaName, Document document) {
+        QueryValidationEvent event = new QueryValidationEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (errors, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schemaName;
+                event.operationName = operationName(document);
+                event.errorCount = errors == null ? 0 : errors.size();
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(String schemaName, Document document) {
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (result, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.schemaName = schemaName;
+                event.operationName = operationName(document);
+                event.errorCount = result == null || result.getErrors() == null ? 0 : result.getErrors().size();
+                event.succeeded = error == null && event.errorCount == 0;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFetchData(String dataFetcherId, DataFetchingEnvironment environment) {
+        FetchDataEvent event = new FetchDataEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (data, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.dataFetcherId = dataFetcherId;
+                if (environment != null) {
+                    event.parentType = environment.getParentType() == null ?
+                            null : environment.getParentType().getName();
+                    event.fieldName = environment.getFields() == null || environment.getFields().isEmpty() ?
+                            null : environment.getFields().get(0).getName();
+                }
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<GraphQLObjectType> beginResolveType(String typeResolverId, Object value) {
+        ResolveTypeEvent event = new ResolveTypeEvent();
+        if (!event.isEnabled()) {
+            return InstrumentationContext.noop();
+        }
+        event.begin();
+        return (type, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.typeResolverId = typeResolverId;
+                event.resolvedType = type == null ? null : type.getName();
+                event.succeeded = error == null;
+                event.commit();
+            }
+        };
+    }
+
+    private static String schemaName(GraphQLSchema schema) {
+        return schema.getQueryType() == null ? null : schema.getQueryType().getName();
+    }
+
+    private static long payloadBytes(JsonObject json) {
+        return json == null ? 0 : json.encode().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String operationName(Document document) {
+        if (document != null) {
+            for (Definition definition : document.getDefinitions()) {
+                if (definition instanceof OperationDefinition) {
+                    return ((OperationDefinition) definition).getName();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Name(EVENT_PREFIX + "SchemaMarshal")
+    @Label("Schema Marshal")
+    @Category({"GraphQL", "Schema"})
+    @Description("Marshalling of a GraphQL schema to json")
+    static class SchemaMarshalEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Type Count")
+        int typeCount;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "SchemaUnmarshal")
+    @Label("Schema Unmarshal")
+    @Category({"GraphQL", "Schema"})
+    @Description("Un-marshalling of a GraphQL schema from json")
+    static class SchemaUnmarshalEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Type Count")
+        int typeCount;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "Query")
+    @Label("Query")
+    @Category({"GraphQL", "Query"})
+    @Description("A GraphQL query, from receiving the query until the result is replied")
+    @StackTrace(false)
+    static class QueryEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Query Length")
+        int queryLength;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "QueryParse")
+    @Label("Query Parse")
+    @Category({"GraphQL", "Query"})
+    @Description("Parsing of GraphQL query text")
+    @StackTrace(false)
+    static class QueryParseEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Query Length")
+        int queryLength;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "QueryValidation")
+    @Label("Query Validation")
+    @Category({"GraphQL", "Query"})
+    @Description("Validation of a parsed GraphQL query against the schema")
+    @StackTrace(false)
+    static class QueryValidationEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Operation Name")
+        String operationName;
+
+        @Label("Error Count")
+        int errorCount;
+    }
+
+    @Name(EVENT_PREFIX + "QueryExecution")
+    @Label("Query Execution")
+    @Category({"GraphQL", "Query"})
+    @Description("Execution of a validated GraphQL query")
+    @StackTrace(false)
+    static class QueryExecutionEvent extends Event {
+
+        @Label("Schema Name")
+        String schemaName;
+
+        @Label("Operation Name")
+        String operationName;
+
+        @Label("Error Count")
+        int errorCount;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "FetchData")
+    @Label("Fetch Data")
+    @Category({"GraphQL", "Query"})
+    @Description("Invocation of a data fetcher")
+    static class FetchDataEvent extends Event {
+
+        @Label("Data Fetcher Id")
+        String dataFetcherId;
+
+        @Label("Parent Type")
+        String parentType;
+
+        @Label("Field Name")
+        String fieldName;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name(EVENT_PREFIX + "ResolveType")
+    @Label("Resolve Type")
+    @Category({"GraphQL", "Query"})
+    @Description("Invocation of a type resolver")
+    static class ResolveTypeEvent extends Event {
+
+        @Label("Type Resolver Id")
+        String typeResolverId;
+
+        @Label("Resolved Type")
+        String resolvedType;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+}
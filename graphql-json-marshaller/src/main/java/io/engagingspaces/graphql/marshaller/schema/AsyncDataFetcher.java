@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.marshaller.schema;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Data fetcher that fetches its data asynchronously, e.g. from a database client or another service on the
+ * event bus, without blocking the executing thread.
+ * <p>
+ * As a regular {@link DataFetcher} it returns a Vert.x {@link Future} that is completed when the data is fetched.
+ * Ordinary data fetchers may also return a {@link Future} or {@link CompletionStage} directly. Asynchronous execution
+ * awaits these results without blocking, while synchronous execution blocks until they complete.
+ * <p>
+ * Asynchronous data fetchers are decorated, marshaled and proxied in the same way as other data fetchers.
+ *
+ * @param <T> the type of the fetched data
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@FunctionalInterface
+public interface AsyncDataFetcher<T> extends DataFetcher {
+
+    /**
+     * Fetches the data of the field.
+     *
+     * @param environment   the data fetching environment
+     * @param resultHandler the result handler with the fetched data on success, or a failure
+     */
+    void fetch(DataFetchingEnvironment environment, Handler<AsyncResult<T>> resultHandler);
+
+    /**
+     * Fetches the data of the field, and returns it as a future.
+     *
+     * @param environment the data fetching environment
+     * @return the future of the fetched data
+     */
+    @Override
+    default Object get(DataFetchingEnvironment environment) {
+        Future<T> future = Future.future();
+        fetch(environment, future.completer());
+        return future;
+    }
+
+    /**
+     * Checks whether the value that is returned by a data fetcher is an asynchronous result.
+     *
+     * @param value the value returned by a data fetcher
+     * @return {@code true} if the value is a {@link Future} or {@link CompletionStage}, {@code false} otherwise
+     */
+    static boolean isAsync(Object value) {
+        return value instanceof Future || value instanceof CompletionStage;
+    }
+
+    /**
+     * Invokes the handler when the value returned by a data fetcher is available. The handler is invoked immediately
+     * if the value is not an {@link #isAsync(Object) asynchronous result}.
+     * <p>
+     * Note that a Vert.x future supports a single handler, so a future can only be passed to this method once.
+     *
+     * @param value   the value returned by a data fetcher
+     * @param handler the handler with the (resolved) value, or a failure
+     */
+    @SuppressWarnings("unchecked")
+    static void onComplete(Object value, Handler<AsyncResult<Object>> handler) {
+        if (value instanceof Future) {
+            ((Future<Object>) value).setHandler(handler);
+        } else if (value instanceof CompletionStage) {
+            ((CompletionStage<Object>) value).whenComplete((result, error) -> handler.handle(error == null ?
+                    Future.succeededFuture(result) : Future.failedFuture(error instanceof CompletionException &&
+                    error.getCause() != null ? error.getCause() : error)));
+        } else {
+            handler.handle(Future.succeededFuture(value));
+        }
+    }
+}
@@ -20,11 +20,14 @@ import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
 import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.StaticDataFetcher;
+import io.engagingspaces.graphql.marshaller.instrumentation.InstrumentationContext;
 import io.engagingspaces.graphql.marshaller.json.JsonReference;
 import io.engagingspaces.graphql.marshaller.json.JsonSerializable;
 import io.engagingspaces.graphql.marshaller.json.impl.JsonObjectHelper;
+import io.engagingspaces.graphql.marshaller.schema.AsyncDataFetcher;
 import io.engagingspaces.graphql.marshaller.schema.SchemaChildDecorator;
 import io.engagingspaces.graphql.marshaller.schema.SchemaContext;
+import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 
 import java.util.UUID;
@@ -154,9 +157,36 @@ public class DataFetcherDO implements DataFetcher, SchemaChildDecorator<DataFetc
         return staticValue;
     }
 
+    /**
+     * Fetches the data using the decorated data fetcher.
+     * <p>
+     * If the data fetcher returns an {@link AsyncDataFetcher#isAsync(Object) asynchronous result}, the
+     * instrumentation is notified when the result completes, and a new future is returned that completes with it.
+     *
+     * @param environment the data fetching environment
+     * @return the fetched data
+     */
     @Override
     public Object get(DataFetchingEnvironment environment) {
-        return dataFetcher.get(environment);
+        InstrumentationContext<Object> instrumentation =
+                context.options().instrumentation().beginFetchData(id, environment);
+        Object result;
+        try {
+            result = dataFetcher.get(environment);
+        } catch (RuntimeException ex) {
+            instrumentation.onEnd(null, ex);
+            throw ex;
+        }
+        if (AsyncDataFetcher.isAsync(result) && instrumentation != InstrumentationContext.noop()) {
+            Future<Object> future = Future.future();
+            AsyncDataFetcher.onComplete(result, res -> {
+                instrumentation.onEnd(res.result(), res.cause());
+                future.completer().handle(res);
+            });
+            return future;
+        }
+        instrumentation.onEnd(result, null);
+        return result;
     }
 
     /**
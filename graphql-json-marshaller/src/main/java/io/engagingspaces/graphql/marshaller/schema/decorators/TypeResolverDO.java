@@ -19,6 +19,7 @@ package io.engagingspaces.graphql.marshaller.schema.decorators;
 import graphql.schema.GraphQLObjectType;
 import graphql.schema.GraphQLType;
 import graphql.schema.TypeResolver;
+import io.engagingspaces.graphql.marshaller.instrumentation.InstrumentationContext;
 import io.engagingspaces.graphql.marshaller.json.JsonReference;
 import io.engagingspaces.graphql.marshaller.json.JsonSerializable;
 import io.engagingspaces.graphql.marshaller.json.PropNames;
@@ -129,7 +130,17 @@ public class TypeResolverDO implements TypeResolver, SchemaChildDecorator<TypeRe
 
     @Override
     public GraphQLObjectType getType(Object object) {
-        return resolver.getType(object);
+        InstrumentationContext<GraphQLObjectType> instrumentation =
+                context.options().instrumentation().beginResolveType(id, object);
+        GraphQLObjectType result;
+        try {
+            result = resolver.getType(object);
+        } catch (RuntimeException ex) {
+            instrumentation.onEnd(null, ex);
+            throw ex;
+        }
+        instrumentation.onEnd(result, null);
+        return result;
     }
 
     /**
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.marshaller.instrumentation;
+
+import graphql.GraphQL;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.SchemaMarshaller;
+import io.engagingspaces.graphql.marshaller.SchemaMarshallerOptions;
+import io.engagingspaces.graphql.marshaller.instrumentation.impl.FlightRecorderInstrumentationImpl;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link FlightRecorderInstrumentation} and the events it emits.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class FlightRecorderInstrumentationTest {
+
+    private static final String PACKAGE = FlightRecorderInstrumentation.class.getPackage().getName();
+
+    @Test
+    public void should_Emit_Events_For_Marshalling_And_Data_Fetchers() throws IOException {
+        assertTrue(FlightRecorderInstrumentation.isAvailable());
+        Instrumentation instrumentation = FlightRecorderInstrumentation.create();
+        assertTrue(instrumentation instanceof FlightRecorderInstrumentationImpl);
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hero").type(GraphQLString)
+                        .dataFetcher(env -> "R2-D2").build())
+                .build()).build();
+        SchemaMarshallerOptions options = SchemaMarshallerOptions.create().setInstrumentation(instrumentation);
+
+        List<RecordedEvent> events;
+        Path file = Files.createTempFile("graphql", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.engagingspaces.graphql.SchemaMarshal").withoutThreshold();
+            recording.enable("io.engagingspaces.graphql.FetchData").withoutThreshold();
+            recording.start();
+            SchemaMarshaller.toJson(schema, options);
+            new GraphQL(SchemaMarshaller.decorateSchema(schema, options)).execute("{ hero }");
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        RecordedEvent marshal = single(events, "io.engagingspaces.graphql.SchemaMarshal");
+        assertEquals("Query", marshal.getString("schemaName"));
+        assertTrue(marshal.getLong("payloadBytes") > 0);
+        assertTrue(marshal.getBoolean("succeeded"));
+        RecordedEvent fetch = single(events, "io.engagingspaces.graphql.FetchData");
+        assertEquals("Query", fetch.getString("parentType"));
+        assertEquals("hero", fetch.getString("fieldName"));
+        assertTrue(fetch.getBoolean("succeeded"));
+    }
+
+    @Test
+    public void should_Not_Instrument_When_Events_Are_Disabled() {
+        Instrumentation instrumentation = FlightRecorderInstrumentation.create();
+        assertSame(InstrumentationContext.noop(), instrumentation.beginFetchData("id", null));
+        assertSame(InstrumentationContext.noop(), instrumentation.beginQuery("Query", "{ hero }"));
+    }
+
+    @Test
+    public void should_Fall_Back_To_Noop_Without_Flight_Recorder() throws Exception {
+        WithoutFlightRecorderClassLoader loader = new WithoutFlightRecorderClassLoader();
+        Class<?> factory = loader.loadClass(FlightRecorderInstrumentation.class.getName());
+        Class<?> spi = loader.loadClass(Instrumentation.class.getName());
+        assertSame(loader, factory.getClassLoader());
+
+        assertEquals(false, factory.getMethod("isAvailable").invoke(null));
+        assertSame(spi.getField("NOOP").get(null), factory.getMethod("create").invoke(null));
+        assertFalse(loader.loaded.contains(FlightRecorderInstrumentationImpl.class.getName()));
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+        assertEquals(1, matching.size());
+        return matching.get(0);
+    }
+
+    /**
+     * Class loader that loads the instrumentation classes itself, and hides the flight recorder classes as on a JVM
+     * without the {@code jdk.jfr} module.
+     */
+    private static class WithoutFlightRecorderClassLoader extends ClassLoader {
+
+        private final Set<String> loaded = new HashSet<>();
+
+        private WithoutFlightRecorderClassLoader() {
+            super(FlightRecorderInstrumentationTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("jdk.jfr.")) {
+                throw new ClassNotFoundException(name);
+            }
+            if (!name.startsWith(PACKAGE) || name.equals(FlightRecorderInstrumentationTest.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> result = findLoadedClass(name);
+                if (result == null) {
+                    result = define(name);
+                }
+                if (resolve) {
+                    resolveClass(result);
+                }
+                return result;
+            }
+        }
+
+        private Class<?> define(String name) throws ClassNotFoundException {
+            String resource = name.replace('.', '/') + ".class";
+            try (InputStream in = getParent().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] bytes = new byte[in.available()];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += in.read(bytes, read, bytes.length - read);
+                }
+                loaded.add(name);
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException ex) {
+                throw new ClassNotFoundException(name, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.marshaller.instrumentation;
+
+import graphql.ExecutionResult;
+import graphql.GraphQL;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.SchemaMarshaller;
+import io.engagingspaces.graphql.marshaller.SchemaMarshallerOptions;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link Instrumentation} of decorated data fetchers and type resolvers, and of schema marshalling.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class InstrumentationTest {
+
+    private final List<String> events = new ArrayList<>();
+    private final Instrumentation instrumentation = new Instrumentation() {
+
+        @Override
+        public InstrumentationContext<JsonObject> beginMarshal(GraphQLSchema schema) {
+            events.add("begin marshal");
+            return (result, error) -> events.add("end marshal " + (result != null));
+        }
+
+        @Override
+        public InstrumentationContext<Object> beginFetchData(String dataFetcherId,
+                                                             DataFetchingEnvironment environment) {
+            assertNotNull(dataFetcherId);
+            events.add("begin fetch " + environment.getFields().get(0).getName());
+            return (result, error) -> events.add("end fetch " + (error == null ? result : error.getMessage()));
+        }
+
+        @Override
+        public InstrumentationContext<GraphQLObjectType> beginResolveType(String typeResolverId, Object value) {
+            assertNotNull(typeResolverId);
+            events.add("begin resolve " + value);
+            return (result, error) -> events.add("end resolve " + result.getName());
+        }
+    };
+
+    private GraphQLSchema schema;
+
+    @Before
+    public void setUp() {
+        GraphQLObjectType[] droidType = new GraphQLObjectType[1];
+        GraphQLInterfaceType character = GraphQLInterfaceType.newInterface().name("Character")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .typeResolver(object -> droidType[0])
+                .build();
+        droidType[0] = GraphQLObjectType.newObject().name("Droid").withInterface(character)
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString)
+                        .dataFetcher(DataFetchingEnvironment::getSource).build())
+                .build();
+        schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hero").type(character)
+                        .dataFetcher(env -> "R2-D2").build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("droid").type(droidType[0])
+                        .dataFetcher(env -> "C-3PO").build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("broken").type(GraphQLString)
+                        .dataFetcher(env -> {
+                            throw new IllegalStateException("broken");
+                        }).build())
+                .build()).build(Collections.singleton(droidType[0]));
+    }
+
+    @Test
+    public void should_Instrument_Data_Fetchers_And_Type_Resolvers() {
+        GraphQLSchema decorated = SchemaMarshaller.decorateSchema(schema,
+                SchemaMarshallerOptions.create().setInstrumentation(instrumentation));
+        ExecutionResult result = new GraphQL(decorated).execute("{ droid { name } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(Collections.singletonMap("droid", Collections.singletonMap("name", "C-3PO")), result.getData());
+        assertEquals(Arrays.asList("begin fetch droid", "end fetch C-3PO", "begin fetch name", "end fetch C-3PO"),
+                events);
+
+        events.clear();
+        result = new GraphQL(decorated).execute("{ hero { name } }");
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(Arrays.asList("begin fetch hero", "end fetch R2-D2", "begin resolve R2-D2", "end resolve Droid"),
+                events.subList(0, 4));
+    }
+
+    @Test
+    public void should_Instrument_Failing_Data_Fetchers() {
+        GraphQLSchema decorated = SchemaMarshaller.decorateSchema(schema,
+                SchemaMarshallerOptions.create().setInstrumentation(instrumentation));
+        ExecutionResult result = new GraphQL(decorated).execute("{ broken }");
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals(Arrays.asList("begin fetch broken", "end fetch broken"), events);
+    }
+
+    @Test
+    public void should_Instrument_Marshalling() {
+        assertNotNull(SchemaMarshaller.toJson(schema,
+                SchemaMarshallerOptions.create().setInstrumentation(instrumentation)));
+
+        assertEquals(Arrays.asList("begin marshal", "end marshal true"), events);
+    }
+
+    @Test
+    public void should_Not_Instrument_By_Default() {
+        GraphQLSchema decorated = SchemaMarshaller.decorateSchema(schema);
+        assertTrue(new GraphQL(decorated).execute("{ hero { name } }").getErrors().isEmpty());
+        assertTrue(events.isEmpty());
+    }
+}
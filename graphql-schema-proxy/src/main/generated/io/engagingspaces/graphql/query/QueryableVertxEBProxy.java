@@ -36,6 +36,7 @@ import io.vertx.core.Vertx;
 import io.engagingspaces.graphql.query.Queryable;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.Handler;
 import io.engagingspaces.graphql.query.QueryResult;
 
@@ -101,6 +102,26 @@ public class QueryableVertxEBProxy implements Queryable {
     });
   }
 
+  public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables, Handler<AsyncResult<QueryResult>> resultHandler) {
+    if (closed) {
+      resultHandler.handle(Future.failedFuture(new IllegalStateException("Proxy is closed")));
+      return;
+    }
+    JsonObject _json = new JsonObject();
+    _json.put("queryHash", queryHash);
+    _json.put("graphqlQuery", graphqlQuery);
+    _json.put("variables", variables);
+    DeliveryOptions _deliveryOptions = (_options != null) ? new DeliveryOptions(_options) : new DeliveryOptions();
+    _deliveryOptions.addHeader("action", "queryPersisted");
+    _vertx.eventBus().<JsonObject>send(_address, _json, _deliveryOptions, res -> {
+      if (res.failed()) {
+        resultHandler.handle(Future.failedFuture(res.cause()));
+      } else {
+        resultHandler.handle(Future.succeededFuture(res.result().body() == null ? null : new QueryResult(res.result().body())));
+                      }
+    });
+  }
+
   public void resolveType(String typeResolverId, JsonObject typeHolder, Handler<AsyncResult<JsonObject>> resultHandler) {
     if (closed) {
       resultHandler.handle(Future.failedFuture(new IllegalStateException("Proxy is closed")));
@@ -43,6 +43,7 @@ import io.vertx.core.Vertx;
 import io.engagingspaces.graphql.query.Queryable;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.Handler;
 import io.engagingspaces.graphql.query.QueryResult;
 
@@ -124,6 +125,7 @@ public class QueryableVertxProxyHandler extends ProxyHandler {
       accessed();
       switch (action) {
 
+
         case "query": {
           service.query((java.lang.String)json.getValue("graphqlQuery"), res -> {
             if (res.failed()) {
@@ -152,6 +154,20 @@ public class QueryableVertxProxyHandler extends ProxyHandler {
          });
           break;
         }
+        case "queryPersisted": {
+          service.queryPersisted((java.lang.String)json.getValue("queryHash"), (java.lang.String)json.getValue("graphqlQuery"), (io.vertx.core.json.JsonObject)json.getValue("variables"), res -> {
+            if (res.failed()) {
+              if (res.cause() instanceof ServiceException) {
+                msg.reply(res.cause());
+              } else {
+                msg.reply(new ServiceException(-1, res.cause().getMessage()));
+              }
+            } else {
+              msg.reply(res.result() == null ? null : res.result().toJson());
+            }
+         });
+          break;
+        }
         case "resolveType": {
           service.resolveType((java.lang.String)json.getValue("typeResolverId"), (io.vertx.core.json.JsonObject)json.getValue("typeHolder"), createHandler(msg));
           break;
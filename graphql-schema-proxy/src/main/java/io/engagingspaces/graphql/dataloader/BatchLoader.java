@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.dataloader;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.List;
+
+/**
+ * Loads the values of a batch of keys with a single call to a back-end, on behalf of a {@link DataLoader}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@FunctionalInterface
+public interface BatchLoader<K, V> {
+
+    /**
+     * Loads the values of the provided keys.
+     * <p>
+     * On success the handler must be invoked with a list of values that has the same size and order as the list of
+     * keys, with {@code null} for keys that have no value. A failure fails the loads of all keys in the batch.
+     *
+     * @param keys          the distinct keys to load
+     * @param resultHandler the result handler with the values of the keys, or a failure
+     */
+    void load(List<K> keys, Handler<AsyncResult<List<V>>> resultHandler);
+}
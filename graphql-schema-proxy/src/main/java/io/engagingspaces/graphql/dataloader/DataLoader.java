@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.dataloader;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Batches and caches the loads of values by key, to avoid N+1 calls to a back-end when resolving the fields of a
+ * list of entities.
+ * <p>
+ * Keys that are loaded are collected until the loader is {@link #dispatch() dispatched}, and are then loaded with
+ * a single call to the {@link BatchLoader} (or multiple calls if the number of keys exceeds the maximum batch size).
+ * The values of loaded keys are cached, so that every key is loaded at most once during the life time of the loader.
+ * Data loaders are therefore intended to be used for a single query execution, and are registered in the
+ * {@link DataLoaderRegistry} of the query, which dispatches them during execution.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class DataLoader<K, V> {
+
+    private final BatchLoader<K, V> batchLoader;
+    private final int maxBatchSize;
+    private final Map<K, CompletableFuture<V>> cache = new HashMap<>();
+    private Map<K, CompletableFuture<V>> queue = new LinkedHashMap<>();
+    private DataLoaderRegistry registry;
+    private long loadCount;
+    private long batchCount;
+
+    /**
+     * Creates a new data loader without a maximum batch size.
+     *
+     * @param batchLoader the batch loader
+     */
+    public DataLoader(BatchLoader<K, V> batchLoader) {
+        this(batchLoader, 0);
+    }
+
+    /**
+     * Creates a new data loader.
+     *
+     * @param batchLoader  the batch loader
+     * @param maxBatchSize the maximum number of keys per batch, {@code 0} for no limit
+     */
+    public DataLoader(BatchLoader<K, V> batchLoader, int maxBatchSize) {
+        Objects.requireNonNull(batchLoader, "Batch loader cannot be null");
+        if (maxBatchSize < 0) {
+            throw new IllegalArgumentException("Maximum batch size cannot be negative");
+        }
+        this.batchLoader = batchLoader;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Loads the value of the provided key. The returned future completes when the loader is dispatched, or directly
+     * if the value is already cached.
+     * <p>
+     * The future can be returned from a data fetcher as an asynchronous result.
+     *
+     * @param key the key to load
+     * @return the future value of the key
+     */
+    public synchronized CompletableFuture<V> load(K key) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        loadCount++;
+        CompletableFuture<V> future = cache.get(key);
+        if (future == null) {
+            future = new CompletableFuture<>();
+            cache.put(key, future);
+            queue.put(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Loads the values of the provided keys.
+     *
+     * @param keys the keys to load
+     * @return the future values of the keys, in the same order as the keys
+     * @see #load(Object)
+     */
+    public CompletableFuture<List<V>> loadMany(List<K> keys) {
+        Objects.requireNonNull(keys, "Keys cannot be null");
+        List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            futures.add(load(key));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(v -> {
+            List<V> values = new ArrayList<>(futures.size());
+            futures.forEach(future -> values.add(future.join()));
+            return values;
+        });
+    }
+
+    /**
+     * Adds the value of the provided key to the cache, unless the key is already cached.
+     *
+     * @param key   the key
+     * @param value the value of the key
+     * @return the data loader for fluent coding
+     */
+    public synchronized DataLoader<K, V> prime(K key, V value) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        cache.putIfAbsent(key, CompletableFuture.completedFuture(value));
+        return this;
+    }
+
+    /**
+     * Removes the value of the provided key from the cache, so that it is loaded again when requested.
+     *
+     * @param key the key
+     * @return the data loader for fluent coding
+     */
+    public synchronized DataLoader<K, V> clear(K key) {
+        cache.remove(key);
+        return this;
+    }
+
+    /**
+     * Removes all cached values.
+     *
+     * @return the data loader for fluent coding
+     */
+    public synchronized DataLoader<K, V> clearAll() {
+        cache.clear();
+        return this;
+    }
+
+    /**
+     * Loads the keys that were collected since the previous dispatch, with a call to the batch loader for every
+     * batch of keys.
+     *
+     * @return the number of keys that were dispatched
+     */
+    public int dispatch() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                return 0;
+            }
+            batch = queue;
+            queue = new LinkedHashMap<>();
+        }
+        List<K> keys = new ArrayList<>(batch.keySet());
+        int batchSize = maxBatchSize == 0 ? keys.size() : maxBatchSize;
+        for (int start = 0; start < keys.size(); start += batchSize) {
+            dispatch(keys.subList(start, Math.min(keys.size(), start + batchSize)), batch);
+        }
+        return keys.size();
+    }
+
+    /**
+     * @return the number of keys that are waiting to be dispatched
+     */
+    public synchronized int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * @return the total number of loads, including loads of cached keys
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return the total number of calls to the batch loader
+     */
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    synchronized void setRegistry(DataLoaderRegistry registry) {
+        if (this.registry != null && this.registry != registry) {
+            throw new IllegalStateException("Data loader is already registered in another registry");
+        }
+        this.registry = registry;
+    }
+
+    private void dispatch(List<K> keys, Map<K, CompletableFuture<V>> batch) {
+        synchronized (this) {
+            batchCount++;
+        }
+        try {
+            batchLoader.load(new ArrayList<>(keys), res -> complete(keys, batch, res));
+        } catch (RuntimeException ex) {
+            complete(keys, batch, Future.failedFuture(ex));
+        }
+    }
+
+    private void complete(List<K> keys, Map<K, CompletableFuture<V>> batch, AsyncResult<List<V>> result) {
+        Throwable failure = result.failed() ? result.cause() : result.result() == null ||
+                result.result().size() != keys.size() ? new IllegalStateException(
+                "Batch loader must return a value for every key, expected " + keys.size() + " values") : null;
+        DataLoaderRegistry registry;
+        synchronized (this) {
+            if (failure != null) {
+                keys.forEach(key -> cache.remove(key, batch.get(key)));
+            }
+            registry = this.registry;
+        }
+        Runnable completion = () -> {
+            for (int i = 0; i < keys.size(); i++) {
+                CompletableFuture<V> future = batch.get(keys.get(i));
+                if (failure != null) {
+                    future.completeExceptionally(failure);
+                } else {
+                    future.complete(result.result().get(i));
+                }
+            }
+        };
+        if (registry == null) {
+            completion.run();
+        } else {
+            registry.batch(completion);
+        }
+    }
+}
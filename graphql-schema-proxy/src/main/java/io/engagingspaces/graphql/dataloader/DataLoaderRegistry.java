@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.dataloader;
+
+import graphql.schema.DataFetchingEnvironment;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of the {@link DataLoader data loaders} of a single query execution.
+ * <p>
+ * A new registry is created for every query by the data loader registry factory of the schema (see
+ * {@link io.engagingspaces.graphql.schema.SchemaDefinitionOptions#getDataLoaderRegistryFactory()}), and is
+ * available to data fetchers as the context of the {@link DataFetchingEnvironment} (see
+ * {@link #from(DataFetchingEnvironment)}).
+ * <p>
+ * The execution strategies run all work that can load keys in a {@link #batch(Runnable) batch}, and dispatch the
+ * data loaders when no work is left, so that the keys that are loaded on the same level of the query (e.g. by every
+ * item of a list) are loaded with a single call per data loader. With asynchronous execution all keys of a level are
+ * batched. Blocking execution dispatches the pending keys when it awaits a value, so that caching still applies, but
+ * batches are generally smaller.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class DataLoaderRegistry {
+
+    private final Map<String, DataLoader<?, ?>> dataLoaders = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Gets the data loader registry of the query that is executed.
+     *
+     * @param environment the data fetching environment
+     * @return the data loader registry
+     * @throws IllegalStateException if no data loader registry is configured for the schema
+     */
+    public static DataLoaderRegistry from(DataFetchingEnvironment environment) {
+        Objects.requireNonNull(environment, "Data fetching environment cannot be null");
+        if (!(environment.getContext() instanceof DataLoaderRegistry)) {
+            throw new IllegalStateException("No data loader registry available in the execution context");
+        }
+        return (DataLoaderRegistry) environment.getContext();
+    }
+
+    /**
+     * Registers a data loader under the provided name.
+     *
+     * @param name       the name of the data loader
+     * @param dataLoader the data loader
+     * @return the data loader registry for fluent coding
+     */
+    public DataLoaderRegistry register(String name, DataLoader<?, ?> dataLoader) {
+        Objects.requireNonNull(name, "Data loader name cannot be null");
+        Objects.requireNonNull(dataLoader, "Data loader cannot be null");
+        dataLoader.setRegistry(this);
+        dataLoaders.put(name, dataLoader);
+        return this;
+    }
+
+    /**
+     * Gets the data loader with the provided name.
+     *
+     * @param name the name of the data loader
+     * @param <K>  the type of the keys
+     * @param <V>  the type of the values
+     * @return the data loader, or {@code null} if not registered
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> DataLoader<K, V> getDataLoader(String name) {
+        return (DataLoader<K, V>) dataLoaders.get(name);
+    }
+
+    /**
+     * @return the names of the registered data loaders
+     */
+    public Set<String> getDataLoaderNames() {
+        return Collections.unmodifiableSet(dataLoaders.keySet());
+    }
+
+    /**
+     * Dispatches all data loaders.
+     *
+     * @return {@code true} if any keys were dispatched, {@code false} otherwise
+     */
+    public boolean dispatchAll() {
+        boolean dispatched = false;
+        for (DataLoader<?, ?> dataLoader : dataLoaders.values()) {
+            dispatched |= dataLoader.dispatch() > 0;
+        }
+        return dispatched;
+    }
+
+    /**
+     * Runs work that may load keys, and dispatches the data loaders once no other work of the query is running, so
+     * that keys loaded by concurrent work are dispatched in the same batch.
+     *
+     * @param work the work to run
+     */
+    public void batch(Runnable work) {
+        running.incrementAndGet();
+        try {
+            work.run();
+        } finally {
+            if (running.decrementAndGet() == 0) {
+                dispatchPending();
+            }
+        }
+    }
+
+    private void dispatchPending() {
+        int remaining = 0;
+        while (remaining == 0 && isPending()) {
+            running.incrementAndGet();
+            try {
+                dispatchAll();
+            } finally {
+                remaining = running.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean isPending() {
+        for (DataLoader<?, ?> dataLoader : dataLoaders.values()) {
+            if (dataLoader.getPending() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
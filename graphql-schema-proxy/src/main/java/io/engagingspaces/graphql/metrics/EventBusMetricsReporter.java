@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Metrics reporter that replies to messages on an event bus address with a json snapshot of the metrics.
+ * <p>
+ * The snapshot contains all schemas, unless the request body is a json object with a {@code schemaName}, in which case
+ * only the metrics of that schema are returned.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class EventBusMetricsReporter implements MetricsReporter {
+
+    /**
+     * The default address of the metrics reporter.
+     */
+    public static final String DEFAULT_ADDRESS = "graphql.metrics";
+
+    private final String address;
+    private MessageConsumer<Object> consumer;
+
+    /**
+     * Creates a new metrics reporter on the {@link #DEFAULT_ADDRESS}.
+     */
+    public EventBusMetricsReporter() {
+        this(DEFAULT_ADDRESS);
+    }
+
+    /**
+     * Creates a new metrics reporter.
+     *
+     * @param address the event bus address to listen on
+     */
+    public EventBusMetricsReporter(String address) {
+        this.address = Objects.requireNonNull(address, "Metrics address cannot be null");
+    }
+
+    @Override
+    public void start(Vertx vertx, MetricsRegistry registry) {
+        consumer = vertx.eventBus().consumer(address, msg -> {
+            String schemaName = msg.body() instanceof JsonObject ?
+                    ((JsonObject) msg.body()).getString("schemaName") : null;
+            msg.reply(schemaName == null ? registry.toJson() : registry.toJson(schemaName));
+        });
+    }
+
+    @Override
+    public void stop() {
+        if (consumer != null) {
+            consumer.unregister();
+            consumer = null;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the query metrics of a vert.x instance.
+ * <p>
+ * Metrics are kept per schema, separately for the services that execute queries and for the proxies that send them,
+ * so that the latency of a schema can be compared with the latency observed by its clients. There is one registry
+ * per vert.x instance, that is shared by all verticles (see {@link #forVertx(Vertx)}).
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class MetricsRegistry implements Shareable {
+
+    private static final String LOCAL_MAP_NAME = "graphql.metrics";
+    private static final String REGISTRY_KEY = "registry";
+
+    private final Vertx vertx;
+    private final Map<String, SchemaMetrics> services = new ConcurrentHashMap<>();
+    private final Map<String, SchemaMetrics> proxies = new ConcurrentHashMap<>();
+    private final List<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+
+    private MetricsRegistry(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Gets the metrics registry of the vert.x instance, creating it on first access.
+     *
+     * @param vertx the vert.x instance
+     * @return the metrics registry
+     */
+    public static MetricsRegistry forVertx(Vertx vertx) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        LocalMap<String, MetricsRegistry> registries = vertx.sharedData().getLocalMap(LOCAL_MAP_NAME);
+        MetricsRegistry registry = registries.get(REGISTRY_KEY);
+        if (registry == null) {
+            MetricsRegistry created = new MetricsRegistry(vertx);
+            registry = registries.putIfAbsent(REGISTRY_KEY, created);
+            if (registry == null) {
+                registry = created;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Gets the metrics of the service that executes queries on a schema.
+     *
+     * @param schemaName the schema name
+     * @return the schema metrics
+     */
+    public SchemaMetrics service(String schemaName) {
+        Objects.requireNonNull(schemaName, "Schema name cannot be null");
+        return services.computeIfAbsent(schemaName, SchemaMetrics::new);
+    }
+
+    /**
+     * Gets the metrics of the proxies that send queries to a schema.
+     *
+     * @param schemaName the schema name
+     * @return the schema metrics
+     */
+    public SchemaMetrics proxy(String schemaName) {
+        Objects.requireNonNull(schemaName, "Schema name cannot be null");
+        return proxies.computeIfAbsent(schemaName, SchemaMetrics::new);
+    }
+
+    /**
+     * Adds and starts a metrics reporter.
+     *
+     * @param reporter the metrics reporter
+     * @return the metrics registry for fluent coding
+     */
+    public MetricsRegistry addReporter(MetricsReporter reporter) {
+        Objects.requireNonNull(reporter, "Metrics reporter cannot be null");
+        reporters.add(reporter);
+        reporter.start(vertx, this);
+        return this;
+    }
+
+    /**
+     * Stops and removes a metrics reporter.
+     *
+     * @param reporter the metrics reporter
+     * @return the metrics registry for fluent coding
+     */
+    public MetricsRegistry removeReporter(MetricsReporter reporter) {
+        if (reporters.remove(reporter)) {
+            reporter.stop();
+        }
+        return this;
+    }
+
+    /**
+     * @return a json snapshot of the metrics of all schemas
+     */
+    public JsonObject toJson() {
+        JsonObject servicesJson = new JsonObject();
+        services.forEach((name, metrics) -> servicesJson.put(name, metrics.toJson()));
+        JsonObject proxiesJson = new JsonObject();
+        proxies.forEach((name, metrics) -> proxiesJson.put(name, metrics.toJson()));
+        return new JsonObject()
+                .put("timestamp", System.currentTimeMillis())
+                .put("services", servicesJson)
+                .put("proxies", proxiesJson);
+    }
+
+    /**
+     * Creates a json snapshot of the metrics of a single schema.
+     *
+     * @param schemaName the schema name
+     * @return the metrics snapshot
+     */
+    public JsonObject toJson(String schemaName) {
+        JsonObject json = new JsonObject().put("timestamp", System.currentTimeMillis());
+        SchemaMetrics service = services.get(schemaName);
+        if (service != null) {
+            json.put("service", service.toJson());
+        }
+        SchemaMetrics proxy = proxies.get(schemaName);
+        if (proxy != null) {
+            json.put("proxy", proxy.toJson());
+        }
+        return json;
+    }
+}
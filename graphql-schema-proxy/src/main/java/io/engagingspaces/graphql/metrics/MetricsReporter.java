@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Exposes the query metrics of a {@link MetricsRegistry}, e.g. by publishing snapshots to a monitoring system.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public interface MetricsReporter {
+
+    /**
+     * Starts reporting. Invoked when the reporter is added to the registry.
+     *
+     * @param vertx    the vert.x instance
+     * @param registry the metrics registry to report
+     */
+    void start(Vertx vertx, MetricsRegistry registry);
+
+    /**
+     * Stops reporting. Invoked when the reporter is removed from the registry.
+     */
+    void stop();
+}
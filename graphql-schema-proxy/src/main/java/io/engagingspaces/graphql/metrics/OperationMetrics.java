@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.engagingspaces.graphql.metrics.impl.Histogram;
+import io.engagingspaces.graphql.metrics.impl.Meter;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Metrics of a single GraphQL operation (identified by operation name) on a schema.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class OperationMetrics {
+
+    private final Meter requests = new Meter();
+    private final Meter errors = new Meter();
+    private final Histogram latency = new Histogram();
+    private final Histogram requestSize = new Histogram();
+    private final Histogram responseSize = new Histogram();
+
+    /**
+     * Records a completed request.
+     *
+     * @param latencyNanos  the latency of the request in nanoseconds
+     * @param requestBytes  the size of the request in bytes
+     * @param responseBytes the size of the response in bytes, or {@code -1} if unknown or the request failed
+     * @param failed        whether the request failed or returned query errors
+     */
+    public void record(long latencyNanos, long requestBytes, long responseBytes, boolean failed) {
+        requests.mark();
+        if (failed) {
+            errors.mark();
+        }
+        latency.record(latencyNanos / 1000);
+        requestSize.record(requestBytes);
+        if (responseBytes >= 0) {
+            responseSize.record(responseBytes);
+        }
+    }
+
+    /**
+     * @return the total number of requests
+     */
+    public long getRequests() {
+        return requests.getCount();
+    }
+
+    /**
+     * @return the total number of failed requests
+     */
+    public long getErrors() {
+        return errors.getCount();
+    }
+
+    /**
+     * @return the latency histogram, in microseconds
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Creates a json snapshot of the metrics. Rates are one-minute moving averages in events per second, latencies
+     * are in microseconds and sizes in bytes.
+     *
+     * @return the metrics snapshot
+     */
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("requests", requests.getCount())
+                .put("errors", errors.getCount())
+                .put("requestRate", round(requests.getOneMinuteRate()))
+                .put("errorRate", round(errors.getOneMinuteRate()))
+                .put("latencyMicros", latency.toJson())
+                .put("requestBytes", requestSize.toJson())
+                .put("responseBytes", responseSize.toJson());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
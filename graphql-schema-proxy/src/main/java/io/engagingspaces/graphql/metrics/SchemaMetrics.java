@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of the queries on a single schema, with a breakdown per operation name.
+ * <p>
+ * To bound memory use when clients send many distinct operation names, at most {@link #MAX_OPERATIONS} operations
+ * are tracked separately, and the remainder is aggregated under {@link #OTHER_OPERATIONS}.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class SchemaMetrics {
+
+    /**
+     * The maximum number of operations that is tracked separately.
+     */
+    public static final int MAX_OPERATIONS = 100;
+
+    /**
+     * The operation name under which anonymous operations are tracked.
+     */
+    public static final String ANONYMOUS_OPERATION = "<anonymous>";
+
+    /**
+     * The operation name under which operations beyond {@link #MAX_OPERATIONS} are tracked.
+     */
+    public static final String OTHER_OPERATIONS = "<other>";
+
+    private final String schemaName;
+    private final OperationMetrics total = new OperationMetrics();
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Creates new schema metrics.
+     *
+     * @param schemaName the schema name
+     */
+    public SchemaMetrics(String schemaName) {
+        this.schemaName = schemaName;
+    }
+
+    /**
+     * @return the schema name
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * Marks the start of a request.
+     */
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a completed request that was previously {@link #started()}.
+     *
+     * @param operationName the operation name, or {@code null} for anonymous operations
+     * @param latencyNanos  the latency of the request in nanoseconds
+     * @param requestBytes  the size of the request in bytes
+     * @param responseBytes the size of the response in bytes, or {@code -1} if unknown or the request failed
+     * @param failed        whether the request failed or returned query errors
+     */
+    public void completed(String operationName, long latencyNanos, long requestBytes, long responseBytes,
+                          boolean failed) {
+        inFlight.decrementAndGet();
+        total.record(latencyNanos, requestBytes, responseBytes, failed);
+        operation(operationName).record(latencyNanos, requestBytes, responseBytes, failed);
+    }
+
+    /**
+     * @return the number of requests that are currently in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the metrics of all operations on the schema together
+     */
+    public OperationMetrics getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the metrics of an operation.
+     *
+     * @param operationName the operation name
+     * @return the operation metrics, or {@code null} if the operation is not tracked
+     */
+    public OperationMetrics getOperation(String operationName) {
+        return operations.get(operationName);
+    }
+
+    /**
+     * @return a json snapshot of the schema metrics, and the metrics per operation
+     */
+    public JsonObject toJson() {
+        JsonObject operationsJson = new JsonObject();
+        operations.forEach((name, metrics) -> operationsJson.put(name, metrics.toJson()));
+        return total.toJson()
+                .put("inFlight", inFlight.get())
+                .put("operations", operationsJson);
+    }
+
+    private OperationMetrics operation(String operationName) {
+        String name = operationName == null ? ANONYMOUS_OPERATION : operationName;
+        OperationMetrics metrics = operations.get(name);
+        if (metrics == null) {
+            if (operations.size() >= MAX_OPERATIONS) {
+                name = OTHER_OPERATIONS;
+            }
+            metrics = operations.computeIfAbsent(name, key -> new OperationMetrics());
+        }
+        return metrics;
+    }
+}
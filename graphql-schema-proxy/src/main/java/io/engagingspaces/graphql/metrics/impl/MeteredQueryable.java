@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics.impl;
+
+import io.engagingspaces.graphql.metrics.SchemaMetrics;
+import io.engagingspaces.graphql.query.IncrementalQueryable;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decorator that records the {@link SchemaMetrics} of the queries on a {@link Queryable} service or proxy.
+ * <p>
+ * Latency is measured from the invocation until the result handler is called. The request size is the length of the
+ * query text. The response size is the {@link QueryResult#getEncodedSize() size of an encoding} that is already
+ * available, i.e. the size of the event bus message a proxy received the result in, or of the cached json encoding.
+ * Queries and results are never encoded just for metering, so sizes of results that are passed by reference (e.g.
+ * by local services) are not recorded. The operation name is taken from the first named operation in the query text;
+ * persisted queries that are sent by hash only are tracked by hash.
+ * <p>
+ * Incremental queries are forwarded to the decorated queryable, and are recorded up to their initial payload.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class MeteredQueryable implements Queryable, IncrementalQueryable {
+
+    private static final Pattern OPERATION_NAME = Pattern.compile(
+            "^(?:\\s|,|#[^\\n]*)*(?:query|mutation|subscription)\\s+([_A-Za-z][_0-9A-Za-z]*)");
+
+    private final Queryable delegate;
+    private final SchemaMetrics metrics;
+
+    /**
+     * Creates a new metered queryable.
+     *
+     * @param delegate the queryable to decorate
+     * @param metrics  the schema metrics to record to
+     */
+    public MeteredQueryable(Queryable delegate, SchemaMetrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "Queryable cannot be null");
+        this.metrics = Objects.requireNonNull(metrics, "Schema metrics cannot be null");
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        invoke(operationName(graphqlQuery), requestSize(graphqlQuery), resultHandler,
+                handler -> delegate.query(graphqlQuery, handler));
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        invoke(operationName(graphqlQuery), requestSize(graphqlQuery), resultHandler,
+                handler -> delegate.queryWithVariables(graphqlQuery, variables, handler));
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        String operationName = graphqlQuery == null ? "persisted:" + queryHash : operationName(graphqlQuery);
+        long requestSize = requestSize(graphqlQuery) + (queryHash == null ? 0 : queryHash.length());
+        invoke(operationName, requestSize, resultHandler,
+                handler -> delegate.queryPersisted(queryHash, graphqlQuery, variables, handler));
+    }
+
+    @Override
+    public void queryIncremental(String graphqlQuery, JsonObject variables, Handler<JsonObject> incrementHandler,
+                                 Handler<AsyncResult<QueryResult>> resultHandler) {
+        invoke(operationName(graphqlQuery), requestSize(graphqlQuery), resultHandler,
+                handler -> IncrementalQueryable.queryIncremental(delegate, graphqlQuery, variables,
+                        incrementHandler, handler));
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * @return the decorated queryable
+     */
+    public Queryable getDelegate() {
+        return delegate;
+    }
+
+    private void invoke(String operationName, long requestSize, Handler<AsyncResult<QueryResult>> resultHandler,
+                        Consumer<Handler<AsyncResult<QueryResult>>> invocation) {
+        MeteredRequest request = new MeteredRequest(operationName, requestSize, resultHandler);
+        try {
+            invocation.accept(request);
+        } catch (RuntimeException ex) {
+            request.completed(-1, true);
+            throw ex;
+        }
+    }
+
+    private static long requestSize(String graphqlQuery) {
+        return graphqlQuery == null ? 0 : graphqlQuery.length();
+    }
+
+    static String operationName(String graphqlQuery) {
+        if (graphqlQuery == null) {
+            return null;
+        }
+        Matcher matcher = OPERATION_NAME.matcher(graphqlQuery);
+        return matcher.lookingAt() ? matcher.group(1) : null;
+    }
+
+    private class MeteredRequest implements Handler<AsyncResult<QueryResult>> {
+
+        private final String operationName;
+        private final long requestSize;
+        private final Handler<AsyncResult<QueryResult>> resultHandler;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private MeteredRequest(String operationName, long requestSize,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+            this.operationName = operationName;
+            this.requestSize = requestSize;
+            this.resultHandler = resultHandler;
+            metrics.started();
+        }
+
+        @Override
+        public void handle(AsyncResult<QueryResult> res) {
+            QueryResult result = res.succeeded() ? res.result() : null;
+            completed(result == null ? -1 : result.getEncodedSize(), result == null || !result.isSucceeded());
+            resultHandler.handle(res);
+        }
+
+        private void completed(long responseSize, boolean failed) {
+            if (completed.compareAndSet(false, true)) {
+                metrics.completed(operationName, System.nanoTime() - start, requestSize, responseSize, failed);
+            }
+        }
+    }
+}
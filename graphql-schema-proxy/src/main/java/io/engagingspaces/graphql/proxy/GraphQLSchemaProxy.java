@@ -17,19 +17,22 @@
 package io.engagingspaces.graphql.proxy;
 
 import graphql.ExecutionResult;
-import graphql.GraphQL;
 import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
 import io.engagingspaces.graphql.marshaller.schema.SchemaContext;
 import io.engagingspaces.graphql.marshaller.schema.decorators.GraphQLSchemaDO;
 import io.engagingspaces.graphql.query.QueryResult;
 import io.engagingspaces.graphql.query.Queryable;
 import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.engagingspaces.graphql.schema.impl.QueryExecutor;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -41,6 +44,7 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
 
     private Vertx vertx;
     private SchemaContext schemaContext;
+    private volatile QueryExecutor executor;
 
     /**
      * Protected constructor used to wrap the provided GraphQL object.
@@ -52,6 +56,7 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
     protected GraphQLSchemaProxy(Vertx vertx, GraphQLSchema schema, SchemaContext context) {
         super(schema, context);
         this.vertx = vertx;
+        this.schemaContext = context;
     }
 
     /**
@@ -64,6 +69,7 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
     public GraphQLSchemaProxy(Vertx vertx, JsonObject json, SchemaContext context) {
         super(json, context);
         this.vertx = vertx;
+        this.schemaContext = context;
     }
 
     @Override
@@ -74,11 +80,21 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
     @Override
     public void queryWithVariables(String graphqlQuery, JsonObject variables,
                                    Handler<AsyncResult<QueryResult>> resultHandler) {
+        QueryExecutor executor = executor();
+        Handler<AsyncResult<QueryResult>> handler = executor.instrumentQuery(graphqlQuery, resultHandler);
+        Map<String, Object> variableMap = variables == null ? null : variables.getMap();
+        String introspectionKey = executor.introspectionKey(graphqlQuery, variableMap);
+        QueryResult introspectionResult = executor.introspectionCache().get(introspectionKey);
+        if (introspectionResult != null) {
+            handler.handle(Future.succeededFuture(introspectionResult));
+            return;
+        }
+        handler = executor.introspectionCache().caching(introspectionKey, handler);
         try {
             QueryResult result = queryBlocking(graphqlQuery, variables);
-            resultHandler.handle(Future.succeededFuture(result));
+            handler.handle(Future.succeededFuture(result));
         } catch (RuntimeException ex) {
-            resultHandler.handle(Future.failedFuture(ex));
+            handler.handle(Future.failedFuture(ex));
         }
     }
 
@@ -91,13 +107,7 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
      */
     public QueryResult queryBlocking(String graphqlQuery, JsonObject variables) {
         Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
-        GraphQL graphQL = new GraphQL(this);
-        ExecutionResult result;
-        if (variables == null) {
-            result = graphQL.execute(graphqlQuery);
-        } else {
-            result = graphQL.execute(graphqlQuery, (Object) null, variables.getMap());
-        }
+        ExecutionResult result = executor().execute(this, graphqlQuery, variables == null ? null : variables.getMap());
         return SchemaDefinition.convertToQueryResult(result);
     }
 
@@ -114,4 +124,22 @@ public class GraphQLSchemaProxy extends GraphQLSchemaDO implements Queryable {
         Objects.requireNonNull(dataFetcherId, "Data fetcher id cannot be null");
         Objects.requireNonNull(dataFetchingEnvironment, "Data fetching environment json cannot be null");
     }
+
+    private QueryExecutor executor() {
+        QueryExecutor result = executor;
+        if (result == null) {
+            synchronized (this) {
+                result = executor;
+                if (result == null) {
+                    executor = result = QueryExecutor.forSchema(this,
+                            new SchemaDefinitionOptions().setInstrumentation(instrumentation()));
+                }
+            }
+        }
+        return result;
+    }
+
+    private Instrumentation instrumentation() {
+        return schemaContext == null ? Instrumentation.NOOP : schemaContext.options().instrumentation();
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.proxy;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.query.impl.CompositeFutures;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Queryable that executes GraphQL queries in mixed mode.
+ * <p>
+ * Each query is divided by the {@link QueryPlanner} into a part that is executed consumer-side on the
+ * {@link GraphQLSchemaProxy}, and independent sub-queries that are sent to the schema publisher in parallel.
+ * The partial results are merged into a single {@link QueryResult} when all parts have completed. If a part fails,
+ * e.g. because the publisher can not be reached, the merged result holds the data of the other parts, and an error
+ * that names the root fields of the failed part.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class MixedModeSchemaProxy implements Queryable {
+
+    private final GraphQLSchemaProxy localProxy;
+    private final Queryable remoteProxy;
+    private final QueryPlanner planner;
+
+    /**
+     * Creates a new mixed mode schema proxy.
+     *
+     * @param localProxy  the client-side schema proxy that executes the local part of the query
+     * @param remoteProxy the service proxy to the schema publisher
+     * @param planner     the query planner
+     */
+    public MixedModeSchemaProxy(GraphQLSchemaProxy localProxy, Queryable remoteProxy, QueryPlanner planner) {
+        Objects.requireNonNull(localProxy, "Local schema proxy cannot be null");
+        Objects.requireNonNull(remoteProxy, "Remote service proxy cannot be null");
+        Objects.requireNonNull(planner, "Query planner cannot be null");
+        this.localProxy = localProxy;
+        this.remoteProxy = remoteProxy;
+        this.planner = planner;
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        queryWithVariables(graphqlQuery, null, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        QueryPlan plan;
+        try {
+            plan = planner.plan(graphqlQuery);
+        } catch (RuntimeException ex) {
+            resultHandler.handle(Future.failedFuture(ex));
+            return;
+        }
+        if (!plan.isSplit()) {
+            if (plan.getLocalQuery() != null) {
+                localProxy.queryWithVariables(plan.getLocalQuery(), variables, resultHandler);
+            } else {
+                remoteProxy.queryWithVariables(plan.getRemoteQueries().get(0), variables, resultHandler);
+            }
+            return;
+        }
+        int remotePart = plan.getLocalQuery() == null ? 0 : 1;
+        List<Future<QueryResult>> remoteResults = new ArrayList<>();
+        for (String remoteQuery : plan.getRemoteQueries()) {
+            Future<QueryResult> remoteResult = Future.future();
+            remoteProxy.queryWithVariables(remoteQuery, variables, partCompleter(plan, remotePart++, remoteResult));
+            remoteResults.add(remoteResult);
+        }
+        List<Future<QueryResult>> results = new ArrayList<>();
+        if (plan.getLocalQuery() != null) {
+            // local execution is synchronous, so it runs while the remote sub-queries are in flight
+            Future<QueryResult> localResult = Future.future();
+            localProxy.queryWithVariables(plan.getLocalQuery(), variables, partCompleter(plan, 0, localResult));
+            results.add(localResult);
+        }
+        results.addAll(remoteResults);
+
+        CompositeFutures.all(results).setHandler(res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(plan.merge(res.result())));
+            }
+        });
+    }
+
+    private static Handler<AsyncResult<QueryResult>> partCompleter(QueryPlan plan, int part,
+                                                                   Future<QueryResult> future) {
+        // a part that fails does not fail the query, but resolves its root fields to null with an error
+        return res -> future.complete(res.succeeded() ? res.result() : plan.failedPart(part, res.cause()));
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        remoteProxy.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        remoteProxy.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        remoteProxy.close();
+    }
+
+    /**
+     * @return the query planner that is used to divide queries
+     */
+    public QueryPlanner getPlanner() {
+        return planner;
+    }
+}
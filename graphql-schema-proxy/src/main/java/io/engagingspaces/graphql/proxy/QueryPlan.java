@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.proxy;
+
+import graphql.ErrorType;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.QueryResult.QueryError;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution plan of a GraphQL query in mixed mode, as created by the {@link QueryPlanner}.
+ * <p>
+ * A plan consists of an optional local query that is executed consumer-side on the
+ * {@link GraphQLSchemaProxy}, and zero or more independent remote sub-queries that are
+ * shipped to the schema publisher.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryPlan {
+
+    private final String localQuery;
+    private final List<String> remoteQueries;
+    private final List<String> responseKeys;
+    private final List<List<String>> partResponseKeys;
+
+    protected QueryPlan(String localQuery, List<String> remoteQueries, List<String> responseKeys,
+                        List<List<String>> partResponseKeys) {
+        this.localQuery = localQuery;
+        this.remoteQueries = remoteQueries == null ?
+                Collections.emptyList() : Collections.unmodifiableList(remoteQueries);
+        this.responseKeys = responseKeys == null ?
+                Collections.emptyList() : Collections.unmodifiableList(responseKeys);
+        this.partResponseKeys = partResponseKeys == null ?
+                Collections.emptyList() : Collections.unmodifiableList(partResponseKeys);
+    }
+
+    /**
+     * Creates a plan that executes the query unmodified on the consumer-side.
+     *
+     * @param graphqlQuery the graphql query
+     * @return the query plan
+     */
+    public static QueryPlan local(String graphqlQuery) {
+        return new QueryPlan(graphqlQuery, null, null, null);
+    }
+
+    /**
+     * Creates a plan that ships the query unmodified to the schema publisher.
+     *
+     * @param graphqlQuery the graphql query
+     * @return the query plan
+     */
+    public static QueryPlan remote(String graphqlQuery) {
+        return new QueryPlan(null, Collections.singletonList(graphqlQuery), null, null);
+    }
+
+    /**
+     * Creates a plan that splits the original query into a local part and independent remote sub-queries.
+     *
+     * @param localQuery    the query to execute consumer-side, or {@code null}
+     * @param remoteQueries the sub-queries to send to the schema publisher
+     * @param responseKeys  the response keys of the root fields, in original query order
+     * @return the query plan
+     */
+    public static QueryPlan split(String localQuery, List<String> remoteQueries, List<String> responseKeys) {
+        return new QueryPlan(localQuery, remoteQueries, responseKeys, null);
+    }
+
+    /**
+     * Creates a plan that splits the original query into a local part and independent remote sub-queries, with the
+     * response keys of the root fields of every part, so that parts that fail can be reported by their fields.
+     *
+     * @param localQuery       the query to execute consumer-side, or {@code null}
+     * @param remoteQueries    the sub-queries to send to the schema publisher
+     * @param responseKeys     the response keys of the root fields, in original query order
+     * @param partResponseKeys the response keys of the root fields of every part, in plan order
+     * @return the query plan
+     */
+    public static QueryPlan split(String localQuery, List<String> remoteQueries, List<String> responseKeys,
+                                  List<List<String>> partResponseKeys) {
+        return new QueryPlan(localQuery, remoteQueries, responseKeys, partResponseKeys);
+    }
+
+    /**
+     * @return the query to execute consumer-side, or {@code null} if nothing runs locally
+     */
+    public String getLocalQuery() {
+        return localQuery;
+    }
+
+    /**
+     * @return the independent sub-queries to send to the schema publisher, or an empty list
+     */
+    public List<String> getRemoteQueries() {
+        return remoteQueries;
+    }
+
+    /**
+     * @return {@code true} if the original query is divided over local and remote execution
+     */
+    public boolean isSplit() {
+        return localQuery != null && !remoteQueries.isEmpty() || remoteQueries.size() > 1;
+    }
+
+    /**
+     * Creates the result of a part of the plan that could not be executed, e.g. because the schema publisher could
+     * not be reached. The result is not successful, has {@code null} data, and holds a single error that names the
+     * root fields of the part.
+     *
+     * @param part  the index of the part, in plan order (see {@link #merge(List)})
+     * @param cause the cause of the failure
+     * @return the query result of the failed part
+     */
+    public QueryResult failedPart(int part, Throwable cause) {
+        List<String> keys = part < partResponseKeys.size() ? partResponseKeys.get(part) : Collections.emptyList();
+        String message = "Fields " + keys + " could not be resolved: " +
+                (cause == null ? null : cause.getMessage());
+        return new QueryResult(null, false, Collections.singletonList(
+                new QueryError(ErrorType.DataFetchingException.name(), message, null)));
+    }
+
+    /**
+     * Merges the results of the individual parts of the plan into a single query result.
+     * <p>
+     * The results must be passed in plan order, i.e. the result of the local query (if any) first, followed
+     * by the results of the remote sub-queries. Data is merged in the order of the root fields of the original
+     * query, and errors of all parts are combined. If a part failed the merged result is not successful, but still
+     * holds the data of the other parts, with {@code null} values for the root fields of the failed part.
+     *
+     * @param results the query results of the plan parts
+     * @return the merged query result
+     */
+    public QueryResult merge(List<QueryResult> results) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        boolean succeeded = true;
+        Map<String, Object> collected = new HashMap<>();
+        List<QueryError> errors = new ArrayList<>();
+        for (QueryResult result : results) {
+            succeeded &= result.isSucceeded();
+            errors.addAll(result.getErrors());
+            if (result.getData() != null) {
+                collected.putAll(result.getData().getMap());
+            }
+        }
+        JsonObject data = new JsonObject();
+        for (String key : responseKeys) {
+            data.getMap().put(key, collected.get(key));
+        }
+        return new QueryResult(data, succeeded, errors);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.proxy;
+
+import graphql.language.*;
+import graphql.parser.Parser;
+import io.engagingspaces.graphql.query.impl.QueryPrinter;
+import io.engagingspaces.graphql.schema.SchemaMetadata;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Query planner that divides a GraphQL query in parts that are executed consumer-side, and parts that are
+ * shipped as sub-queries to the schema publisher.
+ * <p>
+ * The division is based on the root query fields that are listed under {@link SchemaMetadata#METADATA_LOCAL_QUERIES}
+ * in the schema metadata. Each root field is an independent subtree of the query, so local root fields are combined
+ * into a single query on the {@link GraphQLSchemaProxy}, while every remote root field becomes its own sub-query
+ * that can be sent to the publisher in parallel.
+ * <p>
+ * Queries that cannot be split safely (mutations, documents with multiple operations, or fragment spreads at the
+ * root level) are sent to the publisher unmodified.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryPlanner {
+
+    private final Set<String> localQueries;
+
+    /**
+     * Creates a new query planner.
+     *
+     * @param localQueries the names of the root query fields that are executed consumer-side
+     */
+    public QueryPlanner(Collection<String> localQueries) {
+        Objects.requireNonNull(localQueries, "Local queries cannot be null");
+        this.localQueries = Collections.unmodifiableSet(new HashSet<>(localQueries));
+    }
+
+    /**
+     * Creates the execution plan for the provided GraphQL query.
+     *
+     * @param graphqlQuery the graphql query
+     * @return the query plan
+     */
+    public QueryPlan plan(String graphqlQuery) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        Document document;
+        try {
+            document = new Parser().parseDocument(graphqlQuery);
+        } catch (RuntimeException ex) {
+            // let the publisher report syntax errors
+            return QueryPlan.remote(graphqlQuery);
+        }
+        List<OperationDefinition> operations = document.getDefinitions().stream()
+                .filter(definition -> definition instanceof OperationDefinition)
+                .map(definition -> (OperationDefinition) definition)
+                .collect(Collectors.toList());
+        if (operations.size() != 1 ||
+                operations.get(0).getOperation() == OperationDefinition.Operation.MUTATION) {
+            return QueryPlan.remote(graphqlQuery);
+        }
+        OperationDefinition operation = operations.get(0);
+        List<Selection> selections = operation.getSelectionSet().getSelections();
+        if (selections.stream().anyMatch(selection -> !(selection instanceof Field))) {
+            return QueryPlan.remote(graphqlQuery);
+        }
+        List<Field> localFields = new ArrayList<>();
+        Map<String, List<Field>> remoteFields = new LinkedHashMap<>();
+        for (Selection selection : selections) {
+            Field field = (Field) selection;
+            if (localQueries.contains(field.getName())) {
+                localFields.add(field);
+            } else {
+                // fields with the same response key are merged by the executor, so they must stay together
+                remoteFields.computeIfAbsent(responseKey(field), key -> new ArrayList<>()).add(field);
+            }
+        }
+        if (remoteFields.isEmpty()) {
+            return QueryPlan.local(graphqlQuery);
+        } else if (localFields.isEmpty() && remoteFields.size() == 1) {
+            return QueryPlan.remote(graphqlQuery);
+        }
+        Map<String, FragmentDefinition> fragments = document.getDefinitions().stream()
+                .filter(definition -> definition instanceof FragmentDefinition)
+                .map(definition -> (FragmentDefinition) definition)
+                .collect(Collectors.toMap(FragmentDefinition::getName, fragment -> fragment,
+                        (first, second) -> first, LinkedHashMap::new));
+
+        String localQuery = localFields.isEmpty() ? null : createSubQuery(operation, localFields, fragments);
+        List<String> remoteQueries = remoteFields.values().stream()
+                .map(fields -> createSubQuery(operation, fields, fragments))
+                .collect(Collectors.toList());
+        List<String> responseKeys = selections.stream()
+                .map(selection -> responseKey((Field) selection))
+                .distinct()
+                .collect(Collectors.toList());
+        List<List<String>> partResponseKeys = new ArrayList<>();
+        if (localQuery != null) {
+            partResponseKeys.add(localFields.stream()
+                    .map(QueryPlanner::responseKey)
+                    .distinct()
+                    .collect(Collectors.toList()));
+        }
+        remoteFields.keySet().forEach(key -> partResponseKeys.add(Collections.singletonList(key)));
+        return QueryPlan.split(localQuery, remoteQueries, responseKeys, partResponseKeys);
+    }
+
+    private static String responseKey(Field field) {
+        return field.getAlias() == null ? field.getName() : field.getAlias();
+    }
+
+    private static String createSubQuery(OperationDefinition operation, List<Field> fields,
+                                         Map<String, FragmentDefinition> fragments) {
+        Set<String> variables = new HashSet<>();
+        Set<String> usedFragments = new HashSet<>();
+        collectDirectives(operation.getDirectives(), variables);
+        fields.forEach(field -> collectSelection(field, fragments, variables, usedFragments));
+
+        OperationDefinition subQuery = new OperationDefinition(operation.getName(), operation.getOperation(),
+                operation.getVariableDefinitions().stream()
+                        .filter(definition -> variables.contains(definition.getName()))
+                        .collect(Collectors.toList()),
+                operation.getDirectives(), new SelectionSet(new ArrayList<>(fields)));
+        List<Definition> definitions = new ArrayList<>();
+        definitions.add(subQuery);
+        fragments.values().stream()
+                .filter(fragment -> usedFragments.contains(fragment.getName()))
+                .forEach(definitions::add);
+        return QueryPrinter.print(definitions);
+    }
+
+    private static void collectSelection(Selection selection, Map<String, FragmentDefinition> fragments,
+                                         Set<String> variables, Set<String> usedFragments) {
+        if (selection instanceof Field) {
+            Field field = (Field) selection;
+            field.getArguments().forEach(argument -> collectValue(argument.getValue(), variables));
+            collectDirectives(field.getDirectives(), variables);
+            collectSelectionSet(field.getSelectionSet(), fragments, variables, usedFragments);
+        } else if (selection instanceof InlineFragment) {
+            InlineFragment fragment = (InlineFragment) selection;
+            collectDirectives(fragment.getDirectives(), variables);
+            collectSelectionSet(fragment.getSelectionSet(), fragments, variables, usedFragments);
+        } else if (selection instanceof FragmentSpread) {
+            FragmentSpread spread = (FragmentSpread) selection;
+            collectDirectives(spread.getDirectives(), variables);
+            FragmentDefinition fragment = fragments.get(spread.getName());
+            if (fragment != null && usedFragments.add(fragment.getName())) {
+                collectDirectives(fragment.getDirectives(), variables);
+                collectSelectionSet(fragment.getSelectionSet(), fragments, variables, usedFragments);
+            }
+        }
+    }
+
+    private static void collectSelectionSet(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments,
+                                            Set<String> variables, Set<String> usedFragments) {
+        if (selectionSet != null) {
+            selectionSet.getSelections()
+                    .forEach(selection -> collectSelection(selection, fragments, variables, usedFragments));
+        }
+    }
+
+    private static void collectDirectives(List<Directive> directives, Set<String> variables) {
+        if (directives != null) {
+            directives.forEach(directive ->
+                    directive.getArguments().forEach(argument -> collectValue(argument.getValue(), variables)));
+        }
+    }
+
+    private static void collectValue(Value value, Set<String> variables) {
+        if (value instanceof VariableReference) {
+            variables.add(((VariableReference) value).getName());
+        } else if (value instanceof ArrayValue) {
+            ((ArrayValue) value).getValues().forEach(item -> collectValue(item, variables));
+        } else if (value instanceof ObjectValue) {
+            ((ObjectValue) value).getObjectFields().forEach(field -> collectValue(field.getValue(), variables));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Cache invalidation messages that are published on the event bus when a mutation executes on a schema definition
+ * with {@link io.engagingspaces.graphql.schema.SchemaDefinitionOptions#setInvalidationEnabled(boolean) invalidation}
+ * enabled.
+ * <p>
+ * Invalidation messages are published to all consumers of the schema address, in the local Vert.x instance and on
+ * other cluster nodes, and have the form:
+ * <pre>
+ * {
+ *   "schemaName": "StarWarsQuery",
+ *   "mutations": ["updateHuman"],
+ *   "types": ["Droid"],
+ *   "entities": ["Human:1000"]
+ * }
+ * </pre>
+ * where {@code types} lists the types whose cached results are all stale, and {@code entities} the individual
+ * entities (by type name and {@code id}) that were changed. Query results of the schema list the types and entities
+ * they depend on in the same format, in their {@value #DEPENDENCIES_EXTENSION} extension. Use an
+ * {@link InvalidationIndex} to find the cached results to evict.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class CacheInvalidation {
+
+    /**
+     * Name of the query result extension that lists the types and entities of the result.
+     */
+    public static final String DEPENDENCIES_EXTENSION = "dependencies";
+
+    private CacheInvalidation() {
+        // Static helper class
+    }
+
+    /**
+     * Gets the event bus address at which the invalidation messages of a schema are published.
+     *
+     * @param schemaName the name of the schema definition (see
+     *                   {@link io.engagingspaces.graphql.schema.SchemaDefinitionOptions#getSchemaName()})
+     * @return the invalidation address
+     */
+    public static String address(String schemaName) {
+        Objects.requireNonNull(schemaName, "Schema name cannot be null");
+        return Queryable.ADDRESS_PREFIX + ".invalidation." + schemaName;
+    }
+
+    /**
+     * Subscribes to the invalidation messages of a schema.
+     *
+     * @param vertx      the vert.x instance
+     * @param schemaName the name of the schema definition
+     * @param handler    the handler that is invoked with every invalidation message
+     * @return the message consumer, which can be unregistered to end the subscription
+     */
+    public static MessageConsumer<JsonObject> subscribe(Vertx vertx, String schemaName, Handler<JsonObject> handler) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(handler, "Invalidation handler cannot be null");
+        return vertx.eventBus().consumer(address(schemaName), message -> handler.handle(message.body()));
+    }
+
+    /**
+     * Subscribes an invalidation index to the invalidation messages of a schema, and passes the keys of the
+     * invalidated results to the provided handler, so they can be evicted from the cache of the consumer.
+     *
+     * @param vertx       the vert.x instance
+     * @param schemaName  the name of the schema definition
+     * @param index       the invalidation index of the cached query results
+     * @param keysHandler the handler that is invoked with the keys of the invalidated results
+     * @param <K>         the type of the cache keys
+     * @return the message consumer, which can be unregistered to end the subscription
+     */
+    public static <K> MessageConsumer<JsonObject> subscribe(Vertx vertx, String schemaName, InvalidationIndex<K> index,
+                                                            Handler<Set<K>> keysHandler) {
+        Objects.requireNonNull(index, "Invalidation index cannot be null");
+        Objects.requireNonNull(keysHandler, "Keys handler cannot be null");
+        return subscribe(vertx, schemaName, invalidation -> {
+            Set<K> keys = index.invalidate(invalidation);
+            if (!keys.isEmpty()) {
+                keysHandler.handle(keys);
+            }
+        });
+    }
+
+    /**
+     * Creates an invalidation message.
+     *
+     * @param schemaName the name of the schema definition
+     * @param mutations  the names of the mutation fields that were executed
+     * @param types      the names of the invalidated types
+     * @param entities   the invalidated entities, as {@code TypeName:id}
+     * @return the invalidation message
+     */
+    public static JsonObject message(String schemaName, JsonArray mutations, JsonArray types, JsonArray entities) {
+        return new JsonObject()
+                .put("schemaName", schemaName)
+                .put("mutations", mutations == null ? new JsonArray() : mutations)
+                .put("types", types == null ? new JsonArray() : types)
+                .put("entities", entities == null ? new JsonArray() : entities);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import io.engagingspaces.graphql.query.impl.LocalQueryable;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.engagingspaces.graphql.schema.impl.IncrementalDelivery;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Client-side {@link Queryable} that executes queries with incremental delivery of fragments that are marked with
+ * {@code @defer}, so that the time to the first payload is set by the fastest fields of the query rather than the
+ * slowest.
+ * <p>
+ * With {@link #queryIncremental(String, JsonObject, Handler, Handler)} the service replies with the initial payload
+ * as soon as the fields outside the deferred fragments are resolved, and sends the payloads of the deferred fragments
+ * as separate event bus messages to an address that is unique for the query. Every incremental payload has the
+ * {@code label} and {@code path} of its fragment, its {@code data} and {@code errors}, and a
+ * {@value IncrementalDelivery#HAS_NEXT} flag that is {@code false} for the last payload. Incremental payloads that are
+ * not received within the send timeout are reported as a final payload with an error.
+ * <p>
+ * Other calls are delegated to a regular proxy of the service.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class IncrementalQueryClient implements Queryable, IncrementalQueryable {
+
+    private final Vertx vertx;
+    private final String address;
+    private final DeliveryOptions options;
+    private final Queryable delegate;
+
+    /**
+     * Creates a new incremental query client.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address of the service
+     * @param options the delivery options to apply to service invocations, or {@code null}
+     */
+    public IncrementalQueryClient(Vertx vertx, String address, DeliveryOptions options) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(address, "Service address cannot be null");
+        this.vertx = vertx;
+        this.address = address;
+        this.options = options == null ? new DeliveryOptions() : new DeliveryOptions(options);
+        this.delegate = new LocalQueryable(vertx, address, options);
+    }
+
+    /**
+     * Executes the query with incremental delivery of its deferred fragments.
+     * <p>
+     * The result handler receives the initial payload, with a {@value IncrementalDelivery#HAS_NEXT} extension if
+     * incremental payloads follow. The increment handler is only invoked after the result handler, on the context of
+     * the caller.
+     *
+     * @param graphqlQuery     the graphql query
+     * @param variables        the query variables, or {@code null}
+     * @param incrementHandler the handler of the incremental payloads
+     * @param resultHandler    the result handler with the initial payload on success, or a failure
+     */
+    @Override
+    public void queryIncremental(String graphqlQuery, JsonObject variables, Handler<JsonObject> incrementHandler,
+                                 Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(incrementHandler, "Increment handler cannot be null");
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        String incrementalAddress = address + ".incremental." + UUID.randomUUID().toString();
+        MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(incrementalAddress);
+        Increments increments = new Increments(consumer, incrementHandler);
+        consumer.handler(msg -> increments.received(msg.body()));
+        consumer.completionHandler(registered -> {
+            if (registered.failed()) {
+                consumer.unregister();
+                resultHandler.handle(Future.failedFuture(registered.cause()));
+                return;
+            }
+            JsonObject json = new JsonObject()
+                    .put("graphqlQuery", graphqlQuery)
+                    .put("variables", variables);
+            DeliveryOptions deliveryOptions = QueryDeadline.addHeader(new DeliveryOptions(options))
+                    .addHeader("action", "queryIncremental")
+                    .addHeader(IncrementalDelivery.ADDRESS_HEADER, incrementalAddress);
+            vertx.eventBus().send(address, json, deliveryOptions, res -> {
+                if (res.failed()) {
+                    consumer.unregister();
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                    return;
+                }
+                Object body = res.result().body();
+                QueryResult result = body == null || body instanceof QueryResult ?
+                        (QueryResult) body : new QueryResult((JsonObject) body);
+                resultHandler.handle(Future.succeededFuture(result));
+                if (result != null && result.getExtensions() != null &&
+                        result.getExtensions().getBoolean(IncrementalDelivery.HAS_NEXT, false)) {
+                    increments.initialReceived(options.getSendTimeout());
+                } else {
+                    consumer.unregister();
+                }
+            });
+        });
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.query(graphqlQuery, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryWithVariables(graphqlQuery, variables, resultHandler);
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryPersisted(queryHash, graphqlQuery, variables, resultHandler);
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private class Increments {
+
+        private final MessageConsumer<JsonObject> consumer;
+        private final Handler<JsonObject> incrementHandler;
+        private final List<JsonObject> pending = new ArrayList<>();
+        private boolean initialReceived;
+        private boolean completed;
+        private long timerId = -1;
+
+        private Increments(MessageConsumer<JsonObject> consumer, Handler<JsonObject> incrementHandler) {
+            this.consumer = consumer;
+            this.incrementHandler = incrementHandler;
+        }
+
+        private void received(JsonObject increment) {
+            if (initialReceived) {
+                deliver(increment);
+            } else {
+                pending.add(increment);
+            }
+        }
+
+        private void initialReceived(long timeout) {
+            initialReceived = true;
+            timerId = vertx.setTimer(timeout, id -> deliver(new JsonObject()
+                    .put("path", new JsonArray())
+                    .putNull("data")
+                    .put("errors", new JsonArray().add(new JsonObject()
+                            .put("message", "Timed out waiting for incremental payloads")))
+                    .put(IncrementalDelivery.HAS_NEXT, false)));
+            pending.forEach(this::deliver);
+            pending.clear();
+        }
+
+        private void deliver(JsonObject increment) {
+            if (completed) {
+                return;
+            }
+            if (!increment.getBoolean(IncrementalDelivery.HAS_NEXT, false)) {
+                completed = true;
+                vertx.cancelTimer(timerId);
+                consumer.unregister();
+            }
+            incrementHandler.handle(increment);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import io.engagingspaces.graphql.schema.impl.DeferredQuery;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A {@link Queryable} that supports incremental delivery of the fragments of a query that are marked with
+ * {@code @defer}.
+ * <p>
+ * Decorators of queryables (e.g. for metrics) implement this interface as well, and forward incremental queries to
+ * the queryable they decorate with {@link #queryIncremental(Queryable, String, JsonObject, Handler, Handler)}.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public interface IncrementalQueryable {
+
+    /**
+     * Executes the query with incremental delivery of its deferred fragments.
+     * <p>
+     * The result handler receives the initial payload, with a
+     * {@value io.engagingspaces.graphql.schema.impl.IncrementalDelivery#HAS_NEXT} extension if incremental payloads
+     * follow. The increment handler receives a payload for every deferred fragment.
+     *
+     * @param graphqlQuery     the graphql query
+     * @param variables        the query variables, or {@code null}
+     * @param incrementHandler the handler of the incremental payloads
+     * @param resultHandler    the result handler with the initial payload on success, or a failure
+     */
+    void queryIncremental(String graphqlQuery, JsonObject variables, Handler<JsonObject> incrementHandler,
+                          Handler<AsyncResult<QueryResult>> resultHandler);
+
+    /**
+     * Executes the query with incremental delivery on the provided queryable if it supports it, and otherwise
+     * executes the query without its incremental delivery directives in a single payload.
+     *
+     * @param queryable        the queryable to execute the query on
+     * @param graphqlQuery     the graphql query
+     * @param variables        the query variables, or {@code null}
+     * @param incrementHandler the handler of the incremental payloads
+     * @param resultHandler    the result handler with the initial payload on success, or a failure
+     */
+    static void queryIncremental(Queryable queryable, String graphqlQuery, JsonObject variables,
+                                 Handler<JsonObject> incrementHandler,
+                                 Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (queryable instanceof IncrementalQueryable) {
+            ((IncrementalQueryable) queryable).queryIncremental(graphqlQuery, variables, incrementHandler,
+                    resultHandler);
+        } else {
+            queryable.queryWithVariables(DeferredQuery.split(graphqlQuery,
+                    variables == null ? null : variables.getMap()).getQuery(), variables, resultHandler);
+        }
+    }
+}
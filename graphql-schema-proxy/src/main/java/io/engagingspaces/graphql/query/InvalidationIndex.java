@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Index of cached query results by the types and entities they depend on, that determines which results are stale
+ * when a {@link CacheInvalidation} message is received.
+ * <p>
+ * The dependencies of a result are taken from its {@value CacheInvalidation#DEPENDENCIES_EXTENSION} extension. A
+ * result depends on an entity if it contains the entity, and on a type if it contains objects of the type without
+ * an {@code id}. Invalidation of an entity evicts the results that contain the entity, or objects of its type
+ * without an {@code id}. Invalidation of a type evicts all results that contain objects of the type. Results
+ * without a dependencies extension are evicted on every invalidation.
+ * <p>
+ * The index only tracks keys, the cached results themselves are stored by the consumer. All methods are
+ * thread-safe.
+ *
+ * @param <K> the type of the cache keys
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class InvalidationIndex<K> {
+
+    private static final String ANY_DEPENDENCY = "*";
+
+    private final Map<String, Set<K>> keysByTag = new HashMap<>();
+    private final Map<K, Set<String>> tagsByKey = new HashMap<>();
+
+    /**
+     * Tracks the dependencies of a cached query result. A result that is already tracked under the same key is
+     * replaced.
+     *
+     * @param key    the cache key of the result
+     * @param result the cached query result
+     */
+    public synchronized void track(K key, QueryResult result) {
+        Objects.requireNonNull(key, "Cache key cannot be null");
+        Objects.requireNonNull(result, "Query result cannot be null");
+        untrack(key);
+        Set<String> tags = tags(result);
+        tagsByKey.put(key, tags);
+        tags.forEach(tag -> keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key));
+    }
+
+    /**
+     * Stops tracking the result with the provided key, e.g. when it is evicted from the cache for other reasons.
+     *
+     * @param key the cache key of the result
+     */
+    public synchronized void untrack(K key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags != null) {
+            tags.forEach(tag -> {
+                Set<K> keys = keysByTag.get(tag);
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTag.remove(tag);
+                }
+            });
+        }
+    }
+
+    /**
+     * Determines the results that are invalidated by the provided invalidation message, and stops tracking them.
+     *
+     * @param invalidation the invalidation message
+     * @return the keys of the invalidated results, that should be evicted from the cache
+     */
+    public synchronized Set<K> invalidate(JsonObject invalidation) {
+        Objects.requireNonNull(invalidation, "Invalidation message cannot be null");
+        Set<String> tags = new HashSet<>();
+        tags.add(ANY_DEPENDENCY);
+        strings(invalidation.getJsonArray("types")).forEach(type -> tags.add("any:" + type));
+        strings(invalidation.getJsonArray("entities")).forEach(entity -> {
+            tags.add("entity:" + entity);
+            tags.add("type:" + typeOf(entity));
+        });
+        Set<K> invalidated = new HashSet<>();
+        tags.forEach(tag -> invalidated.addAll(keysByTag.getOrDefault(tag, Collections.emptySet())));
+        invalidated.forEach(this::untrack);
+        return invalidated;
+    }
+
+    /**
+     * @return the number of tracked results
+     */
+    public synchronized int size() {
+        return tagsByKey.size();
+    }
+
+    private static Set<String> tags(QueryResult result) {
+        JsonObject dependencies = result.getExtensions() == null ? null :
+                result.getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+        Set<String> tags = new HashSet<>();
+        if (dependencies == null) {
+            tags.add(ANY_DEPENDENCY);
+            return tags;
+        }
+        strings(dependencies.getJsonArray("types")).forEach(type -> {
+            tags.add("type:" + type);
+            tags.add("any:" + type);
+        });
+        strings(dependencies.getJsonArray("entities")).forEach(entity -> {
+            tags.add("entity:" + entity);
+            tags.add("any:" + typeOf(entity));
+        });
+        return tags;
+    }
+
+    private static Set<String> strings(JsonArray array) {
+        Set<String> strings = new HashSet<>();
+        if (array != null) {
+            array.forEach(value -> strings.add(String.valueOf(value)));
+        }
+        return strings;
+    }
+
+    private static String typeOf(String entity) {
+        int separator = entity.indexOf(':');
+        return separator < 0 ? entity : entity.substring(0, separator);
+    }
+}
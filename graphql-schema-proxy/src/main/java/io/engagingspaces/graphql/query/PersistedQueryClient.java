@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query;
+
+import io.engagingspaces.graphql.query.impl.QueryHasher;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Client-side {@link Queryable} wrapper that executes queries as persisted queries on the wrapped service proxy.
+ * <p>
+ * The first time a query is executed its full text is sent along with its hash. After the service has accepted the
+ * query only the hash is sent. If the service no longer knows the hash (e.g. because it was evicted or the service
+ * restarted) the query is transparently retried with the full text.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class PersistedQueryClient implements Queryable {
+
+    /**
+     * The default maximum number of query hashes that are remembered by the client.
+     */
+    public static final int DEFAULT_MAX_QUERIES = 1000;
+
+    private final Queryable delegate;
+    private final Map<String, String> persistedHashes;
+
+    /**
+     * Creates a new persisted query client that remembers up to {@link #DEFAULT_MAX_QUERIES} query hashes.
+     *
+     * @param delegate the service proxy to delegate to
+     */
+    public PersistedQueryClient(Queryable delegate) {
+        this(delegate, DEFAULT_MAX_QUERIES);
+    }
+
+    /**
+     * Creates a new persisted query client.
+     *
+     * @param delegate   the service proxy to delegate to
+     * @param maxQueries the maximum number of query hashes to remember
+     */
+    public PersistedQueryClient(Queryable delegate, int maxQueries) {
+        Objects.requireNonNull(delegate, "Queryable delegate cannot be null");
+        this.delegate = delegate;
+        this.persistedHashes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxQueries;
+            }
+        };
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        queryWithVariables(graphqlQuery, null, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        String persistedHash = getPersistedHash(graphqlQuery);
+        if (persistedHash == null) {
+            sendQuery(QueryHasher.hash(graphqlQuery), graphqlQuery, variables, resultHandler);
+        } else {
+            delegate.queryPersisted(persistedHash, null, variables, res -> {
+                if (res.failed() && isNotFound(res.cause())) {
+                    removePersistedHash(graphqlQuery);
+                    sendQuery(persistedHash, graphqlQuery, variables, resultHandler);
+                } else {
+                    resultHandler.handle(res);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryPersisted(queryHash, graphqlQuery, variables, resultHandler);
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private void sendQuery(String queryHash, String graphqlQuery, JsonObject variables,
+                           Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryPersisted(queryHash, graphqlQuery, variables, res -> {
+            if (res.succeeded()) {
+                putPersistedHash(graphqlQuery, queryHash);
+            }
+            resultHandler.handle(res);
+        });
+    }
+
+    private static boolean isNotFound(Throwable cause) {
+        return cause instanceof ReplyException &&
+                ((ReplyException) cause).failureCode() == PERSISTED_QUERY_NOT_FOUND;
+    }
+
+    private synchronized String getPersistedHash(String graphqlQuery) {
+        return persistedHashes.get(graphqlQuery);
+    }
+
+    private synchronized void putPersistedHash(String graphqlQuery, String queryHash) {
+        persistedHashes.put(graphqlQuery, queryHash);
+    }
+
+    private synchronized void removePersistedHash(String graphqlQuery) {
+        persistedHashes.remove(graphqlQuery);
+    }
+}
@@ -17,18 +17,25 @@
 package io.engagingspaces.graphql.query;
 
 import io.vertx.codegen.annotations.DataObject;
+import io.vertx.codegen.annotations.GenIgnore;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.AbstractMap;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Immutable data object that holds the execution result of a GraphQL query.
  * <p>
  * If the query was successful the response is available as {@link JsonObject}. Otherwise a list of
- * {@link QueryError} provides more detail on the failure.
+ * {@link QueryError} provides more detail on the failure. Optional extensions (such as execution traces) are
+ * available as {@link JsonObject}.
  *
  * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
  */
@@ -38,13 +45,50 @@ public class QueryResult {
     private final JsonObject data;
     private final boolean succeeded;
     private final List<QueryError> errors;
+    private final JsonObject extensions;
+    private final Function<QueryResult, Buffer> encoder;
 
     private volatile int hashCode;
+    private volatile Buffer buffer;
+    private volatile Map.Entry<String, Buffer> formatted;
+    private int wireSize = -1;
 
     public QueryResult(JsonObject data, boolean succeeded, List<QueryError> errors) {
+        this(data, succeeded, errors, null);
+    }
+
+    /**
+     * Creates a new {@link QueryResult} with extensions.
+     *
+     * @param data       the query response
+     * @param succeeded  whether the query was successful
+     * @param errors     the query errors, or {@code null}
+     * @param extensions the result extensions, or {@code null}
+     */
+    public QueryResult(JsonObject data, boolean succeeded, List<QueryError> errors, JsonObject extensions) {
+        this(data, succeeded, errors, extensions, null);
+    }
+
+    /**
+     * Creates a new {@link QueryResult} with extensions, that is encoded with the provided encoder.
+     * <p>
+     * The encoder is invoked on the first call to {@link #toBuffer()}, and must produce the same json as
+     * {@link #toJson()}. It allows query executors to encode results with knowledge of the schema and query.
+     *
+     * @param data       the query response
+     * @param succeeded  whether the query was successful
+     * @param errors     the query errors, or {@code null}
+     * @param extensions the result extensions, or {@code null}
+     * @param encoder    the encoder of the query result, or {@code null} to encode the json representation
+     */
+    @GenIgnore
+    public QueryResult(JsonObject data, boolean succeeded, List<QueryError> errors, JsonObject extensions,
+                       Function<QueryResult, Buffer> encoder) {
         this.data = data;
         this.succeeded = succeeded;
         this.errors = errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors);
+        this.extensions = extensions;
+        this.encoder = encoder;
     }
 
     /**
@@ -59,6 +103,8 @@ public class QueryResult {
         List<QueryError> queryErrors = json.getJsonArray("errors", new JsonArray()).stream()
                 .map(error -> new QueryError((JsonObject) error)).collect(Collectors.toList());
         this.errors = queryErrors == null ? Collections.emptyList() : Collections.unmodifiableList(queryErrors);
+        this.extensions = json.getJsonObject("extensions");
+        this.encoder = null;
     }
 
     /**
@@ -71,6 +117,11 @@ public class QueryResult {
         this.data = other.data;
         this.succeeded = other.succeeded;
         this.errors = other.errors;
+        this.extensions = other.extensions;
+        this.encoder = other.encoder;
+        this.buffer = other.buffer;
+        this.formatted = other.formatted;
+        this.wireSize = other.wireSize;
     }
 
     /**
@@ -78,10 +129,87 @@ public class QueryResult {
      * {@link QueryResult}.
      */
     public JsonObject toJson() {
-        return new JsonObject()
+        JsonObject json = new JsonObject()
                 .put("data", data)
                 .put("succeeded", succeeded)
                 .put("errors", new JsonArray(errors.stream().map(QueryError::toJson).collect(Collectors.toList())));
+        if (extensions != null) {
+            json.put("extensions", extensions);
+        }
+        return json;
+    }
+
+    /**
+     * Gets the encoded JSON representation of the current {@link QueryResult}.
+     * <p>
+     * Result is encoded on the first call, then cached. So replying to multiple consumers, caching or logging the
+     * same query result only encodes it once. The returned buffer is shared and must not be modified.
+     *
+     * @return the encoded query result
+     */
+    @GenIgnore
+    public Buffer toBuffer() {
+        Buffer result = buffer;
+        if (result == null) {
+            result = encoder == null ? Buffer.buffer(toJson().encode()) : encoder.apply(this);
+            buffer = result;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the representation of the current {@link QueryResult} in a named encoding other than JSON.
+     * <p>
+     * Like {@link #toBuffer()} the result is encoded on the first call, then cached, so sending the same query result
+     * to multiple consumers only encodes it once. Only the most recently requested format is cached. The returned
+     * buffer is shared and must not be modified.
+     *
+     * @param format  the name of the format, that identifies the encoder and its settings
+     * @param encoder the encoder to invoke if the result is not yet encoded in the format
+     * @return the encoded query result
+     */
+    @GenIgnore
+    public Buffer toBuffer(String format, Function<QueryResult, Buffer> encoder) {
+        Objects.requireNonNull(format, "Format cannot be null");
+        Objects.requireNonNull(encoder, "Encoder cannot be null");
+        Map.Entry<String, Buffer> result = formatted;
+        if (result == null || !result.getKey().equals(format)) {
+            result = new AbstractMap.SimpleImmutableEntry<>(format, encoder.apply(this));
+            formatted = result;
+        }
+        return result.getValue();
+    }
+
+    /**
+     * Gets the size in bytes of an encoding of the query result that is already available, without encoding it.
+     * This is the size of the cached json encoding if {@link #toBuffer()} was called, otherwise the size of the
+     * cached encoding in another format, and otherwise the size of the event bus message the result was decoded
+     * from, if any.
+     *
+     * @return the encoded size, or {@code -1} if the result has not been encoded
+     */
+    @GenIgnore
+    public int getEncodedSize() {
+        Buffer result = buffer;
+        if (result != null) {
+            return result.length();
+        }
+        Map.Entry<String, Buffer> other = formatted;
+        return other == null ? wireSize : other.getValue().length();
+    }
+
+    /**
+     * Creates a copy of the query result that records the size of the event bus message it was decoded from.
+     *
+     * @param wireSize the size in bytes of the encoded message
+     * @return the query result copy
+     * @see #getEncodedSize()
+     */
+    @GenIgnore
+    public QueryResult withWireSize(int wireSize) {
+        QueryResult result = new QueryResult(this);
+        result.wireSize = wireSize;
+        return result;
     }
 
     /**
@@ -110,6 +238,15 @@ public class QueryResult {
         return errors;
     }
 
+    /**
+     * Gets the extensions of the query result, such as the {@code tracing} extension with the execution trace.
+     *
+     * @return the result extensions, or {@code null} if there are none
+     */
+    public JsonObject getExtensions() {
+        return extensions;
+    }
+
     /**
      * Determine object equality of this query result with another object.
      * <p>
@@ -128,7 +265,8 @@ public class QueryResult {
             return false;
         }
         QueryResult test = (QueryResult) other;
-        return succeeded == test.succeeded && fieldEquals(errors, test.errors) && fieldEquals(data, test.data);
+        return succeeded == test.succeeded && fieldEquals(errors, test.errors) && fieldEquals(data, test.data) &&
+                fieldEquals(extensions, test.extensions);
     }
 
     private static boolean fieldEquals(Object value1, Object value2) {
@@ -150,6 +288,7 @@ public class QueryResult {
             result = 31 * result + (data == null ? 0 : data.hashCode());
             result = 31 * result + (succeeded ? 1 : 0);
             result = 31 * result + (errors == null ? 0 : errors.hashCode());
+            result = 31 * result + (extensions == null ? 0 : extensions.hashCode());
             hashCode = result;
         }
         return result;
@@ -16,14 +16,30 @@
 
 package io.engagingspaces.graphql.query;
 
+import io.engagingspaces.graphql.metrics.MetricsRegistry;
+import io.engagingspaces.graphql.metrics.impl.MeteredQueryable;
+import io.engagingspaces.graphql.proxy.MixedModeSchemaProxy;
+import io.engagingspaces.graphql.proxy.QueryPlanner;
+import io.engagingspaces.graphql.query.impl.CachingQueryable;
+import io.engagingspaces.graphql.query.impl.LocalQueryable;
+import io.engagingspaces.graphql.query.impl.NormalizedCache;
+import io.engagingspaces.graphql.query.impl.QueryableServiceDeployment;
+import io.engagingspaces.graphql.query.impl.QueryableServiceHandler;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
 import io.engagingspaces.graphql.schema.SchemaMetadata;
 import io.vertx.codegen.annotations.ProxyClose;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.serviceproxy.ProxyHelper;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.Objects;
 
 /**
  * Service proxy interface that provides access to the schema definitions that are exposed by a GraphQL publisher.
@@ -44,12 +60,52 @@ public interface Queryable {
      */
     String ADDRESS_PREFIX = "service.graphql";
 
+    /**
+     * Failure code of the {@link io.vertx.serviceproxy.ServiceException} that is returned when a persisted query
+     * hash is unknown to the service, and the query must be sent again including its full text.
+     */
+    int PERSISTED_QUERY_NOT_FOUND = 404;
+
+    /**
+     * Failure code of the {@link io.vertx.serviceproxy.ServiceException} that is returned when the query text of a
+     * persisted query does not match the provided hash.
+     */
+    int PERSISTED_QUERY_HASH_MISMATCH = 409;
+
+    /**
+     * Failure code of the {@link io.vertx.serviceproxy.ServiceException} that is returned when the service is
+     * overloaded, and rejects the query without executing it.
+     */
+    int QUERY_REJECTED = 503;
+
+    /**
+     * Failure code of the {@link io.vertx.serviceproxy.ServiceException} that is returned when a query exceeds the
+     * depth or cost budget of the schema, and is rejected without executing it.
+     */
+    int QUERY_TOO_COMPLEX = 413;
+
+    /**
+     * Failure code of the {@link io.vertx.serviceproxy.ServiceException} that is returned when the deadline of the
+     * caller expires before the query has completed, and further execution is aborted.
+     */
+    int QUERY_TIMEOUT = 504;
+
     /**
      * Creates a service proxy to the {@link Queryable} implementation at the specified address.
      * <p>
      * The returned result can either be a client-side {@link io.engagingspaces.graphql.proxy.GraphQLSchemaProxy},
      * or a regular Vert.x service proxy that delegates its calls to a remote GraphQL service implementation over
-     * the event bus. Return type is determined by the schema metadata that is passed in.
+     * the event bus, or a {@link io.engagingspaces.graphql.proxy.MixedModeSchemaProxy} that divides queries between
+     * the two. Return type is determined by the schema metadata that is passed in.
+     * <p>
+     * Calls to a service that is registered with {@link #registerService(Vertx, String, Queryable)} in the same
+     * vert.x instance invoke the service directly, without sending them on the event bus.
+     * <p>
+     * If metrics are enabled in the schema definition options, the proxy records the latency, throughput, errors and
+     * payload sizes of its queries in the {@link MetricsRegistry} of the vert.x instance. If a client cache size is
+     * configured, the proxy answers queries from a normalized cache of entities where possible (see
+     * {@link SchemaDefinitionOptions#setClientCacheSize(int)}). If invalidation is enabled as well, the cache is
+     * subscribed to the {@link CacheInvalidation} messages of the schema until the proxy is closed.
      *
      * @param vertx          the vert.x instance
      * @param address        the address of the service proxy
@@ -58,10 +114,93 @@ public interface Queryable {
      */
     static Queryable createProxy(Vertx vertx, String address, JsonObject schemaMetadata) {
         SchemaMetadata metadata = new SchemaMetadata(schemaMetadata);
+        Queryable proxy;
         if (metadata.isClientProxy()) {
-            return metadata.getClientProxy(vertx);
+            proxy = metadata.getClientProxy(vertx);
+        } else if (metadata.isMixedMode()) {
+            proxy = new MixedModeSchemaProxy(metadata.getClientProxy(vertx),
+                    new LocalQueryable(vertx, address, metadata.options().getDeliveryOptions()),
+                    new QueryPlanner(metadata.getLocalQueries()));
+        } else {
+            proxy = new LocalQueryable(vertx, address, metadata.options().getDeliveryOptions());
+        }
+        if (metadata.options().getClientCacheSize() > 0) {
+            NormalizedCache cache = new NormalizedCache(metadata.options().getClientCacheSize(),
+                    metadata.options().getClientCacheTtl());
+            String schemaName = metadata.options().getSchemaName();
+            boolean invalidation = metadata.options().isInvalidationEnabled() && schemaName != null;
+            proxy = new CachingQueryable(proxy, cache,
+                    invalidation ? CacheInvalidation.subscribe(vertx, schemaName, cache::invalidate) : null);
+        }
+        if (metadata.options().isMetricsEnabled()) {
+            String schemaName = metadata.options().getSchemaName() == null ?
+                    address : metadata.options().getSchemaName();
+            return new MeteredQueryable(proxy, MetricsRegistry.forVertx(vertx).proxy(schemaName));
+        }
+        return proxy;
+    }
+
+    /**
+     * Registers the {@link Queryable} service implementation on the event bus at the specified address.
+     * <p>
+     * Query results are passed by reference to consumers in the same Vert.x instance, and are only encoded when
+     * delivered to another cluster node. Use {@link #createProxy(Vertx, String, JsonObject)} to create proxies to
+     * the service. Proxies in the same Vert.x instance invoke the service directly, bypassing the event bus.
+     * <p>
+     * If the service is a {@link SchemaDefinition} with metrics enabled in its options, the latency, throughput,
+     * errors, payload sizes and in-flight queries of the service are recorded in the {@link MetricsRegistry} of the
+     * vert.x instance.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address to register the service at
+     * @param service the service implementation
+     * @return the message consumer of the service, which can be unregistered to remove the service
+     */
+    static MessageConsumer<JsonObject> registerService(Vertx vertx, String address, Queryable service) {
+        Queryable queryable = service;
+        if (service instanceof SchemaDefinition && ((SchemaDefinition) service).options().isMetricsEnabled()) {
+            SchemaDefinition definition = (SchemaDefinition) service;
+            String schemaName = definition.options().getSchemaName() == null ?
+                    definition.schema().getQueryType().getName() : definition.options().getSchemaName();
+            queryable = new MeteredQueryable(service, MetricsRegistry.forVertx(vertx).service(schemaName));
         }
-        return ProxyHelper.createProxy(Queryable.class, vertx, address, metadata.options().getDeliveryOptions());
+        return new QueryableServiceHandler(vertx, queryable).registerHandler(address);
+    }
+
+    /**
+     * Deploys the {@link Queryable} service implementation at the specified address on as many event loops as
+     * there are by default (see {@link VertxOptions#DEFAULT_EVENT_LOOP_POOL_SIZE}).
+     *
+     * @param vertx             the vert.x instance
+     * @param address           the address to register the service at
+     * @param service           the service implementation, that must be thread-safe
+     * @param completionHandler the handler with the deployment ID, or a failure
+     * @see #deployService(Vertx, String, Queryable, int, Handler)
+     */
+    static void deployService(Vertx vertx, String address, Queryable service,
+                              Handler<AsyncResult<String>> completionHandler) {
+        deployService(vertx, address, service, VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE, completionHandler);
+    }
+
+    /**
+     * Deploys the {@link Queryable} service implementation at the specified address on multiple event loops.
+     * <p>
+     * The service is registered with {@link #registerService(Vertx, String, Queryable)} by the requested number of
+     * verticle instances, that each run on their own event loop, and share the same service implementation (and for
+     * a {@link SchemaDefinition} the same schema and query executor). Queries to the address are distributed over
+     * the instances in round-robin fashion, so the throughput of the service scales with the number of event loops.
+     * Undeploy the returned deployment ID to unregister all instances.
+     *
+     * @param vertx             the vert.x instance
+     * @param address           the address to register the service at
+     * @param service           the service implementation, that must be thread-safe
+     * @param instances         the number of service instances to deploy
+     * @param completionHandler the handler with the deployment ID, or a failure
+     */
+    static void deployService(Vertx vertx, String address, Queryable service, int instances,
+                              Handler<AsyncResult<String>> completionHandler) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        vertx.deployVerticle(new QueryableServiceDeployment(address, service, instances), completionHandler);
     }
 
     /**
@@ -87,6 +226,31 @@ public interface Queryable {
     void queryWithVariables(String graphqlQuery, JsonObject variables,
                             Handler<AsyncResult<QueryResult>> resultHandler);
 
+    /**
+     * Executes a persisted GraphQL query that is identified by the hash of its query text.
+     * <p>
+     * The query text only needs to be sent the first time, after which the service stores it together with its
+     * parsed and validated document. If the hash is unknown and no query text is provided the call fails with a
+     * {@link io.vertx.serviceproxy.ServiceException} with failure code {@link #PERSISTED_QUERY_NOT_FOUND}, and the
+     * client should retry with the full query text. See {@link PersistedQueryClient} for a client-side wrapper
+     * that handles this transparently.
+     * <p>
+     * Implementations that do not persist queries execute the query text if provided, and fail otherwise.
+     *
+     * @param queryHash     the hex encoded SHA-256 hash of the query text
+     * @param graphqlQuery  the graphql query, or {@code null} to execute the query that was persisted earlier
+     * @param variables     the query variables
+     * @param resultHandler the result handler with the graphql query result on success, or a failure
+     */
+    default void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                                Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (graphqlQuery == null) {
+            resultHandler.handle(Future.failedFuture(
+                    new ServiceException(PERSISTED_QUERY_NOT_FOUND, "Persisted query not found: " + queryHash)));
+        } else {
+            queryWithVariables(graphqlQuery, variables, resultHandler);
+        }
+    }
 
     /**
      * Resolve the type that is indicated by the {@code typeHolder} parameter, using the type resolver with the
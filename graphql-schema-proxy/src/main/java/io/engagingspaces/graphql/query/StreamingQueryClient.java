@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import io.engagingspaces.graphql.query.impl.ChunkedReadStream;
+import io.engagingspaces.graphql.query.impl.ChunkedResultSender;
+import io.engagingspaces.graphql.query.impl.LocalQueryable;
+import io.engagingspaces.graphql.query.impl.LocalServiceRegistry;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Client-side {@link Queryable} that receives query results from the service in chunks, rather than as a single
+ * event bus message.
+ * <p>
+ * Large results, e.g. of list fields that return many thousands of items, are sent by the service as ordered chunks
+ * to a stream address that is unique for the query, and serves as its correlation id. The chunks can be consumed as a
+ * {@link ReadStream} of the encoded result with {@link #queryStream(String, JsonObject, Handler)}, where a paused
+ * stream stops the service from sending further chunks, or are reassembled into a {@link QueryResult} by
+ * {@link #query(String, Handler)} and {@link #queryWithVariables(String, JsonObject, Handler)}. This keeps every
+ * message below the chunk size, and bounds the memory held by the event bus to a window of chunks. The service still
+ * encodes the complete result before it sends the first chunk.
+ * <p>
+ * Services in the same vert.x instance are invoked directly, and their results are not chunked on the event bus.
+ * Other calls are delegated to a regular proxy of the service.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class StreamingQueryClient implements Queryable {
+
+    private final Vertx vertx;
+    private final String address;
+    private final DeliveryOptions options;
+    private final int chunkSize;
+    private final int window;
+    private final Queryable delegate;
+
+    /**
+     * Creates a new streaming query client with the default chunk size and window.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address of the service
+     * @param options the delivery options to apply to service invocations, or {@code null}
+     */
+    public StreamingQueryClient(Vertx vertx, String address, DeliveryOptions options) {
+        this(vertx, address, options, ChunkedResultSender.DEFAULT_CHUNK_SIZE, ChunkedResultSender.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a new streaming query client.
+     *
+     * @param vertx     the vert.x instance
+     * @param address   the address of the service
+     * @param options   the delivery options to apply to service invocations, or {@code null}
+     * @param chunkSize the maximum size in bytes of a chunk
+     * @param window    the maximum number of chunks the service sends before they are consumed
+     */
+    public StreamingQueryClient(Vertx vertx, String address, DeliveryOptions options, int chunkSize, int window) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(address, "Service address cannot be null");
+        if (chunkSize <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Chunk size and window must be positive");
+        }
+        this.vertx = vertx;
+        this.address = address;
+        this.options = options == null ? new DeliveryOptions() : new DeliveryOptions(options);
+        this.chunkSize = chunkSize;
+        this.window = window;
+        this.delegate = new LocalQueryable(vertx, address, options);
+    }
+
+    /**
+     * Executes the query, and provides the encoded query result as a stream of chunks.
+     * <p>
+     * The result handler fails if the service could not execute the query, and otherwise receives the stream
+     * before its first chunk is delivered. Chunks are only delivered once a data handler is set, and the stream
+     * must be used on the context of the caller.
+     *
+     * @param graphqlQuery  the graphql query
+     * @param variables     the query variables, or {@code null}
+     * @param resultHandler the result handler with the stream of the encoded query result
+     */
+    public void queryStream(String graphqlQuery, JsonObject variables,
+                            Handler<AsyncResult<ReadStream<Buffer>>> resultHandler) {
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        if (LocalServiceRegistry.forVertx(vertx).lookup(address) != null) {
+            delegate.queryWithVariables(graphqlQuery, variables, res -> resultHandler.handle(res.failed() ?
+                    Future.failedFuture(res.cause()) :
+                    Future.succeededFuture(ChunkedReadStream.of(res.result().toBuffer(), chunkSize))));
+            return;
+        }
+        String streamAddress = address + ".stream." + UUID.randomUUID().toString();
+        MessageConsumer<Buffer> consumer = vertx.eventBus().consumer(streamAddress);
+        ChunkedReadStream stream = new ChunkedReadStream(consumer::unregister);
+        consumer.handler(stream::receive);
+        consumer.completionHandler(registered -> {
+            if (registered.failed()) {
+                stream.fail(registered.cause());
+                resultHandler.handle(Future.failedFuture(registered.cause()));
+                return;
+            }
+            JsonObject json = new JsonObject()
+                    .put("graphqlQuery", graphqlQuery)
+                    .put("variables", variables);
+            DeliveryOptions deliveryOptions = QueryDeadline.addHeader(new DeliveryOptions(options))
+                    .addHeader("action", "queryStream")
+                    .addHeader(ChunkedResultSender.STREAM_ADDRESS_HEADER, streamAddress)
+                    .addHeader(ChunkedResultSender.CHUNK_SIZE_HEADER, String.valueOf(chunkSize))
+                    .addHeader(ChunkedResultSender.WINDOW_HEADER, String.valueOf(window))
+                    .addHeader(ChunkedResultSender.ACK_TIMEOUT_HEADER, String.valueOf(options.getSendTimeout()));
+            vertx.eventBus().send(address, json, deliveryOptions, res -> {
+                if (res.failed()) {
+                    stream.fail(res.cause());
+                    resultHandler.handle(Future.failedFuture(res.cause()));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(stream));
+                }
+            });
+        });
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        queryWithVariables(graphqlQuery, null, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        if (LocalServiceRegistry.forVertx(vertx).lookup(address) != null) {
+            delegate.queryWithVariables(graphqlQuery, variables, resultHandler);
+            return;
+        }
+        queryStream(graphqlQuery, variables, res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+                return;
+            }
+            Buffer payload = Buffer.buffer();
+            res.result()
+                    .exceptionHandler(ex -> resultHandler.handle(Future.failedFuture(ex)))
+                    .endHandler(v -> resultHandler.handle(reassemble(payload)))
+                    .handler(payload::appendBuffer);
+        });
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryPersisted(queryHash, graphqlQuery, variables, resultHandler);
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static AsyncResult<QueryResult> reassemble(Buffer payload) {
+        try {
+            QueryResult result = new QueryResult(payload.toJsonObject());
+            return Future.succeededFuture(new QueryResult(result.getData(), result.isSucceeded(), result.getErrors(),
+                    result.getExtensions(), encoded -> payload));
+        } catch (RuntimeException ex) {
+            return Future.failedFuture(ex);
+        }
+    }
+}
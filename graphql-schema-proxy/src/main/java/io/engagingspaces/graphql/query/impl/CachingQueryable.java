@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Decorator that answers queries on a {@link Queryable} proxy from a {@link NormalizedCache}, when all selections of
+ * the query are available in the cache, and caches the entities in the results of other queries and mutations.
+ * <p>
+ * Persisted queries are passed to the decorated proxy unchanged, because the query text is identified by its hash.
+ * <p>
+ * If the cache is subscribed to the {@link io.engagingspaces.graphql.query.CacheInvalidation} messages of the
+ * schema, the subscription ends when the queryable is closed.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class CachingQueryable implements Queryable {
+
+    private final Queryable delegate;
+    private final NormalizedCache cache;
+    private final MessageConsumer<JsonObject> invalidations;
+
+    /**
+     * Creates a new caching queryable.
+     *
+     * @param delegate the queryable to decorate
+     * @param cache    the normalized cache
+     */
+    public CachingQueryable(Queryable delegate, NormalizedCache cache) {
+        this(delegate, cache, null);
+    }
+
+    /**
+     * Creates a new caching queryable with a subscription of the cache to invalidation messages.
+     *
+     * @param delegate      the queryable to decorate
+     * @param cache         the normalized cache
+     * @param invalidations the consumer of the invalidation messages that are applied to the cache, or {@code null}
+     */
+    public CachingQueryable(Queryable delegate, NormalizedCache cache, MessageConsumer<JsonObject> invalidations) {
+        this.delegate = Objects.requireNonNull(delegate, "Queryable cannot be null");
+        this.cache = Objects.requireNonNull(cache, "Normalized cache cannot be null");
+        this.invalidations = invalidations;
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        queryWithVariables(graphqlQuery, null, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        NormalizedCache.CachedQuery query = cache.prepare(graphqlQuery);
+        if (query == null) {
+            delegate.queryWithVariables(graphqlQuery, variables, resultHandler);
+            return;
+        }
+        QueryResult cachedResult = cache.read(query, variables);
+        if (cachedResult != null) {
+            resultHandler.handle(Future.succeededFuture(cachedResult));
+            return;
+        }
+        delegate.queryWithVariables(query.getRewrittenQuery(), variables, res -> resultHandler.handle(
+                res.succeeded() ? Future.succeededFuture(cache.write(query, variables, res.result())) : res));
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        delegate.queryPersisted(queryHash, graphqlQuery, variables, resultHandler);
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.resolveType(typeResolverId, typeHolder, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        delegate.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        if (invalidations != null) {
+            invalidations.unregister();
+        }
+        delegate.close();
+    }
+
+    /**
+     * @return the normalized cache of the queryable
+     */
+    public NormalizedCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the decorated queryable
+     */
+    public Queryable getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link ReadStream} of the chunks of an encoded query result, as sent by a {@link ChunkedResultSender}.
+ * <p>
+ * Chunks are delivered to the data handler in order, and are acknowledged to the sender once the handler has
+ * consumed them. While the stream is paused or no data handler is set, received chunks are buffered and not
+ * acknowledged, so the sender stops after its window of unacknowledged chunks. Chunks that are received out of order
+ * and abort messages of the sender fail the stream.
+ * <p>
+ * Setting the data handler delivers the chunks that are already buffered right away, so the stream may end before
+ * the end handler is set. In that case the end handler is invoked when it is set, like the exception handler is for
+ * a stream that has already failed.
+ * <p>
+ * The stream is not thread-safe, and must be used on the context that receives the chunks.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ChunkedReadStream implements ReadStream<Buffer> {
+
+    private final Deque<Chunk> pending = new ArrayDeque<>();
+    private final Runnable closeAction;
+
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private Throwable failure;
+    private boolean paused;
+    private boolean delivering;
+    private boolean ended;
+    private boolean endPending;
+    private int expectedSequence;
+
+    /**
+     * Creates a new chunked read stream.
+     *
+     * @param closeAction the action to invoke when the stream has ended or failed, e.g. to unregister the consumer
+     *                    of the stream address, or {@code null}
+     */
+    public ChunkedReadStream(Runnable closeAction) {
+        this.closeAction = closeAction;
+    }
+
+    /**
+     * Creates a stream of the chunks of an encoded query result that is already available, e.g. the result of a
+     * service in the same vert.x instance. The chunks are slices of the payload, and are not copied.
+     *
+     * @param payload   the encoded query result
+     * @param chunkSize the maximum size in bytes of a chunk
+     * @return the chunked read stream
+     */
+    public static ChunkedReadStream of(Buffer payload, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        ChunkedReadStream stream = new ChunkedReadStream(null);
+        int chunks = Math.max(1, (payload.length() + chunkSize - 1) / chunkSize);
+        for (int sequence = 0; sequence < chunks; sequence++) {
+            int start = sequence * chunkSize;
+            Buffer chunk = payload.slice(start, Math.min(payload.length(), start + chunkSize));
+            stream.pending.addLast(new Chunk(chunk, sequence == chunks - 1, null));
+        }
+        return stream;
+    }
+
+    /**
+     * Handles a chunk or abort message that was received on the stream address.
+     *
+     * @param message the message
+     */
+    public void receive(Message<Buffer> message) {
+        if (ended) {
+            return;
+        }
+        String error = message.headers().get(ChunkedResultSender.ERROR_HEADER);
+        if (error != null) {
+            fail(new IllegalStateException(error));
+            return;
+        }
+        String sequence = message.headers().get(ChunkedResultSender.SEQUENCE_HEADER);
+        if (sequence == null || Integer.parseInt(sequence) != expectedSequence) {
+            fail(new IllegalStateException("Received chunk " + sequence + " while expecting chunk " +
+                    expectedSequence));
+            return;
+        }
+        expectedSequence++;
+        boolean last = Boolean.parseBoolean(message.headers().get(ChunkedResultSender.LAST_HEADER));
+        pending.addLast(new Chunk(message.body(), last, message));
+        deliver();
+    }
+
+    /**
+     * Fails the stream, and discards the chunks that were not delivered yet.
+     *
+     * @param cause the cause of the failure
+     */
+    public void fail(Throwable cause) {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        failure = cause;
+        pending.clear();
+        close();
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(cause);
+        }
+    }
+
+    @Override
+    public ChunkedReadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        if (handler != null && failure != null) {
+            handler.handle(failure);
+        }
+        return this;
+    }
+
+    @Override
+    public ChunkedReadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        deliver();
+        return this;
+    }
+
+    @Override
+    public ChunkedReadStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public ChunkedReadStream resume() {
+        paused = false;
+        deliver();
+        return this;
+    }
+
+    @Override
+    public ChunkedReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        if (endHandler != null && endPending) {
+            endPending = false;
+            endHandler.handle(null);
+        }
+        return this;
+    }
+
+    private void deliver() {
+        if (delivering) {
+            return;
+        }
+        delivering = true;
+        try {
+            while (!paused && !ended && handler != null && !pending.isEmpty()) {
+                Chunk chunk = pending.pollFirst();
+                handler.handle(chunk.data);
+                if (chunk.message != null) {
+                    chunk.message.reply(null);
+                }
+                if (chunk.last) {
+                    ended = true;
+                    close();
+                    if (endHandler == null) {
+                        endPending = true;
+                    } else {
+                        endHandler.handle(null);
+                    }
+                }
+            }
+        } finally {
+            delivering = false;
+        }
+    }
+
+    private void close() {
+        if (closeAction != null) {
+            closeAction.run();
+        }
+    }
+
+    private static class Chunk {
+
+        private final Buffer data;
+        private final boolean last;
+        private final Message<Buffer> message;
+
+        private Chunk(Buffer data, boolean last, Message<Buffer> message) {
+            this.data = data;
+            this.last = last;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+
+/**
+ * Sends an encoded query result in ordered chunks to the stream address of a {@link ChunkedReadStream}.
+ * <p>
+ * Every chunk is a separate event bus message that carries its sequence number, and the last chunk is marked as
+ * such. The receiver acknowledges chunks by replying to them once they are consumed, and the sender never has more
+ * than a window of unacknowledged chunks outstanding, so a slow or paused consumer applies backpressure to the
+ * sender. If a chunk is not acknowledged within the send timeout, the stream is aborted and the receiver is notified
+ * with an error message.
+ * <p>
+ * The stream is started by replying to the stream request with the total length and number of chunks, before the
+ * first chunk is sent.
+ * <p>
+ * The payload is the complete encoded result, so the sender bounds the size of the messages and the memory of the
+ * receiver, but not its own memory: the service holds the result and its encoding until the last chunk is sent.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ChunkedResultSender {
+
+    /**
+     * Request header with the address to send the chunks to, that also serves as correlation id of the stream.
+     */
+    public static final String STREAM_ADDRESS_HEADER = "stream-address";
+
+    /**
+     * Request header with the maximum size in bytes of a chunk.
+     */
+    public static final String CHUNK_SIZE_HEADER = "stream-chunk-size";
+
+    /**
+     * Request header with the maximum number of unacknowledged chunks.
+     */
+    public static final String WINDOW_HEADER = "stream-window";
+
+    /**
+     * Request header with the time in milliseconds the sender waits for a chunk to be acknowledged.
+     */
+    public static final String ACK_TIMEOUT_HEADER = "stream-ack-timeout";
+
+    /**
+     * Chunk header with the sequence number of the chunk, starting at {@code 0}.
+     */
+    public static final String SEQUENCE_HEADER = "stream-sequence";
+
+    /**
+     * Chunk header that is {@code true} for the last chunk of the stream.
+     */
+    public static final String LAST_HEADER = "stream-last";
+
+    /**
+     * Header of the message that aborts the stream, with the reason as value.
+     */
+    public static final String ERROR_HEADER = "stream-error";
+
+    /**
+     * The default maximum size in bytes of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The default maximum number of unacknowledged chunks.
+     */
+    public static final int DEFAULT_WINDOW = 4;
+
+    private final Vertx vertx;
+    private final String streamAddress;
+    private final Buffer payload;
+    private final int chunkSize;
+    private final int window;
+    private final long ackTimeout;
+    private final int chunks;
+
+    private int next;
+    private int outstanding;
+    private boolean aborted;
+
+    /**
+     * Creates a new chunked result sender.
+     *
+     * @param vertx         the vert.x instance
+     * @param streamAddress the address to send the chunks to
+     * @param payload       the encoded query result
+     * @param chunkSize     the maximum size in bytes of a chunk
+     * @param window        the maximum number of unacknowledged chunks
+     * @param ackTimeout    the time in milliseconds to wait for a chunk to be acknowledged
+     */
+    public ChunkedResultSender(Vertx vertx, String streamAddress, Buffer payload, int chunkSize, int window,
+                               long ackTimeout) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(streamAddress, "Stream address cannot be null");
+        Objects.requireNonNull(payload, "Payload cannot be null");
+        if (chunkSize <= 0 || window <= 0 || ackTimeout <= 0) {
+            throw new IllegalArgumentException("Chunk size, window and acknowledgement timeout must be positive");
+        }
+        this.vertx = vertx;
+        this.streamAddress = streamAddress;
+        this.payload = payload;
+        this.chunkSize = chunkSize;
+        this.window = window;
+        this.ackTimeout = ackTimeout;
+        this.chunks = Math.max(1, (payload.length() + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Creates a sender for the stream request from the headers of the request message.
+     *
+     * @param vertx   the vert.x instance
+     * @param request the stream request
+     * @param payload the encoded query result
+     * @return the chunked result sender
+     */
+    public static ChunkedResultSender forRequest(Vertx vertx, Message<?> request, Buffer payload) {
+        String streamAddress = request.headers().get(STREAM_ADDRESS_HEADER);
+        if (streamAddress == null) {
+            throw new IllegalStateException("Stream address not specified");
+        }
+        return new ChunkedResultSender(vertx, streamAddress, payload,
+                intHeader(request, CHUNK_SIZE_HEADER, DEFAULT_CHUNK_SIZE),
+                intHeader(request, WINDOW_HEADER, DEFAULT_WINDOW),
+                intHeader(request, ACK_TIMEOUT_HEADER, (int) DeliveryOptions.DEFAULT_TIMEOUT));
+    }
+
+    /**
+     * Replies to the stream request with the length and number of chunks of the payload, and starts sending chunks.
+     * Must be invoked on the context that receives the acknowledgements, which is the context of the caller.
+     *
+     * @param request the stream request
+     */
+    public void start(Message<?> request) {
+        request.reply(new JsonObject().put("length", payload.length()).put("chunks", chunks));
+        sendChunks();
+    }
+
+    /**
+     * @return the number of chunks of the payload
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    private void sendChunks() {
+        while (!aborted && next < chunks && outstanding < window) {
+            int sequence = next++;
+            int start = sequence * chunkSize;
+            Buffer chunk = payload.getBuffer(start, Math.min(payload.length(), start + chunkSize));
+            DeliveryOptions options = new DeliveryOptions()
+                    .setSendTimeout(ackTimeout)
+                    .addHeader(SEQUENCE_HEADER, String.valueOf(sequence))
+                    .addHeader(LAST_HEADER, String.valueOf(sequence == chunks - 1));
+            outstanding++;
+            vertx.eventBus().send(streamAddress, chunk, options, ack -> {
+                outstanding--;
+                if (ack.failed()) {
+                    abort(ack.cause().getMessage());
+                } else {
+                    sendChunks();
+                }
+            });
+        }
+    }
+
+    private void abort(String reason) {
+        if (!aborted) {
+            aborted = true;
+            vertx.eventBus().send(streamAddress, Buffer.buffer(), new DeliveryOptions()
+                    .addHeader(ERROR_HEADER, reason == null ? "Stream aborted" : reason));
+        }
+    }
+
+    private static int intHeader(Message<?> request, String name, int defaultValue) {
+        String value = request.headers().get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
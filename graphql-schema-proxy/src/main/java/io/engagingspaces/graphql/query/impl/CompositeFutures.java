@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Typed adapters for {@link CompositeFuture}, whose list-based factory methods take a raw list of futures.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class CompositeFutures {
+
+    private CompositeFutures() {
+    }
+
+    /**
+     * Creates a future that succeeds with the results of all provided futures (in the same order) when they have all
+     * succeeded, or fails as soon as one of them fails.
+     *
+     * @param futures the futures to compose
+     * @param <T>     the result type of the futures
+     * @return the composite future with the list of results
+     * @see CompositeFuture#all(List)
+     */
+    public static <T> Future<List<T>> all(List<Future<T>> futures) {
+        Objects.requireNonNull(futures, "Futures cannot be null");
+        Future<List<T>> result = Future.future();
+        CompositeFuture.all(new ArrayList<>(futures)).setHandler(res -> {
+            if (res.succeeded()) {
+                result.complete(res.result().list());
+            } else {
+                result.fail(res.cause());
+            }
+        });
+        return result;
+    }
+}
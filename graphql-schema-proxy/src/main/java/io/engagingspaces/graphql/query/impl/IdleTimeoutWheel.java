@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel that expires idle registrations (such as the {@link QueryableServiceHandler} of a schema
+ * proxy) with a single shared Vert.x timer, instead of one periodic timer per registration.
+ * <p>
+ * The wheel has a fixed number of buckets, and advances one bucket per tick. A registration is placed in the bucket
+ * at which its idle timeout expires, together with the number of full rotations to wait. Accesses only update the
+ * last access time of the registration, and do not touch the wheel. When the bucket of a registration comes up and
+ * it was accessed in the meantime, it is placed again for the remainder of its timeout. So the cost of a tick
+ * depends on the number of registrations that are due, and not on the total number of registrations.
+ * <p>
+ * There is one wheel per vert.x instance, that is shared by all verticles (see {@link #forVertx(Vertx)}). The timer
+ * only runs while there are registrations. Expiry has a resolution of one tick.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class IdleTimeoutWheel implements Shareable {
+
+    /**
+     * The default duration of a tick in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+
+    /**
+     * The default number of buckets in the wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final String LOCAL_MAP_NAME = "graphql.timeouts";
+    private static final String WHEEL_KEY = "wheel";
+    private static final int STALLED_TICKS = 3;
+
+    private final Vertx vertx;
+    private final long tickMillis;
+    private final List<List<Timeout>> wheel;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private int cursor;
+    private long timerId = -1;
+    private volatile long lastTick;
+
+    /**
+     * Creates a new timing wheel.
+     *
+     * @param vertx      the vert.x instance
+     * @param tickMillis the duration of a tick in milliseconds
+     * @param wheelSize  the number of buckets in the wheel
+     */
+    public IdleTimeoutWheel(Vertx vertx, long tickMillis, int wheelSize) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.vertx = vertx;
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Gets the timing wheel of the vert.x instance, creating it on first access.
+     *
+     * @param vertx the vert.x instance
+     * @return the timing wheel
+     */
+    public static IdleTimeoutWheel forVertx(Vertx vertx) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        LocalMap<String, IdleTimeoutWheel> wheels = vertx.sharedData().getLocalMap(LOCAL_MAP_NAME);
+        IdleTimeoutWheel wheel = wheels.get(WHEEL_KEY);
+        if (wheel == null) {
+            IdleTimeoutWheel created = new IdleTimeoutWheel(vertx, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+            wheel = wheels.putIfAbsent(WHEEL_KEY, created);
+            if (wheel == null) {
+                wheel = created;
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Schedules the idle expiry of a registration.
+     * <p>
+     * The expiry handler is invoked on the thread of the shared timer, and should hand off to the context of the
+     * registration for any work other than closing it.
+     *
+     * @param timeoutMillis the idle timeout in milliseconds
+     * @param lastAccessed  the supplier of the last access time of the registration, as {@link System#nanoTime()}
+     * @param expiryHandler the handler that is invoked when the registration has been idle for the timeout
+     * @return the scheduled timeout, that can be cancelled
+     */
+    public Timeout schedule(long timeoutMillis, LongSupplier lastAccessed, Runnable expiryHandler) {
+        Objects.requireNonNull(lastAccessed, "Last access time supplier cannot be null");
+        Objects.requireNonNull(expiryHandler, "Expiry handler cannot be null");
+        Timeout timeout = new Timeout(Math.max(0, timeoutMillis) * 1000000, lastAccessed, expiryHandler);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        synchronized (this) {
+            if (timerId != -1 && System.nanoTime() - lastTick > STALLED_TICKS * tickMillis * 1000000) {
+                // the timer was cancelled with the verticle that started it
+                vertx.cancelTimer(timerId);
+                timerId = -1;
+            }
+            if (timerId == -1) {
+                lastTick = System.nanoTime();
+                timerId = vertx.setPeriodic(tickMillis, this::tick);
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * @return the number of scheduled timeouts that have not expired or been cancelled
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private synchronized void tick(long id) {
+        if (id != timerId) {
+            return;
+        }
+        long now = System.nanoTime();
+        lastTick = now;
+        for (Timeout timeout = scheduled.poll(); timeout != null; timeout = scheduled.poll()) {
+            place(timeout, timeout.remainingNanos(now));
+        }
+        List<Timeout> bucket = wheel.get(cursor);
+        wheel.set(cursor, new ArrayList<>());
+        for (Timeout timeout : bucket) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                wheel.get(cursor).add(timeout);
+                continue;
+            }
+            long remaining = timeout.remainingNanos(now);
+            if (remaining > 0) {
+                place(timeout, remaining);
+            } else if (timeout.expire()) {
+                pending.decrementAndGet();
+                timeout.expiryHandler.run();
+            }
+        }
+        cursor = (cursor + 1) % wheel.size();
+        if (pending.get() == 0) {
+            vertx.cancelTimer(timerId);
+            timerId = -1;
+        }
+    }
+
+    private void place(Timeout timeout, long delayNanos) {
+        long tickNanos = tickMillis * 1000000;
+        long ticks = Math.max(1, (delayNanos + tickNanos - 1) / tickNanos);
+        timeout.rounds = (ticks - 1) / wheel.size();
+        wheel.get((int) ((cursor + ticks) % wheel.size())).add(timeout);
+    }
+
+    /**
+     * The idle timeout of a registration in the timing wheel.
+     */
+    public class Timeout {
+
+        private final long timeoutNanos;
+        private final LongSupplier lastAccessed;
+        private final Runnable expiryHandler;
+        private volatile boolean cancelled;
+        private long rounds;
+
+        private Timeout(long timeoutNanos, LongSupplier lastAccessed, Runnable expiryHandler) {
+            this.timeoutNanos = timeoutNanos;
+            this.lastAccessed = lastAccessed;
+            this.expiryHandler = expiryHandler;
+        }
+
+        /**
+         * Cancels the timeout, e.g. when the registration is closed before it expires.
+         *
+         * @return {@code true} if the timeout was cancelled, {@code false} if it already expired or was cancelled
+         */
+        public boolean cancel() {
+            if (expire()) {
+                pending.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return {@code true} if the timeout was cancelled or has expired, {@code false} otherwise
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private synchronized boolean expire() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        private long remainingNanos(long now) {
+            return timeoutNanos - (now - lastAccessed.getAsLong());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link Queryable} proxy that invokes services in the same vert.x instance directly, and falls back to the event
+ * bus for services that are registered elsewhere.
+ * <p>
+ * Services are looked up in the {@link LocalServiceRegistry} on every call, so services that are registered or
+ * unregistered after the proxy was created are picked up. Local calls keep the semantics of event bus delivery:
+ * the service is invoked on the context where it was registered, results are delivered on the context of the
+ * caller, calls fail with a {@link ReplyFailure#TIMEOUT} after the send timeout of the delivery options, and query
+ * calls carry their {@link QueryDeadline}. Requests and results are passed by reference, and are not encoded or
+ * copied.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class LocalQueryable implements Queryable {
+
+    private final Vertx vertx;
+    private final String address;
+    private final long sendTimeout;
+    private final Queryable remote;
+
+    /**
+     * Creates a new local proxy.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address of the service
+     * @param options the delivery options to apply to service invocations, or {@code null}
+     */
+    public LocalQueryable(Vertx vertx, String address, DeliveryOptions options) {
+        this(vertx, address, options, new QueryableServiceProxy(vertx, address, options));
+    }
+
+    /**
+     * Creates a new local proxy with the provided proxy for remote services.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address of the service
+     * @param options the delivery options to apply to service invocations, or {@code null}
+     * @param remote  the proxy to invoke services that are not registered in this vert.x instance
+     */
+    public LocalQueryable(Vertx vertx, String address, DeliveryOptions options, Queryable remote) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(address, "Service address cannot be null");
+        Objects.requireNonNull(remote, "Remote proxy cannot be null");
+        this.vertx = vertx;
+        this.address = address;
+        this.sendTimeout = options == null ? DeliveryOptions.DEFAULT_TIMEOUT : options.getSendTimeout();
+        this.remote = remote;
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (!invoke(true, (service, handler) -> service.query(graphqlQuery, handler), resultHandler)) {
+            remote.query(graphqlQuery, resultHandler);
+        }
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (!invoke(true, (service, handler) ->
+                service.queryWithVariables(graphqlQuery, variables, handler), resultHandler)) {
+            remote.queryWithVariables(graphqlQuery, variables, resultHandler);
+        }
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (!invoke(true, (service, handler) ->
+                service.queryPersisted(queryHash, graphqlQuery, variables, handler), resultHandler)) {
+            remote.queryPersisted(queryHash, graphqlQuery, variables, resultHandler);
+        }
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (!invoke(false, (service, handler) ->
+                service.resolveType(typeResolverId, typeHolder, handler), resultHandler)) {
+            remote.resolveType(typeResolverId, typeHolder, resultHandler);
+        }
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (!invoke(false, (service, handler) ->
+                service.fetchData(dataFetcherId, dataFetchingEnvironment, handler), resultHandler)) {
+            remote.fetchData(dataFetcherId, dataFetchingEnvironment, resultHandler);
+        }
+    }
+
+    @Override
+    public void close() {
+        remote.close();
+    }
+
+    private <T> boolean invoke(boolean query, BiConsumer<Queryable, Handler<AsyncResult<T>>> call,
+                               Handler<AsyncResult<T>> resultHandler) {
+        QueryableServiceHandler handler = LocalServiceRegistry.forVertx(vertx).lookup(address);
+        if (handler == null) {
+            return false;
+        }
+        Context caller = Vertx.currentContext();
+        AtomicBoolean replied = new AtomicBoolean();
+        long timerId = vertx.setTimer(sendTimeout, id -> reply(caller, replied, resultHandler,
+                Future.failedFuture(new ReplyException(ReplyFailure.TIMEOUT,
+                        "Timed out after waiting " + sendTimeout + "(ms) for a reply. address: " + address))));
+        handler.invoke(query ? QueryDeadline.within(sendTimeout) : null, call, res -> {
+            vertx.cancelTimer(timerId);
+            reply(caller, replied, resultHandler, res);
+        });
+        return true;
+    }
+
+    private static <T> void reply(Context caller, AtomicBoolean replied, Handler<AsyncResult<T>> resultHandler,
+                                  AsyncResult<T> result) {
+        if (!replied.compareAndSet(false, true)) {
+            return;
+        }
+        if (caller == null || caller == Vertx.currentContext()) {
+            resultHandler.handle(result);
+        } else {
+            caller.runOnContext(v -> resultHandler.handle(result));
+        }
+    }
+}
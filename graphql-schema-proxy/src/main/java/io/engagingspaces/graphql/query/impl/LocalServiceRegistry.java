@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of the {@link io.engagingspaces.graphql.query.Queryable} services that are registered on the event bus
+ * of a vert.x instance, so that proxies in the same instance can invoke them directly (see {@link LocalQueryable}).
+ * <p>
+ * There is one registry per vert.x instance, that is shared by all verticles (see {@link #forVertx(Vertx)}). Like
+ * the event bus, the registry distributes calls to an address with multiple services in round-robin fashion.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class LocalServiceRegistry implements Shareable {
+
+    private static final String LOCAL_MAP_NAME = "graphql.services";
+    private static final String REGISTRY_KEY = "registry";
+
+    private final Map<String, List<QueryableServiceHandler>> handlers = new ConcurrentHashMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private LocalServiceRegistry() {
+    }
+
+    /**
+     * Gets the local service registry of the vert.x instance, creating it on first access.
+     *
+     * @param vertx the vert.x instance
+     * @return the local service registry
+     */
+    public static LocalServiceRegistry forVertx(Vertx vertx) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        LocalMap<String, LocalServiceRegistry> registries = vertx.sharedData().getLocalMap(LOCAL_MAP_NAME);
+        LocalServiceRegistry registry = registries.get(REGISTRY_KEY);
+        if (registry == null) {
+            LocalServiceRegistry created = new LocalServiceRegistry();
+            registry = registries.putIfAbsent(REGISTRY_KEY, created);
+            if (registry == null) {
+                registry = created;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Registers the service handler at the provided address.
+     *
+     * @param address the service address
+     * @param handler the service handler
+     */
+    public void register(String address, QueryableServiceHandler handler) {
+        Objects.requireNonNull(address, "Service address cannot be null");
+        Objects.requireNonNull(handler, "Service handler cannot be null");
+        handlers.computeIfAbsent(address, key -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * Removes the service handler from the provided address.
+     *
+     * @param address the service address
+     * @param handler the service handler
+     */
+    public void unregister(String address, QueryableServiceHandler handler) {
+        handlers.computeIfPresent(address, (key, registered) -> {
+            registered.remove(handler);
+            return registered.isEmpty() ? null : registered;
+        });
+    }
+
+    /**
+     * Looks up a service handler that is registered at the provided address. Handlers whose event bus consumer has
+     * been unregistered are removed.
+     *
+     * @param address the service address
+     * @return the service handler, or {@code null} if no service is registered in this vert.x instance
+     */
+    public QueryableServiceHandler lookup(String address) {
+        List<QueryableServiceHandler> registered = handlers.get(address);
+        while (registered != null && !registered.isEmpty()) {
+            int size = registered.size();
+            QueryableServiceHandler handler;
+            try {
+                handler = registered.get(Math.floorMod(counter.getAndIncrement(), size));
+            } catch (IndexOutOfBoundsException ex) {
+                continue;
+            }
+            if (handler.isRegistered()) {
+                return handler;
+            }
+            unregister(address, handler);
+            registered = handlers.get(address);
+        }
+        return null;
+    }
+}
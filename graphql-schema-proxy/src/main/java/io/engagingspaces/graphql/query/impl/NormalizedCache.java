@@ -0,0 +1,748 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.language.*;
+import graphql.parser.Parser;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cache of query results that is normalized by entity.
+ * <p>
+ * Queries are sent with an additional {@code __typename} selection in every sub-selection. Objects in the results
+ * that have a {@code __typename} and an {@code id} are stored as separate entity records, keyed by
+ * {@code TypeName:id}, and are referenced by the objects and root fields that contain them. Fields are stored by
+ * name and argument values, so that different queries (and aliases) share the same entity fields. Entity records
+ * and root fields are kept in a bounded LRU cache, and expire after an optional time to live since they were last
+ * written.
+ * <p>
+ * A query is answered from the cache when all of its selections are available in the cache. Fragments with a type
+ * condition are only answered from the cache if the condition is the type of the cached object, as the cache has no
+ * knowledge of the interfaces and unions of the schema. The results of mutations update the cached entities, but
+ * mutations are never answered from the cache. Queries that use other directives than {@code @skip} and
+ * {@code @include}, and documents with multiple operations are not cached.
+ * <p>
+ * Entities and types can be evicted explicitly, or with the {@link io.engagingspaces.graphql.query.CacheInvalidation}
+ * messages that a service publishes when mutations are executed (see {@link #invalidate(JsonObject)}). Evicting a
+ * type removes its entities and the root fields that embed objects of the type. Root fields that reference an
+ * evicted entity are not removed, but are no longer answered from the cache.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class NormalizedCache {
+
+    private static final String TYPENAME = "__typename";
+    private static final String REFERENCE = "__ref";
+    private static final String ROOT_QUERY = "ROOT_QUERY.";
+    private static final int QUERY_CACHE_SIZE = 256;
+    private static final List<String> CONDITIONAL_DIRECTIVES = Arrays.asList("skip", "include");
+    private static final CachedQuery NOT_CACHED = new CachedQuery(null, null, null, null);
+    private static final Object MISS = new Object();
+
+    private final Map<String, Record> records;
+    private final Map<String, CachedQuery> queries;
+    private final long timeToLive;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new normalized cache whose records do not expire.
+     *
+     * @param maxSize the maximum number of entity records and root fields to cache
+     */
+    public NormalizedCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Creates a new normalized cache.
+     *
+     * @param maxSize    the maximum number of entity records and root fields to cache
+     * @param timeToLive the time in milliseconds after which a record expires since it was last written, or
+     *                   {@code 0} if records do not expire
+     */
+    public NormalizedCache(int maxSize, long timeToLive) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative");
+        }
+        this.records = lruMap(maxSize);
+        this.queries = lruMap(QUERY_CACHE_SIZE);
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    }
+
+    /**
+     * Prepares the query for caching.
+     *
+     * @param graphqlQuery the graphql query
+     * @return the prepared query, or {@code null} if the query cannot be cached
+     */
+    public synchronized CachedQuery prepare(String graphqlQuery) {
+        if (graphqlQuery == null) {
+            return null;
+        }
+        CachedQuery query = queries.get(graphqlQuery);
+        if (query == null) {
+            query = parse(graphqlQuery);
+            queries.put(graphqlQuery, query);
+        }
+        return query == NOT_CACHED ? null : query;
+    }
+
+    /**
+     * Reads the result of the query from the cache.
+     *
+     * @param query     the prepared query
+     * @param variables the query variables, or {@code null}
+     * @return the query result, or {@code null} if the query is not fully available in the cache
+     */
+    public synchronized QueryResult read(CachedQuery query, JsonObject variables) {
+        Object data = query.isMutation() ? MISS : readRoot(query, query.variables(variables));
+        if (data == MISS) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new QueryResult((JsonObject) data, true, Collections.emptyList());
+    }
+
+    /**
+     * Writes the result of the query to the cache, and removes the {@code __typename} selections that were added to
+     * the query from the result data.
+     *
+     * @param query     the prepared query
+     * @param variables the query variables, or {@code null}
+     * @param result    the query result of the rewritten query
+     * @return the query result of the original query
+     */
+    public synchronized QueryResult write(CachedQuery query, JsonObject variables, QueryResult result) {
+        if (!result.isSucceeded() || result.getData() == null) {
+            return result;
+        }
+        Map<String, Object> values = query.variables(variables);
+        SelectionSet selectionSet = query.operation.getSelectionSet();
+        if (query.isMutation()) {
+            writeFields(query, selectionSet, null, new JsonObject(), result.getData(), values);
+        } else {
+            writeRoot(query, selectionSet, result.getData(), values);
+        }
+        return new QueryResult((JsonObject) projectFields(query, selectionSet, null, result.getData(), values),
+                true, result.getErrors(), result.getExtensions());
+    }
+
+    /**
+     * Removes the cached entity.
+     *
+     * @param entityKey the key of the entity, as {@code TypeName:id}
+     * @return {@code true} if the entity was cached, {@code false} otherwise
+     */
+    public synchronized boolean evictEntity(String entityKey) {
+        Objects.requireNonNull(entityKey, "Entity key cannot be null");
+        return records.remove(entityKey) != null;
+    }
+
+    /**
+     * Removes the cached entities of the type, and the root fields and entities that embed objects of the type
+     * without an {@code id}.
+     *
+     * @param typeName the name of the type
+     * @return the number of removed records
+     */
+    public synchronized int evictType(String typeName) {
+        Objects.requireNonNull(typeName, "Type name cannot be null");
+        String entityPrefix = typeName + ':';
+        int evicted = 0;
+        for (Iterator<Map.Entry<String, Record>> it = records.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Record> record = it.next();
+            if (record.getKey().startsWith(entityPrefix) || embeds(record.getValue().fields, typeName)) {
+                it.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Evicts the entities and types that are listed in a cache invalidation message.
+     *
+     * @param invalidation the invalidation message (see
+     *                     {@link io.engagingspaces.graphql.query.CacheInvalidation#message(String, JsonArray,
+     *                     JsonArray, JsonArray)})
+     * @return the number of removed records
+     */
+    public synchronized int invalidate(JsonObject invalidation) {
+        Objects.requireNonNull(invalidation, "Invalidation message cannot be null");
+        int evicted = 0;
+        for (Object entity : invalidation.getJsonArray("entities", new JsonArray())) {
+            evicted += entity instanceof String && evictEntity((String) entity) ? 1 : 0;
+        }
+        for (Object type : invalidation.getJsonArray("types", new JsonArray())) {
+            evicted += type instanceof String ? evictType((String) type) : 0;
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes all cached entities and root fields.
+     */
+    public synchronized void clear() {
+        records.clear();
+    }
+
+    /**
+     * @return the number of entity records and root fields in the cache
+     */
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * @return the number of queries that were answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of queries that were not available in the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private Object readRoot(CachedQuery query, Map<String, Object> variables) {
+        List<Field> fields = new ArrayList<>();
+        if (!collect(query, query.operation.getSelectionSet(), null, variables, true, fields, new HashSet<>())) {
+            return MISS;
+        }
+        JsonObject root = new JsonObject();
+        for (Field field : fields) {
+            String storeKey = fieldKey(field, variables);
+            JsonObject record = record(ROOT_QUERY + storeKey);
+            if (record == null) {
+                return MISS;
+            }
+            root.put(storeKey, record.getValue(storeKey));
+        }
+        return readFields(query, query.operation.getSelectionSet(), null, root, variables);
+    }
+
+    private Object readFields(CachedQuery query, SelectionSet selectionSet, String typeName, JsonObject record,
+                              Map<String, Object> variables) {
+        List<Field> fields = new ArrayList<>();
+        if (!collect(query, selectionSet, typeName, variables, true, fields, new HashSet<>())) {
+            return MISS;
+        }
+        JsonObject result = new JsonObject();
+        for (Field field : fields) {
+            Object value;
+            if (TYPENAME.equals(field.getName())) {
+                if (typeName == null) {
+                    return MISS;
+                }
+                value = typeName;
+            } else {
+                String storeKey = fieldKey(field, variables);
+                if (!record.containsKey(storeKey)) {
+                    return MISS;
+                }
+                value = readValue(query, field.getSelectionSet(), record.getValue(storeKey), variables);
+                if (value == MISS) {
+                    return MISS;
+                }
+            }
+            put(result, responseKey(field), value);
+        }
+        return result;
+    }
+
+    private Object readValue(CachedQuery query, SelectionSet selectionSet, Object stored,
+                             Map<String, Object> variables) {
+        if (stored == null) {
+            return null;
+        } else if (selectionSet == null) {
+            return copy(stored);
+        } else if (stored instanceof JsonArray) {
+            JsonArray result = new JsonArray();
+            for (Object item : (JsonArray) stored) {
+                Object value = readValue(query, selectionSet, item, variables);
+                if (value == MISS) {
+                    return MISS;
+                }
+                result.add(value);
+            }
+            return result;
+        } else if (stored instanceof JsonObject) {
+            JsonObject object = (JsonObject) stored;
+            if (object.containsKey(REFERENCE)) {
+                object = record(object.getString(REFERENCE));
+                if (object == null) {
+                    return MISS;
+                }
+            }
+            return readFields(query, selectionSet, object.getString(TYPENAME), object, variables);
+        }
+        return MISS;
+    }
+
+    private void writeRoot(CachedQuery query, SelectionSet selectionSet, JsonObject data,
+                           Map<String, Object> variables) {
+        List<Field> fields = new ArrayList<>();
+        collect(query, selectionSet, null, variables, false, fields, new HashSet<>());
+        JsonObject root = new JsonObject();
+        for (Field field : fields) {
+            String storeKey = fieldKey(field, variables);
+            JsonObject record = record(ROOT_QUERY + storeKey);
+            if (record != null) {
+                root.put(storeKey, record.getValue(storeKey));
+            }
+        }
+        writeFields(query, selectionSet, null, root, data, variables);
+        root.forEach(field -> store(ROOT_QUERY + field.getKey(),
+                new JsonObject().put(field.getKey(), field.getValue())));
+    }
+
+    private void writeFields(CachedQuery query, SelectionSet selectionSet, String typeName, JsonObject record,
+                             JsonObject data, Map<String, Object> variables) {
+        List<Field> fields = new ArrayList<>();
+        collect(query, selectionSet, typeName, variables, false, fields, new HashSet<>());
+        for (Field field : fields) {
+            String responseKey = responseKey(field);
+            if (data.containsKey(responseKey)) {
+                String storeKey = fieldKey(field, variables);
+                record.put(storeKey, writeValue(query, field.getSelectionSet(), record.getValue(storeKey),
+                        data.getValue(responseKey), variables));
+            }
+        }
+    }
+
+    private Object writeValue(CachedQuery query, SelectionSet selectionSet, Object existing, Object value,
+                              Map<String, Object> variables) {
+        if (value == null) {
+            return null;
+        } else if (selectionSet == null) {
+            return copy(value);
+        } else if (value instanceof JsonArray) {
+            JsonArray items = (JsonArray) value;
+            JsonArray previous = existing instanceof JsonArray ? (JsonArray) existing : new JsonArray();
+            JsonArray result = new JsonArray();
+            for (int i = 0; i < items.size(); i++) {
+                result.add(writeValue(query, selectionSet, i < previous.size() ? previous.getValue(i) : null,
+                        items.getValue(i), variables));
+            }
+            return result;
+        } else if (!(value instanceof JsonObject)) {
+            return copy(value);
+        }
+        JsonObject object = (JsonObject) value;
+        String typeName = object.getString(TYPENAME);
+        Object id = object.getValue("id");
+        if (typeName != null && (id instanceof String || id instanceof Number)) {
+            String key = typeName + ':' + id;
+            JsonObject record = record(key);
+            if (record == null) {
+                record = new JsonObject().put(TYPENAME, typeName);
+            }
+            writeFields(query, selectionSet, typeName, record, object, variables);
+            store(key, record);
+            return new JsonObject().put(REFERENCE, key);
+        }
+        JsonObject embedded = existing instanceof JsonObject && !((JsonObject) existing).containsKey(REFERENCE) ?
+                (JsonObject) existing : new JsonObject();
+        if (typeName != null) {
+            embedded.put(TYPENAME, typeName);
+        }
+        writeFields(query, selectionSet, typeName, embedded, object, variables);
+        return embedded;
+    }
+
+    private JsonObject record(String key) {
+        Record record = records.get(key);
+        if (record == null) {
+            return null;
+        }
+        if (timeToLive > 0 && System.nanoTime() - record.expires >= 0) {
+            records.remove(key);
+            return null;
+        }
+        return record.fields;
+    }
+
+    private void store(String key, JsonObject fields) {
+        records.put(key, new Record(fields, timeToLive > 0 ? System.nanoTime() + timeToLive : 0));
+    }
+
+    private static boolean embeds(Object value, String typeName) {
+        if (value instanceof JsonArray) {
+            for (Object item : (JsonArray) value) {
+                if (embeds(item, typeName)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject) value;
+            if (object.containsKey(REFERENCE)) {
+                return false;
+            }
+            for (Map.Entry<String, Object> field : object) {
+                if (TYPENAME.equals(field.getKey()) ? typeName.equals(field.getValue()) :
+                        embeds(field.getValue(), typeName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Object projectFields(CachedQuery query, SelectionSet selectionSet, String typeName, JsonObject data,
+                                 Map<String, Object> variables) {
+        List<Field> fields = new ArrayList<>();
+        collect(query, selectionSet, typeName, variables, false, fields, new HashSet<>());
+        JsonObject result = new JsonObject();
+        for (Field field : fields) {
+            String responseKey = responseKey(field);
+            if (data.containsKey(responseKey)) {
+                put(result, responseKey, projectValue(query, field.getSelectionSet(), data.getValue(responseKey),
+                        variables));
+            }
+        }
+        return result;
+    }
+
+    private Object projectValue(CachedQuery query, SelectionSet selectionSet, Object value,
+                                Map<String, Object> variables) {
+        if (selectionSet == null || value == null) {
+            return value;
+        } else if (value instanceof JsonArray) {
+            JsonArray result = new JsonArray();
+            ((JsonArray) value).forEach(item -> result.add(projectValue(query, selectionSet, item, variables)));
+            return result;
+        } else if (value instanceof JsonObject) {
+            JsonObject object = (JsonObject) value;
+            return projectFields(query, selectionSet, object.getString(TYPENAME), object, variables);
+        }
+        return value;
+    }
+
+    /**
+     * Collects the fields of the selection set that apply to an object of the provided type. Fragments with a type
+     * condition are included when writing, as the result data only contains the fields of fragments that applied,
+     * but make the read fail if their condition is not the provided type.
+     */
+    private static boolean collect(CachedQuery query, SelectionSet selectionSet, String typeName,
+                                   Map<String, Object> variables, boolean reading, List<Field> fields,
+                                   Set<String> visitedFragments) {
+        for (Selection selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                if (isIncluded(((Field) selection).getDirectives(), variables)) {
+                    fields.add((Field) selection);
+                }
+                continue;
+            }
+            TypeName typeCondition;
+            SelectionSet fragmentSelectionSet;
+            if (selection instanceof InlineFragment) {
+                InlineFragment fragment = (InlineFragment) selection;
+                if (!isIncluded(fragment.getDirectives(), variables)) {
+                    continue;
+                }
+                typeCondition = fragment.getTypeCondition();
+                fragmentSelectionSet = fragment.getSelectionSet();
+            } else {
+                FragmentSpread spread = (FragmentSpread) selection;
+                FragmentDefinition fragment = query.fragments.get(spread.getName());
+                if (fragment == null) {
+                    return false;
+                }
+                if (!isIncluded(spread.getDirectives(), variables) || !visitedFragments.add(fragment.getName())) {
+                    continue;
+                }
+                typeCondition = fragment.getTypeCondition();
+                fragmentSelectionSet = fragment.getSelectionSet();
+            }
+            if (reading && typeCondition != null && !typeCondition.getName().equals(typeName)) {
+                return false;
+            }
+            if (!collect(query, fragmentSelectionSet, typeName, variables, reading, fields, visitedFragments)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIncluded(List<Directive> directives, Map<String, Object> variables) {
+        for (Directive directive : directives) {
+            Object condition = directive.getArguments().isEmpty() ? null :
+                    valueOf(directive.getArguments().get(0).getValue(), variables);
+            if ("skip".equals(directive.getName()) && Boolean.TRUE.equals(condition) ||
+                    "include".equals(directive.getName()) && !Boolean.TRUE.equals(condition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String responseKey(Field field) {
+        return field.getAlias() == null ? field.getName() : field.getAlias();
+    }
+
+    private static String fieldKey(Field field, Map<String, Object> variables) {
+        if (field.getArguments().isEmpty()) {
+            return field.getName();
+        }
+        Map<String, Object> arguments = new TreeMap<>();
+        field.getArguments().forEach(argument ->
+                arguments.put(argument.getName(), valueOf(argument.getValue(), variables)));
+        return field.getName() + new JsonObject(arguments).encode();
+    }
+
+    private static Object valueOf(Value value, Map<String, Object> variables) {
+        if (value instanceof VariableReference) {
+            return variables.get(((VariableReference) value).getName());
+        } else if (value instanceof IntValue) {
+            return ((IntValue) value).getValue();
+        } else if (value instanceof FloatValue) {
+            return ((FloatValue) value).getValue().doubleValue();
+        } else if (value instanceof StringValue) {
+            return ((StringValue) value).getValue();
+        } else if (value instanceof BooleanValue) {
+            return ((BooleanValue) value).isValue();
+        } else if (value instanceof EnumValue) {
+            return ((EnumValue) value).getName();
+        } else if (value instanceof ArrayValue) {
+            List<Object> values = new ArrayList<>();
+            ((ArrayValue) value).getValues().forEach(item -> values.add(valueOf(item, variables)));
+            return values;
+        } else if (value instanceof ObjectValue) {
+            Map<String, Object> fields = new TreeMap<>();
+            ((ObjectValue) value).getObjectFields().forEach(field ->
+                    fields.put(field.getName(), valueOf(field.getValue(), variables)));
+            return fields;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object value) {
+        if (value instanceof JsonObject || value instanceof Map) {
+            Map<String, Object> map = value instanceof JsonObject ? ((JsonObject) value).getMap() : (Map) value;
+            Map<String, Object> result = new TreeMap<>();
+            map.forEach((key, item) -> result.put(key, normalize(item)));
+            return result;
+        } else if (value instanceof JsonArray || value instanceof List) {
+            List<Object> list = value instanceof JsonArray ? ((JsonArray) value).getList() : (List) value;
+            List<Object> result = new ArrayList<>(list.size());
+            list.forEach(item -> result.add(normalize(item)));
+            return result;
+        }
+        return value;
+    }
+
+    private static void put(JsonObject result, String key, Object value) {
+        Object previous = result.getValue(key);
+        result.put(key, previous instanceof JsonObject && value instanceof JsonObject ?
+                merge((JsonObject) previous, (JsonObject) value) : value);
+    }
+
+    private static JsonObject merge(JsonObject target, JsonObject source) {
+        source.forEach(field -> put(target, field.getKey(), field.getValue()));
+        return target;
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof JsonObject) {
+            return ((JsonObject) value).copy();
+        } else if (value instanceof JsonArray) {
+            return ((JsonArray) value).copy();
+        }
+        return value;
+    }
+
+    private static CachedQuery parse(String graphqlQuery) {
+        Document document;
+        Document rewritten;
+        try {
+            document = new Parser().parseDocument(graphqlQuery);
+            rewritten = new Parser().parseDocument(graphqlQuery);
+        } catch (ParseCancellationException ex) {
+            return NOT_CACHED;
+        }
+        OperationDefinition operation = null;
+        Map<String, FragmentDefinition> fragments = new HashMap<>();
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof FragmentDefinition) {
+                FragmentDefinition fragment = (FragmentDefinition) definition;
+                if (!isCacheable(fragment.getDirectives(), fragment.getSelectionSet())) {
+                    return NOT_CACHED;
+                }
+                fragments.put(fragment.getName(), fragment);
+            } else if (definition instanceof OperationDefinition) {
+                if (operation != null) {
+                    return NOT_CACHED;
+                }
+                operation = (OperationDefinition) definition;
+            }
+        }
+        if (operation == null || !isCacheable(operation.getDirectives(), operation.getSelectionSet())) {
+            return NOT_CACHED;
+        }
+        for (Definition definition : rewritten.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                addTypeNames(((OperationDefinition) definition).getSelectionSet(), false);
+            } else if (definition instanceof FragmentDefinition) {
+                addTypeNames(((FragmentDefinition) definition).getSelectionSet(), true);
+            }
+        }
+        return new CachedQuery(QueryPrinter.print(rewritten), operation, fragments, defaultValues(operation));
+    }
+
+    private static boolean isCacheable(List<Directive> directives, SelectionSet selectionSet) {
+        if (directives.stream().anyMatch(directive -> !CONDITIONAL_DIRECTIVES.contains(directive.getName()))) {
+            return false;
+        }
+        if (selectionSet == null) {
+            return true;
+        }
+        for (Selection selection : selectionSet.getSelections()) {
+            boolean cacheable = true;
+            if (selection instanceof Field) {
+                cacheable = isCacheable(((Field) selection).getDirectives(), ((Field) selection).getSelectionSet());
+            } else if (selection instanceof InlineFragment) {
+                InlineFragment fragment = (InlineFragment) selection;
+                cacheable = isCacheable(fragment.getDirectives(), fragment.getSelectionSet());
+            } else if (selection instanceof FragmentSpread) {
+                cacheable = isCacheable(((FragmentSpread) selection).getDirectives(), null);
+            }
+            if (!cacheable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addTypeNames(SelectionSet selectionSet, boolean addTypeName) {
+        if (selectionSet == null) {
+            return;
+        }
+        List<Selection> selections = selectionSet.getSelections();
+        for (Selection selection : selections) {
+            if (selection instanceof Field) {
+                addTypeNames(((Field) selection).getSelectionSet(), true);
+            } else if (selection instanceof InlineFragment) {
+                addTypeNames(((InlineFragment) selection).getSelectionSet(), false);
+            }
+        }
+        if (addTypeName && selections.stream().noneMatch(selection -> selection instanceof Field &&
+                TYPENAME.equals(((Field) selection).getName()) && ((Field) selection).getAlias() == null)) {
+            selections.add(new Field(TYPENAME));
+        }
+    }
+
+    private static Map<String, Object> defaultValues(OperationDefinition operation) {
+        Map<String, Object> defaultValues = new HashMap<>();
+        for (VariableDefinition variable : operation.getVariableDefinitions()) {
+            if (variable.getDefaultValue() != null) {
+                defaultValues.put(variable.getName(), valueOf(variable.getDefaultValue(), Collections.emptyMap()));
+            }
+        }
+        return defaultValues;
+    }
+
+    private static <V> Map<String, V> lruMap(int maxSize) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * The fields of a cached entity or root field, and the time at which they expire.
+     */
+    private static class Record {
+
+        private final JsonObject fields;
+        private final long expires;
+
+        private Record(JsonObject fields, long expires) {
+            this.fields = fields;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * A query that is prepared for caching.
+     */
+    public static class CachedQuery {
+
+        private final String rewrittenQuery;
+        private final OperationDefinition operation;
+        private final Map<String, FragmentDefinition> fragments;
+        private final Map<String, Object> defaultValues;
+
+        private CachedQuery(String rewrittenQuery, OperationDefinition operation,
+                            Map<String, FragmentDefinition> fragments, Map<String, Object> defaultValues) {
+            this.rewrittenQuery = rewrittenQuery;
+            this.operation = operation;
+            this.fragments = fragments;
+            this.defaultValues = defaultValues;
+        }
+
+        /**
+         * @return the query text with the {@code __typename} selections that are required for normalization
+         */
+        public String getRewrittenQuery() {
+            return rewrittenQuery;
+        }
+
+        /**
+         * @return {@code true} if the query is a mutation, {@code false} otherwise
+         */
+        public boolean isMutation() {
+            return operation.getOperation() == OperationDefinition.Operation.MUTATION;
+        }
+
+        private Map<String, Object> variables(JsonObject variables) {
+            Map<String, Object> values = new HashMap<>(defaultValues);
+            if (variables != null) {
+                variables.forEach(variable -> values.put(variable.getKey(), normalize(variable.getValue())));
+            }
+            return values;
+        }
+    }
+}
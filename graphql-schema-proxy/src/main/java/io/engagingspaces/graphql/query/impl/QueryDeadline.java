@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.MultiMap;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.function.Supplier;
+
+/**
+ * The point in time after which the caller of a query no longer waits for its result.
+ * <p>
+ * Deadlines travel with query requests in the {@link #HEADER} message header as the remaining time in milliseconds,
+ * which is derived from the {@link DeliveryOptions#getSendTimeout() send timeout} of the caller. Relative values are
+ * used so that clock differences between cluster nodes do not matter. On the service side the deadline is bound to
+ * the thread that executes the query (see {@link #call(QueryDeadline, Supplier)}), so it is propagated to nested
+ * service calls, and checked between field resolutions to abort expired queries early.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class QueryDeadline {
+
+    /**
+     * Name of the message header with the remaining time in milliseconds.
+     */
+    public static final String HEADER = "graphql-timeout";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates a deadline that expires after the provided timeout.
+     *
+     * @param timeoutMillis the timeout in milliseconds
+     * @return the deadline
+     */
+    public static QueryDeadline after(long timeoutMillis) {
+        return new QueryDeadline(System.nanoTime() + Math.max(0, timeoutMillis) * 1000000);
+    }
+
+    /**
+     * Creates the deadline of a query request with the provided send timeout. The deadline is the earliest of the
+     * send timeout and the deadline of the query that is currently executing on this thread, if any.
+     *
+     * @param sendTimeout the send timeout in milliseconds
+     * @return the deadline
+     */
+    public static QueryDeadline within(long sendTimeout) {
+        QueryDeadline deadline = after(sendTimeout);
+        QueryDeadline current = CURRENT.get();
+        return current != null && current.deadlineNanos - deadline.deadlineNanos < 0 ? current : deadline;
+    }
+
+    /**
+     * Reads the deadline from the message headers.
+     *
+     * @param headers the message headers
+     * @return the deadline, or {@code null} if the headers contain no (valid) deadline
+     */
+    public static QueryDeadline fromHeaders(MultiMap headers) {
+        String timeout = headers == null ? null : headers.get(HEADER);
+        if (timeout == null) {
+            return null;
+        }
+        try {
+            return after(Long.parseLong(timeout));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the deadline header to the delivery options of a query request. The deadline is the earliest of the send
+     * timeout and the deadline of the query that is currently executing on this thread, if any.
+     *
+     * @param deliveryOptions the delivery options
+     * @return the delivery options
+     */
+    public static DeliveryOptions addHeader(DeliveryOptions deliveryOptions) {
+        long timeout = deliveryOptions.getSendTimeout();
+        QueryDeadline current = CURRENT.get();
+        if (current != null) {
+            timeout = Math.min(timeout, current.remainingMillis());
+        }
+        return deliveryOptions.addHeader(HEADER, String.valueOf(timeout));
+    }
+
+    /**
+     * @return the deadline of the query that is executing on this thread, or {@code null} if there is none
+     */
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Invokes the supplier with the deadline bound to the current thread.
+     *
+     * @param deadline the deadline, or {@code null}
+     * @param supplier the supplier to invoke
+     * @param <T>      the result type
+     * @return the result of the supplier
+     */
+    public static <T> T call(QueryDeadline deadline, Supplier<T> supplier) {
+        QueryDeadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Invokes the runnable with the deadline bound to the current thread.
+     *
+     * @param deadline the deadline, or {@code null}
+     * @param runnable the runnable to invoke
+     */
+    public static void run(QueryDeadline deadline, Runnable runnable) {
+        call(deadline, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return the remaining time in milliseconds, {@code 0} if the deadline has expired
+     */
+    public long remainingMillis() {
+        return Math.max(0, (deadlineNanos - System.nanoTime()) / 1000000);
+    }
+
+    /**
+     * @return {@code true} if the deadline has expired, {@code false} otherwise
+     */
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Checks that the deadline has not expired.
+     *
+     * @throws ServiceException with failure code {@link Queryable#QUERY_TIMEOUT} if the deadline has expired
+     */
+    public void check() {
+        if (isExpired()) {
+            throw new ServiceException(Queryable.QUERY_TIMEOUT, "Query deadline exceeded");
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.language.*;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Prints GraphQL query language nodes back to their (compact) string representation.
+ * <p>
+ * The output is canonical: insignificant whitespace and comments of the original query text are dropped, so two
+ * queries that only differ in formatting print to the same string.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class QueryPrinter {
+
+    private QueryPrinter() {
+    }
+
+    /**
+     * Prints the provided query document.
+     *
+     * @param document the query document
+     * @return the printed query string
+     */
+    public static String print(Document document) {
+        Objects.requireNonNull(document, "Query document cannot be null");
+        return print(document.getDefinitions());
+    }
+
+    /**
+     * Prints the provided list of operation and fragment definitions as a single query document.
+     *
+     * @param definitions the definitions to print
+     * @return the printed query string
+     */
+    public static String print(List<? extends Definition> definitions) {
+        StringBuilder builder = new StringBuilder();
+        for (Definition definition : definitions) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            printDefinition(definition, builder);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Prints a single query language node.
+     *
+     * @param node the node to print
+     * @return the printed node
+     */
+    public static String print(Node node) {
+        StringBuilder builder = new StringBuilder();
+        printNode(node, builder);
+        return builder.toString();
+    }
+
+    private static void printNode(Node node, StringBuilder builder) {
+        if (node instanceof Document) {
+            builder.append(print((Document) node));
+        } else if (node instanceof Definition) {
+            printDefinition((Definition) node, builder);
+        } else if (node instanceof Selection) {
+            printSelection((Selection) node, builder);
+        } else if (node instanceof SelectionSet) {
+            printSelectionSet((SelectionSet) node, builder);
+        } else if (node instanceof Value) {
+            printValue((Value) node, builder);
+        } else if (node instanceof Type) {
+            printType((Type) node, builder);
+        } else if (node instanceof Argument) {
+            printArgument((Argument) node, builder);
+        } else if (node instanceof Directive) {
+            printDirective((Directive) node, builder);
+        } else if (node instanceof VariableDefinition) {
+            printVariableDefinition((VariableDefinition) node, builder);
+        } else {
+            throw new IllegalArgumentException("Failed to print. Unknown node: " + node.getClass().getName());
+        }
+    }
+
+    private static void printDefinition(Definition definition, StringBuilder builder) {
+        if (definition instanceof OperationDefinition) {
+            printOperation((OperationDefinition) definition, builder);
+        } else if (definition instanceof FragmentDefinition) {
+            FragmentDefinition fragment = (FragmentDefinition) definition;
+            builder.append("fragment ").append(fragment.getName())
+                    .append(" on ").append(fragment.getTypeCondition().getName());
+            printDirectives(fragment.getDirectives(), builder);
+            builder.append(' ');
+            printSelectionSet(fragment.getSelectionSet(), builder);
+        } else {
+            throw new IllegalArgumentException("Failed to print. Unknown definition: " +
+                    definition.getClass().getName());
+        }
+    }
+
+    private static void printOperation(OperationDefinition operation, StringBuilder builder) {
+        builder.append(operation.getOperation() == OperationDefinition.Operation.MUTATION ? "mutation" : "query");
+        if (operation.getName() != null) {
+            builder.append(' ').append(operation.getName());
+        }
+        List<VariableDefinition> variables = operation.getVariableDefinitions();
+        if (!variables.isEmpty()) {
+            builder.append('(');
+            for (int i = 0; i < variables.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                printVariableDefinition(variables.get(i), builder);
+            }
+            builder.append(')');
+        }
+        printDirectives(operation.getDirectives(), builder);
+        builder.append(' ');
+        printSelectionSet(operation.getSelectionSet(), builder);
+    }
+
+    private static void printVariableDefinition(VariableDefinition variable, StringBuilder builder) {
+        builder.append('$').append(variable.getName()).append(": ");
+        printType(variable.getType(), builder);
+        if (variable.getDefaultValue() != null) {
+            builder.append(" = ");
+            printValue(variable.getDefaultValue(), builder);
+        }
+    }
+
+    private static void printSelectionSet(SelectionSet selectionSet, StringBuilder builder) {
+        builder.append('{');
+        List<Selection> selections = selectionSet.getSelections();
+        for (int i = 0; i < selections.size(); i++) {
+            builder.append(i == 0 ? " " : ", ");
+            printSelection(selections.get(i), builder);
+        }
+        builder.append(" }");
+    }
+
+    private static void printSelection(Selection selection, StringBuilder builder) {
+        if (selection instanceof Field) {
+            Field field = (Field) selection;
+            if (field.getAlias() != null) {
+                builder.append(field.getAlias()).append(": ");
+            }
+            builder.append(field.getName());
+            printArguments(field.getArguments(), builder);
+            printDirectives(field.getDirectives(), builder);
+            if (field.getSelectionSet() != null && !field.getSelectionSet().getSelections().isEmpty()) {
+                builder.append(' ');
+                printSelectionSet(field.getSelectionSet(), builder);
+            }
+        } else if (selection instanceof FragmentSpread) {
+            FragmentSpread spread = (FragmentSpread) selection;
+            builder.append("...").append(spread.getName());
+            printDirectives(spread.getDirectives(), builder);
+        } else if (selection instanceof InlineFragment) {
+            InlineFragment fragment = (InlineFragment) selection;
+            builder.append("...");
+            if (fragment.getTypeCondition() != null) {
+                builder.append(" on ").append(fragment.getTypeCondition().getName());
+            }
+            printDirectives(fragment.getDirectives(), builder);
+            builder.append(' ');
+            printSelectionSet(fragment.getSelectionSet(), builder);
+        } else {
+            throw new IllegalArgumentException("Failed to print. Unknown selection: " +
+                    selection.getClass().getName());
+        }
+    }
+
+    private static void printArguments(List<Argument> arguments, StringBuilder builder) {
+        if (arguments == null || arguments.isEmpty()) {
+            return;
+        }
+        builder.append('(');
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            printArgument(arguments.get(i), builder);
+        }
+        builder.append(')');
+    }
+
+    private static void printArgument(Argument argument, StringBuilder builder) {
+        builder.append(argument.getName()).append(": ");
+        printValue(argument.getValue(), builder);
+    }
+
+    private static void printDirectives(List<Directive> directives, StringBuilder builder) {
+        if (directives == null) {
+            return;
+        }
+        for (Directive directive : directives) {
+            builder.append(' ');
+            printDirective(directive, builder);
+        }
+    }
+
+    private static void printDirective(Directive directive, StringBuilder builder) {
+        builder.append('@').append(directive.getName());
+        printArguments(directive.getArguments(), builder);
+    }
+
+    private static void printType(Type type, StringBuilder builder) {
+        if (type instanceof NonNullType) {
+            printType(((NonNullType) type).getType(), builder);
+            builder.append('!');
+        } else if (type instanceof ListType) {
+            builder.append('[');
+            printType(((ListType) type).getType(), builder);
+            builder.append(']');
+        } else {
+            builder.append(((TypeName) type).getName());
+        }
+    }
+
+    private static void printValue(Value value, StringBuilder builder) {
+        if (value instanceof VariableReference) {
+            builder.append('$').append(((VariableReference) value).getName());
+        } else if (value instanceof IntValue) {
+            builder.append(((IntValue) value).getValue());
+        } else if (value instanceof FloatValue) {
+            builder.append(((FloatValue) value).getValue().toString());
+        } else if (value instanceof BooleanValue) {
+            builder.append(((BooleanValue) value).isValue());
+        } else if (value instanceof EnumValue) {
+            builder.append(((EnumValue) value).getName());
+        } else if (value instanceof StringValue) {
+            printString(((StringValue) value).getValue(), builder);
+        } else if (value instanceof ArrayValue) {
+            builder.append('[');
+            List<Value> values = ((ArrayValue) value).getValues();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                printValue(values.get(i), builder);
+            }
+            builder.append(']');
+        } else if (value instanceof ObjectValue) {
+            builder.append('{');
+            List<ObjectField> fields = ((ObjectValue) value).getObjectFields();
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(fields.get(i).getName()).append(": ");
+                printValue(fields.get(i).getValue(), builder);
+            }
+            builder.append('}');
+        } else {
+            throw new IllegalArgumentException("Failed to print. Unknown value: " + value.getClass().getName());
+        }
+    }
+
+    private static void printString(String value, StringBuilder builder) {
+        // the parser only trims the surrounding quotes, so escape sequences are still present in the value
+        builder.append('"').append(value).append('"');
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.QueryResult.ErrorLocation;
+import io.engagingspaces.graphql.query.QueryResult.QueryError;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link QueryResult}, {@link QueryError} and {@link ErrorLocation}.
+ * <p>
+ * Lengths, counts and integral numbers are written as variable-length integers, and every value is preceded by a
+ * single type tag byte. Optionally a field-name dictionary is built while encoding: the first occurrence of a field
+ * name is written in full and assigned an index, and every later occurrence is written as a reference to that
+ * index. This removes most of the overhead of the repeated keys in list results. The dictionary is part of the
+ * encoded message, so no state needs to be shared between sender and receiver.
+ * <p>
+ * {@link BigInteger} and {@link BigDecimal} values (e.g. of the {@code BigInteger} and {@code BigDecimal} scalars)
+ * are written as decimal strings with their own type tag, so they are decoded to the same value without loss of
+ * precision.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public final class QueryResultBinaryFormat {
+
+    private static final byte VERSION = 1;
+    private static final int FLAG_SUCCEEDED = 1;
+    private static final int FLAG_DICTIONARY = 2;
+    private static final int FLAG_EXTENSIONS = 4;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_TRUE = 1;
+    private static final byte TYPE_FALSE = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_STRING = 7;
+    private static final byte TYPE_OBJECT = 8;
+    private static final byte TYPE_ARRAY = 9;
+    private static final byte TYPE_BIG_INTEGER = 10;
+    private static final byte TYPE_BIG_DECIMAL = 11;
+
+    private QueryResultBinaryFormat() {
+    }
+
+    /**
+     * Encodes the query result and appends it to the buffer.
+     *
+     * @param buffer      the buffer to write to
+     * @param queryResult the query result to encode
+     * @param dictionary  {@code true} to encode repeated field names as dictionary references
+     */
+    public static void encode(Buffer buffer, QueryResult queryResult, boolean dictionary) {
+        Encoder encoder = new Encoder(buffer, dictionary);
+        buffer.appendByte(VERSION);
+        buffer.appendByte((byte) ((queryResult.isSucceeded() ? FLAG_SUCCEEDED : 0) |
+                (dictionary ? FLAG_DICTIONARY : 0) | (queryResult.getExtensions() != null ? FLAG_EXTENSIONS : 0)));
+        encoder.writeValue(queryResult.getData());
+        encoder.writeVarInt(queryResult.getErrors().size());
+        for (QueryError error : queryResult.getErrors()) {
+            encoder.writeNullableString(error.getErrorType());
+            encoder.writeNullableString(error.getMessage());
+            encoder.writeVarInt(error.getLocations().size());
+            for (ErrorLocation location : error.getLocations()) {
+                encoder.writeVarInt(location.getLine());
+                encoder.writeVarInt(location.getColumn());
+            }
+        }
+        if (queryResult.getExtensions() != null) {
+            encoder.writeValue(queryResult.getExtensions());
+        }
+    }
+
+    /**
+     * Decodes the query result that starts at the provided position in the buffer.
+     *
+     * @param pos    the position of the encoded query result
+     * @param buffer the buffer to read from
+     * @return the decoded query result
+     */
+    public static QueryResult decode(int pos, Buffer buffer) {
+        Decoder decoder = new Decoder(buffer, pos);
+        byte version = decoder.readByte();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported query result encoding version: " + version);
+        }
+        int flags = decoder.readByte();
+        decoder.dictionary = (flags & FLAG_DICTIONARY) != 0 ? new ArrayList<>() : null;
+        Object data = decoder.readValue();
+        int errorCount = decoder.readVarInt();
+        List<QueryError> errors = new ArrayList<>(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+            String errorType = decoder.readNullableString();
+            String message = decoder.readNullableString();
+            int locationCount = decoder.readVarInt();
+            List<ErrorLocation> locations = new ArrayList<>(locationCount);
+            for (int j = 0; j < locationCount; j++) {
+                locations.add(new ErrorLocation(decoder.readVarInt(), decoder.readVarInt()));
+            }
+            errors.add(new QueryError(errorType, message, locations));
+        }
+        Object extensions = (flags & FLAG_EXTENSIONS) != 0 ? decoder.readValue() : null;
+        return new QueryResult(data == null ? null : new JsonObject(asMap(data)),
+                (flags & FLAG_SUCCEEDED) != 0, errors, extensions == null ? null : new JsonObject(asMap(extensions)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static final class Encoder {
+
+        private final Buffer buffer;
+        private final Map<String, Integer> dictionary;
+
+        private Encoder(Buffer buffer, boolean dictionary) {
+            this.buffer = buffer;
+            this.dictionary = dictionary ? new HashMap<>() : null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeValue(Object value) {
+            if (value == null) {
+                buffer.appendByte(TYPE_NULL);
+            } else if (value instanceof Boolean) {
+                buffer.appendByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                buffer.appendByte(TYPE_INT);
+                writeVarLong(zigZag(((Number) value).intValue()));
+            } else if (value instanceof Long) {
+                buffer.appendByte(TYPE_LONG);
+                writeVarLong(zigZag((Long) value));
+            } else if (value instanceof Float) {
+                buffer.appendByte(TYPE_FLOAT);
+                buffer.appendFloat((Float) value);
+            } else if (value instanceof BigInteger) {
+                buffer.appendByte(TYPE_BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                buffer.appendByte(TYPE_BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof Number) {
+                buffer.appendByte(TYPE_DOUBLE);
+                buffer.appendDouble(((Number) value).doubleValue());
+            } else if (value instanceof CharSequence) {
+                buffer.appendByte(TYPE_STRING);
+                writeString(value.toString());
+            } else if (value instanceof Enum) {
+                buffer.appendByte(TYPE_STRING);
+                writeString(((Enum) value).name());
+            } else if (value instanceof JsonObject) {
+                writeObject(((JsonObject) value).getMap());
+            } else if (value instanceof Map) {
+                writeObject((Map<String, Object>) value);
+            } else if (value instanceof JsonArray) {
+                writeArray(((JsonArray) value).getList());
+            } else if (value instanceof List) {
+                writeArray((List<Object>) value);
+            } else {
+                throw new IllegalArgumentException("Cannot encode value of type: " + value.getClass().getName());
+            }
+        }
+
+        private void writeObject(Map<String, Object> map) {
+            buffer.appendByte(TYPE_OBJECT);
+            writeVarInt(map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writeFieldName(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeArray(List<Object> list) {
+            buffer.appendByte(TYPE_ARRAY);
+            writeVarInt(list.size());
+            for (Object item : list) {
+                writeValue(item);
+            }
+        }
+
+        private void writeFieldName(String name) {
+            if (dictionary == null) {
+                writeString(name);
+                return;
+            }
+            Integer index = dictionary.get(name);
+            if (index != null) {
+                writeVarInt(index << 1 | 1);
+            } else {
+                dictionary.put(name, dictionary.size());
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length << 1);
+                buffer.appendBytes(bytes);
+            }
+        }
+
+        private void writeNullableString(String value) {
+            if (value == null) {
+                buffer.appendByte(TYPE_NULL);
+            } else {
+                buffer.appendByte(TYPE_STRING);
+                writeString(value);
+            }
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            buffer.appendBytes(bytes);
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                buffer.appendByte((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.appendByte((byte) value);
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final Buffer buffer;
+        private int pos;
+        private List<String> dictionary;
+
+        private Decoder(Buffer buffer, int pos) {
+            this.buffer = buffer;
+            this.pos = pos;
+        }
+
+        private Object readValue() {
+            byte type = readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    return null;
+                case TYPE_TRUE:
+                    return Boolean.TRUE;
+                case TYPE_FALSE:
+                    return Boolean.FALSE;
+                case TYPE_INT:
+                    return (int) unZigZag(readVarLong());
+                case TYPE_LONG:
+                    return unZigZag(readVarLong());
+                case TYPE_FLOAT:
+                    float floatValue = buffer.getFloat(pos);
+                    pos += 4;
+                    return floatValue;
+                case TYPE_DOUBLE:
+                    double doubleValue = buffer.getDouble(pos);
+                    pos += 8;
+                    return doubleValue;
+                case TYPE_STRING:
+                    return readString(readVarInt());
+                case TYPE_BIG_INTEGER:
+                    return new BigInteger(readString(readVarInt()));
+                case TYPE_BIG_DECIMAL:
+                    return new BigDecimal(readString(readVarInt()));
+                case TYPE_OBJECT:
+                    int fieldCount = readVarInt();
+                    Map<String, Object> map = new LinkedHashMap<>(Math.max(16, fieldCount * 4 / 3 + 1));
+                    for (int i = 0; i < fieldCount; i++) {
+                        String name = readFieldName();
+                        map.put(name, readValue());
+                    }
+                    return map;
+                case TYPE_ARRAY:
+                    int itemCount = readVarInt();
+                    List<Object> list = new ArrayList<>(itemCount);
+                    for (int i = 0; i < itemCount; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                default:
+                    throw new IllegalStateException("Invalid value type in encoded query result: " + type);
+            }
+        }
+
+        private String readFieldName() {
+            if (dictionary == null) {
+                return readString(readVarInt());
+            }
+            int header = readVarInt();
+            if ((header & 1) != 0) {
+                return dictionary.get(header >>> 1);
+            }
+            String name = readString(header >>> 1);
+            dictionary.add(name);
+            return name;
+        }
+
+        private String readNullableString() {
+            return readByte() == TYPE_NULL ? null : readString(readVarInt());
+        }
+
+        private String readString(int length) {
+            String value = buffer.getString(pos, pos + length, "UTF-8");
+            pos += length;
+            return value;
+        }
+
+        private byte readByte() {
+            return buffer.getByte(pos++);
+        }
+
+        private int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
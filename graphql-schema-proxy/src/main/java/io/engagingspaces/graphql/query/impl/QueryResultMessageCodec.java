@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Event bus message codec for {@link QueryResult}.
+ * <p>
+ * Query results must not be modified once they are sent, so in local delivery the result instance is passed by
+ * reference instead of copying the result tree. Only when the message is sent to another cluster node is the result
+ * encoded to its wire format. The encoding is cached on the result, so sending the same result to multiple nodes
+ * only encodes it once.
+ * <p>
+ * By default results are sent in the compact {@link QueryResultBinaryFormat} with a field-name dictionary, but the
+ * codec can also be configured to use the binary format without dictionary, or plain json. The format is recorded in
+ * every encoded message, so nodes can decode results regardless of their own configuration. To use a non-default
+ * configuration, register the codec with {@link #register(Vertx, QueryResultMessageCodec)} before creating any
+ * service proxies or registering services.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryResultMessageCodec implements MessageCodec<QueryResult, QueryResult> {
+
+    /**
+     * The name of the codec.
+     */
+    public static final String CODEC_NAME = "graphql-query-result";
+
+    /**
+     * Name of the request header with which a client announces that it accepts query results with this codec. The
+     * value is the {@link #CODEC_NAME}. Services reply with the json representation of the result to requests that
+     * do not carry the header, such as those of the generated service proxy and of non-Java clients.
+     */
+    public static final String ACCEPT_HEADER = "graphql-accept-codec";
+
+    private static final byte FORMAT_JSON = 0;
+    private static final byte FORMAT_BINARY = 1;
+    private static final String BINARY_DICTIONARY = "binary-dictionary";
+    private static final String BINARY_PLAIN = "binary";
+
+    private final boolean binary;
+    private final boolean dictionary;
+
+    /**
+     * Creates a codec that uses the binary wire format with a field-name dictionary.
+     */
+    public QueryResultMessageCodec() {
+        this(true, true);
+    }
+
+    /**
+     * Creates a codec with the provided wire format.
+     *
+     * @param binary     {@code true} to use the binary wire format, {@code false} to use json
+     * @param dictionary {@code true} to use a field-name dictionary in the binary format
+     */
+    public QueryResultMessageCodec(boolean binary, boolean dictionary) {
+        this.binary = binary;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Registers the codec as default codec for {@link QueryResult} on the event bus, if not already registered.
+     *
+     * @param vertx the vert.x instance
+     */
+    public static void register(Vertx vertx) {
+        register(vertx, new QueryResultMessageCodec());
+    }
+
+    /**
+     * Registers the provided codec as default codec for {@link QueryResult} on the event bus, if no codec is
+     * registered yet.
+     *
+     * @param vertx the vert.x instance
+     * @param codec the codec to register
+     */
+    public static void register(Vertx vertx, QueryResultMessageCodec codec) {
+        try {
+            vertx.eventBus().registerDefaultCodec(QueryResult.class, codec);
+        } catch (IllegalStateException ex) {
+            // already registered
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, QueryResult queryResult) {
+        if (binary) {
+            // the binary encoding is cached on the result as well, keyed by the dictionary setting
+            Buffer encoded = queryResult.toBuffer(dictionary ? BINARY_DICTIONARY : BINARY_PLAIN, this::encodeBinary);
+            buffer.appendByte(FORMAT_BINARY).appendBuffer(encoded);
+        } else {
+            // same layout as JsonObject.writeToBuffer, but re-uses the cached encoding of the result
+            Buffer encoded = queryResult.toBuffer();
+            buffer.appendByte(FORMAT_JSON).appendInt(encoded.length()).appendBuffer(encoded);
+        }
+    }
+
+    private Buffer encodeBinary(QueryResult queryResult) {
+        Buffer encoded = Buffer.buffer();
+        QueryResultBinaryFormat.encode(encoded, queryResult, dictionary);
+        return encoded;
+    }
+
+    @Override
+    public QueryResult decodeFromWire(int pos, Buffer buffer) {
+        // the message body is the last part of the wire buffer
+        byte format = buffer.getByte(pos);
+        if (format == FORMAT_BINARY) {
+            return QueryResultBinaryFormat.decode(pos + 1, buffer).withWireSize(buffer.length() - pos);
+        }
+        JsonObject json = new JsonObject();
+        json.readFromBuffer(pos + 1, buffer);
+        return new QueryResult(json).withWireSize(buffer.length() - pos);
+    }
+
+    @Override
+    public QueryResult transform(QueryResult queryResult) {
+        return queryResult;
+    }
+
+    @Override
+    public String name() {
+        return CODEC_NAME;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
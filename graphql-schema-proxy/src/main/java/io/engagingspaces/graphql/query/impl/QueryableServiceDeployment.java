@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Verticle that registers a {@link Queryable} service at the same address on multiple event loops.
+ * <p>
+ * Every instance is deployed as a child verticle with its own event loop context, and registers its own service
+ * handler, so that the event bus (and the {@link LocalServiceRegistry}) distribute the queries to the address over
+ * the instances. All instances share the same service, and thereby the same schema and query executor. Undeploying
+ * this verticle undeploys all instances.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryableServiceDeployment extends AbstractVerticle {
+
+    private final String address;
+    private final Queryable service;
+    private final int instances;
+
+    /**
+     * Creates a new service deployment.
+     *
+     * @param address   the address to register the service at
+     * @param service   the service implementation, that must be thread-safe
+     * @param instances the number of service handlers to register
+     */
+    public QueryableServiceDeployment(String address, Queryable service, int instances) {
+        Objects.requireNonNull(address, "Service address cannot be null");
+        Objects.requireNonNull(service, "Queryable service cannot be null");
+        if (instances < 1) {
+            throw new IllegalArgumentException("Number of instances must be positive");
+        }
+        this.address = address;
+        this.service = service;
+        this.instances = instances;
+    }
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        List<Future<String>> deployments = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            Future<String> deployment = Future.future();
+            vertx.deployVerticle(new ServiceInstance(), deployment.completer());
+            deployments.add(deployment);
+        }
+        CompositeFutures.all(deployments).setHandler(res -> {
+            if (res.succeeded()) {
+                startFuture.complete();
+            } else {
+                startFuture.fail(res.cause());
+            }
+        });
+    }
+
+    private class ServiceInstance extends AbstractVerticle {
+
+        private MessageConsumer<JsonObject> consumer;
+
+        @Override
+        public void start() {
+            consumer = Queryable.registerService(vertx, address, service);
+        }
+
+        @Override
+        public void stop(Future<Void> stopFuture) {
+            consumer.unregister(stopFuture.completer());
+        }
+    }
+}
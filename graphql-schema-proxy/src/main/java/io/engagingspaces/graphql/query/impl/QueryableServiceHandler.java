@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.IncrementalQueryable;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.impl.IncrementalDelivery;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ProxyHandler;
+import io.vertx.serviceproxy.ServiceException;
+import io.vertx.serviceproxy.ServiceExceptionMessageCodec;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Event bus proxy handler for {@link Queryable} service implementations.
+ * <p>
+ * Handles the same messages as the generated {@code QueryableVertxProxyHandler}. Queries whose request carries the
+ * {@link QueryResultMessageCodec#ACCEPT_HEADER} are replied with the {@link QueryResult} itself rather than its json
+ * representation. With the {@link QueryResultMessageCodec} this passes results by reference in local delivery, and
+ * only encodes them when sent to another cluster node. Other requests, such as those of the generated proxy, are
+ * replied with json, as by the generated handler.
+ * <p>
+ * The {@link QueryDeadline} of query requests is bound to the thread that invokes the service, so that service
+ * implementations can abort execution once the caller has given up. Requests that arrive after their deadline are
+ * rejected without invoking the service.
+ * <p>
+ * Registered handlers are added to the {@link LocalServiceRegistry} of the vert.x instance, so that proxies in the
+ * same instance can invoke the service directly, without encoding requests and sending them on the event bus (see
+ * {@link #invoke(QueryDeadline, BiConsumer, Handler)}).
+ * <p>
+ * Handlers that are not top-level are closed when idle for longer than their timeout. The idle timeouts of all
+ * handlers are tracked by the shared {@link IdleTimeoutWheel} of the vert.x instance, so the number of timers does not
+ * grow with the number of registered handlers.
+ * <p>
+ * Results of {@code queryStream} requests are not sent as a single reply, but in ordered chunks to the stream
+ * address of the caller (see {@link ChunkedResultSender}), so that large results do not have to fit in one message.
+ * This bounds the size of the messages and the memory of the receiver, but the service still encodes the complete
+ * result before the first chunk is sent, so it briefly holds both the result and its encoding.
+ * The reply to {@code queryIncremental} requests carries the initial payload of the query, and the payloads of its
+ * deferred fragments are sent to the incremental address of the caller (see {@link IncrementalDelivery}). Services
+ * that are not an {@link IncrementalQueryable} execute these queries without deferring fragments.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryableServiceHandler extends ProxyHandler {
+
+    /**
+     * The default timeout in seconds after which an idle service instance is closed.
+     */
+    public static final long DEFAULT_CONNECTION_TIMEOUT = 5 * 60;
+
+    private final Vertx vertx;
+    private final Queryable service;
+    private final boolean topLevel;
+    private final long timeoutSeconds;
+    private IdleTimeoutWheel.Timeout idleTimeout;
+    private String address;
+    private Context context;
+    private volatile long lastAccessed;
+
+    /**
+     * Creates a new top-level proxy handler for the service.
+     *
+     * @param vertx   the vert.x instance
+     * @param service the service implementation
+     */
+    public QueryableServiceHandler(Vertx vertx, Queryable service) {
+        this(vertx, service, true, DEFAULT_CONNECTION_TIMEOUT);
+    }
+
+    /**
+     * Creates a new proxy handler for the service.
+     *
+     * @param vertx          the vert.x instance
+     * @param service        the service implementation
+     * @param topLevel       {@code true} for top-level services, that are never closed when idle
+     * @param timeoutSeconds the idle timeout in seconds, or {@code -1} for no timeout
+     */
+    public QueryableServiceHandler(Vertx vertx, Queryable service, boolean topLevel, long timeoutSeconds) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(service, "Queryable service cannot be null");
+        this.vertx = vertx;
+        this.service = service;
+        this.topLevel = topLevel;
+        this.timeoutSeconds = timeoutSeconds;
+        try {
+            vertx.eventBus().registerDefaultCodec(ServiceException.class, new ServiceExceptionMessageCodec());
+        } catch (IllegalStateException ex) {
+            // already registered
+        }
+        QueryResultMessageCodec.register(vertx);
+        accessed();
+    }
+
+    @Override
+    public MessageConsumer<JsonObject> registerHandler(String address) {
+        MessageConsumer<JsonObject> consumer = vertx.eventBus().<JsonObject>consumer(address).handler(this);
+        setConsumer(consumer);
+        this.address = address;
+        this.context = Vertx.currentContext() == null ? vertx.getOrCreateContext() : Vertx.currentContext();
+        LocalServiceRegistry.forVertx(vertx).register(address, this);
+        if (timeoutSeconds != -1 && !topLevel) {
+            Context handlerContext = context;
+            this.idleTimeout = IdleTimeoutWheel.forVertx(vertx).schedule(timeoutSeconds * 1000,
+                    () -> lastAccessed, () -> handlerContext.runOnContext(v -> timedOut()));
+        }
+        return consumer;
+    }
+
+    @Override
+    public void close() {
+        if (idleTimeout != null) {
+            idleTimeout.cancel();
+        }
+        if (address != null) {
+            LocalServiceRegistry.forVertx(vertx).unregister(address, this);
+        }
+        super.close();
+    }
+
+    /**
+     * @return {@code true} if the handler is registered on the event bus, {@code false} otherwise
+     */
+    public boolean isRegistered() {
+        return !closed && consumer != null && consumer.isRegistered();
+    }
+
+    /**
+     * Invokes the service directly on the context at which the handler is registered, with the same deadline
+     * checks and failure codes as requests that are received on the event bus. The result handler is invoked on
+     * the thread that completes the service call.
+     *
+     * @param deadline      the deadline of the query, or {@code null}
+     * @param call          the service call, that is invoked with the service and the result handler
+     * @param resultHandler the result handler
+     * @param <T>           the result type
+     */
+    public <T> void invoke(QueryDeadline deadline, BiConsumer<Queryable, Handler<AsyncResult<T>>> call,
+                           Handler<AsyncResult<T>> resultHandler) {
+        Objects.requireNonNull(context, "Service handler is not registered");
+        context.runOnContext(v -> {
+            accessed();
+            if (deadline != null && deadline.isExpired()) {
+                resultHandler.handle(Future.failedFuture(
+                        new ServiceException(Queryable.QUERY_TIMEOUT, "Query deadline exceeded")));
+                return;
+            }
+            try {
+                QueryDeadline.run(deadline, () -> call.accept(service, res -> {
+                    if (res.failed() && !(res.cause() instanceof ServiceException)) {
+                        resultHandler.handle(Future.failedFuture(new ServiceException(-1, res.cause().getMessage())));
+                    } else {
+                        resultHandler.handle(res);
+                    }
+                }));
+            } catch (RuntimeException ex) {
+                resultHandler.handle(Future.failedFuture(new ServiceException(500, ex.getMessage())));
+            }
+        });
+    }
+
+    @Override
+    public void handle(Message<JsonObject> msg) {
+        try {
+            JsonObject json = msg.body();
+            String action = msg.headers().get("action");
+            if (action == null) {
+                throw new IllegalStateException("action not specified");
+            }
+            accessed();
+            QueryDeadline deadline = QueryDeadline.fromHeaders(msg.headers());
+            if (deadline != null && deadline.isExpired()) {
+                msg.reply(new ServiceException(Queryable.QUERY_TIMEOUT, "Query deadline exceeded"));
+                return;
+            }
+            switch (action) {
+                case "query":
+                    QueryDeadline.run(deadline, () ->
+                            service.query(json.getString("graphqlQuery"), createHandler(msg)));
+                    break;
+                case "queryWithVariables":
+                    QueryDeadline.run(deadline, () ->
+                            service.queryWithVariables(json.getString("graphqlQuery"), json.getJsonObject("variables"),
+                                    createHandler(msg)));
+                    break;
+                case "queryStream":
+                    if (msg.headers().get(ChunkedResultSender.STREAM_ADDRESS_HEADER) == null) {
+                        throw new IllegalStateException("stream address not specified");
+                    }
+                    QueryDeadline.run(deadline, () ->
+                            service.queryWithVariables(json.getString("graphqlQuery"), json.getJsonObject("variables"),
+                                    createStreamHandler(msg)));
+                    break;
+                case "queryIncremental":
+                    String incrementalAddress = msg.headers().get(IncrementalDelivery.ADDRESS_HEADER);
+                    if (incrementalAddress == null) {
+                        throw new IllegalStateException("incremental address not specified");
+                    }
+                    QueryDeadline.run(deadline, () ->
+                            queryIncremental(json.getString("graphqlQuery"), json.getJsonObject("variables"),
+                                    incrementalAddress, createHandler(msg)));
+                    break;
+                case "queryPersisted":
+                    QueryDeadline.run(deadline, () ->
+                            service.queryPersisted(json.getString("queryHash"), json.getString("graphqlQuery"),
+                                    json.getJsonObject("variables"), createHandler(msg)));
+                    break;
+                case "resolveType":
+                    service.resolveType(json.getString("typeResolverId"), json.getJsonObject("typeHolder"),
+                            createHandler(msg));
+                    break;
+                case "fetchData":
+                    service.fetchData(json.getString("dataFetcherId"), json.getJsonObject("dataFetchingEnvironment"),
+                            createHandler(msg));
+                    break;
+                case "close":
+                    service.close();
+                    close();
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid action: " + action);
+            }
+        } catch (Throwable t) {
+            msg.reply(new ServiceException(500, t.getMessage()));
+            throw t;
+        }
+    }
+
+    private void queryIncremental(String graphqlQuery, JsonObject variables, String incrementalAddress,
+                                  Handler<AsyncResult<QueryResult>> resultHandler) {
+        IncrementalQueryable.queryIncremental(service, graphqlQuery, variables,
+                increment -> vertx.eventBus().send(incrementalAddress, increment), resultHandler);
+    }
+
+    private void timedOut() {
+        if (!closed) {
+            service.close();
+            close();
+        }
+    }
+
+    private void accessed() {
+        this.lastAccessed = System.nanoTime();
+    }
+
+    private Handler<AsyncResult<QueryResult>> createStreamHandler(Message<JsonObject> msg) {
+        Handler<AsyncResult<QueryResult>> failureHandler = createHandler(msg);
+        return res -> {
+            if (res.failed()) {
+                failureHandler.handle(res);
+            } else {
+                ChunkedResultSender.forRequest(vertx, msg, res.result().toBuffer()).start(msg);
+            }
+        };
+    }
+
+    private static <T> Handler<AsyncResult<T>> createHandler(Message<JsonObject> msg) {
+        return res -> {
+            if (res.failed()) {
+                if (res.cause() instanceof ServiceException) {
+                    msg.reply(res.cause());
+                } else {
+                    msg.reply(new ServiceException(-1, res.cause().getMessage()));
+                }
+            } else if (res.result() instanceof QueryResult && !acceptsQueryResult(msg)) {
+                msg.reply(((QueryResult) res.result()).toJson());
+            } else {
+                msg.reply(res.result());
+            }
+        };
+    }
+
+    private static boolean acceptsQueryResult(Message<JsonObject> msg) {
+        return QueryResultMessageCodec.CODEC_NAME.equals(msg.headers().get(QueryResultMessageCodec.ACCEPT_HEADER));
+    }
+}
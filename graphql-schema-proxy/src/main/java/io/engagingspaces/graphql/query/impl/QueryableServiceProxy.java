@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import io.vertx.serviceproxy.ServiceExceptionMessageCodec;
+
+import java.util.Objects;
+
+/**
+ * Event bus service proxy for {@link Queryable} services that are registered with {@link QueryableServiceHandler}.
+ * <p>
+ * Requests use the same message format as the generated {@code QueryableVertxEBProxy}, but query requests carry the
+ * {@link QueryResultMessageCodec#ACCEPT_HEADER}, so results are received as {@link QueryResult} instances (see
+ * {@link QueryResultMessageCodec}) and local delivery does not copy the result. Json result bodies from services
+ * that are registered with the generated proxy handler are supported as well.
+ * <p>
+ * Query requests carry the send timeout of the delivery options as {@link QueryDeadline}, so that the service can
+ * abort queries whose result would no longer be received.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryableServiceProxy implements Queryable {
+
+    private final Vertx vertx;
+    private final String address;
+    private final DeliveryOptions options;
+    private boolean closed;
+
+    /**
+     * Creates a new service proxy.
+     *
+     * @param vertx   the vert.x instance
+     * @param address the address of the service
+     * @param options the delivery options to apply to service invocations, or {@code null}
+     */
+    public QueryableServiceProxy(Vertx vertx, String address, DeliveryOptions options) {
+        Objects.requireNonNull(vertx, "Vertx cannot be null");
+        Objects.requireNonNull(address, "Service address cannot be null");
+        this.vertx = vertx;
+        this.address = address;
+        this.options = options;
+        try {
+            vertx.eventBus().registerDefaultCodec(ServiceException.class, new ServiceExceptionMessageCodec());
+        } catch (IllegalStateException ex) {
+            // already registered
+        }
+        QueryResultMessageCodec.register(vertx);
+    }
+
+    @Override
+    public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+        JsonObject json = new JsonObject()
+                .put("graphqlQuery", graphqlQuery);
+        sendQuery("query", json, resultHandler);
+    }
+
+    @Override
+    public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                   Handler<AsyncResult<QueryResult>> resultHandler) {
+        JsonObject json = new JsonObject()
+                .put("graphqlQuery", graphqlQuery)
+                .put("variables", variables);
+        sendQuery("queryWithVariables", json, resultHandler);
+    }
+
+    @Override
+    public void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                               Handler<AsyncResult<QueryResult>> resultHandler) {
+        JsonObject json = new JsonObject()
+                .put("queryHash", queryHash)
+                .put("graphqlQuery", graphqlQuery)
+                .put("variables", variables);
+        sendQuery("queryPersisted", json, resultHandler);
+    }
+
+    @Override
+    public void resolveType(String typeResolverId, JsonObject typeHolder,
+                            Handler<AsyncResult<JsonObject>> resultHandler) {
+        JsonObject json = new JsonObject()
+                .put("typeResolverId", typeResolverId)
+                .put("typeHolder", typeHolder);
+        send("resolveType", json, resultHandler);
+    }
+
+    @Override
+    public void fetchData(String dataFetcherId, JsonObject dataFetchingEnvironment,
+                          Handler<AsyncResult<JsonObject>> resultHandler) {
+        JsonObject json = new JsonObject()
+                .put("dataFetcherId", dataFetcherId)
+                .put("dataFetchingEnvironment", dataFetchingEnvironment);
+        send("fetchData", json, resultHandler);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            throw new IllegalStateException("Proxy is closed");
+        }
+        closed = true;
+        vertx.eventBus().send(address, new JsonObject(), createDeliveryOptions("close"));
+    }
+
+    private void sendQuery(String action, JsonObject json, Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (closed) {
+            resultHandler.handle(Future.failedFuture(new IllegalStateException("Proxy is closed")));
+            return;
+        }
+        DeliveryOptions deliveryOptions = QueryDeadline.addHeader(createDeliveryOptions(action))
+                .addHeader(QueryResultMessageCodec.ACCEPT_HEADER, QueryResultMessageCodec.CODEC_NAME);
+        vertx.eventBus().send(address, json, deliveryOptions, res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(toQueryResult(res.result())));
+            }
+        });
+    }
+
+    private <T> void send(String action, JsonObject json, Handler<AsyncResult<T>> resultHandler) {
+        if (closed) {
+            resultHandler.handle(Future.failedFuture(new IllegalStateException("Proxy is closed")));
+            return;
+        }
+        vertx.eventBus().<T>send(address, json, createDeliveryOptions(action), res -> {
+            if (res.failed()) {
+                resultHandler.handle(Future.failedFuture(res.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(res.result().body()));
+            }
+        });
+    }
+
+    private DeliveryOptions createDeliveryOptions(String action) {
+        DeliveryOptions deliveryOptions = options == null ? new DeliveryOptions() : new DeliveryOptions(options);
+        return deliveryOptions.addHeader("action", action);
+    }
+
+    private static QueryResult toQueryResult(Message<Object> message) {
+        Object body = message.body();
+        if (body == null || body instanceof QueryResult) {
+            return (QueryResult) body;
+        }
+        return new QueryResult((JsonObject) body);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema;
+
+import io.vertx.codegen.annotations.VertxGen;
+
+/**
+ * The strategies that can be used to execute the operations of a GraphQL schema.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@VertxGen
+public enum ExecutionStrategyType {
+
+    /**
+     * Resolves sibling fields one after another on the calling thread.
+     */
+    Serial,
+
+    /**
+     * Resolves sibling fields in parallel on the executor that is configured in the schema definition options.
+     */
+    Parallel
+}
@@ -17,21 +17,29 @@
 package io.engagingspaces.graphql.schema;
 
 import graphql.ExecutionResult;
-import graphql.GraphQL;
 import graphql.GraphQLError;
 import graphql.schema.GraphQLFieldDefinition;
 import graphql.schema.GraphQLSchema;
 import io.engagingspaces.graphql.marshaller.SchemaMarshaller;
+import io.engagingspaces.graphql.marshaller.SchemaMarshallerOptions;
+import io.engagingspaces.graphql.query.IncrementalQueryable;
 import io.engagingspaces.graphql.query.QueryResult;
 import io.engagingspaces.graphql.query.QueryResult.ErrorLocation;
 import io.engagingspaces.graphql.query.QueryResult.QueryError;
 import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.engagingspaces.graphql.schema.impl.DeferredQuery;
+import io.engagingspaces.graphql.schema.impl.IncrementalDelivery;
+import io.engagingspaces.graphql.schema.impl.QueryExecutionResult;
+import io.engagingspaces.graphql.schema.impl.QueryExecutor;
+import io.engagingspaces.graphql.schema.impl.ResultSerializer;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonObject;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -41,7 +49,7 @@ import java.util.stream.Collectors;
  *
  * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
  */
-public interface SchemaDefinition extends Queryable {
+public interface SchemaDefinition extends Queryable, IncrementalQueryable {
 
     /**
      * Executes the GraphQL query on the GraphQL schema proxy.
@@ -61,6 +69,23 @@ public interface SchemaDefinition extends Queryable {
 
     /**
      * Executes the GraphQL query on the GraphQL schema proxy using the provided variables.
+     * <p>
+     * Execution is subject to the admission control limits and query complexity budgets that are configured in the
+     * schema definition options, and is aborted when the {@link QueryDeadline} of the caller expires. The query
+     * lifecycle is reported to the {@link SchemaDefinitionOptions#getInstrumentation() instrumentation}.
+     * <p>
+     * If {@link SchemaDefinitionOptions#isQueryCoalescingEnabled() query coalescing} is enabled, a query that is
+     * identical to a query in flight receives the result of that query, instead of being executed again.
+     * <p>
+     * If {@link SchemaDefinitionOptions#isAsyncExecutionEnabled() asynchronous execution} is enabled, the query
+     * executes on the context of the caller, and asynchronous data fetchers are resolved without blocking.
+     * <p>
+     * Introspection queries are answered from the introspection cache of the schema after their first execution,
+     * without admission control (see {@link io.engagingspaces.graphql.schema.impl.IntrospectionCache}).
+     * <p>
+     * If {@link SchemaDefinitionOptions#isInvalidationEnabled() invalidation} is enabled, every executed mutation
+     * publishes a cache invalidation message to the consumers of the schema, also when its result has errors (see
+     * {@link io.engagingspaces.graphql.query.CacheInvalidation}).
      *
      * @param graphqlQuery  the graphql query
      * @param resultHandler the result handler with the graphql query result on success, or a failure
@@ -68,12 +93,98 @@ public interface SchemaDefinition extends Queryable {
     @Override
     default void queryWithVariables(String graphqlQuery, JsonObject variables,
                                     Handler<AsyncResult<QueryResult>> resultHandler) {
-        try {
-            QueryResult result = queryBlocking(graphqlQuery, variables);
-            resultHandler.handle(Future.succeededFuture(result));
-        } catch (RuntimeException ex) {
-            resultHandler.handle(Future.failedFuture(ex));
+        QueryExecutor executor = QueryExecutor.forDefinition(this);
+        QueryDeadline deadline = QueryDeadline.current();
+        Map<String, Object> variableMap = variables == null ? null : variables.getMap();
+        Handler<AsyncResult<QueryResult>> replyHandler =
+                executor.invalidating(executor.instrumentQuery(graphqlQuery, resultHandler));
+        String introspectionKey = executor.introspectionKey(graphqlQuery, variableMap);
+        QueryResult introspectionResult = executor.introspectionCache().get(introspectionKey);
+        if (introspectionResult != null) {
+            replyHandler.handle(Future.succeededFuture(introspectionResult));
+            return;
+        }
+        boolean lowPriority = executor.isLowPriority(schema(), graphqlQuery, variableMap);
+        executor.coalescer().submit(executor.coalescingKey(graphqlQuery, variableMap), handler -> {
+            if (options().isAsyncExecutionEnabled()) {
+                executor.admission().submitAsync(queryHandler -> QueryDeadline.run(deadline, () ->
+                        executor.executeAsync(schema(), graphqlQuery, variableMap,
+                                res -> queryHandler.handle(toQueryResult(res)))), lowPriority, handler);
+            } else {
+                executor.admission().submit(
+                        () -> QueryDeadline.call(deadline, () -> queryBlocking(graphqlQuery, variables)),
+                        lowPriority, handler);
+            }
+        }, executor.introspectionCache().caching(introspectionKey, replyHandler));
+    }
+
+    /**
+     * Executes the GraphQL query with incremental delivery of its deferred fragments.
+     * <p>
+     * Fragments in the root selection set of the query that are marked with {@code @defer} are executed as separate
+     * queries, concurrently with the query of the remaining fields (see {@link DeferredQuery}). The result handler
+     * receives the initial payload as soon as the remaining fields are resolved, with a
+     * {@value IncrementalDelivery#HAS_NEXT} extension if deferred fragments follow. The increment handler then
+     * receives a payload for every deferred fragment as it completes (see {@link IncrementalDelivery}).
+     * <p>
+     * Every query is subject to the same admission control, complexity budgets and deadline as
+     * {@link #queryWithVariables(String, JsonObject, Handler)}.
+     *
+     * @param graphqlQuery     the graphql query
+     * @param variables        the query variables, or {@code null}
+     * @param incrementHandler the handler of the payloads of the deferred fragments
+     * @param resultHandler    the result handler with the initial payload on success, or a failure
+     */
+    @Override
+    default void queryIncremental(String graphqlQuery, JsonObject variables, Handler<JsonObject> incrementHandler,
+                                  Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        DeferredQuery query = DeferredQuery.split(graphqlQuery, variables == null ? null : variables.getMap());
+        if (!query.isDeferred()) {
+            queryWithVariables(query.getQuery(), variables, resultHandler);
+            return;
         }
+        IncrementalDelivery delivery =
+                new IncrementalDelivery(query.getDeferred().size(), resultHandler, incrementHandler);
+        if (query.getInitialQuery() == null) {
+            delivery.initial(Future.succeededFuture(new QueryResult(new JsonObject(), true, null)));
+        } else {
+            queryWithVariables(query.getInitialQuery(), variables, delivery::initial);
+        }
+        for (DeferredQuery.Fragment fragment : query.getDeferred()) {
+            queryWithVariables(fragment.getQuery(), variables, res -> delivery.deferred(fragment.getLabel(), res));
+        }
+    }
+
+    /**
+     * Executes the persisted GraphQL query that is identified by the provided hash.
+     * <p>
+     * Queries are persisted in a bounded registry of prepared queries per schema, with a size configured by
+     * {@link SchemaDefinitionOptions#setPersistedQueryCacheSize(int)}.
+     *
+     * @param queryHash     the hex encoded SHA-256 hash of the query text
+     * @param graphqlQuery  the graphql query, or {@code null} to execute the query that was persisted earlier
+     * @param variables     the query variables
+     * @param resultHandler the result handler with the graphql query result on success, or a failure
+     */
+    @Override
+    default void queryPersisted(String queryHash, String graphqlQuery, JsonObject variables,
+                                Handler<AsyncResult<QueryResult>> resultHandler) {
+        QueryExecutor executor = QueryExecutor.forDefinition(this);
+        QueryDeadline deadline = QueryDeadline.current();
+        Map<String, Object> variableMap = variables == null ? null : variables.getMap();
+        boolean lowPriority = executor.isLowPriorityPersisted(schema(), queryHash, graphqlQuery, variableMap);
+        executor.coalescer().submit(executor.coalescingKeyPersisted(queryHash, graphqlQuery, variableMap), handler -> {
+            if (options().isAsyncExecutionEnabled()) {
+                executor.admission().submitAsync(queryHandler -> QueryDeadline.run(deadline, () ->
+                        executor.executePersistedAsync(schema(), queryHash, graphqlQuery, variableMap,
+                                res -> queryHandler.handle(toQueryResult(res)))), lowPriority, handler);
+            } else {
+                executor.admission().submit(() -> QueryDeadline.call(deadline, () -> convertToQueryResult(
+                        executor.executePersisted(schema(), queryHash, graphqlQuery, variableMap))),
+                        lowPriority, handler);
+            }
+        }, executor.invalidating(executor.instrumentQuery(graphqlQuery, resultHandler)));
     }
 
     /**
@@ -95,8 +206,9 @@ public interface SchemaDefinition extends Queryable {
      * @return the schema metadata data object
      */
     default SchemaMetadata createServiceMetadata(JsonObject proxyJson, JsonObject metadata) {
-        if (options().getSchemaName() == null) {
-            options().setSchemaName(schema().getQueryType().getName());
+        SchemaDefinitionOptions options = options();
+        if (options.getSchemaName() == null) {
+            options.setSchemaName(schema().getQueryType().getName());
         }
         metadata.put(SchemaMetadata.METADATA_QUERIES, schema().getQueryType().getFieldDefinitions().stream()
                 .map(GraphQLFieldDefinition::getName).collect(Collectors.toList()));
@@ -105,7 +217,7 @@ public interface SchemaDefinition extends Queryable {
                         schema().getMutationType().getFieldDefinitions().stream()
                                 .map(GraphQLFieldDefinition::getName).collect(Collectors.toList()));
 
-        return SchemaMetadata.create(proxyJson, metadata, this.options());
+        return SchemaMetadata.create(proxyJson, metadata, options);
     }
 
     /**
@@ -119,22 +231,41 @@ public interface SchemaDefinition extends Queryable {
      * <p>
      * If the proxy type is {@link SchemaProxyType#ProxyClient}, the an additional marshaled version the GraphQL schema
      * is part of the metadata. This json is un-marshaled to a
-     * {@link io.engagingspaces.graphql.proxy.GraphQLSchemaProxy} at the consumer side.
+     * {@link io.engagingspaces.graphql.proxy.GraphQLSchemaProxy} at the consumer side. The same applies to
+     * {@link SchemaProxyType#MixedMode}, where the root query fields listed under
+     * {@link SchemaMetadata#METADATA_LOCAL_QUERIES} in the additional metadata are executed consumer-side.
      *
      * @param metadata additional metadata to pass to the service
      * @return the schema metadata data object
      */
     default SchemaMetadata createServiceMetadata(JsonObject metadata) {
         if (SchemaProxyType.ServiceProxy.equals(options().getProxyType())) {
-            return createServiceMetadata(SchemaMarshaller.toJson(schema()));
+            return createServiceMetadata(new JsonObject(), metadata);
         }
-        return createServiceMetadata(new JsonObject(), metadata);
+        return createServiceMetadata(SchemaMarshaller.toJson(schema(),
+                SchemaMarshallerOptions.create().setInstrumentation(options().getInstrumentation())), metadata);
+    }
+
+    /**
+     * Gets a snapshot of the admission control metrics of the schema, i.e. the number of running and queued queries,
+     * the peak queue depth, the total number of admitted and rejected queries, the total number of queries that
+     * were coalesced with an identical query in flight, and the total number of introspection queries that were
+     * answered from cache.
+     *
+     * @return the admission control metrics
+     */
+    default JsonObject admissionMetrics() {
+        QueryExecutor executor = QueryExecutor.forDefinition(this);
+        return executor.admission().toJson().put("coalesced", executor.coalescer().getCoalesced())
+                .put("introspectionHits", executor.introspectionCache().getHits());
     }
 
     /**
      * Gets the configuration options of the schema definition.
      * <p>
-     * A default set of options is returned if the method is not overridden by the implementor.
+     * A default set of options is returned if the method is not overridden by the implementor. The options that
+     * configure query execution are frozen when the first query is executed (see
+     * {@link QueryExecutor#forDefinition(SchemaDefinition)}), later changes are not applied.
      *
      * @return the schema definition options
      */
@@ -151,19 +282,18 @@ public interface SchemaDefinition extends Queryable {
      */
     default QueryResult queryBlocking(String graphqlQuery, JsonObject variables) {
         Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
-        GraphQL graphQL = new GraphQL(schema());
-        ExecutionResult result;
-        if (variables == null) {
-            result = graphQL.execute(graphqlQuery);
-        } else {
-            result = graphQL.execute(graphqlQuery, (Object) null, variables.getMap());
-        }
+        ExecutionResult result = QueryExecutor.forDefinition(this)
+                .execute(schema(), graphqlQuery, variables == null ? null : variables.getMap());
         return convertToQueryResult(result);
     }
 
     /**
      * Creates a new {@link QueryResult} data object from the
      * provided GraphQL {@link ExecutionResult}.
+     * <p>
+     * Successful results of the {@link QueryExecutor} are encoded by walking the result data along the selections of
+     * the query (see {@link ResultSerializer}) when the json encoding of the query result is first requested. The
+     * binary event bus format does not use the serializer.
      *
      * @param executionResult the execution result of the GraphQL query
      * @return the query result data object
@@ -173,10 +303,27 @@ public interface SchemaDefinition extends Queryable {
         Objects.requireNonNull(executionResult, "Query execution result cannot be null");
         boolean succeeded = executionResult.getErrors() == null || executionResult.getErrors().isEmpty();
 
+        JsonObject extensions = executionResult instanceof QueryExecutionResult ?
+                ((QueryExecutionResult) executionResult).getExtensions() : null;
+        ResultSerializer serializer = executionResult instanceof QueryExecutionResult && succeeded ?
+                ((QueryExecutionResult) executionResult).getSerializer() : null;
+
         return new QueryResult(
                 succeeded ? new JsonObject((Map<String, Object>) executionResult.getData()) : new JsonObject(),
                 succeeded, executionResult.getErrors().stream()
-                        .map(SchemaDefinition::convertToQueryError).collect(Collectors.toList()));
+                        .map(SchemaDefinition::convertToQueryError).collect(Collectors.toList()), extensions,
+                serializer == null ? null : serializer::serialize);
+    }
+
+    /**
+     * Converts the asynchronous result of a GraphQL query execution to the asynchronous result of the query.
+     *
+     * @param result the execution result of the GraphQL query, or a failure
+     * @return the query result, or the failure
+     */
+    static AsyncResult<QueryResult> toQueryResult(AsyncResult<ExecutionResult> result) {
+        return result.succeeded() ?
+                Future.succeededFuture(convertToQueryResult(result.result())) : Future.failedFuture(result.cause());
     }
 
     /**
@@ -187,8 +334,9 @@ public interface SchemaDefinition extends Queryable {
      * @return the converted query error data object
      */
     static QueryError convertToQueryError(GraphQLError graphQLError) {
-        return new QueryError(graphQLError.getErrorType().name(), graphQLError.getMessage(),
+        List<ErrorLocation> locations = graphQLError.getLocations() == null ? Collections.emptyList() :
                 graphQLError.getLocations().stream().map(location ->
-                        new ErrorLocation(location.getLine(), location.getColumn())).collect(Collectors.toList()));
+                        new ErrorLocation(location.getLine(), location.getColumn())).collect(Collectors.toList());
+        return new QueryError(graphQLError.getErrorType().name(), graphQLError.getMessage(), locations);
     }
 }
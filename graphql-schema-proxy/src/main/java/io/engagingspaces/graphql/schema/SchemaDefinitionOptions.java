@@ -17,12 +17,24 @@
 package io.engagingspaces.graphql.schema;
 
 import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.dataloader.DataLoaderRegistry;
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
 import io.engagingspaces.graphql.marshaller.json.impl.JsonObjectHelper;
+import io.engagingspaces.graphql.schema.impl.ParallelExecutionStrategy;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Configuration options for {@link SchemaDefinition}.
@@ -31,10 +43,41 @@ import java.util.Objects;
  */
 public class SchemaDefinitionOptions {
 
+    /**
+     * The default maximum number of persisted queries that are kept per schema.
+     */
+    public static final int DEFAULT_PERSISTED_QUERY_CACHE_SIZE = 1000;
+
+    /**
+     * The default list size that is assumed in query cost estimation.
+     */
+    public static final int DEFAULT_LIST_SIZE = 10;
+
     private String schemaName;
     private DeliveryOptions deliveryOptions;
     private SchemaProxyType proxyType = SchemaProxyType.ServiceProxy;
     private boolean isInternal = true;
+    private int persistedQueryCacheSize = DEFAULT_PERSISTED_QUERY_CACHE_SIZE;
+    private int maxConcurrentQueries;
+    private int maxQueuedQueries;
+    private int maxQueryDepth;
+    private long maxQueryCost;
+    private long lowPriorityQueryCost;
+    private int defaultListSize = DEFAULT_LIST_SIZE;
+    private Map<String, Integer> fieldWeights = new HashMap<>();
+    private boolean tracingEnabled;
+    private boolean metricsEnabled;
+    private boolean queryCoalescingEnabled;
+    private ExecutionStrategyType queryExecutionStrategy = ExecutionStrategyType.Serial;
+    private ExecutionStrategyType mutationExecutionStrategy = ExecutionStrategyType.Serial;
+    private Executor parallelExecutor = ParallelExecutionStrategy.defaultExecutor();
+    private boolean asyncExecutionEnabled;
+    private int clientCacheSize;
+    private long clientCacheTtl;
+    private boolean invalidationEnabled;
+    private Map<String, List<String>> invalidatedTypes = new HashMap<>();
+    private Supplier<DataLoaderRegistry> dataLoaderRegistryFactory;
+    private Instrumentation instrumentation = Instrumentation.NOOP;
 
     /**
      * Creates a new (empty) options instance.
@@ -51,6 +94,27 @@ public class SchemaDefinitionOptions {
         this.deliveryOptions = other.deliveryOptions;
         this.proxyType = other.proxyType;
         this.isInternal = other.isInternal;
+        this.persistedQueryCacheSize = other.persistedQueryCacheSize;
+        this.maxConcurrentQueries = other.maxConcurrentQueries;
+        this.maxQueuedQueries = other.maxQueuedQueries;
+        this.maxQueryDepth = other.maxQueryDepth;
+        this.maxQueryCost = other.maxQueryCost;
+        this.lowPriorityQueryCost = other.lowPriorityQueryCost;
+        this.defaultListSize = other.defaultListSize;
+        this.fieldWeights = new HashMap<>(other.fieldWeights);
+        this.tracingEnabled = other.tracingEnabled;
+        this.metricsEnabled = other.metricsEnabled;
+        this.queryCoalescingEnabled = other.queryCoalescingEnabled;
+        this.queryExecutionStrategy = other.queryExecutionStrategy;
+        this.mutationExecutionStrategy = other.mutationExecutionStrategy;
+        this.parallelExecutor = other.parallelExecutor;
+        this.asyncExecutionEnabled = other.asyncExecutionEnabled;
+        this.clientCacheSize = other.clientCacheSize;
+        this.clientCacheTtl = other.clientCacheTtl;
+        this.invalidationEnabled = other.invalidationEnabled;
+        this.invalidatedTypes = new HashMap<>(other.invalidatedTypes);
+        this.dataLoaderRegistryFactory = other.dataLoaderRegistryFactory;
+        this.instrumentation = other.instrumentation;
     }
 
     /**
@@ -64,6 +128,27 @@ public class SchemaDefinitionOptions {
         this.deliveryOptions = new DeliveryOptions(json.getJsonObject("deliveryOptions"));
         this.proxyType = Enum.valueOf(SchemaProxyType.class, json.getString("proxyType"));
         this.isInternal = json.getBoolean("isInternal");
+        this.persistedQueryCacheSize = json.getInteger("persistedQueryCacheSize", DEFAULT_PERSISTED_QUERY_CACHE_SIZE);
+        this.maxConcurrentQueries = json.getInteger("maxConcurrentQueries", 0);
+        this.maxQueuedQueries = json.getInteger("maxQueuedQueries", 0);
+        this.maxQueryDepth = json.getInteger("maxQueryDepth", 0);
+        this.maxQueryCost = json.getLong("maxQueryCost", 0L);
+        this.lowPriorityQueryCost = json.getLong("lowPriorityQueryCost", 0L);
+        this.defaultListSize = json.getInteger("defaultListSize", DEFAULT_LIST_SIZE);
+        json.getJsonObject("fieldWeights", new JsonObject()).forEach(weight ->
+                fieldWeights.put(weight.getKey(), ((Number) weight.getValue()).intValue()));
+        this.tracingEnabled = json.getBoolean("tracingEnabled", false);
+        this.metricsEnabled = json.getBoolean("metricsEnabled", false);
+        this.queryCoalescingEnabled = json.getBoolean("queryCoalescingEnabled", false);
+        this.queryExecutionStrategy = Enum.valueOf(ExecutionStrategyType.class,
+                json.getString("queryExecutionStrategy", ExecutionStrategyType.Serial.name()));
+        this.mutationExecutionStrategy = Enum.valueOf(ExecutionStrategyType.class,
+                json.getString("mutationExecutionStrategy", ExecutionStrategyType.Serial.name()));
+        this.asyncExecutionEnabled = json.getBoolean("asyncExecutionEnabled", false);
+        this.clientCacheSize = json.getInteger("clientCacheSize", 0);
+        this.clientCacheTtl = json.getLong("clientCacheTtl", 0L);
+        this.invalidationEnabled = json.getBoolean("invalidationEnabled", false);
+        this.invalidatedTypes = invalidatedTypesFromJson(json.getJsonObject("invalidatedTypes", new JsonObject()));
     }
 
     /**
@@ -76,7 +161,25 @@ public class SchemaDefinitionOptions {
                 .put("schemaName", schemaName)
                 .put("proxyType", proxyType)
                 .put("deliveryOptions", deliveryOptionsToJson(deliveryOptions))
-                .put("isInternal", isInternal);
+                .put("isInternal", isInternal)
+                .put("persistedQueryCacheSize", persistedQueryCacheSize)
+                .put("maxConcurrentQueries", maxConcurrentQueries)
+                .put("maxQueuedQueries", maxQueuedQueries)
+                .put("maxQueryDepth", maxQueryDepth)
+                .put("maxQueryCost", maxQueryCost)
+                .put("lowPriorityQueryCost", lowPriorityQueryCost)
+                .put("defaultListSize", defaultListSize)
+                .put("fieldWeights", new JsonObject(new HashMap<>(fieldWeights)))
+                .put("tracingEnabled", tracingEnabled)
+                .put("metricsEnabled", metricsEnabled)
+                .put("queryCoalescingEnabled", queryCoalescingEnabled)
+                .put("queryExecutionStrategy", queryExecutionStrategy)
+                .put("mutationExecutionStrategy", mutationExecutionStrategy)
+                .put("asyncExecutionEnabled", asyncExecutionEnabled)
+                .put("clientCacheSize", clientCacheSize)
+                .put("clientCacheTtl", clientCacheTtl)
+                .put("invalidationEnabled", invalidationEnabled)
+                .put("invalidatedTypes", invalidatedTypesToJson(invalidatedTypes));
     }
 
     /**
@@ -169,6 +272,550 @@ public class SchemaDefinitionOptions {
         return this;
     }
 
+    /**
+     * Gets the maximum number of persisted queries that the service keeps for the schema.
+     *
+     * @return the persisted query cache size, {@code 0} if persisted queries are disabled
+     */
+    public int getPersistedQueryCacheSize() {
+        return persistedQueryCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of persisted queries that the service keeps for the schema. When the cache is full the
+     * least recently used query is evicted. A value of {@code 0} disables persisted queries.
+     *
+     * @param persistedQueryCacheSize the persisted query cache size
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setPersistedQueryCacheSize(int persistedQueryCacheSize) {
+        if (persistedQueryCacheSize < 0) {
+            throw new IllegalArgumentException("Persisted query cache size cannot be negative");
+        }
+        this.persistedQueryCacheSize = persistedQueryCacheSize;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of queries that the service executes concurrently on the schema.
+     *
+     * @return the maximum number of concurrent queries, {@code 0} if admission control is disabled
+     */
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    /**
+     * Sets the maximum number of queries that the service executes concurrently on the schema.
+     * <p>
+     * When set, queries are executed on the Vert.x worker pool instead of the event loop. Queries that exceed the
+     * limit wait for execution up to the {@link #setMaxQueuedQueries(int) maximum queue depth}, after which they are
+     * rejected. A value of {@code 0} (the default) disables admission control.
+     *
+     * @param maxConcurrentQueries the maximum number of concurrent queries
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMaxConcurrentQueries(int maxConcurrentQueries) {
+        if (maxConcurrentQueries < 0) {
+            throw new IllegalArgumentException("Maximum concurrent queries cannot be negative");
+        }
+        this.maxConcurrentQueries = maxConcurrentQueries;
+        return this;
+    }
+
+    /**
+     * Gets the maximum number of queries that wait for execution when the concurrency limit is reached.
+     *
+     * @return the maximum queue depth
+     */
+    public int getMaxQueuedQueries() {
+        return maxQueuedQueries;
+    }
+
+    /**
+     * Sets the maximum number of queries that wait for execution when the concurrency limit is reached. Queries
+     * that arrive when the queue is full fail with a {@link io.vertx.serviceproxy.ServiceException} with failure
+     * code {@link io.engagingspaces.graphql.query.Queryable#QUERY_REJECTED}.
+     *
+     * @param maxQueuedQueries the maximum queue depth
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMaxQueuedQueries(int maxQueuedQueries) {
+        if (maxQueuedQueries < 0) {
+            throw new IllegalArgumentException("Maximum queued queries cannot be negative");
+        }
+        this.maxQueuedQueries = maxQueuedQueries;
+        return this;
+    }
+
+    /**
+     * Gets the maximum selection depth of queries on the schema.
+     *
+     * @return the maximum query depth, {@code 0} if unlimited
+     */
+    public int getMaxQueryDepth() {
+        return maxQueryDepth;
+    }
+
+    /**
+     * Sets the maximum selection depth of queries on the schema. Deeper queries are rejected before execution
+     * with a {@link io.vertx.serviceproxy.ServiceException} with failure code
+     * {@link io.engagingspaces.graphql.query.Queryable#QUERY_TOO_COMPLEX}.
+     *
+     * @param maxQueryDepth the maximum query depth, {@code 0} for unlimited
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMaxQueryDepth(int maxQueryDepth) {
+        if (maxQueryDepth < 0) {
+            throw new IllegalArgumentException("Maximum query depth cannot be negative");
+        }
+        this.maxQueryDepth = maxQueryDepth;
+        return this;
+    }
+
+    /**
+     * Gets the maximum estimated cost of queries on the schema.
+     *
+     * @return the maximum query cost, {@code 0} if unlimited
+     */
+    public long getMaxQueryCost() {
+        return maxQueryCost;
+    }
+
+    /**
+     * Sets the maximum estimated cost of queries on the schema. More expensive queries are rejected before
+     * execution with a {@link io.vertx.serviceproxy.ServiceException} with failure code
+     * {@link io.engagingspaces.graphql.query.Queryable#QUERY_TOO_COMPLEX}.
+     * <p>
+     * The cost is the sum of the weights of all selected fields, where the fields below a list field count once
+     * for every expected list element (see {@link #setDefaultListSize(int)} and {@link #addFieldWeight}).
+     *
+     * @param maxQueryCost the maximum query cost, {@code 0} for unlimited
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMaxQueryCost(long maxQueryCost) {
+        if (maxQueryCost < 0) {
+            throw new IllegalArgumentException("Maximum query cost cannot be negative");
+        }
+        this.maxQueryCost = maxQueryCost;
+        return this;
+    }
+
+    /**
+     * Gets the estimated query cost above which queries are executed with low priority.
+     *
+     * @return the low priority query cost, {@code 0} if disabled
+     */
+    public long getLowPriorityQueryCost() {
+        return lowPriorityQueryCost;
+    }
+
+    /**
+     * Sets the estimated query cost above which queries are executed with low priority. When admission control
+     * is enabled (see {@link #setMaxConcurrentQueries(int)}), waiting low priority queries are only executed when
+     * no regular queries are waiting.
+     *
+     * @param lowPriorityQueryCost the low priority query cost, {@code 0} to disable
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setLowPriorityQueryCost(long lowPriorityQueryCost) {
+        if (lowPriorityQueryCost < 0) {
+            throw new IllegalArgumentException("Low priority query cost cannot be negative");
+        }
+        this.lowPriorityQueryCost = lowPriorityQueryCost;
+        return this;
+    }
+
+    /**
+     * Gets the list size that is assumed in query cost estimation for list fields without a literal {@code first},
+     * {@code last} or {@code limit} argument.
+     *
+     * @return the default list size
+     */
+    public int getDefaultListSize() {
+        return defaultListSize;
+    }
+
+    /**
+     * Sets the list size that is assumed in query cost estimation for list fields without a literal {@code first},
+     * {@code last} or {@code limit} argument.
+     *
+     * @param defaultListSize the default list size
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setDefaultListSize(int defaultListSize) {
+        if (defaultListSize < 0) {
+            throw new IllegalArgumentException("Default list size cannot be negative");
+        }
+        this.defaultListSize = defaultListSize;
+        return this;
+    }
+
+    /**
+     * Gets the field weights used in query cost estimation, keyed by {@code TypeName.fieldName}.
+     *
+     * @return the field weights
+     */
+    public Map<String, Integer> getFieldWeights() {
+        return Collections.unmodifiableMap(fieldWeights);
+    }
+
+    /**
+     * Sets the weight of a field in query cost estimation. Fields without an explicit weight have weight {@code 1}.
+     *
+     * @param typeName  the name of the object or interface type that declares the field
+     * @param fieldName the name of the field
+     * @param weight    the field weight
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions addFieldWeight(String typeName, String fieldName, int weight) {
+        Objects.requireNonNull(typeName, "Type name cannot be null");
+        Objects.requireNonNull(fieldName, "Field name cannot be null");
+        if (weight < 0) {
+            throw new IllegalArgumentException("Field weight cannot be negative");
+        }
+        this.fieldWeights.put(typeName + "." + fieldName, weight);
+        return this;
+    }
+
+    /**
+     * @return {@code true} if query execution is traced, {@code false} otherwise
+     */
+    public boolean isTracingEnabled() {
+        return tracingEnabled;
+    }
+
+    /**
+     * Sets whether query execution is traced. When enabled, the parse and validation time, and the start offset and
+     * duration of every field resolution and data fetcher call are returned in the {@code tracing} extension of the
+     * {@link io.engagingspaces.graphql.query.QueryResult}.
+     * <p>
+     * Tracing adds overhead to every field resolution, and considerably increases the size of query results.
+     *
+     * @param tracingEnabled {@code true} to enable tracing
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setTracingEnabled(boolean tracingEnabled) {
+        this.tracingEnabled = tracingEnabled;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if query metrics are recorded, {@code false} otherwise
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Sets whether query metrics are recorded for the schema, by the service that executes queries and by the
+     * proxies that send them. Metrics are kept in the {@link io.engagingspaces.graphql.metrics.MetricsRegistry} of the
+     * vert.x instance, and are exposed by the reporters that are added to it.
+     * <p>
+     * The options are included in the schema metadata, so proxies pick up the setting of the service.
+     *
+     * @param metricsEnabled {@code true} to enable metrics
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if identical concurrent queries are coalesced, {@code false} otherwise
+     */
+    public boolean isQueryCoalescingEnabled() {
+        return queryCoalescingEnabled;
+    }
+
+    /**
+     * Sets whether identical concurrent queries are coalesced. When enabled, a query that arrives while an identical
+     * query (with the same normalized query text and variables) is executing on the schema, is not executed again,
+     * but receives the same {@link io.engagingspaces.graphql.query.QueryResult} instance as the query in flight.
+     * <p>
+     * Only query operations are coalesced, mutations are always executed once per request. Coalesced results are
+     * shared by all waiting consumers, and must not be modified.
+     *
+     * @param queryCoalescingEnabled {@code true} to enable query coalescing
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setQueryCoalescingEnabled(boolean queryCoalescingEnabled) {
+        this.queryCoalescingEnabled = queryCoalescingEnabled;
+        return this;
+    }
+
+    /**
+     * @return the strategy that is used to execute query operations, {@link ExecutionStrategyType#Serial} by default
+     */
+    public ExecutionStrategyType getQueryExecutionStrategy() {
+        return queryExecutionStrategy;
+    }
+
+    /**
+     * Sets the strategy that is used to execute query operations. With {@link ExecutionStrategyType#Parallel},
+     * independent sibling fields are resolved in parallel on the {@link #setParallelExecutor(Executor) parallel
+     * executor}, so that the latencies of root fields that fetch from different back-ends do not add up.
+     *
+     * @param queryExecutionStrategy the query execution strategy
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setQueryExecutionStrategy(ExecutionStrategyType queryExecutionStrategy) {
+        this.queryExecutionStrategy = Objects.requireNonNull(queryExecutionStrategy,
+                "Query execution strategy cannot be null");
+        return this;
+    }
+
+    /**
+     * @return the strategy that is used to execute mutation operations, {@link ExecutionStrategyType#Serial} by
+     * default
+     */
+    public ExecutionStrategyType getMutationExecutionStrategy() {
+        return mutationExecutionStrategy;
+    }
+
+    /**
+     * Sets the strategy that is used to execute mutation operations.
+     * <p>
+     * The root fields of a mutation are always executed one after another, as required by the GraphQL specification.
+     * The strategy applies to the fields that are selected below the root fields.
+     *
+     * @param mutationExecutionStrategy the mutation execution strategy
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setMutationExecutionStrategy(ExecutionStrategyType mutationExecutionStrategy) {
+        this.mutationExecutionStrategy = Objects.requireNonNull(mutationExecutionStrategy,
+                "Mutation execution strategy cannot be null");
+        return this;
+    }
+
+    /**
+     * @return the executor that resolves fields with the parallel execution strategy, by default a bounded executor
+     * that is shared by all schemas (see {@link ParallelExecutionStrategy#defaultExecutor()})
+     */
+    public Executor getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    /**
+     * Sets the executor that resolves sibling fields with the {@link ExecutionStrategyType#Parallel} execution
+     * strategy. By default a bounded executor with daemon threads is used that is shared by all schemas. Use a
+     * dedicated executor to isolate schemas with data fetchers that block on I/O for a long time.
+     * <p>
+     * The executor is a local setting, and is not included in the json representation of the options.
+     *
+     * @param parallelExecutor the parallel executor
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setParallelExecutor(Executor parallelExecutor) {
+        this.parallelExecutor = Objects.requireNonNull(parallelExecutor, "Parallel executor cannot be null");
+        return this;
+    }
+
+    /**
+     * @return {@code true} if queries execute asynchronously on the event loop, {@code false} otherwise
+     */
+    public boolean isAsyncExecutionEnabled() {
+        return asyncExecutionEnabled;
+    }
+
+    /**
+     * Sets whether queries execute asynchronously. When enabled, queries execute on the context of the caller
+     * instead of the worker pool, and data fetchers that return a {@link io.vertx.core.Future} or
+     * {@link java.util.concurrent.CompletionStage} (see
+     * {@link io.engagingspaces.graphql.marshaller.schema.AsyncDataFetcher}) are resolved without blocking a thread.
+     * <p>
+     * Data fetchers must not block when asynchronous execution is enabled. The admission control limits still apply,
+     * but the execution strategies are not used, and {@link SchemaDefinition#queryBlocking(String, JsonObject)} is
+     * bypassed.
+     *
+     * @param asyncExecutionEnabled {@code true} to enable asynchronous execution
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setAsyncExecutionEnabled(boolean asyncExecutionEnabled) {
+        this.asyncExecutionEnabled = asyncExecutionEnabled;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of entities in the normalized cache of client proxies, {@code 0} if disabled
+     */
+    public int getClientCacheSize() {
+        return clientCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of entities (and root fields) in the normalized cache of the proxies that are created
+     * with {@link io.engagingspaces.graphql.query.Queryable#createProxy(io.vertx.core.Vertx, String, JsonObject)}.
+     * <p>
+     * When enabled, query results are split into entities by type name and {@code id}, and queries whose selections
+     * are fully covered by cached entities are answered by the proxy without a call to the service. Mutation results
+     * update the cached entities. Every proxy has its own cache, so cached entities are only updated by the queries
+     * and mutations of the proxy itself, unless {@link #setInvalidationEnabled(boolean) invalidation} is enabled, in
+     * which case the proxy evicts the entities and types of the invalidation messages of the schema from its cache.
+     * Use {@link #setClientCacheTtl(long)} to bound the staleness of cached entities otherwise.
+     *
+     * @param clientCacheSize the maximum cache size, or {@code 0} to disable the client cache (default)
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setClientCacheSize(int clientCacheSize) {
+        if (clientCacheSize < 0) {
+            throw new IllegalArgumentException("Client cache size cannot be negative");
+        }
+        this.clientCacheSize = clientCacheSize;
+        return this;
+    }
+
+    /**
+     * @return the time in milliseconds after which entities in the client cache expire, {@code 0} if they do not
+     */
+    public long getClientCacheTtl() {
+        return clientCacheTtl;
+    }
+
+    /**
+     * Sets the time to live of the entities (and root fields) in the normalized cache of client proxies (see
+     * {@link #setClientCacheSize(int)}). Cached entities expire when they are not written by a query or mutation
+     * result within this time.
+     *
+     * @param clientCacheTtl the time to live in milliseconds, or {@code 0} if cached entities do not expire (default)
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setClientCacheTtl(long clientCacheTtl) {
+        if (clientCacheTtl < 0) {
+            throw new IllegalArgumentException("Client cache time to live cannot be negative");
+        }
+        this.clientCacheTtl = clientCacheTtl;
+        return this;
+    }
+
+    /**
+     * @return {@code true} if mutations publish cache invalidation messages, {@code false} otherwise
+     */
+    public boolean isInvalidationEnabled() {
+        return invalidationEnabled;
+    }
+
+    /**
+     * Sets whether mutations that execute through {@link SchemaDefinition} publish a cache invalidation message on
+     * the event bus, at the address of {@link io.engagingspaces.graphql.query.CacheInvalidation#address(String)}.
+     * <p>
+     * When enabled, every query result carries a {@code dependencies} extension with the types and entities
+     * ({@code TypeName:id}) that it contains, and the invalidation message of a mutation lists the entities in its
+     * result and the types that are declared for its fields (see {@link #addInvalidatedTypes(String, String...)}).
+     * Consumers can evict the query results that they cache with an
+     * {@link io.engagingspaces.graphql.query.InvalidationIndex}, and proxies with a
+     * {@link #setClientCacheSize(int) client cache} evict the invalidated entities and types from their cache.
+     *
+     * @param invalidationEnabled {@code true} to publish cache invalidation messages
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setInvalidationEnabled(boolean invalidationEnabled) {
+        this.invalidationEnabled = invalidationEnabled;
+        return this;
+    }
+
+    /**
+     * Gets the types that are invalidated by mutation fields, keyed by mutation field name.
+     *
+     * @return the invalidated types
+     */
+    public Map<String, List<String>> getInvalidatedTypes() {
+        return Collections.unmodifiableMap(invalidatedTypes);
+    }
+
+    /**
+     * Declares the types that are invalidated by a mutation field, in addition to the entities in its result. All
+     * cached query results that contain the types are evicted when the mutation executes.
+     * <p>
+     * Mutations that create or delete entities, or that do not return the entities they change, should declare the
+     * affected types, as lists of entities can not be invalidated from the mutation result alone.
+     *
+     * @param mutationField the name of the field of the mutation type
+     * @param typeNames     the names of the invalidated types
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions addInvalidatedTypes(String mutationField, String... typeNames) {
+        Objects.requireNonNull(mutationField, "Mutation field cannot be null");
+        Objects.requireNonNull(typeNames, "Type names cannot be null");
+        List<String> types = new ArrayList<>(invalidatedTypes.getOrDefault(mutationField, Collections.emptyList()));
+        types.addAll(Arrays.asList(typeNames));
+        this.invalidatedTypes.put(mutationField, types);
+        return this;
+    }
+
+    /**
+     * @return the factory of the data loader registry of a query, or {@code null} if data loaders are not used
+     */
+    public Supplier<DataLoaderRegistry> getDataLoaderRegistryFactory() {
+        return dataLoaderRegistryFactory;
+    }
+
+    /**
+     * Sets the factory that creates a new {@link DataLoaderRegistry} for every query that is executed on the schema.
+     * Data fetchers access the registry of the query with {@code DataLoaderRegistry.from(environment)}, and load
+     * entities through its data loaders, which batch the keys that are loaded on the same level of the query, and
+     * cache the loaded values for the duration of the query.
+     * <p>
+     * Queries of a schema with data loaders are always resolved with the asynchronous execution strategy, which
+     * dispatches the data loaders once per level. Without {@link #setAsyncExecutionEnabled(boolean) asynchronous
+     * execution} the executing worker thread blocks until the query completes, and the configured execution
+     * strategies are not used. The factory is a local setting, and is not included in the json representation of
+     * the options.
+     *
+     * @param dataLoaderRegistryFactory the data loader registry factory, or {@code null} to disable data loaders
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setDataLoaderRegistryFactory(
+            Supplier<DataLoaderRegistry> dataLoaderRegistryFactory) {
+        this.dataLoaderRegistryFactory = dataLoaderRegistryFactory;
+        return this;
+    }
+
+    /**
+     * @return the instrumentation of the query lifecycle, {@link Instrumentation#NOOP} by default
+     */
+    public Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Sets the instrumentation that is notified when queries on the schema are received, parsed, validated, executed
+     * and replied, and when the schema is marshaled for, or un-marshaled by, client proxies. Use
+     * {@link io.engagingspaces.graphql.marshaller.instrumentation.FlightRecorderInstrumentation#create()} to emit
+     * Java Flight Recorder events.
+     * <p>
+     * The instrumentation is a local setting, and is not included in the json representation of the options.
+     *
+     * @param instrumentation the instrumentation
+     * @return the schema definition options for fluent coding
+     */
+    @Fluent
+    public SchemaDefinitionOptions setInstrumentation(Instrumentation instrumentation) {
+        this.instrumentation = Objects.requireNonNull(instrumentation, "Instrumentation cannot be null");
+        return this;
+    }
+
     private JsonObject deliveryOptionsToJson(DeliveryOptions options) {
         return JsonObjectHelper.jsonObject()
                 .put("sendTimeout", options.getSendTimeout())
@@ -176,4 +823,24 @@ public class SchemaDefinitionOptions {
                 // TODO Test with MultiMap values
                 .putIf("headers", options.getHeaders(), headers -> headers.size() > 0, headers -> headers);
     }
+
+    private static Map<String, List<String>> invalidatedTypesFromJson(JsonObject json) {
+        Map<String, List<String>> invalidatedTypes = new HashMap<>();
+        json.forEach(types -> {
+            JsonArray typeNames = (JsonArray) types.getValue();
+            List<String> names = new ArrayList<>(typeNames.size());
+            for (int i = 0; i < typeNames.size(); i++) {
+                names.add(typeNames.getString(i));
+            }
+            invalidatedTypes.put(types.getKey(), names);
+        });
+        return invalidatedTypes;
+    }
+
+    private static JsonObject invalidatedTypesToJson(Map<String, List<String>> invalidatedTypes) {
+        JsonObject json = new JsonObject();
+        invalidatedTypes.forEach((mutationField, types) ->
+                json.put(mutationField, new JsonArray(new ArrayList<>(types))));
+        return json;
+    }
 }
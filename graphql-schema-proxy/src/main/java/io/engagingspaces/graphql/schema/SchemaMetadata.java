@@ -23,8 +23,11 @@ import io.engagingspaces.graphql.proxy.impl.SchemaProxyContext;
 import io.vertx.codegen.annotations.DataObject;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -45,6 +48,12 @@ public class SchemaMetadata {
      */
     public static final String METADATA_MUTATIONS = "mutations";
 
+    /**
+     * Key to the list of root query field names that are executed consumer-side in
+     * {@link SchemaProxyType#MixedMode}.
+     */
+    public static final String METADATA_LOCAL_QUERIES = "localQueries";
+
     private final JsonObject proxyJson;
     private final JsonObject metadata;
     private final SchemaDefinitionOptions options;
@@ -131,7 +140,28 @@ public class SchemaMetadata {
     }
 
     /**
-     * Gets the client proxy instance, if the schema proxy type is {@link SchemaProxyType#ProxyClient}.
+     * Gets the flag that determines whether queries are split between consumer and publisher.
+     *
+     * @return {@code true} when using mixed mode, {@code false} otherwise
+     */
+    public boolean isMixedMode() {
+        return SchemaProxyType.MixedMode.equals(options.getProxyType()) && !proxyJson.equals(new JsonObject());
+    }
+
+    /**
+     * Gets the names of the root query fields that are executed consumer-side in mixed mode.
+     *
+     * @return the local root query field names, or an empty list
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getLocalQueries() {
+        JsonArray localQueries = metadata == null ? null : metadata.getJsonArray(METADATA_LOCAL_QUERIES);
+        return localQueries == null ? Collections.emptyList() : (List<String>) localQueries.getList();
+    }
+
+    /**
+     * Gets the client proxy instance, if the schema proxy type is {@link SchemaProxyType#ProxyClient} or
+     * {@link SchemaProxyType#MixedMode}.
      *
      * @param vertx the vert.x instance to pass to the proxy
      * @return the graphql client schema proxy
@@ -140,7 +170,8 @@ public class SchemaMetadata {
     public GraphQLSchemaProxy getClientProxy(Vertx vertx) {
         if (schemaProxy == null) {
             schemaProxy = new GraphQLSchemaProxy(vertx, proxyJson,
-                    SchemaProxyContext.createUnmarshalingContext(SchemaMarshallerOptions.create(), proxyJson));
+                    SchemaProxyContext.createUnmarshalingContext(SchemaMarshallerOptions.create()
+                            .setInstrumentation(options().getInstrumentation()), proxyJson));
         }
         return schemaProxy;
     }
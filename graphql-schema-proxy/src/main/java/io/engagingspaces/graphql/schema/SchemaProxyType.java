@@ -35,5 +35,11 @@ public enum SchemaProxyType {
     /**
      * Proxies the GraphQl schema as a regular Vert.x service proxy, and executes queries in the service implementation.
      */
-    ServiceProxy
+    ServiceProxy,
+
+    /**
+     * Proxies the GraphQL schema consumer-side for the root query fields that are marked as local in the schema
+     * metadata, and delegates execution of the remainder of the query to the service.
+     */
+    MixedMode
 }
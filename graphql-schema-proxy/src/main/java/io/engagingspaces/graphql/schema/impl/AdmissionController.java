@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of queries that execute concurrently on a schema, and the number of queries that wait for
+ * execution.
+ * <p>
+ * Admitted queries execute on the Vert.x worker pool, and their results are delivered on the context of the caller.
+ * When both the concurrency limit and the queue are full, queries fail fast with a {@link ServiceException} with
+ * failure code {@link Queryable#QUERY_REJECTED}, so that the service sheds load instead of building up latency.
+ * <p>
+ * A maximum concurrency of {@code 0} disables admission control, and queries execute directly on the calling thread.
+ * Queries that are submitted outside of a Vert.x context also execute on the calling thread, but count towards the
+ * concurrency limit and are rejected when it is reached.
+ * <p>
+ * Asynchronous queries (see {@link #submitAsync(Consumer, boolean, Handler)}) are subject to the same limits, but
+ * execute on the context of the caller, so that they do not occupy a worker thread while waiting for I/O.
+ * <p>
+ * Queries can be submitted with low priority (e.g. expensive queries, see {@link QueryComplexity}). Waiting low
+ * priority queries only start when no regular queries are waiting, and share the queue capacity with them.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class AdmissionController {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Deque<PendingQuery> queue = new ArrayDeque<>();
+    private final Deque<PendingQuery> lowPriorityQueue = new ArrayDeque<>();
+
+    private int running;
+    private int peakQueued;
+    private long admitted;
+    private long rejected;
+
+    /**
+     * Creates a new admission controller.
+     *
+     * @param maxConcurrent the maximum number of concurrently executing queries, {@code 0} for no limit
+     * @param maxQueued     the maximum number of queries waiting for execution
+     */
+    public AdmissionController(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("Admission control limits cannot be negative");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Submits the query for execution.
+     *
+     * @param query         the blocking query execution
+     * @param resultHandler the result handler with the query result, or a failure
+     */
+    public void submit(Supplier<QueryResult> query, Handler<AsyncResult<QueryResult>> resultHandler) {
+        submit(query, false, resultHandler);
+    }
+
+    /**
+     * Submits the query for execution with the provided priority.
+     *
+     * @param query         the blocking query execution
+     * @param lowPriority   whether the query only starts when no regular queries are waiting
+     * @param resultHandler the result handler with the query result, or a failure
+     */
+    public void submit(Supplier<QueryResult> query, boolean lowPriority,
+                       Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(query, "Query cannot be null");
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        submit(new PendingQuery(Vertx.currentContext(), query, null, resultHandler), lowPriority);
+    }
+
+    /**
+     * Submits an asynchronous query for execution with the provided priority.
+     * <p>
+     * Asynchronous queries count towards the same limits as blocking queries, but are started on the context of the
+     * caller instead of the worker pool, and must not block it.
+     *
+     * @param query         the asynchronous query execution, that is invoked with the handler of the query result
+     * @param lowPriority   whether the query only starts when no regular queries are waiting
+     * @param resultHandler the result handler with the query result, or a failure
+     */
+    public void submitAsync(Consumer<Handler<AsyncResult<QueryResult>>> query, boolean lowPriority,
+                            Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(query, "Query cannot be null");
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        submit(new PendingQuery(Vertx.currentContext(), null, query, resultHandler), lowPriority);
+    }
+
+    private void submit(PendingQuery pending, boolean lowPriority) {
+        if (maxConcurrent == 0) {
+            if (pending.asyncQuery == null) {
+                pending.resultHandler.handle(executeQuery(pending.query));
+            } else {
+                executeAsyncQuery(pending.asyncQuery, pending.resultHandler);
+            }
+            return;
+        }
+        boolean start;
+        synchronized (this) {
+            start = running < maxConcurrent;
+            if (start) {
+                running++;
+                admitted++;
+            } else if (pending.context != null && queued() < maxQueued) {
+                (lowPriority ? lowPriorityQueue : queue).addLast(pending);
+                peakQueued = Math.max(peakQueued, queued());
+                return;
+            } else {
+                rejected++;
+            }
+        }
+        if (!start) {
+            pending.resultHandler.handle(Future.failedFuture(new ServiceException(Queryable.QUERY_REJECTED,
+                    "Query rejected, maximum number of concurrent queries exceeded")));
+        } else if (pending.context == null && pending.asyncQuery == null) {
+            AsyncResult<QueryResult> result = executeQuery(pending.query);
+            completed();
+            pending.resultHandler.handle(result);
+        } else {
+            execute(pending);
+        }
+    }
+
+    /**
+     * @return the number of queries that are currently executing
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * @return the number of queries that are currently waiting for execution
+     */
+    public synchronized int getQueued() {
+        return queued();
+    }
+
+    /**
+     * @return the number of low priority queries that are currently waiting for execution
+     */
+    public synchronized int getQueuedLowPriority() {
+        return lowPriorityQueue.size();
+    }
+
+    /**
+     * @return the highest number of queries that waited for execution at the same time
+     */
+    public synchronized int getPeakQueued() {
+        return peakQueued;
+    }
+
+    /**
+     * @return the total number of queries that were admitted for execution
+     */
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * @return the total number of queries that were rejected
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Creates a snapshot of the admission control metrics.
+     *
+     * @return the metrics json
+     */
+    public synchronized JsonObject toJson() {
+        return new JsonObject()
+                .put("maxConcurrent", maxConcurrent)
+                .put("maxQueued", maxQueued)
+                .put("running", running)
+                .put("queued", queued())
+                .put("queuedLowPriority", lowPriorityQueue.size())
+                .put("peakQueued", peakQueued)
+                .put("admitted", admitted)
+                .put("rejected", rejected);
+    }
+
+    private void execute(PendingQuery pending) {
+        if (pending.asyncQuery != null) {
+            if (pending.context == null || pending.context == Vertx.currentContext()) {
+                executeAsyncQuery(pending.asyncQuery, res -> {
+                    completed();
+                    pending.resultHandler.handle(res);
+                });
+            } else {
+                pending.context.runOnContext(v -> execute(pending));
+            }
+            return;
+        }
+        pending.context.<QueryResult>executeBlocking(future -> {
+            AsyncResult<QueryResult> result = executeQuery(pending.query);
+            if (result.succeeded()) {
+                future.complete(result.result());
+            } else {
+                future.fail(result.cause());
+            }
+        }, false, res -> {
+            completed();
+            pending.resultHandler.handle(res);
+        });
+    }
+
+    private void completed() {
+        PendingQuery next;
+        synchronized (this) {
+            next = queue.isEmpty() ? lowPriorityQueue.pollFirst() : queue.pollFirst();
+            if (next == null) {
+                running--;
+            } else {
+                admitted++;
+            }
+        }
+        if (next != null) {
+            execute(next);
+        }
+    }
+
+    private int queued() {
+        return queue.size() + lowPriorityQueue.size();
+    }
+
+    private static AsyncResult<QueryResult> executeQuery(Supplier<QueryResult> query) {
+        try {
+            return Future.succeededFuture(query.get());
+        } catch (RuntimeException ex) {
+            return Future.failedFuture(ex);
+        }
+    }
+
+    private static void executeAsyncQuery(Consumer<Handler<AsyncResult<QueryResult>>> query,
+                                          Handler<AsyncResult<QueryResult>> resultHandler) {
+        AtomicBoolean completed = new AtomicBoolean();
+        Handler<AsyncResult<QueryResult>> handler = res -> {
+            if (completed.compareAndSet(false, true)) {
+                resultHandler.handle(res);
+            }
+        };
+        try {
+            query.accept(handler);
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+        }
+    }
+
+    private static class PendingQuery {
+
+        private final Context context;
+        private final Supplier<QueryResult> query;
+        private final Consumer<Handler<AsyncResult<QueryResult>>> asyncQuery;
+        private final Handler<AsyncResult<QueryResult>> resultHandler;
+
+        private PendingQuery(Context context, Supplier<QueryResult> query,
+                             Consumer<Handler<AsyncResult<QueryResult>>> asyncQuery,
+                             Handler<AsyncResult<QueryResult>> resultHandler) {
+            this.context = context;
+            this.query = query;
+            this.asyncQuery = asyncQuery;
+            this.resultHandler = resultHandler;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExceptionWhileDataFetching;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLException;
+import graphql.execution.ExecutionContext;
+import graphql.language.Field;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLEnumType;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLScalarType;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLUnionType;
+import io.engagingspaces.graphql.dataloader.DataLoaderRegistry;
+import io.engagingspaces.graphql.marshaller.schema.AsyncDataFetcher;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution strategy that executes queries asynchronously, so that execution on the event loop can await the
+ * results of {@link AsyncDataFetcher asynchronous data fetchers} without blocking.
+ * <p>
+ * Field resolution continues on the thread that completes the result of a data fetcher. All sibling fields are
+ * resolved concurrently, except for the root fields of mutations, which are resolved one after another. Errors of
+ * data fetchers are added to the execution result, as with synchronous execution, while errors that abort
+ * synchronous execution (e.g. {@code null} values for non-null fields, or an expired deadline) fail the execution.
+ * <p>
+ * If the query has a {@link DataLoaderRegistry}, its data loaders are dispatched whenever resolution cannot proceed
+ * without the values they load, so that all keys that are loaded on a level of the query are loaded in one batch.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class AsyncExecutionStrategy extends QueryExecutionStrategy {
+
+    /**
+     * Creates a new asynchronous execution strategy for a single query.
+     *
+     * @param deadline the query deadline, or {@code null}
+     * @param trace    the query trace, or {@code null}
+     */
+    public AsyncExecutionStrategy(QueryDeadline deadline, QueryTrace trace) {
+        super(deadline, trace);
+    }
+
+    /**
+     * Executes the root fields of an operation asynchronously.
+     *
+     * @param executionContext the execution context
+     * @param parentType       the root type of the operation
+     * @param source           the root object
+     * @param fields           the root fields to resolve
+     * @param serial           whether to resolve the root fields one after another (for mutations)
+     * @param resultHandler    the result handler with the execution result, or a failure if execution was aborted
+     */
+    public void executeAsync(ExecutionContext executionContext, GraphQLObjectType parentType, Object source,
+                             Map<String, List<Field>> fields, boolean serial,
+                             Handler<AsyncResult<ExecutionResult>> resultHandler) {
+        ExecutionContext context = ConcurrentExecutionContext.of(executionContext);
+        Handler<AsyncResult<Map<String, Object>>> handler = res -> resultHandler.handle(res.succeeded() ?
+                Future.succeededFuture(new ExecutionResultImpl(res.result(), context.getErrors())) :
+                Future.failedFuture(res.cause()));
+        batched(context, () -> {
+            if (serial) {
+                resolveSerially(context, parentType, source, fields, new LinkedHashMap<>(),
+                        fields.entrySet().iterator(), handler);
+            } else {
+                resolveFields(context, parentType, source, fields, Collections.emptyList(), handler);
+            }
+        });
+    }
+
+    private void resolveSerially(ExecutionContext context, GraphQLObjectType parentType, Object source,
+                                 Map<String, List<Field>> fields, Map<String, Object> results,
+                                 Iterator<Map.Entry<String, List<Field>>> remaining,
+                                 Handler<AsyncResult<Map<String, Object>>> handler) {
+        if (!remaining.hasNext()) {
+            handler.handle(Future.succeededFuture(results));
+            return;
+        }
+        Map.Entry<String, List<Field>> field = remaining.next();
+        resolveFieldAsync(context, parentType, source, field.getValue(), Collections.emptyList(), res -> {
+            if (res.failed()) {
+                handler.handle(Future.failedFuture(res.cause()));
+            } else {
+                results.put(field.getKey(), res.result());
+                resolveSerially(context, parentType, source, fields, results, remaining, handler);
+            }
+        });
+    }
+
+    private void resolveFields(ExecutionContext context, GraphQLObjectType parentType, Object source,
+                               Map<String, List<Field>> fields, List<Object> path,
+                               Handler<AsyncResult<Map<String, Object>>> handler) {
+        List<String> names = new ArrayList<>(fields.keySet());
+        Aggregate aggregate = new Aggregate(names.size(), res -> {
+            if (res.failed()) {
+                handler.handle(Future.failedFuture(res.cause()));
+            } else {
+                Map<String, Object> results = new LinkedHashMap<>();
+                for (int i = 0; i < names.size(); i++) {
+                    results.put(names.get(i), res.result()[i]);
+                }
+                handler.handle(Future.succeededFuture(results));
+            }
+        });
+        for (int i = 0; i < names.size() && !aggregate.isDone(); i++) {
+            resolveFieldAsync(context, parentType, source, fields.get(names.get(i)), path, aggregate.handler(i));
+        }
+    }
+
+    private void resolveFieldAsync(ExecutionContext context, GraphQLObjectType parentType, Object source,
+                                   List<Field> fields, List<Object> parentPath,
+                                   Handler<AsyncResult<Object>> handler) {
+        Field field = fields.get(0);
+        GraphQLFieldDefinition fieldDef;
+        DataFetchingEnvironment environment;
+        try {
+            if (deadline() != null) {
+                deadline().check();
+            }
+            fieldDef = getFieldDef(context.getGraphQLSchema(), parentType, field);
+            Map<String, Object> argumentValues = valuesResolver.getArgumentValues(
+                    fieldDef.getArguments(), field.getArguments(), context.getVariables());
+            environment = new DataFetchingEnvironment(source, argumentValues, context.getRoot(), fields,
+                    fieldDef.getType(), parentType, context.getGraphQLSchema());
+        } catch (RuntimeException ex) {
+            handler.handle(Future.failedFuture(ex));
+            return;
+        }
+        List<Object> path = append(parentPath, field.getAlias() == null ? field.getName() : field.getAlias());
+        long startOffset = trace() == null ? 0 : trace().offset();
+        Object value = null;
+        try {
+            value = fieldDef.getDataFetcher().get(environment);
+        } catch (Exception ex) {
+            context.addError(new ExceptionWhileDataFetching(ex));
+        }
+        onComplete(context, value, res -> {
+            long fetchDuration = trace() == null ? 0 : trace().offset() - startOffset;
+            completeValueAsync(context, fieldDef.getType(), fields, resolved(context, res), path, completed -> {
+                if (trace() != null && completed.succeeded()) {
+                    trace().addResolver(path, parentType.getName(), field.getName(), typeName(fieldDef.getType()),
+                            startOffset, trace().offset() - startOffset, fetchDuration);
+                }
+                handler.handle(completed);
+            });
+        });
+    }
+
+    private void completeValueAsync(ExecutionContext context, GraphQLType fieldType, List<Field> fields,
+                                    Object result, List<Object> path, Handler<AsyncResult<Object>> handler) {
+        if (AsyncDataFetcher.isAsync(result)) {
+            onComplete(context, result, res ->
+                    completeValueAsync(context, fieldType, fields, resolved(context, res), path, handler));
+            return;
+        }
+        if (fieldType instanceof GraphQLNonNull) {
+            completeValueAsync(context, ((GraphQLNonNull) fieldType).getWrappedType(), fields, result, path, res ->
+                    handler.handle(res.succeeded() && res.result() == null ? Future.failedFuture(
+                            new GraphQLException("Cannot return null for non-nullable type: " + fields)) : res));
+            return;
+        }
+        if (result == null) {
+            handler.handle(Future.succeededFuture());
+        } else if (fieldType instanceof GraphQLList) {
+            completeListAsync(context, (GraphQLList) fieldType, fields, result, path, handler);
+        } else if (fieldType instanceof GraphQLScalarType || fieldType instanceof GraphQLEnumType) {
+            AsyncResult<Object> completed;
+            try {
+                completed = Future.succeededFuture(fieldType instanceof GraphQLScalarType ?
+                        completeValueForScalar((GraphQLScalarType) fieldType, result).getData() :
+                        completeValueForEnum((GraphQLEnumType) fieldType, result).getData());
+            } catch (RuntimeException ex) {
+                completed = Future.failedFuture(ex);
+            }
+            handler.handle(completed);
+        } else {
+            Map<String, List<Field>> subFields = new LinkedHashMap<>();
+            GraphQLObjectType resolvedType;
+            try {
+                resolvedType = fieldType instanceof GraphQLInterfaceType ?
+                        resolveType((GraphQLInterfaceType) fieldType, result) : fieldType instanceof GraphQLUnionType ?
+                        resolveType((GraphQLUnionType) fieldType, result) : (GraphQLObjectType) fieldType;
+                List<String> visitedFragments = new ArrayList<>();
+                for (Field field : fields) {
+                    if (field.getSelectionSet() != null) {
+                        fieldCollector.collectFields(context, resolvedType, field.getSelectionSet(), visitedFragments,
+                                subFields);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                handler.handle(Future.failedFuture(ex));
+                return;
+            }
+            resolveFields(context, resolvedType, result, subFields, path, res -> handler.handle(res.succeeded() ?
+                    Future.succeededFuture(res.result()) : Future.failedFuture(res.cause())));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeListAsync(ExecutionContext context, GraphQLList fieldType, List<Field> fields,
+                                   Object result, List<Object> path, Handler<AsyncResult<Object>> handler) {
+        List<Object> items = result.getClass().isArray() ? Arrays.asList((Object[]) result) : (List<Object>) result;
+        Aggregate aggregate = new Aggregate(items.size(), res -> handler.handle(res.succeeded() ?
+                Future.succeededFuture(new ArrayList<>(Arrays.asList(res.result()))) :
+                Future.failedFuture(res.cause())));
+        for (int i = 0; i < items.size() && !aggregate.isDone(); i++) {
+            completeValueAsync(context, fieldType.getWrappedType(), fields, items.get(i), append(path, i),
+                    aggregate.handler(i));
+        }
+    }
+
+    private static void onComplete(ExecutionContext context, Object value, Handler<AsyncResult<Object>> handler) {
+        AsyncDataFetcher.onComplete(value, res -> batched(context, () -> handler.handle(res)));
+    }
+
+    private static void batched(ExecutionContext context, Runnable work) {
+        if (context.getRoot() instanceof DataLoaderRegistry) {
+            ((DataLoaderRegistry) context.getRoot()).batch(work);
+        } else {
+            work.run();
+        }
+    }
+
+    private static Object resolved(ExecutionContext context, AsyncResult<Object> result) {
+        if (result.failed()) {
+            context.addError(new ExceptionWhileDataFetching(result.cause() instanceof Exception ?
+                    (Exception) result.cause() : new IllegalStateException(result.cause())));
+            return null;
+        }
+        return result.result();
+    }
+
+    private static List<Object> append(List<Object> path, Object segment) {
+        List<Object> result = new ArrayList<>(path.size() + 1);
+        result.addAll(path);
+        result.add(segment);
+        return result;
+    }
+
+    /**
+     * Collects the results of concurrently completed values, and completes once all values are completed, or when
+     * the first value fails. The atomic countdown publishes the results to the thread that completes the last value.
+     */
+    private static class Aggregate {
+
+        private final Object[] results;
+        private final AtomicInteger pending;
+        private final Handler<AsyncResult<Object[]>> handler;
+
+        private Aggregate(int size, Handler<AsyncResult<Object[]>> handler) {
+            this.results = new Object[size];
+            this.pending = new AtomicInteger(size);
+            this.handler = handler;
+            if (size == 0) {
+                handler.handle(Future.succeededFuture(results));
+            }
+        }
+
+        private boolean isDone() {
+            return pending.get() <= 0;
+        }
+
+        private Handler<AsyncResult<Object>> handler(int index) {
+            return res -> {
+                if (res.failed()) {
+                    if (pending.getAndSet(-1) > 0) {
+                        handler.handle(Future.failedFuture(res.cause()));
+                    }
+                } else {
+                    results[index] = res.result();
+                    if (pending.decrementAndGet() == 0) {
+                        handler.handle(Future.succeededFuture(results));
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.GraphQLError;
+import graphql.execution.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Execution context that accepts errors from multiple threads, for execution strategies that resolve fields
+ * concurrently.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+class ConcurrentExecutionContext extends ExecutionContext {
+
+    private final List<GraphQLError> errors = new ArrayList<>();
+
+    private ConcurrentExecutionContext() {
+    }
+
+    /**
+     * Gets a concurrent copy of the provided execution context, including its errors, or the context itself if it
+     * already is a concurrent execution context.
+     *
+     * @param context the execution context
+     * @return the concurrent execution context
+     */
+    static ExecutionContext of(ExecutionContext context) {
+        if (context instanceof ConcurrentExecutionContext) {
+            return context;
+        }
+        ConcurrentExecutionContext concurrentContext = new ConcurrentExecutionContext();
+        concurrentContext.setGraphQLSchema(context.getGraphQLSchema());
+        concurrentContext.setExecutionStrategy(context.getExecutionStrategy());
+        concurrentContext.setFragmentsByName(context.getFragmentsByName());
+        concurrentContext.setOperationDefinition(context.getOperationDefinition());
+        concurrentContext.setVariables(context.getVariables());
+        concurrentContext.setRoot(context.getRoot());
+        concurrentContext.errors.addAll(context.getErrors());
+        return concurrentContext;
+    }
+
+    @Override
+    public synchronized void addError(GraphQLError error) {
+        errors.add(error);
+    }
+
+    @Override
+    public synchronized List<GraphQLError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+}
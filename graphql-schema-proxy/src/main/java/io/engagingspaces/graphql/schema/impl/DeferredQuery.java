@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.language.*;
+import graphql.parser.Parser;
+import io.engagingspaces.graphql.query.impl.QueryPrinter;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits a GraphQL query with {@code @defer} directives into an initial query and a query per deferred fragment, so
+ * that the initial payload does not wait for the fields of the deferred fragments.
+ * <p>
+ * Fragment spreads and inline fragments in the root selection set of a query operation are deferred when they carry
+ * a {@code @defer} directive, unless its {@code if} argument is {@code false}. The optional {@code label} argument
+ * identifies the fragment in its incremental payload. Inline fragments need a type condition (e.g.
+ * {@code ... on Query @defer}), because the query parser does not support them without. Every split query only
+ * declares the variables and fragments it uses, so it passes validation on its own.
+ * <p>
+ * The schema does not know the {@code @defer} and {@code @stream} directives, so they are removed from all queries
+ * before validation. Deferred fragments that are not in the root selection set, fragments in mutations and documents
+ * with multiple operations, and list fields with {@code @stream} are executed as part of the initial query.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class DeferredQuery {
+
+    /**
+     * Name of the directive that defers a fragment.
+     */
+    public static final String DEFER_DIRECTIVE = "defer";
+
+    private static final List<String> INCREMENTAL_DIRECTIVES = Arrays.asList(DEFER_DIRECTIVE, "stream");
+
+    private final String query;
+    private final String initialQuery;
+    private final List<Fragment> deferred;
+
+    private DeferredQuery(String query, String initialQuery, List<Fragment> deferred) {
+        this.query = query;
+        this.initialQuery = initialQuery;
+        this.deferred = deferred;
+    }
+
+    /**
+     * Splits the query into the initial query and the deferred fragments. Queries with syntax errors are not split.
+     *
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, to evaluate the {@code if} argument of {@code @defer}, or
+     *                     {@code null}
+     * @return the split query
+     */
+    public static DeferredQuery split(String graphqlQuery, Map<String, Object> variables) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        Document document;
+        try {
+            document = new Parser().parseDocument(graphqlQuery);
+        } catch (ParseCancellationException ex) {
+            return new DeferredQuery(graphqlQuery, graphqlQuery, Collections.emptyList());
+        }
+        List<OperationDefinition> operations = new ArrayList<>();
+        Map<String, FragmentDefinition> fragments = new LinkedHashMap<>();
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                operations.add((OperationDefinition) definition);
+            } else if (definition instanceof FragmentDefinition) {
+                fragments.put(((FragmentDefinition) definition).getName(), (FragmentDefinition) definition);
+            }
+        }
+        OperationDefinition operation = operations.size() == 1 &&
+                operations.get(0).getOperation() == OperationDefinition.Operation.QUERY ? operations.get(0) : null;
+        List<Selection> initialSelections = new ArrayList<>();
+        List<Selection> deferredSelections = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        if (operation != null) {
+            for (Selection selection : operation.getSelectionSet().getSelections()) {
+                Directive defer = deferDirective(selection);
+                if (defer != null && isEnabled(defer, variables)) {
+                    deferredSelections.add(selection);
+                    labels.add(label(defer));
+                } else {
+                    initialSelections.add(selection);
+                }
+            }
+        }
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                stripDirectives(((OperationDefinition) definition).getDirectives());
+                stripDirectives(((OperationDefinition) definition).getSelectionSet());
+            } else if (definition instanceof FragmentDefinition) {
+                stripDirectives(((FragmentDefinition) definition).getDirectives());
+                stripDirectives(((FragmentDefinition) definition).getSelectionSet());
+            }
+        }
+        String query = QueryPrinter.print(document);
+        if (deferredSelections.isEmpty()) {
+            return new DeferredQuery(query, query, Collections.emptyList());
+        }
+        List<Fragment> deferred = new ArrayList<>();
+        for (int i = 0; i < deferredSelections.size(); i++) {
+            deferred.add(new Fragment(labels.get(i),
+                    print(operation, Collections.singletonList(deferredSelections.get(i)), fragments)));
+        }
+        return new DeferredQuery(query,
+                initialSelections.isEmpty() ? null : print(operation, initialSelections, fragments), deferred);
+    }
+
+    /**
+     * @return the complete query without the incremental delivery directives, to execute it in a single payload
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the query of the initial payload, or {@code null} if all root selections are deferred
+     */
+    public String getInitialQuery() {
+        return initialQuery;
+    }
+
+    /**
+     * @return the deferred fragments, in the order of the query
+     */
+    public List<Fragment> getDeferred() {
+        return Collections.unmodifiableList(deferred);
+    }
+
+    /**
+     * @return {@code true} if the query has deferred fragments, {@code false} otherwise
+     */
+    public boolean isDeferred() {
+        return !deferred.isEmpty();
+    }
+
+    private static String print(OperationDefinition operation, List<Selection> selections,
+                                Map<String, FragmentDefinition> fragments) {
+        SelectionSet selectionSet = new SelectionSet(new ArrayList<>(selections));
+        Set<String> usedFragments = new HashSet<>();
+        Set<String> usedVariables = new HashSet<>();
+        collectDirectiveUsages(operation.getDirectives(), usedVariables);
+        collectUsages(selectionSet, fragments, usedFragments, usedVariables);
+        List<VariableDefinition> variableDefinitions = operation.getVariableDefinitions().stream()
+                .filter(variable -> usedVariables.contains(variable.getName()))
+                .collect(Collectors.toList());
+        List<Definition> definitions = new ArrayList<>();
+        definitions.add(new OperationDefinition(operation.getName(), operation.getOperation(), variableDefinitions,
+                operation.getDirectives(), selectionSet));
+        fragments.values().stream()
+                .filter(fragment -> usedFragments.contains(fragment.getName()))
+                .forEach(definitions::add);
+        return QueryPrinter.print(definitions);
+    }
+
+    private static void collectUsages(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments,
+                                      Set<String> usedFragments, Set<String> usedVariables) {
+        if (selectionSet == null) {
+            return;
+        }
+        for (Selection selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                Field field = (Field) selection;
+                collectArgumentUsages(field.getArguments(), usedVariables);
+                collectDirectiveUsages(field.getDirectives(), usedVariables);
+                collectUsages(field.getSelectionSet(), fragments, usedFragments, usedVariables);
+            } else if (selection instanceof InlineFragment) {
+                InlineFragment fragment = (InlineFragment) selection;
+                collectDirectiveUsages(fragment.getDirectives(), usedVariables);
+                collectUsages(fragment.getSelectionSet(), fragments, usedFragments, usedVariables);
+            } else if (selection instanceof FragmentSpread) {
+                FragmentSpread spread = (FragmentSpread) selection;
+                collectDirectiveUsages(spread.getDirectives(), usedVariables);
+                FragmentDefinition fragment = fragments.get(spread.getName());
+                if (fragment != null && usedFragments.add(fragment.getName())) {
+                    collectDirectiveUsages(fragment.getDirectives(), usedVariables);
+                    collectUsages(fragment.getSelectionSet(), fragments, usedFragments, usedVariables);
+                }
+            }
+        }
+    }
+
+    private static void collectDirectiveUsages(List<Directive> directives, Set<String> usedVariables) {
+        if (directives != null) {
+            directives.forEach(directive -> collectArgumentUsages(directive.getArguments(), usedVariables));
+        }
+    }
+
+    private static void collectArgumentUsages(List<Argument> arguments, Set<String> usedVariables) {
+        if (arguments != null) {
+            arguments.forEach(argument -> collectValueUsages(argument.getValue(), usedVariables));
+        }
+    }
+
+    private static void collectValueUsages(Value value, Set<String> usedVariables) {
+        if (value instanceof VariableReference) {
+            usedVariables.add(((VariableReference) value).getName());
+        } else if (value instanceof ArrayValue) {
+            ((ArrayValue) value).getValues().forEach(item -> collectValueUsages(item, usedVariables));
+        } else if (value instanceof ObjectValue) {
+            ((ObjectValue) value).getObjectFields().forEach(field -> collectValueUsages(field.getValue(),
+                    usedVariables));
+        }
+    }
+
+    private static void stripDirectives(SelectionSet selectionSet) {
+        if (selectionSet == null) {
+            return;
+        }
+        for (Selection selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                stripDirectives(((Field) selection).getDirectives());
+                stripDirectives(((Field) selection).getSelectionSet());
+            } else if (selection instanceof InlineFragment) {
+                stripDirectives(((InlineFragment) selection).getDirectives());
+                stripDirectives(((InlineFragment) selection).getSelectionSet());
+            } else if (selection instanceof FragmentSpread) {
+                stripDirectives(((FragmentSpread) selection).getDirectives());
+            }
+        }
+    }
+
+    private static void stripDirectives(List<Directive> directives) {
+        if (directives != null) {
+            directives.removeIf(directive -> INCREMENTAL_DIRECTIVES.contains(directive.getName()));
+        }
+    }
+
+    private static Directive deferDirective(Selection selection) {
+        List<Directive> directives = selection instanceof InlineFragment ?
+                ((InlineFragment) selection).getDirectives() : selection instanceof FragmentSpread ?
+                ((FragmentSpread) selection).getDirectives() : null;
+        if (directives != null) {
+            for (Directive directive : directives) {
+                if (DEFER_DIRECTIVE.equals(directive.getName())) {
+                    return directive;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isEnabled(Directive defer, Map<String, Object> variables) {
+        Value condition = argument(defer, "if");
+        if (condition instanceof BooleanValue) {
+            return ((BooleanValue) condition).isValue();
+        }
+        if (condition instanceof VariableReference && variables != null) {
+            return !Boolean.FALSE.equals(variables.get(((VariableReference) condition).getName()));
+        }
+        return true;
+    }
+
+    private static String label(Directive defer) {
+        Value label = argument(defer, "label");
+        return label instanceof StringValue ? ((StringValue) label).getValue() : null;
+    }
+
+    private static Value argument(Directive directive, String name) {
+        if (directive.getArguments() != null) {
+            for (Argument argument : directive.getArguments()) {
+                if (name.equals(argument.getName())) {
+                    return argument.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A deferred fragment, with the query that selects its fields.
+     */
+    public static class Fragment {
+
+        private final String label;
+        private final String query;
+
+        private Fragment(String label, String query) {
+            this.label = label;
+            this.query = query;
+        }
+
+        /**
+         * @return the label of the {@code @defer} directive, or {@code null} if not provided
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * @return the query that selects the fields of the fragment
+         */
+        public String getQuery() {
+            return query;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Delivers the initial payload and the incremental payloads of a query that is split by {@link DeferredQuery}.
+ * <p>
+ * The initial query result is delivered as soon as it is available, with a {@value #HAS_NEXT} extension when
+ * deferred fragments follow. Every deferred fragment is delivered as an incremental payload with its {@code label},
+ * the {@code path} of the fragment (the root of the result), its {@code data} and {@code errors}, and a
+ * {@value #HAS_NEXT} flag that is {@code false} for the last payload. Payloads of fragments that complete before the
+ * initial query are held back until the initial result is delivered, and are discarded if the initial query fails.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class IncrementalDelivery {
+
+    /**
+     * Name of the flag that indicates whether more incremental payloads follow.
+     */
+    public static final String HAS_NEXT = "hasNext";
+
+    /**
+     * Request header with the address to send the incremental payloads to.
+     */
+    public static final String ADDRESS_HEADER = "incremental-address";
+
+    private final Handler<AsyncResult<QueryResult>> resultHandler;
+    private final Handler<JsonObject> incrementHandler;
+    private final List<JsonObject> pending = new ArrayList<>();
+    private final int deferred;
+
+    private int remaining;
+    private boolean initialDelivered;
+    private boolean discarded;
+
+    /**
+     * Creates a new incremental delivery.
+     *
+     * @param deferred         the number of deferred fragments
+     * @param resultHandler    the result handler of the initial payload
+     * @param incrementHandler the handler of the incremental payloads
+     */
+    public IncrementalDelivery(int deferred, Handler<AsyncResult<QueryResult>> resultHandler,
+                               Handler<JsonObject> incrementHandler) {
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        Objects.requireNonNull(incrementHandler, "Increment handler cannot be null");
+        this.resultHandler = resultHandler;
+        this.incrementHandler = incrementHandler;
+        this.deferred = deferred;
+        this.remaining = deferred;
+    }
+
+    /**
+     * Delivers the result of the initial query, followed by the payloads of the deferred fragments that have
+     * already completed.
+     *
+     * @param result the result of the initial query, or a failure
+     */
+    public synchronized void initial(AsyncResult<QueryResult> result) {
+        if (result.failed()) {
+            discarded = true;
+            pending.clear();
+            resultHandler.handle(result);
+            return;
+        }
+        initialDelivered = true;
+        resultHandler.handle(Future.succeededFuture(deferred == 0 ? result.result() : withHasNext(result.result())));
+        pending.forEach(incrementHandler::handle);
+        pending.clear();
+    }
+
+    /**
+     * Delivers the result of a deferred fragment, or holds it back until the initial result is delivered.
+     *
+     * @param label  the label of the fragment, or {@code null}
+     * @param result the result of the query of the fragment, or a failure
+     */
+    public synchronized void deferred(String label, AsyncResult<QueryResult> result) {
+        if (discarded) {
+            return;
+        }
+        JsonObject increment = increment(label, result, --remaining > 0);
+        if (initialDelivered) {
+            incrementHandler.handle(increment);
+        } else {
+            pending.add(increment);
+        }
+    }
+
+    private static QueryResult withHasNext(QueryResult result) {
+        JsonObject extensions = result.getExtensions() == null ? new JsonObject() : result.getExtensions().copy();
+        return new QueryResult(result.getData(), result.isSucceeded(), result.getErrors(),
+                extensions.put(HAS_NEXT, true));
+    }
+
+    private static JsonObject increment(String label, AsyncResult<QueryResult> result, boolean hasNext) {
+        JsonObject increment = new JsonObject();
+        if (label != null) {
+            increment.put("label", label);
+        }
+        increment.put("path", new JsonArray());
+        if (result.failed()) {
+            increment.putNull("data").put("errors", new JsonArray()
+                    .add(new JsonObject().put("message", String.valueOf(result.cause().getMessage()))));
+        } else if (result.result().isSucceeded()) {
+            increment.put("data", result.result().getData());
+        } else {
+            increment.putNull("data").put("errors", result.result().toJson().getJsonArray("errors"));
+        }
+        return increment.put(HAS_NEXT, hasNext);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.parser.Parser;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.impl.QueryPrinter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Caches the results of introspection queries on a schema.
+ * <p>
+ * Queries that only select the introspection fields {@code __schema}, {@code __type} and {@code __typename} on the
+ * query root (such as the introspection query of GraphQL tools and client proxies) return the same result on every
+ * execution, because it only depends on the schema. Their successful results are cached by normalized query text
+ * and variables, and are replied as the same {@link QueryResult} instance, whose json encoding is cached as well.
+ * The cached result holds a read-only copy of the data and extensions, so a consumer cannot change the result that
+ * is replied to others: modifying it throws an {@link UnsupportedOperationException}.
+ * <p>
+ * The cache belongs to the {@link QueryExecutor} of a schema instance. A changed schema is a new schema instance,
+ * and starts with an empty cache.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class IntrospectionCache {
+
+    private static final int CACHE_SIZE = 16;
+    private static final int QUERY_CACHE_SIZE = 256;
+    private static final String NOT_INTROSPECTION = "";
+    private static final List<String> INTROSPECTION_FIELDS = Arrays.asList("__schema", "__type", "__typename");
+
+    private final Map<String, QueryResult> results = lruMap(CACHE_SIZE);
+    private final Map<String, String> normalizedQueries = lruMap(QUERY_CACHE_SIZE);
+    private long hits;
+
+    /**
+     * Gets the key under which the result of the query is cached.
+     *
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, or {@code null}
+     * @return the cache key, or {@code null} if the query is not an introspection query
+     */
+    public String keyOf(String graphqlQuery, Map<String, Object> variables) {
+        if (graphqlQuery == null || !graphqlQuery.contains("__")) {
+            return null;
+        }
+        String normalizedQuery;
+        synchronized (this) {
+            normalizedQuery = normalizedQueries.get(graphqlQuery);
+        }
+        if (normalizedQuery == null) {
+            normalizedQuery = normalize(graphqlQuery);
+            synchronized (this) {
+                normalizedQueries.put(graphqlQuery, normalizedQuery);
+            }
+        }
+        if (NOT_INTROSPECTION.equals(normalizedQuery)) {
+            return null;
+        }
+        return normalizedQuery + '\n' +
+                (variables == null || variables.isEmpty() ? "" : new JsonObject(new TreeMap<>(variables)).encode());
+    }
+
+    /**
+     * Gets the cached result of an introspection query.
+     *
+     * @param key the cache key, or {@code null}
+     * @return the cached query result, or {@code null} if not cached
+     */
+    public synchronized QueryResult get(String key) {
+        QueryResult result = key == null ? null : results.get(key);
+        if (result != null) {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Wraps the result handler of an introspection query, to cache its result when successful.
+     *
+     * @param key           the cache key, or {@code null} to not cache the result
+     * @param resultHandler the result handler
+     * @return the caching result handler
+     */
+    public Handler<AsyncResult<QueryResult>> caching(String key, Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (key == null) {
+            return resultHandler;
+        }
+        return res -> {
+            if (res.succeeded() && res.result().isSucceeded()) {
+                QueryResult result = readOnly(res.result());
+                synchronized (this) {
+                    results.put(key, result);
+                }
+                resultHandler.handle(Future.succeededFuture(result));
+            } else {
+                resultHandler.handle(res);
+            }
+        };
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * @return the number of queries that were answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    private static String normalize(String graphqlQuery) {
+        Document document;
+        try {
+            document = new Parser().parseDocument(graphqlQuery);
+        } catch (ParseCancellationException ex) {
+            return NOT_INTROSPECTION;
+        }
+        Map<String, FragmentDefinition> fragments = new HashMap<>();
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof FragmentDefinition) {
+                fragments.put(((FragmentDefinition) definition).getName(), (FragmentDefinition) definition);
+            }
+        }
+        boolean hasOperation = false;
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                OperationDefinition operation = (OperationDefinition) definition;
+                if (operation.getOperation() != OperationDefinition.Operation.QUERY ||
+                        !isIntrospection(operation.getSelectionSet(), fragments, new HashSet<>())) {
+                    return NOT_INTROSPECTION;
+                }
+                hasOperation = true;
+            }
+        }
+        return hasOperation ? QueryPrinter.print(document) : NOT_INTROSPECTION;
+    }
+
+    private static boolean isIntrospection(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments,
+                                           Set<String> visitedFragments) {
+        for (Selection selection : selectionSet.getSelections()) {
+            if (selection instanceof Field) {
+                if (!INTROSPECTION_FIELDS.contains(((Field) selection).getName())) {
+                    return false;
+                }
+            } else if (selection instanceof InlineFragment) {
+                if (!isIntrospection(((InlineFragment) selection).getSelectionSet(), fragments, visitedFragments)) {
+                    return false;
+                }
+            } else if (selection instanceof FragmentSpread) {
+                FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+                if (fragment == null) {
+                    return false;
+                }
+                if (visitedFragments.add(fragment.getName()) &&
+                        !isIntrospection(fragment.getSelectionSet(), fragments, visitedFragments)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static QueryResult readOnly(QueryResult result) {
+        Buffer encoded = result.toBuffer();
+        return new QueryResult(new JsonObject(readOnly(result.getData().getMap())), true, result.getErrors(),
+                result.getExtensions() == null ? null : new JsonObject(readOnly(result.getExtensions().getMap())),
+                copy -> encoded);
+    }
+
+    private static Map<String, Object> readOnly(Map<?, ?> map) {
+        Map<String, Object> copy = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+        map.forEach((key, value) -> copy.put(String.valueOf(key), readOnlyValue(value)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static List<Object> readOnly(List<?> list) {
+        List<Object> copy = new ArrayList<>(list.size());
+        list.forEach(item -> copy.add(readOnlyValue(item)));
+        return Collections.unmodifiableList(copy);
+    }
+
+    private static Object readOnlyValue(Object value) {
+        if (value instanceof JsonObject) {
+            return readOnly(((JsonObject) value).getMap());
+        } else if (value instanceof Map) {
+            return readOnly((Map<?, ?>) value);
+        } else if (value instanceof JsonArray) {
+            return readOnly(((JsonArray) value).getList());
+        } else if (value instanceof List) {
+            return readOnly((List<?>) value);
+        }
+        return value;
+    }
+
+    private static <V> Map<String, V> lruMap(int maxSize) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+}
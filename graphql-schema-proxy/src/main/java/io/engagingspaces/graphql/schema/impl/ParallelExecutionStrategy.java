@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.GraphQLError;
+import graphql.execution.ExecutionContext;
+import graphql.language.Field;
+import graphql.schema.GraphQLObjectType;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution strategy that resolves sibling fields in parallel on an {@link Executor}.
+ * <p>
+ * The first sibling field is resolved on the calling thread while the others are submitted to the executor. Before
+ * waiting for a submitted field, the calling thread resolves it itself if no executor thread has started on it yet.
+ * So a thread never waits for work that is not in progress, and nested parallel resolution cannot exhaust a bounded
+ * executor. If the executor rejects a field, it is resolved on the calling thread as well.
+ * <p>
+ * Data fetchers of sibling fields are invoked concurrently, and must be thread-safe. The root fields of mutations are
+ * always resolved one after another (see {@link #executeSerially}), so for mutations only the fields below the root
+ * fields are resolved in parallel.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ParallelExecutionStrategy extends QueryExecutionStrategy {
+
+    private final Executor executor;
+
+    /**
+     * Creates a new parallel execution strategy for a single query.
+     *
+     * @param deadline the query deadline, or {@code null}
+     * @param trace    the query trace, or {@code null}
+     * @param executor the executor to resolve sibling fields on
+     */
+    public ParallelExecutionStrategy(QueryDeadline deadline, QueryTrace trace, Executor executor) {
+        super(deadline, trace);
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the executor that is used if no parallel executor is configured in the schema definition options.
+     * <p>
+     * The executor is shared by all schemas. It has twice as many daemon threads as there are processors, which stop
+     * when idle, and a bounded queue. Fields that are rejected because the queue is full are resolved on the calling
+     * thread. Unlike the common fork-join pool, data fetchers that block on I/O do not starve other users of the JVM.
+     *
+     * @return the default parallel executor
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    @Override
+    public ExecutionResult execute(ExecutionContext executionContext, GraphQLObjectType parentType, Object source,
+                                   Map<String, List<Field>> fields) {
+        if (fields.size() < 2) {
+            return super.execute(executionContext, parentType, source, fields);
+        }
+        ExecutionContext context = ConcurrentExecutionContext.of(executionContext);
+        List<Object> parentPath = currentPath();
+        Map<String, FutureTask<ExecutionResult>> resolutions = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Field>> field : fields.entrySet()) {
+            resolutions.put(field.getKey(), new FutureTask<>(() ->
+                    resolveFieldAt(parentPath, context, parentType, source, field.getValue())));
+        }
+        boolean first = true;
+        for (FutureTask<ExecutionResult> resolution : resolutions.values()) {
+            if (first) {
+                first = false;
+                continue;
+            }
+            try {
+                executor.execute(resolution);
+            } catch (RejectedExecutionException ex) {
+                // resolved on the calling thread below
+            }
+        }
+        Map<String, Object> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, FutureTask<ExecutionResult>> resolution : resolutions.entrySet()) {
+                resolution.getValue().run();
+                ExecutionResult result = resolution.getValue().get();
+                results.put(resolution.getKey(), result == null ? null : result.getData());
+            }
+        } catch (ExecutionException ex) {
+            resolutions.values().forEach(resolution -> resolution.cancel(false));
+            throw ex.getCause() instanceof RuntimeException ?
+                    (RuntimeException) ex.getCause() : new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            resolutions.values().forEach(resolution -> resolution.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parallel field resolution interrupted", ex);
+        }
+        if (context != executionContext) {
+            List<GraphQLError> errors = context.getErrors();
+            for (int i = executionContext.getErrors().size(); i < errors.size(); i++) {
+                executionContext.addError(errors.get(i));
+            }
+        }
+        return new ExecutionResultImpl(results, executionContext.getErrors());
+    }
+
+    private static final class DefaultExecutor {
+
+        private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        private static final int QUEUE_SIZE = THREADS * 64;
+        private static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                        Thread thread = new Thread(runnable, "graphql-parallel-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded registry of persisted queries, keyed by query hash.
+ * <p>
+ * Each entry holds the {@link PreparedQuery}, i.e. the query text together with its parsed and validated document.
+ * When the maximum size is reached the least recently used query is evicted, and clients need to send the full
+ * query text again on their next request.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class PersistedQueryRegistry {
+
+    private final int maxSize;
+    private final Map<String, PreparedQuery> queries;
+
+    /**
+     * Creates a new persisted query registry.
+     *
+     * @param maxSize the maximum number of persisted queries to keep
+     */
+    public PersistedQueryRegistry(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Persisted query registry size cannot be negative");
+        }
+        this.maxSize = maxSize;
+        this.queries = new LinkedHashMap<String, PreparedQuery>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedQuery> eldest) {
+                return size() > PersistedQueryRegistry.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the persisted query with the provided hash.
+     *
+     * @param queryHash the query hash
+     * @return the prepared query, or {@code null} if the hash is unknown
+     */
+    public synchronized PreparedQuery get(String queryHash) {
+        Objects.requireNonNull(queryHash, "Query hash cannot be null");
+        return queries.get(queryHash);
+    }
+
+    /**
+     * Persists the prepared query under the provided hash.
+     *
+     * @param queryHash the query hash
+     * @param query     the prepared query
+     */
+    public synchronized void put(String queryHash, PreparedQuery query) {
+        Objects.requireNonNull(queryHash, "Query hash cannot be null");
+        Objects.requireNonNull(query, "Prepared query cannot be null");
+        if (maxSize > 0) {
+            queries.put(queryHash, query);
+        }
+    }
+
+    /**
+     * @return the number of persisted queries
+     */
+    public synchronized int size() {
+        return queries.size();
+    }
+
+    /**
+     * @return {@code true} if queries are persisted, {@code false} if the registry is disabled
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.GraphQLError;
+import graphql.language.Document;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A GraphQL query that has been parsed and validated against a schema, and is ready for execution.
+ * <p>
+ * Prepared queries are immutable, so they can be stored and executed many times (and concurrently) without parsing
+ * and validating the query text again.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class PreparedQuery {
+
+    private final String query;
+    private final Document document;
+    private final List<GraphQLError> errors;
+
+    /**
+     * Creates a new prepared query.
+     *
+     * @param query    the graphql query text
+     * @param document the parsed query document, or {@code null} if the query has syntax errors
+     * @param errors   the syntax or validation errors of the query
+     */
+    public PreparedQuery(String query, Document document, List<? extends GraphQLError> errors) {
+        Objects.requireNonNull(query, "GraphQL query cannot be null");
+        this.query = query;
+        this.document = document;
+        this.errors = errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the graphql query text
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the parsed query document, or {@code null} if the query has syntax errors
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * @return the syntax or validation errors of the query, or an empty list
+     */
+    public List<GraphQLError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return {@code true} if the query is syntactically correct and valid for the schema
+     */
+    public boolean isValid() {
+        return document != null && errors.isEmpty();
+    }
+}
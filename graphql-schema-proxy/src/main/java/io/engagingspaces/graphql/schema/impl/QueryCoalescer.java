@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces identical queries that execute concurrently on a schema (single-flight).
+ * <p>
+ * The first query with a given key is executed, and queries with the same key that arrive before it completes wait
+ * for its result instead of being executed themselves. When the execution completes, all waiting result handlers
+ * receive the same result, each on the context they were submitted from. Every handler is notified, even if the
+ * handler of another query throws an exception.
+ * <p>
+ * Waiting queries share the execution of the first query, including its admission priority and its
+ * {@link io.engagingspaces.graphql.query.impl.QueryDeadline deadline}. A waiting query with a longer deadline may
+ * fail with the timeout of the first query, and a waiting query with a shorter deadline receives the result after
+ * its own deadline has passed. Low-priority queries are never coalesced with normal queries, because the priority
+ * depends on the query only, so identical queries always have the same priority.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryCoalescer {
+
+    private final Map<String, List<Waiter>> inFlight = new HashMap<>();
+    private long coalesced;
+
+    /**
+     * Submits the query for execution, or waits for the result of the identical query that is in flight.
+     * <p>
+     * If result handlers throw an exception, the first exception is rethrown to the caller of the execution handler
+     * after all handlers have been notified, with the others added as suppressed exceptions.
+     *
+     * @param key           the key that identifies identical queries, or {@code null} to never coalesce the query
+     * @param execution     the execution of the query, that is invoked with the handler of the query result
+     * @param resultHandler the result handler with the query result, or a failure
+     */
+    public void submit(String key, Consumer<Handler<AsyncResult<QueryResult>>> execution,
+                       Handler<AsyncResult<QueryResult>> resultHandler) {
+        Objects.requireNonNull(execution, "Query execution cannot be null");
+        Objects.requireNonNull(resultHandler, "Result handler cannot be null");
+        if (key == null) {
+            execution.accept(resultHandler);
+            return;
+        }
+        synchronized (this) {
+            List<Waiter> waiters = inFlight.get(key);
+            if (waiters != null) {
+                waiters.add(new Waiter(Vertx.currentContext(), resultHandler));
+                coalesced++;
+                return;
+            }
+            inFlight.put(key, new ArrayList<>());
+        }
+        AtomicBoolean completed = new AtomicBoolean();
+        Handler<AsyncResult<QueryResult>> completion = res -> {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            List<Waiter> waiters;
+            synchronized (this) {
+                waiters = inFlight.remove(key);
+            }
+            RuntimeException failure = null;
+            try {
+                resultHandler.handle(res);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+            for (Waiter waiter : waiters) {
+                try {
+                    waiter.handle(res);
+                } catch (RuntimeException ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        failure.addSuppressed(ex);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        };
+        try {
+            execution.accept(completion);
+        } catch (RuntimeException ex) {
+            if (completed.get()) {
+                throw ex;
+            }
+            completion.handle(Future.failedFuture(ex));
+        }
+    }
+
+    /**
+     * @return the number of queries that are currently executing on behalf of coalesced queries
+     */
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the total number of queries that received the result of an identical query in flight
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    private static class Waiter {
+
+        private final Context context;
+        private final Handler<AsyncResult<QueryResult>> resultHandler;
+
+        private Waiter(Context context, Handler<AsyncResult<QueryResult>> resultHandler) {
+            this.context = context;
+            this.resultHandler = resultHandler;
+        }
+
+        private void handle(AsyncResult<QueryResult> result) {
+            if (context == null || context == Vertx.currentContext()) {
+                resultHandler.handle(result);
+            } else {
+                context.runOnContext(v -> resultHandler.handle(result));
+            }
+        }
+    }
+}
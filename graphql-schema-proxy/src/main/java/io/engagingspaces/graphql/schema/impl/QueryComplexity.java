@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+/**
+ * The depth and estimated cost of a GraphQL query, as computed by the {@link QueryComplexityAnalyzer}.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryComplexity {
+
+    /**
+     * Complexity of queries that could not be analyzed, e.g. because of syntax errors.
+     */
+    public static final QueryComplexity NONE = new QueryComplexity(0, 0);
+
+    private final int depth;
+    private final long cost;
+
+    /**
+     * Creates a new query complexity.
+     *
+     * @param depth the maximum selection depth
+     * @param cost  the estimated cost
+     */
+    public QueryComplexity(int depth, long cost) {
+        this.depth = depth;
+        this.cost = cost;
+    }
+
+    /**
+     * @return the maximum selection depth of the query, where root fields have depth 1
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the estimated cost of the query
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + ", cost " + cost;
+    }
+}
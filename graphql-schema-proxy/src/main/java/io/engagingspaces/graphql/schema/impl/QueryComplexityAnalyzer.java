@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.language.*;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLFieldsContainer;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Computes the depth and estimated cost of a parsed GraphQL query.
+ * <p>
+ * Every selected field adds its weight to the cost (by default {@code 1}, or the weight configured for
+ * {@code TypeName.fieldName}). The cost of the sub-selection of a list field is multiplied by the expected list
+ * size, which is taken from a {@code first}, {@code last} or {@code limit} argument if present, and the default list
+ * size otherwise. Multipliers accumulate, so nested lists quickly become expensive.
+ * <p>
+ * List size arguments can be literals or variables. Queries are therefore compiled to a
+ * {@link QueryComplexityModel} that can be cached by query text, and evaluated for the variables of every request.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryComplexityAnalyzer {
+
+    private static final List<String> LIST_SIZE_ARGUMENTS = Arrays.asList("first", "last", "limit");
+
+    private final Map<String, Integer> fieldWeights;
+    private final int defaultListSize;
+
+    /**
+     * Creates a new query complexity analyzer.
+     *
+     * @param fieldWeights    the field weights keyed by {@code TypeName.fieldName}, or {@code null}
+     * @param defaultListSize the list size to assume if not provided in the field arguments
+     */
+    public QueryComplexityAnalyzer(Map<String, Integer> fieldWeights, int defaultListSize) {
+        this.fieldWeights = fieldWeights == null ? Collections.emptyMap() : new HashMap<>(fieldWeights);
+        this.defaultListSize = defaultListSize;
+    }
+
+    /**
+     * Analyzes the query document without variables, so list sizes that are passed as variables are taken from the
+     * default value of the variable, or the default list size. If the document contains multiple operations, the
+     * complexity of the most complex operation is returned.
+     *
+     * @param schema   the graphql schema
+     * @param document the parsed query document
+     * @return the query complexity
+     */
+    public QueryComplexity analyze(GraphQLSchema schema, Document document) {
+        return compile(schema, document).evaluate(null);
+    }
+
+    /**
+     * Analyzes the query document with the provided variables.
+     *
+     * @param schema    the graphql schema
+     * @param document  the parsed query document
+     * @param variables the query variables, or {@code null}
+     * @return the query complexity
+     */
+    public QueryComplexity analyze(GraphQLSchema schema, Document document, Map<String, Object> variables) {
+        return compile(schema, document).evaluate(variables);
+    }
+
+    /**
+     * Compiles the query document to a model that computes the complexity of the query for a set of variables.
+     *
+     * @param schema   the graphql schema
+     * @param document the parsed query document
+     * @return the query complexity model
+     */
+    public QueryComplexityModel compile(GraphQLSchema schema, Document document) {
+        Objects.requireNonNull(schema, "GraphQL schema cannot be null");
+        Objects.requireNonNull(document, "Query document cannot be null");
+        Map<String, FragmentDefinition> fragments = new HashMap<>();
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof FragmentDefinition) {
+                fragments.put(((FragmentDefinition) definition).getName(), (FragmentDefinition) definition);
+            }
+        }
+        int depth = 0;
+        List<List<QueryComplexityModel.Node>> operations = new ArrayList<>();
+        Map<String, Long> variableDefaults = new HashMap<>();
+        for (Definition definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition) {
+                OperationDefinition operation = (OperationDefinition) definition;
+                GraphQLType rootType = operation.getOperation() == OperationDefinition.Operation.MUTATION ?
+                        schema.getMutationType() : schema.getQueryType();
+                Analysis analysis = new Analysis(schema, fragments);
+                operations.add(analysis.analyzeSelectionSet(operation.getSelectionSet(), rootType, 1));
+                depth = Math.max(depth, analysis.depth);
+                for (VariableDefinition variable : operation.getVariableDefinitions()) {
+                    if (variable.getDefaultValue() instanceof IntValue) {
+                        variableDefaults.put(variable.getName(),
+                                Math.max(0L, ((IntValue) variable.getDefaultValue()).getValue()));
+                    }
+                }
+            }
+        }
+        return new QueryComplexityModel(depth, operations, variableDefaults, defaultListSize);
+    }
+
+    private class Analysis {
+
+        private final GraphQLSchema schema;
+        private final Map<String, FragmentDefinition> fragments;
+        private final Set<String> fragmentPath = new HashSet<>();
+        private int depth;
+
+        private Analysis(GraphQLSchema schema, Map<String, FragmentDefinition> fragments) {
+            this.schema = schema;
+            this.fragments = fragments;
+        }
+
+        private List<QueryComplexityModel.Node> analyzeSelectionSet(SelectionSet selectionSet, GraphQLType parentType,
+                                                                    int level) {
+            if (selectionSet == null) {
+                return Collections.emptyList();
+            }
+            List<QueryComplexityModel.Node> fields = new ArrayList<>();
+            analyzeSelections(selectionSet, parentType, level, fields);
+            return fields;
+        }
+
+        private void analyzeSelections(SelectionSet selectionSet, GraphQLType parentType, int level,
+                                       List<QueryComplexityModel.Node> fields) {
+            for (Selection selection : selectionSet.getSelections()) {
+                if (selection instanceof Field) {
+                    fields.add(analyzeField((Field) selection, parentType, level));
+                } else if (selection instanceof InlineFragment) {
+                    InlineFragment fragment = (InlineFragment) selection;
+                    GraphQLType type = fragment.getTypeCondition() == null ?
+                            parentType : schema.getType(fragment.getTypeCondition().getName());
+                    if (fragment.getSelectionSet() != null) {
+                        analyzeSelections(fragment.getSelectionSet(), type, level, fields);
+                    }
+                } else if (selection instanceof FragmentSpread) {
+                    FragmentDefinition fragment = fragments.get(((FragmentSpread) selection).getName());
+                    if (fragment != null && fragment.getSelectionSet() != null &&
+                            fragmentPath.add(fragment.getName())) {
+                        analyzeSelections(fragment.getSelectionSet(),
+                                schema.getType(fragment.getTypeCondition().getName()), level, fields);
+                        fragmentPath.remove(fragment.getName());
+                    }
+                }
+            }
+        }
+
+        private QueryComplexityModel.Node analyzeField(Field field, GraphQLType parentType, int level) {
+            depth = Math.max(depth, level);
+            GraphQLFieldDefinition definition = parentType instanceof GraphQLFieldsContainer ?
+                    ((GraphQLFieldsContainer) parentType).getFieldDefinition(field.getName()) : null;
+            String key = (parentType == null ? "" : parentType.getName()) + "." + field.getName();
+
+            GraphQLType fieldType = definition == null ? null : definition.getType();
+            int lists = 0;
+            while (fieldType instanceof GraphQLModifiedType) {
+                if (fieldType instanceof GraphQLList) {
+                    lists++;
+                }
+                fieldType = ((GraphQLModifiedType) fieldType).getWrappedType();
+            }
+            Value listSize = lists == 0 ? null : listSizeArgument(field);
+            return new QueryComplexityModel.Node(fieldWeights.getOrDefault(key, 1), lists,
+                    listSize instanceof IntValue ? Math.max(0, ((IntValue) listSize).getValue()) : defaultListSize,
+                    listSize instanceof VariableReference ? ((VariableReference) listSize).getName() : null,
+                    analyzeSelectionSet(field.getSelectionSet(), fieldType, level + 1));
+        }
+
+        private Value listSizeArgument(Field field) {
+            for (Argument argument : field.getArguments()) {
+                if (LIST_SIZE_ARGUMENTS.contains(argument.getName()) &&
+                        (argument.getValue() instanceof IntValue || argument.getValue() instanceof VariableReference)) {
+                    return argument.getValue();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The structure of a GraphQL query that determines its complexity, as compiled by the
+ * {@link QueryComplexityAnalyzer}.
+ * <p>
+ * The model holds the selected fields with their weights and list sizes, so that the complexity of a query can be
+ * computed for every set of variables without parsing and analyzing the query again. List sizes that are passed as
+ * variables are resolved from the variables of the request, and from the default value of the variable otherwise.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryComplexityModel {
+
+    private final int depth;
+    private final List<List<Node>> operations;
+    private final Map<String, Long> variableDefaults;
+    private final long defaultListSize;
+
+    QueryComplexityModel(int depth, List<List<Node>> operations, Map<String, Long> variableDefaults,
+                         long defaultListSize) {
+        this.depth = depth;
+        this.operations = operations;
+        this.variableDefaults = variableDefaults;
+        this.defaultListSize = defaultListSize;
+    }
+
+    /**
+     * Computes the complexity of the query for the provided variables. If the document contains multiple
+     * operations, the complexity of the most complex operation is returned.
+     *
+     * @param variables the query variables, or {@code null}
+     * @return the query complexity
+     */
+    public QueryComplexity evaluate(Map<String, Object> variables) {
+        long cost = 0;
+        for (List<Node> fields : operations) {
+            cost = Math.max(cost, cost(fields, 1, variables == null ? Collections.emptyMap() : variables));
+        }
+        return new QueryComplexity(depth, cost);
+    }
+
+    private long cost(List<Node> fields, long multiplier, Map<String, Object> variables) {
+        long cost = 0;
+        for (Node field : fields) {
+            cost = saturatedAdd(cost, saturatedMultiply(field.weight, multiplier));
+            long childMultiplier = multiplier;
+            if (field.lists > 0) {
+                long listSize = listSize(field, variables);
+                for (int i = 0; i < field.lists; i++) {
+                    childMultiplier = saturatedMultiply(childMultiplier, listSize);
+                }
+            }
+            if (!field.children.isEmpty()) {
+                cost = saturatedAdd(cost, cost(field.children, childMultiplier, variables));
+            }
+        }
+        return cost;
+    }
+
+    private long listSize(Node field, Map<String, Object> variables) {
+        if (field.listSizeVariable == null) {
+            return field.listSize;
+        }
+        Object value = variables.get(field.listSizeVariable);
+        if (value instanceof Number) {
+            return Math.max(0, ((Number) value).longValue());
+        }
+        return variableDefaults.getOrDefault(field.listSizeVariable, defaultListSize);
+    }
+
+    private static long saturatedAdd(long value1, long value2) {
+        long result = value1 + value2;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    private static long saturatedMultiply(long value1, long value2) {
+        try {
+            return Math.multiplyExact(value1, value2);
+        } catch (ArithmeticException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A selected field, with its weight, the list size that multiplies the cost of its sub-selection for every
+     * list modifier of its type, and the fields of its sub-selection.
+     */
+    static class Node {
+
+        private final long weight;
+        private final int lists;
+        private final long listSize;
+        private final String listSizeVariable;
+        private final List<Node> children;
+
+        Node(long weight, int lists, long listSize, String listSizeVariable, List<Node> children) {
+            this.weight = weight;
+            this.lists = lists;
+            this.listSize = listSize;
+            this.listSizeVariable = listSizeVariable;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Execution result that carries extensions (such as the {@link QueryTrace}) in addition to the data and errors of
+ * the query, and the {@link ResultSerializer} that encodes its query result.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryExecutionResult extends ExecutionResultImpl {
+
+    private final JsonObject extensions;
+    private final ResultSerializer serializer;
+
+    /**
+     * Creates a new execution result.
+     *
+     * @param result     the execution result to extend
+     * @param extensions the result extensions
+     */
+    public QueryExecutionResult(ExecutionResult result, JsonObject extensions) {
+        this(result, extensions, null);
+    }
+
+    /**
+     * Creates a new execution result with a serializer.
+     *
+     * @param result     the execution result to extend
+     * @param extensions the result extensions, or {@code null}
+     * @param serializer the serializer of the query result, or {@code null}
+     */
+    public QueryExecutionResult(ExecutionResult result, JsonObject extensions, ResultSerializer serializer) {
+        super(result.getData(), result.getErrors());
+        this.extensions = extensions;
+        this.serializer = serializer;
+    }
+
+    /**
+     * @return the result extensions
+     */
+    public JsonObject getExtensions() {
+        return extensions;
+    }
+
+    /**
+     * @return the serializer of the query result, or {@code null} if the result is encoded generically
+     */
+    public ResultSerializer getSerializer() {
+        return serializer;
+    }
+}
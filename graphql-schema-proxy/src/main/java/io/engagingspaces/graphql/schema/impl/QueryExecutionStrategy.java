@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExceptionWhileDataFetching;
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.execution.ExecutionContext;
+import graphql.execution.SimpleExecutionStrategy;
+import graphql.language.Field;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import io.engagingspaces.graphql.marshaller.schema.AsyncDataFetcher;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.vertx.core.Context;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Execution strategy for a single query execution, that adds deadline checks and tracing to the field resolution of
+ * the graphql-java {@link SimpleExecutionStrategy}.
+ * <p>
+ * If a {@link QueryDeadline} is provided it is checked before every field resolution, and execution is aborted with
+ * a {@link io.vertx.serviceproxy.ServiceException} once it has expired. If a {@link QueryTrace} is provided, the
+ * timing of every field resolution and its data fetcher call is recorded in the trace.
+ * <p>
+ * Data fetchers may return {@link AsyncDataFetcher#isAsync(Object) asynchronous results}, which are awaited by
+ * blocking the executing thread. This is not possible on an event loop thread, where such fields fail with an error
+ * unless their result is already available. Use the {@link AsyncExecutionStrategy} to await results without
+ * blocking. Queries with data loaders are always executed with the {@link AsyncExecutionStrategy}, as awaiting every
+ * field on its own would dispatch every key in a batch of its own.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryExecutionStrategy extends SimpleExecutionStrategy {
+
+    private final QueryDeadline deadline;
+    private final QueryTrace trace;
+    private final ThreadLocal<Deque<Object>> path = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Creates a new execution strategy for a single query.
+     *
+     * @param deadline the query deadline, or {@code null}
+     * @param trace    the query trace, or {@code null}
+     */
+    public QueryExecutionStrategy(QueryDeadline deadline, QueryTrace trace) {
+        this.deadline = deadline;
+        this.trace = trace;
+    }
+
+    /**
+     * Resolves the fields one after another, regardless of the strategy. Used for the root fields of mutations, which
+     * must be executed serially.
+     *
+     * @param executionContext the execution context
+     * @param parentType       the parent type of the fields
+     * @param source           the source object
+     * @param fields           the fields to resolve
+     * @return the execution result
+     */
+    public ExecutionResult executeSerially(ExecutionContext executionContext, GraphQLObjectType parentType,
+                                           Object source, Map<String, List<Field>> fields) {
+        return super.execute(executionContext, parentType, source, fields);
+    }
+
+    @Override
+    protected ExecutionResult resolveField(ExecutionContext executionContext, GraphQLObjectType parentType,
+                                           Object source, List<Field> fields) {
+        if (deadline != null) {
+            deadline.check();
+        }
+        if (trace == null) {
+            return super.resolveField(executionContext, parentType, source, fields);
+        }
+        Field field = fields.get(0);
+        GraphQLFieldDefinition fieldDef = getFieldDef(executionContext.getGraphQLSchema(), parentType, field);
+        if (fieldDef == null) {
+            return null;
+        }
+        Deque<Object> path = this.path.get();
+        path.addLast(field.getAlias() == null ? field.getName() : field.getAlias());
+        try {
+            long startOffset = trace.offset();
+            Map<String, Object> argumentValues = valuesResolver.getArgumentValues(
+                    fieldDef.getArguments(), field.getArguments(), executionContext.getVariables());
+            DataFetchingEnvironment environment = new DataFetchingEnvironment(source, argumentValues,
+                    executionContext.getRoot(), fields, fieldDef.getType(), parentType,
+                    executionContext.getGraphQLSchema());
+            Object resolvedValue = null;
+            try {
+                resolvedValue = fieldDef.getDataFetcher().get(environment);
+            } catch (Exception ex) {
+                executionContext.addError(new ExceptionWhileDataFetching(ex));
+            }
+            long fetchDuration = trace.offset() - startOffset;
+            ExecutionResult result = completeValue(executionContext, fieldDef.getType(), fields, resolvedValue);
+            trace.addResolver(new ArrayList<>(path), parentType.getName(), field.getName(),
+                    typeName(fieldDef.getType()), startOffset, trace.offset() - startOffset, fetchDuration);
+            return result;
+        } finally {
+            path.removeLast();
+        }
+    }
+
+    @Override
+    protected ExecutionResult completeValue(ExecutionContext executionContext, GraphQLType fieldType,
+                                            List<Field> fields, Object result) {
+        Object value = result;
+        if (AsyncDataFetcher.isAsync(result)) {
+            value = await(executionContext, result);
+        }
+        return super.completeValue(executionContext, fieldType, fields, value);
+    }
+
+    @Override
+    protected ExecutionResult completeValueForList(ExecutionContext executionContext, GraphQLList fieldType,
+                                                   List<Field> fields, List<Object> result) {
+        if (trace == null) {
+            return super.completeValueForList(executionContext, fieldType, fields, result);
+        }
+        List<Object> completedResults = new ArrayList<>(result.size());
+        Deque<Object> path = this.path.get();
+        int index = 0;
+        for (Object item : result) {
+            path.addLast(index++);
+            try {
+                ExecutionResult completedValue = completeValue(
+                        executionContext, fieldType.getWrappedType(), fields, item);
+                completedResults.add(completedValue == null ? null : completedValue.getData());
+            } finally {
+                path.removeLast();
+            }
+        }
+        return new ExecutionResultImpl(completedResults, null);
+    }
+
+    /**
+     * @return the query deadline, or {@code null}
+     */
+    protected QueryDeadline deadline() {
+        return deadline;
+    }
+
+    /**
+     * @return the query trace, or {@code null}
+     */
+    protected QueryTrace trace() {
+        return trace;
+    }
+
+    /**
+     * Gets the response path of the field that is currently resolved on the calling thread.
+     *
+     * @return the current path, or an empty list if fields are not traced
+     */
+    protected List<Object> currentPath() {
+        return trace == null ? Collections.emptyList() : new ArrayList<>(path.get());
+    }
+
+    /**
+     * Resolves the field on the calling thread as a child of the provided parent path. Used by strategies that
+     * resolve fields on other threads than the one that resolves their parent.
+     *
+     * @param parentPath       the response path of the parent, as returned by {@link #currentPath()}
+     * @param executionContext the execution context
+     * @param parentType       the parent type of the field
+     * @param source           the source object
+     * @param fields           the fields to resolve
+     * @return the execution result of the field
+     */
+    protected ExecutionResult resolveFieldAt(List<Object> parentPath, ExecutionContext executionContext,
+                                             GraphQLObjectType parentType, Object source, List<Field> fields) {
+        if (trace == null) {
+            return resolveField(executionContext, parentType, source, fields);
+        }
+        Deque<Object> previous = path.get();
+        path.set(new ArrayDeque<>(parentPath));
+        try {
+            return resolveField(executionContext, parentType, source, fields);
+        } finally {
+            if (previous.isEmpty()) {
+                path.remove();
+            } else {
+                path.set(previous);
+            }
+        }
+    }
+
+    private Object await(ExecutionContext executionContext, Object result) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        AsyncDataFetcher.onComplete(result, res -> {
+            if (res.succeeded()) {
+                future.complete(res.result());
+            } else {
+                future.completeExceptionally(res.cause());
+            }
+        });
+        try {
+            if (!future.isDone() && Context.isOnEventLoopThread()) {
+                throw new IllegalStateException("Asynchronous data fetcher result cannot be awaited on the event loop");
+            }
+            if (deadline == null) {
+                return future.get();
+            }
+            try {
+                return future.get(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                deadline.check();
+                throw new IllegalStateException(ex);
+            }
+        } catch (ExecutionException ex) {
+            executionContext.addError(new ExceptionWhileDataFetching(ex.getCause() instanceof Exception ?
+                    (Exception) ex.getCause() : ex));
+        } catch (IllegalStateException ex) {
+            executionContext.addError(new ExceptionWhileDataFetching(ex));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            executionContext.addError(new ExceptionWhileDataFetching(ex));
+        }
+        return null;
+    }
+
+    /**
+     * Gets the name of the type, including list and non-null modifiers.
+     *
+     * @param type the graphql type
+     * @return the type name
+     */
+    protected static String typeName(GraphQLType type) {
+        if (type instanceof GraphQLNonNull) {
+            return typeName(((GraphQLNonNull) type).getWrappedType()) + "!";
+        } else if (type instanceof GraphQLList) {
+            return "[" + typeName(((GraphQLList) type).getWrappedType()) + "]";
+        }
+        return type.getName();
+    }
+}
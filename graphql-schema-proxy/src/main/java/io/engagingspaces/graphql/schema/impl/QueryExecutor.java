@@ -0,0 +1,801 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import graphql.InvalidSyntaxError;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionContextBuilder;
+import graphql.execution.ExecutionStrategy;
+import graphql.execution.FieldCollector;
+import graphql.execution.ValuesResolver;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.SourceLocation;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import graphql.validation.Validator;
+import io.engagingspaces.graphql.dataloader.DataLoaderRegistry;
+import io.engagingspaces.graphql.marshaller.instrumentation.Instrumentation;
+import io.engagingspaces.graphql.marshaller.instrumentation.InstrumentationContext;
+import io.engagingspaces.graphql.query.CacheInvalidation;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.query.impl.QueryDeadline;
+import io.engagingspaces.graphql.query.impl.QueryHasher;
+import io.engagingspaces.graphql.query.impl.QueryPrinter;
+import io.engagingspaces.graphql.schema.ExecutionStrategyType;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Executes GraphQL queries against a schema, and holds the execution state that is shared by all queries on the
+ * same schema instance (such as the {@link PersistedQueryRegistry}, {@link AdmissionController} and
+ * {@link QueryCoalescer}).
+ * <p>
+ * Executors are looked up by schema definition with {@link #forDefinition(SchemaDefinition)}, or by schema and
+ * options with {@link #forSchema(GraphQLSchema, SchemaDefinitionOptions)}. The executor holds no reference to its
+ * schema, so it is discarded when the schema is garbage collected. All methods are thread-safe.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryExecutor {
+
+    private static final WeakIdentityMap<GraphQLSchema, WeakIdentityMap<SchemaDefinitionOptions, QueryExecutor>>
+            EXECUTORS = new WeakIdentityMap<>();
+    private static final WeakIdentityMap<SchemaDefinition, QueryExecutor> DEFINITIONS = new WeakIdentityMap<>();
+    private static final int COMPLEXITY_CACHE_SIZE = 1000;
+    private static final int NORMALIZED_QUERY_CACHE_SIZE = 1000;
+    private static final String NOT_COALESCED = "";
+
+    private final PersistedQueryRegistry persistedQueries;
+    private final AdmissionController admission;
+    private final QueryComplexityAnalyzer complexityAnalyzer;
+    private final Map<String, QueryComplexityModel> complexities;
+    private final QueryCoalescer coalescer = new QueryCoalescer();
+    private final IntrospectionCache introspectionCache = new IntrospectionCache();
+    private final Map<String, String> normalizedQueries;
+    private final boolean coalescing;
+    private final ExecutionStrategyType queryStrategy;
+    private final ExecutionStrategyType mutationStrategy;
+    private final Executor parallelExecutor;
+    private final Supplier<DataLoaderRegistry> dataLoaderRegistryFactory;
+    private final int maxQueryDepth;
+    private final long maxQueryCost;
+    private final long lowPriorityQueryCost;
+    private final boolean tracing;
+    private final boolean invalidationEnabled;
+    private final Map<String, List<String>> invalidatedTypes;
+    private final String schemaName;
+    private final Instrumentation instrumentation;
+
+    protected QueryExecutor(SchemaDefinitionOptions options, String schemaName) {
+        this.persistedQueries = new PersistedQueryRegistry(options.getPersistedQueryCacheSize());
+        this.admission = new AdmissionController(options.getMaxConcurrentQueries(), options.getMaxQueuedQueries());
+        this.complexityAnalyzer = new QueryComplexityAnalyzer(options.getFieldWeights(), options.getDefaultListSize());
+        this.complexities = Collections.synchronizedMap(
+                new LinkedHashMap<String, QueryComplexityModel>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, QueryComplexityModel> eldest) {
+                        return size() > COMPLEXITY_CACHE_SIZE;
+                    }
+                });
+        this.normalizedQueries = Collections.synchronizedMap(
+                new LinkedHashMap<String, String>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                        return size() > NORMALIZED_QUERY_CACHE_SIZE;
+                    }
+                });
+        this.coalescing = options.isQueryCoalescingEnabled();
+        this.queryStrategy = options.getQueryExecutionStrategy();
+        this.mutationStrategy = options.getMutationExecutionStrategy();
+        this.parallelExecutor = options.getParallelExecutor();
+        this.dataLoaderRegistryFactory = options.getDataLoaderRegistryFactory();
+        this.maxQueryDepth = options.getMaxQueryDepth();
+        this.maxQueryCost = options.getMaxQueryCost();
+        this.lowPriorityQueryCost = options.getLowPriorityQueryCost();
+        this.tracing = options.isTracingEnabled();
+        this.invalidationEnabled = options.isInvalidationEnabled();
+        this.invalidatedTypes = new HashMap<>(options.getInvalidatedTypes());
+        this.schemaName = schemaName;
+        this.instrumentation = options.getInstrumentation();
+    }
+
+    /**
+     * Gets the query executor of the provided schema definition, creating it on first access.
+     * <p>
+     * The executor is resolved once per definition instance, from the schema and options it returns at that time
+     * (see {@link #forSchema(GraphQLSchema, SchemaDefinitionOptions)}). Definitions that return a new options
+     * instance on every call therefore still keep their persisted queries, admission control and caches.
+     *
+     * @param definition the schema definition
+     * @return the query executor
+     */
+    public static QueryExecutor forDefinition(SchemaDefinition definition) {
+        Objects.requireNonNull(definition, "Schema definition cannot be null");
+        return DEFINITIONS.computeIfAbsent(definition, key -> forSchema(key.schema(), key.options()));
+    }
+
+    /**
+     * Gets the query executor of the provided schema and options, creating it on first access.
+     * <p>
+     * Executors are looked up by the identity of the schema and the options instance, without locking. The options
+     * are frozen once the executor is created: later changes to the same instance are not seen by the executor, and
+     * another options instance gets its own executor with its own persisted queries, admission control and caches,
+     * even if its values are equal.
+     *
+     * @param schema  the graphql schema
+     * @param options the schema definition options
+     * @return the query executor
+     */
+    public static QueryExecutor forSchema(GraphQLSchema schema, SchemaDefinitionOptions options) {
+        Objects.requireNonNull(schema, "GraphQL schema cannot be null");
+        Objects.requireNonNull(options, "Schema definition options cannot be null");
+        return EXECUTORS.computeIfAbsent(schema, key -> new WeakIdentityMap<>()).computeIfAbsent(options,
+                key -> new QueryExecutor(options, options.getSchemaName() == null ?
+                        schema.getQueryType().getName() : options.getSchemaName()));
+    }
+
+    /**
+     * Parses and validates the query against the schema.
+     *
+     * @param schema       the graphql schema
+     * @param graphqlQuery the graphql query
+     * @return the prepared query, with the syntax or validation errors if the query is not valid
+     */
+    public PreparedQuery prepare(GraphQLSchema schema, String graphqlQuery) {
+        return prepare(schema, graphqlQuery, null);
+    }
+
+    /**
+     * Executes the query on the schema.
+     * <p>
+     * If a data loader registry factory is configured, the query is executed with the {@link AsyncExecutionStrategy}
+     * and the calling thread blocks until it completes, so that the keys of a level are loaded in one batch.
+     *
+     * @param schema       the graphql schema
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, or {@code null}
+     * @return the execution result
+     */
+    public ExecutionResult execute(GraphQLSchema schema, String graphqlQuery, Map<String, Object> variables) {
+        QueryTrace trace = tracing ? new QueryTrace() : null;
+        return execute(schema, prepare(schema, graphqlQuery, trace), variables, trace);
+    }
+
+    /**
+     * Executes the prepared query on the schema.
+     * <p>
+     * If a {@link QueryDeadline} is bound to the current thread, execution is aborted with a {@link ServiceException}
+     * with failure code {@link Queryable#QUERY_TIMEOUT} when it expires. If tracing is enabled, a
+     * {@link QueryExecutionResult} is returned with the {@link QueryTrace} of the execution.
+     *
+     * @param schema    the graphql schema
+     * @param query     the prepared query
+     * @param variables the query variables, or {@code null}
+     * @return the execution result
+     */
+    public ExecutionResult execute(GraphQLSchema schema, PreparedQuery query, Map<String, Object> variables) {
+        return execute(schema, query, variables, tracing ? new QueryTrace() : null);
+    }
+
+    /**
+     * Executes the persisted query with the provided hash on the schema.
+     * <p>
+     * If the hash is unknown and no query text is provided a {@link ServiceException} with failure code
+     * {@link Queryable#PERSISTED_QUERY_NOT_FOUND} is thrown, after which the client should retry with the full
+     * query text. If the query text is provided, it is persisted under the hash after verifying that it matches.
+     *
+     * @param schema       the graphql schema
+     * @param queryHash    the query hash
+     * @param graphqlQuery the graphql query, or {@code null} to execute the query that was persisted earlier
+     * @param variables    the query variables, or {@code null}
+     * @return the execution result
+     * @throws ServiceException if the query is not found, or the query text does not match the hash
+     */
+    public ExecutionResult executePersisted(GraphQLSchema schema, String queryHash, String graphqlQuery,
+                                            Map<String, Object> variables) {
+        Objects.requireNonNull(queryHash, "Query hash cannot be null");
+        QueryTrace trace = tracing ? new QueryTrace() : null;
+        return execute(schema, preparePersisted(schema, queryHash, graphqlQuery, trace), variables, trace);
+    }
+
+    /**
+     * Executes the query on the schema asynchronously, awaiting the results of asynchronous data fetchers without
+     * blocking the calling thread.
+     * <p>
+     * If a {@link QueryDeadline} is bound to the calling thread, execution fails with a {@link ServiceException} with
+     * failure code {@link Queryable#QUERY_TIMEOUT} when it expires. Failures of data fetchers are reported in the
+     * errors of the execution result.
+     *
+     * @param schema        the graphql schema
+     * @param graphqlQuery  the graphql query
+     * @param variables     the query variables, or {@code null}
+     * @param resultHandler the result handler with the execution result, or a failure if execution was aborted
+     * @see AsyncExecutionStrategy
+     */
+    public void executeAsync(GraphQLSchema schema, String graphqlQuery, Map<String, Object> variables,
+                             Handler<AsyncResult<ExecutionResult>> resultHandler) {
+        QueryTrace trace = tracing ? new QueryTrace() : null;
+        PreparedQuery query;
+        try {
+            query = prepare(schema, graphqlQuery, trace);
+        } catch (RuntimeException ex) {
+            resultHandler.handle(Future.failedFuture(ex));
+            return;
+        }
+        executeAsync(schema, query, variables, trace, resultHandler);
+    }
+
+    /**
+     * Executes the persisted query with the provided hash on the schema asynchronously.
+     *
+     * @param schema        the graphql schema
+     * @param queryHash     the query hash
+     * @param graphqlQuery  the graphql query, or {@code null} to execute the query that was persisted earlier
+     * @param variables     the query variables, or {@code null}
+     * @param resultHandler the result handler with the execution result, or a failure
+     * @see #executePersisted(GraphQLSchema, String, String, Map)
+     * @see #executeAsync(GraphQLSchema, String, Map, Handler)
+     */
+    public void executePersistedAsync(GraphQLSchema schema, String queryHash, String graphqlQuery,
+                                      Map<String, Object> variables,
+                                      Handler<AsyncResult<ExecutionResult>> resultHandler) {
+        QueryTrace trace = tracing ? new QueryTrace() : null;
+        PreparedQuery query;
+        try {
+            Objects.requireNonNull(queryHash, "Query hash cannot be null");
+            query = preparePersisted(schema, queryHash, graphqlQuery, trace);
+        } catch (RuntimeException ex) {
+            resultHandler.handle(Future.failedFuture(ex));
+            return;
+        }
+        executeAsync(schema, query, variables, trace, resultHandler);
+    }
+
+    /**
+     * Computes the depth and estimated cost of the query for the provided variables. The complexity model of the
+     * query is cached by query text, and evaluated for the variables of every request.
+     *
+     * @param schema       the graphql schema
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, or {@code null}
+     * @return the query complexity, or {@link QueryComplexity#NONE} if the query has syntax errors
+     */
+    public QueryComplexity analyze(GraphQLSchema schema, String graphqlQuery, Map<String, Object> variables) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        QueryComplexityModel model = complexities.get(graphqlQuery);
+        if (model == null) {
+            Document document;
+            try {
+                document = new Parser().parseDocument(graphqlQuery);
+            } catch (ParseCancellationException ex) {
+                return QueryComplexity.NONE;
+            }
+            model = complexityAnalyzer.compile(schema, document);
+            complexities.put(graphqlQuery, model);
+        }
+        return model.evaluate(variables);
+    }
+
+    /**
+     * Computes the depth and estimated cost of the prepared query for the provided variables.
+     *
+     * @param schema    the graphql schema
+     * @param query     the prepared query
+     * @param variables the query variables, or {@code null}
+     * @return the query complexity, or {@link QueryComplexity#NONE} if the query has syntax errors
+     * @see #analyze(GraphQLSchema, String, Map)
+     */
+    public QueryComplexity analyze(GraphQLSchema schema, PreparedQuery query, Map<String, Object> variables) {
+        Objects.requireNonNull(query, "Prepared query cannot be null");
+        if (query.getDocument() == null) {
+            return QueryComplexity.NONE;
+        }
+        QueryComplexityModel model = complexities.get(query.getQuery());
+        if (model == null) {
+            model = complexityAnalyzer.compile(schema, query.getDocument());
+            complexities.put(query.getQuery(), model);
+        }
+        return model.evaluate(variables);
+    }
+
+    /**
+     * Checks whether the query should be executed with low priority, because its estimated cost exceeds the
+     * configured {@link SchemaDefinitionOptions#getLowPriorityQueryCost() low priority query cost}.
+     *
+     * @param schema       the graphql schema
+     * @param graphqlQuery the graphql query, or {@code null} if unknown
+     * @param variables    the query variables, or {@code null}
+     * @return {@code true} if the query is low priority, {@code false} otherwise
+     */
+    public boolean isLowPriority(GraphQLSchema schema, String graphqlQuery, Map<String, Object> variables) {
+        return lowPriorityQueryCost > 0 && graphqlQuery != null &&
+                analyze(schema, graphqlQuery, variables).getCost() > lowPriorityQueryCost;
+    }
+
+    /**
+     * Checks whether the persisted query should be executed with low priority.
+     *
+     * @param schema       the graphql schema
+     * @param queryHash    the query hash
+     * @param graphqlQuery the graphql query, or {@code null} to use the query that was persisted earlier
+     * @param variables    the query variables, or {@code null}
+     * @return {@code true} if the query is low priority, {@code false} otherwise
+     * @see #isLowPriority(GraphQLSchema, String, Map)
+     */
+    public boolean isLowPriorityPersisted(GraphQLSchema schema, String queryHash, String graphqlQuery,
+                                          Map<String, Object> variables) {
+        if (lowPriorityQueryCost == 0) {
+            return false;
+        }
+        if (graphqlQuery == null) {
+            PreparedQuery query = persistedQueries.get(queryHash);
+            return query != null && analyze(schema, query, variables).getCost() > lowPriorityQueryCost;
+        }
+        return isLowPriority(schema, graphqlQuery, variables);
+    }
+
+    /**
+     * Checks the query complexity against the configured depth and cost budgets.
+     *
+     * @param complexity the query complexity
+     * @throws ServiceException with failure code {@link Queryable#QUERY_TOO_COMPLEX} if a budget is exceeded
+     */
+    public void checkComplexity(QueryComplexity complexity) {
+        if (maxQueryDepth > 0 && complexity.getDepth() > maxQueryDepth) {
+            throw new ServiceException(Queryable.QUERY_TOO_COMPLEX, "Query depth " + complexity.getDepth() +
+                    " exceeds maximum query depth " + maxQueryDepth);
+        }
+        if (maxQueryCost > 0 && complexity.getCost() > maxQueryCost) {
+            throw new ServiceException(Queryable.QUERY_TOO_COMPLEX, "Query cost " + complexity.getCost() +
+                    " exceeds maximum query cost " + maxQueryCost);
+        }
+    }
+
+    /**
+     * Gets the key under which the query is coalesced with identical queries that execute concurrently. The key
+     * consists of the normalized query text and the variables. Normalized query texts are cached by query text.
+     *
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, or {@code null}
+     * @return the coalescing key, or {@code null} if the query must not be coalesced, i.e. when query coalescing is
+     * disabled, or the query contains a mutation or syntax errors
+     */
+    public String coalescingKey(String graphqlQuery, Map<String, Object> variables) {
+        if (!coalescing || graphqlQuery == null) {
+            return null;
+        }
+        String normalizedQuery = normalize(graphqlQuery);
+        if (normalizedQuery == null) {
+            return null;
+        }
+        return normalizedQuery + '\n' +
+                (variables == null || variables.isEmpty() ? "" : new JsonObject(new TreeMap<>(variables)).encode());
+    }
+
+    /**
+     * Gets the key under which the persisted query is coalesced with identical queries that execute concurrently.
+     *
+     * @param queryHash    the query hash
+     * @param graphqlQuery the graphql query, or {@code null} to use the query that was persisted earlier
+     * @param variables    the query variables, or {@code null}
+     * @return the coalescing key, or {@code null} if the query must not be coalesced
+     * @see #coalescingKey(String, Map)
+     */
+    public String coalescingKeyPersisted(String queryHash, String graphqlQuery, Map<String, Object> variables) {
+        if (!coalescing) {
+            return null;
+        }
+        String query = graphqlQuery;
+        if (query == null) {
+            PreparedQuery persistedQuery = persistedQueries.get(queryHash);
+            query = persistedQuery == null ? null : persistedQuery.getQuery();
+        }
+        String key = coalescingKey(query, variables);
+        return key == null ? null : queryHash + '\n' + key;
+    }
+
+    /**
+     * Gets the key under which the result of the query is cached if it is an introspection query. Results are not
+     * cached when tracing is enabled, because the trace of every execution is different.
+     *
+     * @param graphqlQuery the graphql query
+     * @param variables    the query variables, or {@code null}
+     * @return the cache key, or {@code null} if the result of the query must not be cached
+     * @see IntrospectionCache
+     */
+    public String introspectionKey(String graphqlQuery, Map<String, Object> variables) {
+        return tracing ? null : introspectionCache.keyOf(graphqlQuery, variables);
+    }
+
+    /**
+     * @return the cache of introspection query results of the schema
+     */
+    public IntrospectionCache introspectionCache() {
+        return introspectionCache;
+    }
+
+    /**
+     * @return the query coalescer that shares the results of identical concurrent queries
+     */
+    public QueryCoalescer coalescer() {
+        return coalescer;
+    }
+
+    /**
+     * @return the registry of persisted queries
+     */
+    public PersistedQueryRegistry persistedQueries() {
+        return persistedQueries;
+    }
+
+    /**
+     * Notifies the instrumentation that a query is received, and wraps the result handler to notify it when the
+     * query result is replied.
+     *
+     * @param graphqlQuery  the graphql query, or {@code null} if not known
+     * @param resultHandler the result handler
+     * @return the instrumented result handler
+     */
+    public Handler<AsyncResult<QueryResult>> instrumentQuery(String graphqlQuery,
+                                                             Handler<AsyncResult<QueryResult>> resultHandler) {
+        if (instrumentation == Instrumentation.NOOP) {
+            return resultHandler;
+        }
+        InstrumentationContext<Object> query = instrumentation.beginQuery(schemaName, graphqlQuery);
+        return res -> {
+            query.onEnd(res.succeeded() ? res.result() : null, res.cause());
+            resultHandler.handle(res);
+        };
+    }
+
+    /**
+     * Wraps the result handler to publish a {@link CacheInvalidation} message on the event bus of the current
+     * Vert.x context when a mutation is executed, if invalidation is enabled. The message lists the mutation fields,
+     * and the types and entities from the {@value CacheInvalidation#DEPENDENCIES_EXTENSION} extension of its result.
+     * Mutations with errors in their result are published as well, as their other fields may have been applied.
+     *
+     * @param resultHandler the result handler
+     * @return the invalidating result handler
+     */
+    public Handler<AsyncResult<QueryResult>> invalidating(Handler<AsyncResult<QueryResult>> resultHandler) {
+        Context context = Vertx.currentContext();
+        if (!invalidationEnabled || context == null) {
+            return resultHandler;
+        }
+        return res -> {
+            JsonObject dependencies = !res.succeeded() || res.result().getExtensions() == null ? null :
+                    res.result().getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+            if (dependencies != null && dependencies.containsKey("mutations")) {
+                context.owner().eventBus().publish(CacheInvalidation.address(schemaName),
+                        CacheInvalidation.message(schemaName, dependencies.getJsonArray("mutations"),
+                                dependencies.getJsonArray("types"), dependencies.getJsonArray("entities")));
+            }
+            resultHandler.handle(res);
+        };
+    }
+
+    /**
+     * @return the name of the schema
+     */
+    public String schemaName() {
+        return schemaName;
+    }
+
+    /**
+     * @return the instrumentation of the query lifecycle
+     */
+    public Instrumentation instrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * @return the admission controller that bounds concurrent query execution
+     */
+    public AdmissionController admission() {
+        return admission;
+    }
+
+    private String normalize(String graphqlQuery) {
+        String normalizedQuery = normalizedQueries.get(graphqlQuery);
+        if (normalizedQuery == null) {
+            normalizedQuery = NOT_COALESCED;
+            try {
+                Document document = new Parser().parseDocument(graphqlQuery);
+                if (!isMutation(document)) {
+                    normalizedQuery = QueryPrinter.print(document);
+                }
+            } catch (ParseCancellationException ex) {
+                // queries with syntax errors are not coalesced
+            }
+            normalizedQueries.put(graphqlQuery, normalizedQuery);
+        }
+        return NOT_COALESCED.equals(normalizedQuery) ? null : normalizedQuery;
+    }
+
+    private PreparedQuery prepare(GraphQLSchema schema, String graphqlQuery, QueryTrace trace) {
+        Objects.requireNonNull(graphqlQuery, "GraphQL query cannot be null");
+        long startOffset = trace == null ? 0 : trace.offset();
+        InstrumentationContext<Document> parsing = instrumentation.beginParse(schemaName, graphqlQuery);
+        Document document;
+        try {
+            document = new Parser().parseDocument(graphqlQuery);
+        } catch (ParseCancellationException ex) {
+            parsing.onEnd(null, ex);
+            RecognitionException recognitionException = (RecognitionException) ex.getCause();
+            SourceLocation location = new SourceLocation(recognitionException.getOffendingToken().getLine(),
+                    recognitionException.getOffendingToken().getCharPositionInLine());
+            return new PreparedQuery(graphqlQuery, null, Collections.singletonList(new InvalidSyntaxError(location)));
+        }
+        parsing.onEnd(document, null);
+        if (trace != null) {
+            trace.setParsing(startOffset, trace.offset() - startOffset);
+            startOffset = trace.offset();
+        }
+        InstrumentationContext<List<ValidationError>> validation =
+                instrumentation.beginValidation(schemaName, document);
+        List<ValidationError> validationErrors = new Validator().validateDocument(schema, document);
+        validation.onEnd(validationErrors, null);
+        if (trace != null) {
+            trace.setValidation(startOffset, trace.offset() - startOffset);
+        }
+        return new PreparedQuery(graphqlQuery, document, validationErrors);
+    }
+
+    private PreparedQuery preparePersisted(GraphQLSchema schema, String queryHash, String graphqlQuery,
+                                           QueryTrace trace) {
+        PreparedQuery query = persistedQueries.get(queryHash);
+        if (query == null) {
+            if (graphqlQuery == null) {
+                throw new ServiceException(Queryable.PERSISTED_QUERY_NOT_FOUND,
+                        "Persisted query not found: " + queryHash);
+            }
+            if (!queryHash.equals(QueryHasher.hash(graphqlQuery))) {
+                throw new ServiceException(Queryable.PERSISTED_QUERY_HASH_MISMATCH,
+                        "Persisted query hash does not match query: " + queryHash);
+            }
+            query = prepare(schema, graphqlQuery, trace);
+            persistedQueries.put(queryHash, query);
+        }
+        return query;
+    }
+
+    private ExecutionResult execute(GraphQLSchema schema, PreparedQuery query, Map<String, Object> variables,
+                                    QueryTrace trace) {
+        Objects.requireNonNull(query, "Prepared query cannot be null");
+        if (!query.isValid()) {
+            return extended(new ExecutionResultImpl(query.getErrors()), trace, null, null);
+        }
+        if (dataLoaderRegistryFactory != null) {
+            return awaitAsync(schema, query, variables, trace);
+        }
+        if (maxQueryDepth > 0 || maxQueryCost > 0) {
+            checkComplexity(analyze(schema, query, variables));
+        }
+        QueryDeadline deadline = QueryDeadline.current();
+        if (deadline != null) {
+            deadline.check();
+        }
+        QueryExecutionStrategy strategy = strategy(query.getDocument(), deadline, trace);
+        InstrumentationContext<ExecutionResult> execution =
+                instrumentation.beginExecution(schemaName, query.getDocument());
+        ExecutionResult result;
+        JsonObject dependencies;
+        ResultSerializer serializer;
+        try {
+            ExecutionContext context = executionContext(schema, query.getDocument(), variables, strategy);
+            GraphQLObjectType rootType = rootType(context);
+            Map<String, List<Field>> fields = rootFields(context, rootType);
+            result = isMutation(context) ? strategy.executeSerially(context, rootType, null, fields) :
+                    strategy.execute(context, rootType, null, fields);
+            dependencies = dependencies(context, rootType, fields, result);
+            serializer = new ResultSerializer(context, rootType, fields);
+        } catch (RuntimeException ex) {
+            execution.onEnd(null, ex);
+            throw ex;
+        }
+        execution.onEnd(result, null);
+        return extended(result, trace, dependencies, serializer);
+    }
+
+    private void executeAsync(GraphQLSchema schema, PreparedQuery query, Map<String, Object> variables,
+                              QueryTrace trace, Handler<AsyncResult<ExecutionResult>> resultHandler) {
+        if (!query.isValid()) {
+            resultHandler.handle(Future.succeededFuture(
+                    extended(new ExecutionResultImpl(query.getErrors()), trace, null, null)));
+            return;
+        }
+        QueryDeadline deadline = QueryDeadline.current();
+        AsyncExecutionStrategy strategy = new AsyncExecutionStrategy(deadline, trace);
+        ExecutionContext context;
+        GraphQLObjectType rootType;
+        Map<String, List<Field>> fields;
+        try {
+            if (maxQueryDepth > 0 || maxQueryCost > 0) {
+                checkComplexity(analyze(schema, query, variables));
+            }
+            if (deadline != null) {
+                deadline.check();
+            }
+            context = executionContext(schema, query.getDocument(), variables, strategy);
+            rootType = rootType(context);
+            fields = rootFields(context, rootType);
+        } catch (RuntimeException ex) {
+            resultHandler.handle(Future.failedFuture(ex));
+            return;
+        }
+        InstrumentationContext<ExecutionResult> execution =
+                instrumentation.beginExecution(schemaName, query.getDocument());
+        AtomicBoolean completed = new AtomicBoolean();
+        Vertx vertx = Vertx.currentContext() == null ? null : Vertx.currentContext().owner();
+        long timerId = deadline == null || vertx == null ? -1 :
+                vertx.setTimer(Math.max(1, deadline.remainingMillis()), id -> {
+                    if (completed.compareAndSet(false, true)) {
+                        ServiceException ex = new ServiceException(Queryable.QUERY_TIMEOUT, "Query deadline exceeded");
+                        execution.onEnd(null, ex);
+                        resultHandler.handle(Future.failedFuture(ex));
+                    }
+                });
+        strategy.executeAsync(context, rootType, null, fields, isMutation(context), res -> {
+            if (completed.compareAndSet(false, true)) {
+                if (timerId >= 0) {
+                    vertx.cancelTimer(timerId);
+                }
+                execution.onEnd(res.result(), res.cause());
+                if (res.succeeded()) {
+                    ExecutionResult result = res.result();
+                    resultHandler.handle(Future.succeededFuture(extended(result, trace,
+                            dependencies(context, rootType, fields, result),
+                            new ResultSerializer(context, rootType, fields))));
+                } else {
+                    resultHandler.handle(res);
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocking strategies await every data fetcher result before resolving the next field, so each key loaded by a
+     * data loader would be dispatched in a batch of its own. The asynchronous strategy dispatches once per level.
+     */
+    private ExecutionResult awaitAsync(GraphQLSchema schema, PreparedQuery query, Map<String, Object> variables,
+                                       QueryTrace trace) {
+        CompletableFuture<ExecutionResult> future = new CompletableFuture<>();
+        executeAsync(schema, query, variables, trace, res -> {
+            if (res.succeeded()) {
+                future.complete(res.result());
+            } else {
+                future.completeExceptionally(res.cause());
+            }
+        });
+        QueryDeadline deadline = QueryDeadline.current();
+        try {
+            if (!future.isDone() && Context.isOnEventLoopThread()) {
+                throw new IllegalStateException("Asynchronous data fetcher result cannot be awaited on the event loop");
+            }
+            if (deadline == null) {
+                return future.get();
+            }
+            try {
+                return future.get(Math.max(0, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                deadline.check();
+                throw new IllegalStateException(ex);
+            }
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException ?
+                    (RuntimeException) ex.getCause() : new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private QueryExecutionStrategy strategy(Document document, QueryDeadline deadline, QueryTrace trace) {
+        if ((isMutation(document) ? mutationStrategy : queryStrategy) == ExecutionStrategyType.Parallel) {
+            return new ParallelExecutionStrategy(deadline, trace, parallelExecutor);
+        }
+        return new QueryExecutionStrategy(deadline, trace);
+    }
+
+    private ExecutionContext executionContext(GraphQLSchema schema, Document document, Map<String, Object> variables,
+                                              ExecutionStrategy strategy) {
+        DataLoaderRegistry dataLoaders = dataLoaderRegistryFactory == null ? null : dataLoaderRegistryFactory.get();
+        return new ExecutionContextBuilder(new ValuesResolver()).build(schema, strategy, dataLoaders, document, null,
+                variables == null ? Collections.emptyMap() : variables);
+    }
+
+    private static boolean isMutation(ExecutionContext context) {
+        return context.getOperationDefinition().getOperation() == OperationDefinition.Operation.MUTATION;
+    }
+
+    private static GraphQLObjectType rootType(ExecutionContext context) {
+        return isMutation(context) ?
+                context.getGraphQLSchema().getMutationType() : context.getGraphQLSchema().getQueryType();
+    }
+
+    private static Map<String, List<Field>> rootFields(ExecutionContext context, GraphQLObjectType rootType) {
+        Map<String, List<Field>> fields = new LinkedHashMap<>();
+        new FieldCollector().collectFields(context, rootType, context.getOperationDefinition().getSelectionSet(),
+                new ArrayList<>(), fields);
+        return fields;
+    }
+
+    private static boolean isMutation(Document document) {
+        return document.getDefinitions().stream().anyMatch(definition -> definition instanceof OperationDefinition &&
+                ((OperationDefinition) definition).getOperation() == OperationDefinition.Operation.MUTATION);
+    }
+
+    private JsonObject dependencies(ExecutionContext context, GraphQLObjectType rootType,
+                                    Map<String, List<Field>> fields, ExecutionResult result) {
+        if (!invalidationEnabled) {
+            return null;
+        }
+        boolean mutation = isMutation(context);
+        if (!mutation && result.getErrors() != null && !result.getErrors().isEmpty()) {
+            return null;
+        }
+        return ResultDependencies.collect(context, rootType, fields, result.getData(), mutation, invalidatedTypes);
+    }
+
+    private static ExecutionResult extended(ExecutionResult result, QueryTrace trace, JsonObject dependencies,
+                                            ResultSerializer serializer) {
+        if (trace == null && dependencies == null && serializer == null) {
+            return result;
+        }
+        JsonObject extensions = trace == null && dependencies == null ? null : new JsonObject();
+        if (trace != null) {
+            trace.end();
+            extensions.put(QueryTrace.EXTENSION_NAME, trace.toJson());
+        }
+        if (dependencies != null) {
+            extensions.put(CacheInvalidation.DEPENDENCIES_EXTENSION, dependencies);
+        }
+        return new QueryExecutionResult(result, extensions, serializer);
+    }
+}
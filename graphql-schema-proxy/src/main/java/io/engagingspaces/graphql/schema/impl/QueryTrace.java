@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timing information of a single query execution.
+ * <p>
+ * All offsets and durations are in nanoseconds, relative to the start of the trace. The json representation follows
+ * the layout of the Apollo tracing format, with the following deviations for field resolvers: {@code duration} is
+ * the duration of the complete field resolution (including its sub-selections), and {@code fetchDuration} the
+ * duration of the data fetcher call of the field.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryTrace {
+
+    /**
+     * The name of the query result extension that holds the trace.
+     */
+    public static final String EXTENSION_NAME = "tracing";
+
+    private static final int VERSION = 1;
+
+    private final Instant startTime = Instant.now();
+    private final long startNanos = System.nanoTime();
+    private final List<JsonObject> resolvers = new ArrayList<>();
+    private long duration;
+    private JsonObject parsing;
+    private JsonObject validation;
+
+    /**
+     * @return the nanoseconds that have elapsed since the start of the trace
+     */
+    public long offset() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Records the parse phase.
+     *
+     * @param startOffset the start offset
+     * @param duration    the duration
+     */
+    public void setParsing(long startOffset, long duration) {
+        this.parsing = phase(startOffset, duration);
+    }
+
+    /**
+     * Records the validation phase.
+     *
+     * @param startOffset the start offset
+     * @param duration    the duration
+     */
+    public void setValidation(long startOffset, long duration) {
+        this.validation = phase(startOffset, duration);
+    }
+
+    /**
+     * Records the resolution of a field.
+     *
+     * @param path          the response path of the field, consisting of field names and list indices
+     * @param parentType    the name of the type that declares the field
+     * @param fieldName     the name of the field
+     * @param returnType    the return type of the field
+     * @param startOffset   the start offset of the field resolution
+     * @param duration      the duration of the field resolution, including its sub-selections
+     * @param fetchDuration the duration of the data fetcher call
+     */
+    public synchronized void addResolver(List<Object> path, String parentType, String fieldName, String returnType,
+                                         long startOffset, long duration, long fetchDuration) {
+        resolvers.add(new JsonObject()
+                .put("path", new JsonArray(path))
+                .put("parentType", parentType)
+                .put("fieldName", fieldName)
+                .put("returnType", returnType)
+                .put("startOffset", startOffset)
+                .put("duration", duration)
+                .put("fetchDuration", fetchDuration));
+    }
+
+    /**
+     * Marks the end of the traced query execution.
+     */
+    public void end() {
+        this.duration = offset();
+    }
+
+    /**
+     * @return the json representation of the trace
+     */
+    public synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject()
+                .put("version", VERSION)
+                .put("startTime", startTime.toString())
+                .put("endTime", startTime.plusNanos(duration).toString())
+                .put("duration", duration);
+        if (parsing != null) {
+            json.put("parsing", parsing);
+        }
+        if (validation != null) {
+            json.put("validation", validation);
+        }
+        return json.put("execution", new JsonObject().put("resolvers", new JsonArray(new ArrayList<>(resolvers))));
+    }
+
+    private static JsonObject phase(long startOffset, long duration) {
+        return new JsonObject().put("startOffset", startOffset).put("duration", duration);
+    }
+}
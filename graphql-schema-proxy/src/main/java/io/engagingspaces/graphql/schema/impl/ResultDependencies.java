@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.execution.ExecutionContext;
+import graphql.execution.FieldCollector;
+import graphql.language.Field;
+import graphql.language.Selection;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLUnionType;
+import graphql.schema.SchemaUtil;
+import io.engagingspaces.graphql.query.CacheInvalidation;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Collects the types and entities that the result of a GraphQL query depends on, for the
+ * {@value CacheInvalidation#DEPENDENCIES_EXTENSION} extension of the result.
+ * <p>
+ * The result data is walked along the selections of the query. Objects with an {@code id} field in their selection
+ * are recorded as entities ({@code TypeName:id}), other objects by their type name. If the concrete type of an
+ * abstract field can not be determined (i.e. {@code __typename} is not selected), all possible types are recorded.
+ * <p>
+ * The result of a mutation lists the executed mutation fields, and the invalidated types that are declared for
+ * these fields. Only the root objects of a mutation without an {@code id} are recorded by their type, as nested
+ * objects are typically not changed by the mutation.
+ * <p>
+ * Queries with errors in their result have no dependencies, but partial results of mutations do: all executed
+ * mutation fields and their invalidated types are listed, together with the entities in the partial data.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ResultDependencies {
+
+    private static final String TYPENAME = "__typename";
+    private static final String ID = "id";
+
+    private final ExecutionContext context;
+    private final boolean mutation;
+    private final FieldCollector fieldCollector = new FieldCollector();
+    private final Set<String> mutations = new TreeSet<>();
+    private final Set<String> types = new TreeSet<>();
+    private final Set<String> entities = new TreeSet<>();
+
+    private ResultDependencies(ExecutionContext context, boolean mutation) {
+        this.context = context;
+        this.mutation = mutation;
+    }
+
+    /**
+     * Collects the dependencies of a query result.
+     *
+     * @param context          the execution context of the query
+     * @param rootType         the query or mutation type
+     * @param rootFields       the root fields of the query, by response key
+     * @param data             the result data
+     * @param mutation         whether the query is a mutation
+     * @param invalidatedTypes the declared invalidated types per mutation field
+     * @return the dependencies json
+     */
+    @SuppressWarnings("unchecked")
+    public static JsonObject collect(ExecutionContext context, GraphQLObjectType rootType,
+                                     Map<String, List<Field>> rootFields, Object data, boolean mutation,
+                                     Map<String, List<String>> invalidatedTypes) {
+        ResultDependencies dependencies = new ResultDependencies(context, mutation);
+        Map<String, Object> values = data instanceof Map ? (Map<String, Object>) data : Collections.emptyMap();
+        rootFields.forEach((responseKey, fields) -> {
+            String fieldName = fields.get(0).getName();
+            GraphQLFieldDefinition definition = rootType.getFieldDefinition(fieldName);
+            if (definition != null) {
+                if (mutation) {
+                    dependencies.mutations.add(fieldName);
+                    dependencies.types.addAll(invalidatedTypes.getOrDefault(fieldName, Collections.emptyList()));
+                }
+                dependencies.collect(definition.getType(), fields, values.get(responseKey), true);
+            }
+        });
+        JsonObject json = new JsonObject()
+                .put("types", new JsonArray(new ArrayList<>(dependencies.types)))
+                .put("entities", new JsonArray(new ArrayList<>(dependencies.entities)));
+        return mutation ? json.put("mutations", new JsonArray(new ArrayList<>(dependencies.mutations))) : json;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(GraphQLType type, List<Field> fields, Object value, boolean root) {
+        if (value == null) {
+            return;
+        }
+        if (type instanceof GraphQLModifiedType) {
+            GraphQLType wrappedType = ((GraphQLModifiedType) type).getWrappedType();
+            if (type instanceof GraphQLList && value instanceof Iterable) {
+                ((Iterable<Object>) value).forEach(item -> collect(wrappedType, fields, item, root));
+            } else if (!(type instanceof GraphQLList)) {
+                collect(wrappedType, fields, value, root);
+            }
+            return;
+        }
+        if (!(value instanceof Map)) {
+            return;
+        }
+        Map<String, Object> object = (Map<String, Object>) value;
+        List<GraphQLObjectType> objectTypes = objectTypes(type, fields, object);
+        if (objectTypes.size() != 1) {
+            objectTypes.forEach(objectType -> types.add(objectType.getName()));
+            return;
+        }
+        GraphQLObjectType objectType = objectTypes.get(0);
+        Map<String, List<Field>> subFields = subFields(objectType, fields);
+        Object id = null;
+        for (Map.Entry<String, List<Field>> entry : subFields.entrySet()) {
+            if (ID.equals(entry.getValue().get(0).getName())) {
+                id = object.get(entry.getKey());
+            }
+        }
+        if (id != null) {
+            entities.add(objectType.getName() + ":" + id);
+        } else if (!mutation || root) {
+            types.add(objectType.getName());
+        }
+        subFields.forEach((responseKey, subField) -> {
+            GraphQLFieldDefinition definition = objectType.getFieldDefinition(subField.get(0).getName());
+            if (definition != null) {
+                collect(definition.getType(), subField, object.get(responseKey), false);
+            }
+        });
+    }
+
+    private List<GraphQLObjectType> objectTypes(GraphQLType type, List<Field> fields, Map<String, Object> object) {
+        if (type instanceof GraphQLObjectType) {
+            return Collections.singletonList((GraphQLObjectType) type);
+        }
+        for (Field field : fields) {
+            if (field.getSelectionSet() == null) {
+                continue;
+            }
+            for (Selection selection : field.getSelectionSet().getSelections()) {
+                if (selection instanceof Field && TYPENAME.equals(((Field) selection).getName())) {
+                    String alias = ((Field) selection).getAlias();
+                    GraphQLType objectType = context.getGraphQLSchema()
+                            .getType(String.valueOf(object.get(alias == null ? TYPENAME : alias)));
+                    if (objectType instanceof GraphQLObjectType) {
+                        return Collections.singletonList((GraphQLObjectType) objectType);
+                    }
+                }
+            }
+        }
+        List<GraphQLObjectType> objectTypes = new ArrayList<>();
+        if (type instanceof GraphQLInterfaceType) {
+            objectTypes.addAll(new SchemaUtil().findImplementations(context.getGraphQLSchema(),
+                    (GraphQLInterfaceType) type));
+        } else if (type instanceof GraphQLUnionType) {
+            ((GraphQLUnionType) type).getTypes().stream().filter(member -> member instanceof GraphQLObjectType)
+                    .forEach(member -> objectTypes.add((GraphQLObjectType) member));
+        }
+        return objectTypes;
+    }
+
+    private Map<String, List<Field>> subFields(GraphQLObjectType objectType, List<Field> fields) {
+        Map<String, List<Field>> subFields = new LinkedHashMap<>();
+        List<String> visitedFragments = new ArrayList<>();
+        for (Field field : fields) {
+            if (field.getSelectionSet() != null) {
+                fieldCollector.collectFields(context, objectType, field.getSelectionSet(), visitedFragments,
+                        subFields);
+            }
+        }
+        return subFields;
+    }
+}
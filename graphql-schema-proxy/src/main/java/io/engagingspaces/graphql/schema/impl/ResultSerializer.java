@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.execution.ExecutionContext;
+import graphql.execution.FieldCollector;
+import graphql.language.Field;
+import graphql.language.Selection;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLModifiedType;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLType;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes the {@link QueryResult} of a GraphQL query to JSON by walking the result data along the selections of
+ * the query, instead of encoding the generic {@link JsonObject} tree of the result.
+ * <p>
+ * For every combination of object type and selection the field names are encoded once, including their quotes and
+ * separator, and are then copied into the buffer for every object in the result. Integers and booleans are written
+ * without creating intermediate strings. Values that are not covered by the selections (such as custom scalars
+ * with object values, or abstract types without {@code __typename}) are encoded generically. The output is the same
+ * as {@link JsonObject#encode()} of {@link QueryResult#toJson()}.
+ * <p>
+ * The serializer is the encoder of {@link QueryResult#toBuffer()}, so it covers every path that sends or stores the
+ * JSON encoding of a result: the json format of the event bus codec, streamed results (which are chunked from the
+ * JSON encoding), and callers such as HTTP handlers that write the buffer directly. The default binary format of the
+ * event bus codec encodes the result tree itself, and does not use the serializer.
+ * <p>
+ * The field plans and encoded field names are computed on the first encoding and cached in the serializer, so
+ * results of the query that are encoded more than once (such as copies made before the first encoding) re-use
+ * them. Serializers can be used concurrently.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ResultSerializer {
+
+    private static final String TYPENAME = "__typename";
+    private static final int INITIAL_SIZE = 1024;
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] DATA = bytes("{\"data\":");
+    private static final byte[] SUCCEEDED = bytes(",\"succeeded\":");
+    private static final byte[] ERRORS = bytes(",\"errors\":");
+    private static final byte[] EXTENSIONS = bytes(",\"extensions\":");
+    private static final byte[] HEX = bytes("0123456789ABCDEF");
+
+    private final ExecutionContext context;
+    private final GraphQLObjectType rootType;
+    private final Map<String, List<Field>> rootFields;
+    private final FieldCollector fieldCollector = new FieldCollector();
+    private final Map<Field, Map<GraphQLObjectType, List<FieldPlan>>> plans =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<String, byte[]> names = new ConcurrentHashMap<>();
+    private volatile List<FieldPlan> rootPlan;
+
+    /**
+     * Creates a new result serializer.
+     *
+     * @param context    the execution context of the query
+     * @param rootType   the query or mutation type
+     * @param rootFields the root fields of the query, by response key
+     */
+    public ResultSerializer(ExecutionContext context, GraphQLObjectType rootType,
+                            Map<String, List<Field>> rootFields) {
+        this.context = context;
+        this.rootType = rootType;
+        this.rootFields = rootFields;
+    }
+
+    /**
+     * Encodes the query result, that must be the result of the query of this serializer.
+     *
+     * @param result the query result
+     * @return the encoded query result
+     */
+    public Buffer serialize(QueryResult result) {
+        Writer writer = new Writer(Buffer.buffer(INITIAL_SIZE));
+        writer.buffer.appendBytes(DATA);
+        if (result.getData() == null) {
+            writer.buffer.appendBytes(NULL);
+        } else {
+            List<FieldPlan> plan = rootPlan;
+            if (plan == null) {
+                plan = plan(rootType, rootFields);
+                rootPlan = plan;
+            }
+            writer.writeObject(plan, result.getData().getMap());
+        }
+        writer.buffer.appendBytes(SUCCEEDED).appendBytes(result.isSucceeded() ? TRUE : FALSE);
+        writer.buffer.appendBytes(ERRORS).appendString(new JsonArray(result.getErrors().stream()
+                .map(QueryResult.QueryError::toJson).collect(Collectors.toList())).encode());
+        if (result.getExtensions() != null) {
+            writer.buffer.appendBytes(EXTENSIONS).appendString(result.getExtensions().encode());
+        }
+        return writer.buffer.appendByte((byte) '}');
+    }
+
+    private List<FieldPlan> plan(GraphQLObjectType type, Map<String, List<Field>> fields) {
+        List<FieldPlan> plan = new ArrayList<>(fields.size());
+        boolean first = true;
+        for (Map.Entry<String, List<Field>> entry : fields.entrySet()) {
+            GraphQLFieldDefinition definition = type.getFieldDefinition(entry.getValue().get(0).getName());
+            plan.add(new FieldPlan(entry.getKey(), name(entry.getKey(), first),
+                    definition == null ? null : definition.getType(), entry.getValue()));
+            first = false;
+        }
+        return plan;
+    }
+
+    private List<FieldPlan> plan(GraphQLObjectType type, List<Field> fields) {
+        return plans.computeIfAbsent(fields.get(0), key -> Collections.synchronizedMap(new IdentityHashMap<>()))
+                .computeIfAbsent(type, key -> {
+                    Map<String, List<Field>> subFields = new LinkedHashMap<>();
+                    List<String> visitedFragments = new ArrayList<>();
+                    for (Field field : fields) {
+                        if (field.getSelectionSet() != null) {
+                            fieldCollector.collectFields(context, type, field.getSelectionSet(),
+                                    visitedFragments, subFields);
+                        }
+                    }
+                    return plan(type, subFields);
+                });
+    }
+
+    private byte[] name(String name, boolean first) {
+        StringBuilder encoded = new StringBuilder(name.length() + 4);
+        if (!first) {
+            encoded.append(',');
+        }
+        return bytes(encoded.append(Json.encode(name)).append(':').toString());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class FieldPlan {
+
+        private final String responseKey;
+        private final byte[] name;
+        private final GraphQLType type;
+        private final List<Field> fields;
+
+        private FieldPlan(String responseKey, byte[] name, GraphQLType type, List<Field> fields) {
+            this.responseKey = responseKey;
+            this.name = name;
+            this.type = type;
+            this.fields = fields;
+        }
+    }
+
+    private class Writer {
+
+        private final Buffer buffer;
+        private final byte[] digits = new byte[20];
+
+        private Writer(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void writeObject(List<FieldPlan> plan, Map<String, Object> object) {
+            if (!covers(plan, object)) {
+                writeGeneric(object);
+                return;
+            }
+            buffer.appendByte((byte) '{');
+            for (FieldPlan field : plan) {
+                buffer.appendBytes(field.name);
+                writeValue(field.type, field.fields, object.get(field.responseKey));
+            }
+            buffer.appendByte((byte) '}');
+        }
+
+        private boolean covers(List<FieldPlan> plan, Map<String, Object> object) {
+            if (plan.size() != object.size()) {
+                return false;
+            }
+            for (FieldPlan field : plan) {
+                if (!object.containsKey(field.responseKey)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeValue(GraphQLType type, List<Field> fields, Object value) {
+            while (type instanceof GraphQLModifiedType && !(type instanceof GraphQLList)) {
+                type = ((GraphQLModifiedType) type).getWrappedType();
+            }
+            if (value == null) {
+                buffer.appendBytes(NULL);
+            } else if (type instanceof GraphQLList && value instanceof List) {
+                GraphQLType wrappedType = ((GraphQLList) type).getWrappedType();
+                buffer.appendByte((byte) '[');
+                boolean first = true;
+                for (Object item : (List<Object>) value) {
+                    if (!first) {
+                        buffer.appendByte((byte) ',');
+                    }
+                    writeValue(wrappedType, fields, item);
+                    first = false;
+                }
+                buffer.appendByte((byte) ']');
+            } else if (value instanceof Map && type != null && !(type instanceof GraphQLList)) {
+                GraphQLObjectType objectType = objectType(type, fields, (Map<String, Object>) value);
+                if (objectType == null) {
+                    writeGeneric(value);
+                } else {
+                    writeObject(plan(objectType, fields), (Map<String, Object>) value);
+                }
+            } else {
+                writeGeneric(value);
+            }
+        }
+
+        private GraphQLObjectType objectType(GraphQLType type, List<Field> fields, Map<String, Object> object) {
+            if (type instanceof GraphQLObjectType) {
+                return (GraphQLObjectType) type;
+            }
+            for (Field field : fields) {
+                if (field.getSelectionSet() == null) {
+                    continue;
+                }
+                for (Selection selection : field.getSelectionSet().getSelections()) {
+                    if (selection instanceof Field && TYPENAME.equals(((Field) selection).getName())) {
+                        String alias = ((Field) selection).getAlias();
+                        GraphQLType objectType = context.getGraphQLSchema()
+                                .getType(String.valueOf(object.get(alias == null ? TYPENAME : alias)));
+                        return objectType instanceof GraphQLObjectType ? (GraphQLObjectType) objectType : null;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeGeneric(Object value) {
+            if (value == null) {
+                buffer.appendBytes(NULL);
+            } else if (value instanceof String) {
+                writeString((String) value);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short ||
+                    value instanceof Byte) {
+                writeLong(((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                buffer.appendBytes((Boolean) value ? TRUE : FALSE);
+            } else if ((value instanceof Double || value instanceof Float) &&
+                    !Double.isNaN(((Number) value).doubleValue()) &&
+                    !Double.isInfinite(((Number) value).doubleValue())) {
+                buffer.appendString(value.toString());
+            } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                buffer.appendString(value.toString());
+            } else if (value instanceof Map) {
+                buffer.appendByte((byte) '{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) {
+                        buffer.appendByte((byte) ',');
+                    }
+                    buffer.appendBytes(names.computeIfAbsent(String.valueOf(entry.getKey()), key -> name(key, true)));
+                    writeGeneric(entry.getValue());
+                    first = false;
+                }
+                buffer.appendByte((byte) '}');
+            } else if (value instanceof List) {
+                buffer.appendByte((byte) '[');
+                boolean first = true;
+                for (Object item : (List<Object>) value) {
+                    if (!first) {
+                        buffer.appendByte((byte) ',');
+                    }
+                    writeGeneric(item);
+                    first = false;
+                }
+                buffer.appendByte((byte) ']');
+            } else if (value instanceof JsonObject) {
+                writeGeneric(((JsonObject) value).getMap());
+            } else if (value instanceof JsonArray) {
+                writeGeneric(((JsonArray) value).getList());
+            } else {
+                buffer.appendString(Json.encode(value));
+            }
+        }
+
+        private void writeString(String value) {
+            buffer.appendByte((byte) '"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x20 || c == '"' || c == '\\') {
+                    if (i > start) {
+                        buffer.appendString(value.substring(start, i));
+                    }
+                    writeEscaped(c);
+                    start = i + 1;
+                }
+            }
+            if (start == 0) {
+                buffer.appendString(value);
+            } else if (start < value.length()) {
+                buffer.appendString(value.substring(start));
+            }
+            buffer.appendByte((byte) '"');
+        }
+
+        private void writeEscaped(char c) {
+            buffer.appendByte((byte) '\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer.appendByte((byte) c);
+                    break;
+                case '\b':
+                    buffer.appendByte((byte) 'b');
+                    break;
+                case '\f':
+                    buffer.appendByte((byte) 'f');
+                    break;
+                case '\n':
+                    buffer.appendByte((byte) 'n');
+                    break;
+                case '\r':
+                    buffer.appendByte((byte) 'r');
+                    break;
+                case '\t':
+                    buffer.appendByte((byte) 't');
+                    break;
+                default:
+                    buffer.appendByte((byte) 'u').appendByte((byte) '0').appendByte((byte) '0')
+                            .appendByte(HEX[c >> 4]).appendByte(HEX[c & 0xF]);
+            }
+        }
+
+        private void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                buffer.appendString(Long.toString(value));
+                return;
+            }
+            long remaining = Math.abs(value);
+            int pos = digits.length;
+            do {
+                digits[--pos] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining > 0);
+            if (value < 0) {
+                digits[--pos] = '-';
+            }
+            buffer.appendBytes(digits, pos, digits.length - pos);
+        }
+    }
+}
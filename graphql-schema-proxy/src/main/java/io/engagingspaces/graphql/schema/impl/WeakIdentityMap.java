@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Concurrent map that compares its keys by identity, and holds them weakly.
+ * <p>
+ * Lookups of present keys take no lock. Entries of garbage collected keys are removed when new entries are added.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+final class WeakIdentityMap<K, V> {
+
+    private final Map<Object, V> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> collected = new ReferenceQueue<>();
+
+    /**
+     * Gets the value of the key, computing it on first access.
+     *
+     * @param key             the key
+     * @param mappingFunction the function that computes the value of an absent key
+     * @return the value of the key
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        V value = entries.get(new Lookup(key));
+        if (value != null) {
+            return value;
+        }
+        expungeCollectedKeys();
+        return entries.computeIfAbsent(new WeakKey<>(key, collected), weakKey -> mappingFunction.apply(key));
+    }
+
+    private void expungeCollectedKeys() {
+        for (Object key = collected.poll(); key != null; key = collected.poll()) {
+            entries.remove(key);
+        }
+    }
+
+    private interface IdentityKey {
+
+        Object referent();
+
+        default boolean sameReferent(Object other) {
+            if (this == other) {
+                return true;
+            }
+            Object referent = referent();
+            return referent != null && other instanceof IdentityKey && ((IdentityKey) other).referent() == referent;
+        }
+    }
+
+    private static final class Lookup implements IdentityKey {
+
+        private final Object key;
+
+        private Lookup(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object referent() {
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return sameReferent(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> implements IdentityKey {
+
+        private final int hashCode;
+
+        private WeakKey(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hashCode = System.identityHashCode(key);
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return sameReferent(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.dataloader;
+
+import graphql.ExecutionResult;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.engagingspaces.graphql.schema.impl.QueryExecutor;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link DataLoader} and {@link DataLoaderRegistry} classes.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class DataLoaderTest {
+
+    private static final String QUERY = "{ items { name owner { name } } }";
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void should_Load_Keys_Of_A_Level_In_One_Batch() throws InterruptedException {
+        ExecutionResult result = executeAsync(QUERY);
+
+        assertTrue(result.getErrors().isEmpty());
+        List<?> items = (List<?>) ((Map<?, ?>) result.getData()).get("items");
+        assertEquals(4, items.size());
+        assertEquals("item-3", ((Map<?, ?>) items.get(2)).get("name"));
+        assertEquals("user-1", ((Map<?, ?>) ((Map<?, ?>) items.get(2)).get("owner")).get("name"));
+        assertEquals(Arrays.asList(Arrays.asList("item-1", "item-2", "item-3", "item-4"),
+                Arrays.asList("user-1", "user-2")), batches);
+    }
+
+    @Test
+    public void should_Load_Keys_Of_A_Level_In_One_Batch_In_Blocking_Execution() {
+        ExecutionResult result = execute(QUERY);
+
+        assertTrue(result.getErrors().isEmpty());
+        List<?> items = (List<?>) ((Map<?, ?>) result.getData()).get("items");
+        assertEquals(4, items.size());
+        assertEquals("user-2", ((Map<?, ?>) ((Map<?, ?>) items.get(3)).get("owner")).get("name"));
+        assertEquals(Arrays.asList(Arrays.asList("item-1", "item-2", "item-3", "item-4"),
+                Arrays.asList("user-1", "user-2")), batches);
+    }
+
+    @Test
+    public void should_Fail_All_Keys_Of_A_Failed_Batch() {
+        DataLoader<String, String> dataLoader = new DataLoader<>((keys, handler) ->
+                handler.handle(Future.succeededFuture(new ArrayList<>())));
+        CompletableFuture<String> first = dataLoader.load("a");
+        CompletableFuture<String> second = dataLoader.load("b");
+
+        assertEquals(2, dataLoader.dispatch());
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertNotSame(first, dataLoader.load("a"));
+        assertEquals(1, dataLoader.getPending());
+        assertEquals(1, dataLoader.getBatchCount());
+    }
+
+    private ExecutionResult executeAsync(String query) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<ExecutionResult> result = new AtomicReference<>();
+        GraphQLSchema schema = schema();
+        QueryExecutor.forSchema(schema, options()).executeAsync(schema, query, null, res -> {
+            result.set(res.result());
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private ExecutionResult execute(String query) {
+        GraphQLSchema schema = schema();
+        return QueryExecutor.forSchema(schema, options()).execute(schema, query, null);
+    }
+
+    private SchemaDefinitionOptions options() {
+        return new SchemaDefinitionOptions().setAsyncExecutionEnabled(true)
+                .setDataLoaderRegistryFactory(() -> new DataLoaderRegistry()
+                        .register("items", new DataLoader<String, String>(this::load))
+                        .register("users", new DataLoader<String, String>(this::load)));
+    }
+
+    private void load(List<String> keys, Handler<AsyncResult<List<String>>> handler) {
+        batches.add(keys);
+        scheduler.schedule(() -> handler.handle(Future.succeededFuture(keys)), 10, TimeUnit.MILLISECONDS);
+    }
+
+    private static GraphQLSchema schema() {
+        GraphQLObjectType user = GraphQLObjectType.newObject().name("User")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString)
+                        .dataFetcher(environment -> environment.getSource()).build())
+                .build();
+        GraphQLObjectType item = GraphQLObjectType.newObject().name("Item")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString)
+                        .dataFetcher(environment -> DataLoaderRegistry.from(environment)
+                                .getDataLoader("items").load(environment.getSource())).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("owner").type(user)
+                        .dataFetcher(environment -> {
+                            int id = Integer.parseInt(((String) environment.getSource()).substring(5));
+                            return DataLoaderRegistry.from(environment).getDataLoader("users")
+                                    .load("user-" + (id % 2 == 0 ? 2 : 1));
+                        }).build())
+                .build();
+        GraphQLObjectType query = GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("items").type(new GraphQLList(item))
+                        .dataFetcher(environment -> Arrays.asList("item-1", "item-2", "item-3", "item-4")).build())
+                .build();
+        return GraphQLSchema.newSchema().query(query).build();
+    }
+}
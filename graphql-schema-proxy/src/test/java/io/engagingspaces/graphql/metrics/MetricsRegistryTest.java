@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the {@link MetricsRegistry} and {@link EventBusMetricsReporter} classes.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class MetricsRegistryTest {
+
+    private Vertx vertx;
+    private MetricsRegistry registry;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        registry = MetricsRegistry.forVertx(vertx);
+        registry.service("Query").started();
+        registry.service("Query").completed("Hero", 2000000, 28, 120, false);
+        registry.proxy("Query").started();
+        registry.proxy("Query").completed("Hero", 3000000, 28, -1, true);
+        registry.service("Droids").started();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Share_Registry_Per_Vertx_Instance(TestContext context) {
+        context.assertTrue(registry == MetricsRegistry.forVertx(vertx));
+        context.assertTrue(registry.service("Query") == MetricsRegistry.forVertx(vertx).service("Query"));
+        context.assertFalse(registry.service("Query") == registry.proxy("Query"));
+
+        Vertx other = Vertx.vertx();
+        context.assertFalse(registry == MetricsRegistry.forVertx(other));
+        other.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Reply_Snapshot_Of_All_Schemas(TestContext context) {
+        Async async = context.async();
+        registry.addReporter(new EventBusMetricsReporter());
+        vertx.eventBus().<JsonObject>send(EventBusMetricsReporter.DEFAULT_ADDRESS, null,
+                context.asyncAssertSuccess(reply -> {
+                    JsonObject snapshot = reply.body();
+                    context.assertTrue(snapshot.containsKey("timestamp"));
+                    JsonObject service = snapshot.getJsonObject("services").getJsonObject("Query");
+                    context.assertEquals(1L, service.getLong("requests"));
+                    context.assertEquals(0L, service.getLong("errors"));
+                    context.assertEquals(0, service.getInteger("inFlight"));
+                    context.assertEquals(1L, service.getJsonObject("operations").getJsonObject("Hero")
+                            .getLong("requests"));
+                    context.assertEquals(120L, service.getJsonObject("responseBytes").getLong("max"));
+                    JsonObject proxy = snapshot.getJsonObject("proxies").getJsonObject("Query");
+                    context.assertEquals(1L, proxy.getLong("errors"));
+                    context.assertEquals(0L, proxy.getJsonObject("responseBytes").getLong("count"));
+                    context.assertEquals(1, snapshot.getJsonObject("services").getJsonObject("Droids")
+                            .getInteger("inFlight"));
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void should_Reply_Snapshot_Of_Requested_Schema(TestContext context) {
+        Async async = context.async();
+        EventBusMetricsReporter reporter = new EventBusMetricsReporter("graphql.metrics.test");
+        registry.addReporter(reporter);
+        vertx.eventBus().<JsonObject>send("graphql.metrics.test", new JsonObject().put("schemaName", "Droids"),
+                context.asyncAssertSuccess(reply -> {
+                    JsonObject snapshot = reply.body();
+                    context.assertEquals(1, snapshot.getJsonObject("service").getInteger("inFlight"));
+                    context.assertFalse(snapshot.containsKey("proxy"));
+                    context.assertFalse(snapshot.containsKey("services"));
+
+                    registry.removeReporter(reporter);
+                    vertx.eventBus().send("graphql.metrics.test", null,
+                            context.asyncAssertFailure(ex -> async.complete()));
+                }));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link Histogram} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class HistogramTest {
+
+    @Test
+    public void should_Report_Percentiles_Within_Bucket_Precision() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50000.5, histogram.getMean(), 0.001);
+        for (double percentile : new double[]{50, 90, 99}) {
+            long expected = (long) (percentile * 1000);
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * 1.0625);
+        }
+    }
+
+    @Test
+    public void should_Map_All_Values_To_Buckets_In_Order() {
+        long previousUpperBound = -1;
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 1L << 40, Long.MAX_VALUE}) {
+            int index = Histogram.bucketIndex(value);
+            long upperBound = Histogram.upperBound(index);
+            assertTrue(value <= upperBound);
+            assertTrue(upperBound >= previousUpperBound);
+            previousUpperBound = upperBound;
+        }
+        assertEquals(15, Histogram.upperBound(Histogram.bucketIndex(15)));
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucketIndex(Long.MAX_VALUE)));
+    }
+}
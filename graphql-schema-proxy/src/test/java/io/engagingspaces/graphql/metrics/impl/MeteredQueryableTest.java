@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.metrics.impl;
+
+import io.engagingspaces.graphql.metrics.OperationMetrics;
+import io.engagingspaces.graphql.metrics.SchemaMetrics;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link MeteredQueryable} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class MeteredQueryableTest {
+
+    private final List<Handler<AsyncResult<QueryResult>>> pending = new ArrayList<>();
+    private SchemaMetrics metrics;
+    private MeteredQueryable queryable;
+
+    @Before
+    public void setUp() {
+        metrics = new SchemaMetrics("Query");
+        queryable = new MeteredQueryable(new Queryable() {
+            @Override
+            public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+                pending.add(resultHandler);
+            }
+
+            @Override
+            public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                           Handler<AsyncResult<QueryResult>> resultHandler) {
+                pending.add(resultHandler);
+            }
+        }, metrics);
+    }
+
+    @Test
+    public void should_Extract_Operation_Names() {
+        assertEquals("Hero", MeteredQueryable.operationName("query Hero { hero { name } }"));
+        assertEquals("Rename", MeteredQueryable.operationName(
+                "# rename a hero\n  mutation Rename($id: ID) { rename(id: $id) }"));
+        assertEquals("Hero", MeteredQueryable.operationName(",query Hero($ep: Episode) { hero(episode: $ep) }"));
+        assertNull(MeteredQueryable.operationName("{ hero { name } }"));
+        assertNull(MeteredQueryable.operationName("query { hero { name } }"));
+        assertNull(MeteredQueryable.operationName("{ query Hero }"));
+        assertNull(MeteredQueryable.operationName(null));
+    }
+
+    @Test
+    public void should_Record_Requests_Per_Operation() {
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        queryable.query("{ hero { name } }", res -> {
+        });
+        succeed(0, true);
+        succeed(1, true);
+
+        assertEquals(2, metrics.getTotal().getRequests());
+        assertEquals(1, metrics.getOperation("Hero").getRequests());
+        assertEquals(1, metrics.getOperation(SchemaMetrics.ANONYMOUS_OPERATION).getRequests());
+        assertEquals(28, metrics.getOperation("Hero").toJson().getJsonObject("requestBytes").getLong("max")
+                .longValue());
+    }
+
+    @Test
+    public void should_Count_Failures_And_Query_Errors() {
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        succeed(0, true);
+        succeed(1, false);
+        pending.get(2).handle(Future.failedFuture(new IllegalStateException("Service unavailable")));
+
+        OperationMetrics operation = metrics.getOperation("Hero");
+        assertEquals(3, operation.getRequests());
+        assertEquals(2, operation.getErrors());
+        assertEquals(2, metrics.getTotal().getErrors());
+    }
+
+    @Test
+    public void should_Track_Requests_In_Flight() {
+        List<AsyncResult<QueryResult>> results = new ArrayList<>();
+        queryable.query("query Hero { hero { name } }", results::add);
+        queryable.queryWithVariables("query Hero { hero { name } }", null, results::add);
+        assertEquals(2, metrics.getInFlight());
+        assertEquals(2, metrics.toJson().getInteger("inFlight").intValue());
+
+        succeed(0, true);
+        assertEquals(1, metrics.getInFlight());
+        succeed(1, true);
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(2, results.size());
+        assertEquals(2, metrics.getTotal().getRequests());
+    }
+
+    @Test
+    public void should_Record_Known_Response_Sizes_Only() {
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        queryable.query("query Hero { hero { name } }", res -> {
+        });
+        QueryResult result = new QueryResult(new JsonObject().put("hero", "R2-D2"), true, Collections.emptyList());
+        assertEquals(-1, result.getEncodedSize());
+        pending.get(0).handle(Future.succeededFuture(result));
+        pending.get(1).handle(Future.succeededFuture(result.withWireSize(120)));
+        pending.get(2).handle(Future.failedFuture(new IllegalStateException("Service unavailable")));
+
+        JsonObject responseBytes = metrics.getOperation("Hero").toJson().getJsonObject("responseBytes");
+        assertEquals(1, responseBytes.getLong("count").longValue());
+        assertEquals(120, responseBytes.getLong("max").longValue());
+        assertEquals(3, metrics.getOperation("Hero").toJson().getJsonObject("requestBytes").getLong("count")
+                .longValue());
+    }
+
+    private void succeed(int request, boolean succeeded) {
+        pending.get(request).handle(Future.succeededFuture(
+                new QueryResult(new JsonObject(), succeeded, Collections.emptyList())));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.proxy;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.SchemaMarshallerOptions;
+import io.engagingspaces.graphql.proxy.impl.SchemaProxyContext;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link MixedModeSchemaProxy} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class MixedModeSchemaProxyTest {
+
+    @Test
+    public void should_Resolve_Fields_Of_Unreachable_Sub_Queries_To_Null() {
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hero").type(GraphQLString)
+                        .staticValue("R2-D2").build())
+                .build()).build();
+        GraphQLSchemaProxy localProxy = new GraphQLSchemaProxy(null, schema,
+                SchemaProxyContext.createMarshalingContext(SchemaMarshallerOptions.create()));
+        Queryable remoteProxy = new Queryable() {
+            @Override
+            public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+                queryWithVariables(graphqlQuery, null, resultHandler);
+            }
+
+            @Override
+            public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                           Handler<AsyncResult<QueryResult>> resultHandler) {
+                if (graphqlQuery.contains("droid")) {
+                    resultHandler.handle(Future.failedFuture(
+                            new ReplyException(ReplyFailure.NO_HANDLERS, "No handlers for address")));
+                } else {
+                    resultHandler.handle(Future.succeededFuture(new QueryResult(
+                            new JsonObject().put("human", "Luke"), true, Collections.emptyList())));
+                }
+            }
+        };
+        MixedModeSchemaProxy proxy = new MixedModeSchemaProxy(localProxy, remoteProxy,
+                new QueryPlanner(Collections.singletonList("hero")));
+
+        AtomicReference<AsyncResult<QueryResult>> result = new AtomicReference<>();
+        proxy.query("{ human droid hero }", result::set);
+
+        assertTrue(result.get().succeeded());
+        QueryResult merged = result.get().result();
+        assertFalse(merged.isSucceeded());
+        assertEquals(Arrays.asList("human", "droid", "hero"),
+                Arrays.asList(merged.getData().fieldNames().toArray()));
+        assertEquals("Luke", merged.getData().getString("human"));
+        assertNull(merged.getData().getValue("droid"));
+        assertEquals("R2-D2", merged.getData().getString("hero"));
+        assertEquals(1, merged.getErrors().size());
+        assertTrue(merged.getErrors().get(0).getMessage().contains("[droid]"));
+        assertTrue(merged.getErrors().get(0).getMessage().contains("No handlers for address"));
+    }
+}
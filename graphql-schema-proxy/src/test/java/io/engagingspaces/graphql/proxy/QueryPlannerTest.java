@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.proxy;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the mixed mode query planner.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryPlannerTest {
+
+    private final QueryPlanner planner = new QueryPlanner(Collections.singletonList("hero"));
+
+    @Test
+    public void should_Execute_Query_Locally_When_All_Root_Fields_Are_Local() {
+        QueryPlan plan = planner.plan("{ hero { name } }");
+        assertFalse(plan.isSplit());
+        assertEquals("{ hero { name } }", plan.getLocalQuery());
+        assertTrue(plan.getRemoteQueries().isEmpty());
+    }
+
+    @Test
+    public void should_Send_Mutations_Unmodified_To_Publisher() {
+        String mutation = "mutation { hero { name } droid { id } }";
+        QueryPlan plan = planner.plan(mutation);
+        assertFalse(plan.isSplit());
+        assertNull(plan.getLocalQuery());
+        assertEquals(Collections.singletonList(mutation), plan.getRemoteQueries());
+    }
+
+    @Test
+    public void should_Split_Remote_Root_Fields_Into_Independent_Sub_Queries() {
+        QueryPlan plan = planner.plan(
+                "query Q($id: String, $ep: Episode) { " +
+                "  h: hero(episode: $ep) { name } " +
+                "  droid(id: $id) { ...names } " +
+                "  human(id: \"1000\") { name } " +
+                "} " +
+                "fragment names on Droid { name }");
+        assertTrue(plan.isSplit());
+        assertEquals("query Q($ep: Episode) { h: hero(episode: $ep) { name } }", plan.getLocalQuery());
+        assertEquals(Arrays.asList(
+                "query Q($id: String) { droid(id: $id) { ...names } } fragment names on Droid { name }",
+                "query Q { human(id: \"1000\") { name } }"), plan.getRemoteQueries());
+    }
+
+    @Test
+    public void should_Merge_Partial_Results_In_Original_Field_Order() {
+        QueryPlan plan = planner.plan("{ droid { id } hero { name } }");
+        QueryResult merged = plan.merge(Arrays.asList(
+                new QueryResult(new JsonObject().put("hero", "R2-D2"), true, Collections.emptyList()),
+                new QueryResult(new JsonObject().put("droid", "2001"), true, Collections.emptyList())));
+        assertTrue(merged.isSucceeded());
+        assertEquals(Arrays.asList("droid", "hero"), Arrays.asList(merged.getData().fieldNames().toArray()));
+    }
+
+    @Test
+    public void should_Keep_Data_Of_Successful_Parts_When_A_Part_Fails() {
+        QueryPlan plan = planner.plan("{ droid { id } hero { name } }");
+        QueryResult merged = plan.merge(Arrays.asList(
+                new QueryResult(new JsonObject().put("hero", "R2-D2"), true, Collections.emptyList()),
+                new QueryResult(new JsonObject(), false, Collections.singletonList(
+                        new QueryResult.QueryError("DataFetchingException", "droid failed", null)))));
+        assertFalse(merged.isSucceeded());
+        assertEquals(1, merged.getErrors().size());
+        assertEquals("droid failed", merged.getErrors().get(0).getMessage());
+        assertEquals("R2-D2", merged.getData().getString("hero"));
+        assertTrue(merged.getData().containsKey("droid"));
+        assertNull(merged.getData().getValue("droid"));
+    }
+}
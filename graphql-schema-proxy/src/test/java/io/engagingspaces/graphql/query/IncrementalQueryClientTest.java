@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.engagingspaces.graphql.schema.impl.IncrementalDelivery;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static graphql.Scalars.GraphQLString;
+
+/**
+ * Tests for the {@link IncrementalQueryClient} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class IncrementalQueryClientTest {
+
+    private static final String ADDRESS = "service.graphql.DeferQuery";
+    private static final String METERED_ADDRESS = "service.graphql.MeteredDeferQuery";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("DeferQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("fast").type(GraphQLString)
+                        .staticValue("fast").build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("slow").type(GraphQLString)
+                        .argument(GraphQLArgument.newArgument().name("name").type(GraphQLString).build())
+                        .dataFetcher(env -> "slow " + env.getArgument("name")).build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+        Queryable.registerService(vertx, ADDRESS, definition);
+        SchemaDefinitionOptions options = new SchemaDefinitionOptions().setMetricsEnabled(true);
+        Queryable.registerService(vertx, METERED_ADDRESS, new SchemaDefinition() {
+            @Override
+            public GraphQLSchema schema() {
+                return schema;
+            }
+
+            @Override
+            public SchemaDefinitionOptions options() {
+                return options;
+            }
+        });
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Deliver_Deferred_Fragments_After_Initial_Payload(TestContext context) {
+        Async async = context.async();
+        List<JsonObject> increments = new ArrayList<>();
+        String query = "query Deferred($name: String) { fast " +
+                "... on DeferQuery @defer(label: \"inline\") { slow(name: $name) } " +
+                "...Slow @defer(label: \"spread\") } " +
+                "fragment Slow on DeferQuery { other: slow(name: \"other\") }";
+        vertx.runOnContext(v -> {
+            IncrementalQueryClient client = new IncrementalQueryClient(vertx, ADDRESS, null);
+            client.queryIncremental(query, new JsonObject().put("name", "query"), increment -> {
+                increments.add(increment);
+                if (!increment.getBoolean(IncrementalDelivery.HAS_NEXT)) {
+                    context.assertEquals(2, increments.size());
+                    for (JsonObject payload : increments) {
+                        context.assertNull(payload.getJsonArray("errors"));
+                        if ("inline".equals(payload.getString("label"))) {
+                            context.assertEquals("slow query", payload.getJsonObject("data").getString("slow"));
+                        } else {
+                            context.assertEquals("spread", payload.getString("label"));
+                            context.assertEquals("slow other", payload.getJsonObject("data").getString("other"));
+                        }
+                    }
+                    async.complete();
+                }
+            }, context.asyncAssertSuccess(result -> {
+                context.assertTrue(increments.isEmpty());
+                context.assertTrue(result.isSucceeded());
+                context.assertEquals(new JsonObject().put("fast", "fast"), result.getData());
+                context.assertTrue(result.getExtensions().getBoolean(IncrementalDelivery.HAS_NEXT));
+            }));
+        });
+    }
+
+    @Test
+    public void should_Defer_Fragments_When_Metrics_Are_Enabled(TestContext context) {
+        Async async = context.async(2);
+        vertx.runOnContext(v -> {
+            IncrementalQueryClient client = new IncrementalQueryClient(vertx, METERED_ADDRESS, null);
+            client.queryIncremental("{ fast ... on DeferQuery @defer { slow(name: \"later\") } }", null,
+                    increment -> {
+                        context.assertEquals("slow later", increment.getJsonObject("data").getString("slow"));
+                        context.assertFalse(increment.getBoolean(IncrementalDelivery.HAS_NEXT));
+                        async.countDown();
+                    },
+                    context.asyncAssertSuccess(result -> {
+                        context.assertEquals(new JsonObject().put("fast", "fast"), result.getData());
+                        context.assertTrue(result.getExtensions().getBoolean(IncrementalDelivery.HAS_NEXT));
+                        async.countDown();
+                    }));
+        });
+    }
+
+    @Test
+    public void should_Not_Defer_Disabled_Fragments(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            IncrementalQueryClient client = new IncrementalQueryClient(vertx, ADDRESS, null);
+            client.queryIncremental("{ fast ... on DeferQuery @defer(if: false) { slow(name: \"now\") } }", null,
+                    increment -> context.fail("Unexpected incremental payload"),
+                    context.asyncAssertSuccess(result -> {
+                        context.assertTrue(result.isSucceeded());
+                        context.assertEquals("slow now", result.getData().getString("slow"));
+                        context.assertNull(result.getExtensions());
+                        async.complete();
+                    }));
+        });
+    }
+}
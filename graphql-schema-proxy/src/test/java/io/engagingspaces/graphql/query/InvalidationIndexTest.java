@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link InvalidationIndex} class, with the dependencies of the results of a schema definition.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class InvalidationIndexTest {
+
+    private SchemaDefinition definition;
+
+    @Before
+    public void setUp() {
+        GraphQLObjectType address = GraphQLObjectType.newObject().name("Address")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("city").type(GraphQLString).build())
+                .build();
+        GraphQLObjectType user = GraphQLObjectType.newObject().name("User")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("id").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("address").type(address).build())
+                .build();
+        Map<String, Object> alice = user("1", "Alice");
+        Map<String, Object> bob = user("2", "Bob");
+        GraphQLSchema schema = GraphQLSchema.newSchema()
+                .query(GraphQLObjectType.newObject().name("Query")
+                        .field(GraphQLFieldDefinition.newFieldDefinition().name("me").type(user)
+                                .dataFetcher(env -> alice).build())
+                        .field(GraphQLFieldDefinition.newFieldDefinition().name("users").type(new GraphQLList(user))
+                                .dataFetcher(env -> Arrays.asList(alice, bob)).build())
+                        .build())
+                .mutation(GraphQLObjectType.newObject().name("Mutation")
+                        .field(GraphQLFieldDefinition.newFieldDefinition().name("rename").type(user)
+                                .dataFetcher(env -> bob).build())
+                        .field(GraphQLFieldDefinition.newFieldDefinition().name("addUser").type(user)
+                                .dataFetcher(env -> user("3", "Carol")).build())
+                        .field(GraphQLFieldDefinition.newFieldDefinition().name("removeUser").type(user)
+                                .dataFetcher(env -> {
+                                    throw new IllegalStateException("User cannot be removed");
+                                }).build())
+                        .build())
+                .build();
+        SchemaDefinitionOptions options = new SchemaDefinitionOptions().setInvalidationEnabled(true)
+                .addInvalidatedTypes("addUser", "User").addInvalidatedTypes("removeUser", "Address");
+        definition = new SchemaDefinition() {
+            @Override
+            public GraphQLSchema schema() {
+                return schema;
+            }
+
+            @Override
+            public SchemaDefinitionOptions options() {
+                return options;
+            }
+        };
+    }
+
+    @Test
+    public void should_List_Result_Dependencies() {
+        QueryResult result = definition.queryBlocking("{ me { id name address { city } } }", null);
+        JsonObject dependencies = result.getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+
+        assertEquals(new JsonArray().add("User:1"), dependencies.getJsonArray("entities"));
+        assertEquals(new JsonArray().add("Address"), dependencies.getJsonArray("types"));
+        assertFalse(dependencies.containsKey("mutations"));
+
+        dependencies = definition.queryBlocking("mutation { addUser { id } }", null)
+                .getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+        assertEquals(new JsonArray().add("addUser"), dependencies.getJsonArray("mutations"));
+        assertEquals(new JsonArray().add("User"), dependencies.getJsonArray("types"));
+        assertEquals(new JsonArray().add("User:3"), dependencies.getJsonArray("entities"));
+    }
+
+    @Test
+    public void should_List_Dependencies_Of_Partially_Failed_Mutations() {
+        QueryResult result = definition.queryBlocking("mutation { rename { id } removeUser { id } }", null);
+        assertFalse(result.getErrors().isEmpty());
+
+        JsonObject dependencies = result.getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+        assertEquals(new JsonArray().add("removeUser").add("rename"), dependencies.getJsonArray("mutations"));
+        assertEquals(new JsonArray().add("Address"), dependencies.getJsonArray("types"));
+        assertEquals(new JsonArray().add("User:2"), dependencies.getJsonArray("entities"));
+    }
+
+    @Test
+    public void should_Evict_Invalidated_Results() {
+        InvalidationIndex<String> index = new InvalidationIndex<>();
+        index.track("me", definition.queryBlocking("{ me { id name } }", null));
+        index.track("users", definition.queryBlocking("{ users { id name } }", null));
+        index.track("city", definition.queryBlocking("{ me { address { city } } }", null));
+        index.track("other", new QueryResult(new JsonObject(), true, Collections.emptyList(), null));
+
+        assertEquals(new HashSet<>(Arrays.asList("users", "city", "other")),
+                index.invalidate(invalidation("mutation { rename { id name } }")));
+        assertEquals(1, index.size());
+
+        index.track("users", definition.queryBlocking("{ users { id name } }", null));
+        assertEquals(new HashSet<>(Arrays.asList("me", "users")),
+                index.invalidate(invalidation("mutation { addUser { id } }")));
+        assertEquals(0, index.size());
+    }
+
+    private JsonObject invalidation(String mutation) {
+        JsonObject dependencies = definition.queryBlocking(mutation, null)
+                .getExtensions().getJsonObject(CacheInvalidation.DEPENDENCIES_EXTENSION);
+        return CacheInvalidation.message("Query", dependencies.getJsonArray("mutations"),
+                dependencies.getJsonArray("types"), dependencies.getJsonArray("entities"));
+    }
+
+    private static Map<String, Object> user(String id, String name) {
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", id);
+        user.put("name", name);
+        user.put("address", Collections.singletonMap("city", "Amsterdam"));
+        return user;
+    }
+}
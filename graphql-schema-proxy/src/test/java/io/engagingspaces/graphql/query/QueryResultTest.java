@@ -23,6 +23,7 @@ import graphql.validation.ValidationError;
 import graphql.validation.ValidationErrorType;
 import io.engagingspaces.graphql.schema.SchemaDefinition;
 import org.example.graphql.testdata.utils.MapBuilder;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Test;
@@ -169,4 +170,13 @@ public class QueryResultTest {
         assertEquals(error2.getLocations().get(0), error2.getLocations().get(0));
         assertNotEquals(error2.getLocations().get(0), "test");
     }
+
+    @Test
+    public void should_Encode_Query_Result_Only_Once() {
+        QueryResult result = SchemaDefinition.convertToQueryResult(QUERY_RESULT_FAILURE);
+        Buffer buffer = result.toBuffer();
+        assertSame(buffer, result.toBuffer());
+        assertSame(buffer, new QueryResult(result).toBuffer());
+        assertEquals(EXPECTED_FAILURE, new QueryResult(new JsonObject(buffer.toString())));
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.impl.ChunkedResultSender;
+import io.engagingspaces.graphql.query.impl.LocalServiceRegistry;
+import io.engagingspaces.graphql.query.impl.QueryableServiceHandler;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static graphql.Scalars.GraphQLString;
+
+/**
+ * Tests for the {@link StreamingQueryClient} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class StreamingQueryClientTest {
+
+    private static final String ADDRESS = "service.graphql.StreamQuery";
+    private static final int CHUNK_SIZE = 256;
+    private static final int WINDOW = 2;
+
+    private Vertx vertx;
+    private AtomicInteger chunksSent;
+    private List<String> items;
+    private QueryableServiceHandler handler;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        chunksSent = new AtomicInteger();
+        vertx.eventBus().addInterceptor(context -> {
+            if (context.message().headers().contains(ChunkedResultSender.SEQUENCE_HEADER)) {
+                chunksSent.incrementAndGet();
+            }
+            context.next();
+        });
+        items = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            items.add("item-" + i);
+        }
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("StreamQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("items")
+                        .type(new GraphQLList(GraphQLString)).staticValue(items).build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+        handler = new QueryableServiceHandler(vertx, definition);
+        handler.registerHandler(ADDRESS);
+        LocalServiceRegistry.forVertx(vertx).unregister(ADDRESS, handler);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Reassemble_Chunked_Result(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            StreamingQueryClient client = new StreamingQueryClient(vertx, ADDRESS, null, CHUNK_SIZE, WINDOW);
+            client.query("{ items }", res -> {
+                context.assertTrue(res.succeeded());
+                context.assertTrue(res.result().isSucceeded());
+                context.assertEquals(items, res.result().getData().getJsonArray("items").getList());
+                int length = res.result().toBuffer().length();
+                context.assertEquals((length + CHUNK_SIZE - 1) / CHUNK_SIZE, chunksSent.get());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void should_Stop_Sending_While_Stream_Is_Paused(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            StreamingQueryClient client = new StreamingQueryClient(vertx, ADDRESS, null, CHUNK_SIZE, WINDOW);
+            client.queryStream("{ items }", null, context.asyncAssertSuccess(stream -> {
+                Buffer payload = Buffer.buffer();
+                stream.handler(chunk -> {
+                    context.assertTrue(chunk.length() <= CHUNK_SIZE);
+                    if (payload.length() == 0) {
+                        stream.pause();
+                        vertx.setTimer(200, id -> {
+                            context.assertEquals(WINDOW + 1, chunksSent.get());
+                            stream.resume();
+                        });
+                    }
+                    payload.appendBuffer(chunk);
+                });
+                stream.endHandler(end -> {
+                    QueryResult result = new QueryResult(payload.toJsonObject());
+                    context.assertEquals(items, result.getData().getJsonArray("items").getList());
+                    async.complete();
+                });
+            }));
+        });
+    }
+
+    @Test
+    public void should_End_Stream_That_Is_Consumed_Before_End_Handler_Is_Set(TestContext context) {
+        Async async = context.async(2);
+        vertx.runOnContext(v -> {
+            queryAndConsume(new StreamingQueryClient(vertx, ADDRESS, null), context, async);
+            LocalServiceRegistry.forVertx(vertx).register(ADDRESS, handler);
+            queryAndConsume(new StreamingQueryClient(vertx, ADDRESS, null, CHUNK_SIZE, WINDOW), context, async);
+        });
+    }
+
+    private void queryAndConsume(StreamingQueryClient client, TestContext context, Async async) {
+        client.queryStream("{ items }", null, context.asyncAssertSuccess(stream -> {
+            Buffer payload = Buffer.buffer();
+            stream.handler(payload::appendBuffer).endHandler(end -> {
+                QueryResult result = new QueryResult(payload.toJsonObject());
+                context.assertEquals(items, result.getData().getJsonArray("items").getList());
+                async.countDown();
+            });
+        }));
+    }
+}
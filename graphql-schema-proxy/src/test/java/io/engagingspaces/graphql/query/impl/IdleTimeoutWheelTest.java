@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the {@link IdleTimeoutWheel} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class IdleTimeoutWheelTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Expire_Idle_Registrations_Only(TestContext context) {
+        Async async = context.async();
+        IdleTimeoutWheel wheel = new IdleTimeoutWheel(vertx, 10, 4);
+        long start = System.nanoTime();
+        AtomicLong accessed = new AtomicLong(start);
+        AtomicBoolean cancelledExpired = new AtomicBoolean();
+        long touchTimer = vertx.setPeriodic(5, id -> accessed.set(System.nanoTime()));
+
+        wheel.schedule(100, accessed::get, () -> context.fail("Active registration expired"));
+        wheel.schedule(20, () -> start, () -> cancelledExpired.set(true)).cancel();
+        wheel.schedule(100, () -> start, () -> {
+            context.assertTrue(System.nanoTime() - start >= 100 * 1000000);
+            context.assertFalse(cancelledExpired.get());
+            context.assertEquals(1, wheel.getPending());
+            vertx.cancelTimer(touchTimer);
+            async.complete();
+        });
+        context.assertEquals(2, wheel.getPending());
+    }
+}
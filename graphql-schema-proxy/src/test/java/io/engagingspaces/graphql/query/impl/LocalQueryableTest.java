@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static graphql.Scalars.GraphQLString;
+
+/**
+ * Tests for the {@link LocalQueryable} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class LocalQueryableTest {
+
+    private static final String ADDRESS = "service.graphql.LocalQuery";
+
+    private Vertx vertx;
+    private AtomicInteger sent;
+    private MessageConsumer<?> consumer;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        sent = new AtomicInteger();
+        vertx.eventBus().addInterceptor(context -> {
+            sent.incrementAndGet();
+            context.next();
+        });
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("LocalQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .staticValue("world").build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+        consumer = Queryable.registerService(vertx, ADDRESS, definition);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Invoke_Local_Service_Directly(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            Queryable proxy = new LocalQueryable(vertx, ADDRESS, null);
+            proxy.query("{ hello }", res -> {
+                context.assertTrue(res.succeeded());
+                context.assertEquals("world", res.result().getData().getString("hello"));
+                context.assertEquals(0, sent.get());
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void should_Fall_Back_To_Event_Bus(TestContext context) {
+        Async async = context.async();
+        consumer.unregister(context.asyncAssertSuccess(v -> {
+            new LocalQueryable(vertx, ADDRESS, null).query("{ hello }", res -> {
+                context.assertTrue(res.failed());
+                context.assertEquals(ReplyFailure.NO_HANDLERS, ((ReplyException) res.cause()).failureType());
+                context.assertEquals(1, sent.get());
+                async.complete();
+            });
+        }));
+    }
+}
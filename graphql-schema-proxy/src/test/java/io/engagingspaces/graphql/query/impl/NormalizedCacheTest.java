@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.CacheInvalidation;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaProxyType;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link NormalizedCache} and {@link CachingQueryable} classes.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class NormalizedCacheTest {
+
+    private final Map<String, Map<String, Object>> users = new LinkedHashMap<>();
+    private final List<String> sentQueries = new ArrayList<>();
+    private Queryable queryable;
+
+    @Before
+    public void setUp() {
+        users.put("1", user("1", "Alice"));
+        users.put("2", user("2", "Bob"));
+        queryable = caching(new NormalizedCache(100));
+    }
+
+    private Queryable caching(NormalizedCache cache) {
+        SchemaDefinition definition = this::schema;
+        return new CachingQueryable(new Queryable() {
+            @Override
+            public void query(String graphqlQuery, Handler<AsyncResult<QueryResult>> resultHandler) {
+                queryWithVariables(graphqlQuery, null, resultHandler);
+            }
+
+            @Override
+            public void queryWithVariables(String graphqlQuery, JsonObject variables,
+                                           Handler<AsyncResult<QueryResult>> resultHandler) {
+                sentQueries.add(graphqlQuery);
+                definition.queryWithVariables(graphqlQuery, variables, resultHandler);
+            }
+        }, cache);
+    }
+
+    @Test
+    public void should_Answer_Queries_Covered_By_Cached_Entities() {
+        JsonObject first = query("{ user(id: \"1\") { id name } }", null);
+        JsonObject second = query("query($id: String) { person: user(id: $id) { name } }",
+                new JsonObject().put("id", "1"));
+
+        assertEquals(new JsonObject().put("user", new JsonObject().put("id", "1").put("name", "Alice")), first);
+        assertEquals(new JsonObject().put("person", new JsonObject().put("name", "Alice")), second);
+        assertEquals(1, sentQueries.size());
+        assertTrue(sentQueries.get(0).contains("__typename"));
+    }
+
+    @Test
+    public void should_Query_Selections_That_Are_Not_Cached() {
+        query("{ users { id name } }", null);
+        query("{ user(id: \"1\") { id name } }", null);
+        query("{ users { id name email } }", null);
+
+        assertEquals(3, sentQueries.size());
+        assertEquals("bob@example.com", query("{ users { email } }", null)
+                .getJsonArray("users").getJsonObject(1).getString("email"));
+        assertEquals(3, sentQueries.size());
+    }
+
+    @Test
+    public void should_Update_Cached_Entities_With_Mutation_Results() {
+        query("{ users { id name } }", null);
+        query("mutation { rename(id: \"2\", name: \"Robert\") { id name } }", null);
+        query("mutation { rename(id: \"2\", name: \"Bobby\") { id name } }", null);
+
+        assertEquals("Bobby", query("{ users { name } }", null).getJsonArray("users").getJsonObject(1)
+                .getString("name"));
+        assertEquals(3, sentQueries.size());
+    }
+
+    @Test
+    public void should_Evict_Entities_And_Types() {
+        NormalizedCache cache = new NormalizedCache(100);
+        queryable = caching(cache);
+        query("{ users { id name } }", null);
+        query("{ user(id: \"1\") { id name } }", null);
+        assertEquals(2, sentQueries.size());
+
+        assertTrue(cache.evictEntity("User:2"));
+        assertFalse(cache.evictEntity("User:2"));
+        query("{ user(id: \"1\") { name } }", null);
+        assertEquals(2, sentQueries.size());
+        query("{ users { name } }", null);
+        assertEquals(3, sentQueries.size());
+
+        assertEquals(2, cache.evictType("User"));
+        query("{ user(id: \"1\") { id name } }", null);
+        assertEquals(4, sentQueries.size());
+
+        users.get("1").put("name", "Alicia");
+        assertEquals(1, cache.invalidate(CacheInvalidation.message("Query", null, null,
+                new JsonArray().add("User:1"))));
+        assertEquals("Alicia", query("{ user(id: \"1\") { id name } }", null)
+                .getJsonObject("user").getString("name"));
+        assertEquals(5, sentQueries.size());
+    }
+
+    @Test
+    public void should_Expire_Records_After_Time_To_Live() throws InterruptedException {
+        queryable = caching(new NormalizedCache(100, 50));
+        query("{ user(id: \"1\") { id name } }", null);
+        query("{ user(id: \"1\") { id name } }", null);
+        assertEquals(1, sentQueries.size());
+
+        Thread.sleep(100);
+        query("{ user(id: \"1\") { id name } }", null);
+        assertEquals(2, sentQueries.size());
+    }
+
+    @Test
+    public void should_Subscribe_Proxy_Cache_To_Invalidation_Messages() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            String address = Queryable.ADDRESS_PREFIX + ".CachedQuery";
+            SchemaDefinition definition = this::schema;
+            Queryable.registerService(vertx, address, definition);
+            Queryable proxy = Queryable.createProxy(vertx, address, new JsonObject()
+                    .put("schemaDefinitionOptions", new JsonObject().put("schemaName", "Query")
+                            .put("proxyType", SchemaProxyType.ServiceProxy.name()).put("isInternal", false)
+                            .put("deliveryOptions", new JsonObject()).put("clientCacheSize", 100)
+                            .put("invalidationEnabled", true)));
+            NormalizedCache cache = ((CachingQueryable) proxy).getCache();
+            CompletableFuture<QueryResult> result = new CompletableFuture<>();
+            proxy.query("{ users { id name } }", res -> result.complete(res.result()));
+            assertTrue(result.get(5, TimeUnit.SECONDS).isSucceeded());
+            assertEquals(3, cache.size());
+
+            vertx.eventBus().publish(CacheInvalidation.address("Query"),
+                    CacheInvalidation.message("Query", null, null, new JsonArray().add("User:2")));
+            long timeout = System.currentTimeMillis() + 5000;
+            while (cache.size() > 2 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, cache.size());
+            proxy.close();
+        } finally {
+            vertx.close();
+        }
+    }
+
+    private JsonObject query(String graphqlQuery, JsonObject variables) {
+        AtomicReference<QueryResult> result = new AtomicReference<>();
+        queryable.queryWithVariables(graphqlQuery, variables, res -> result.set(res.result()));
+        assertTrue(result.get().isSucceeded());
+        return result.get().getData();
+    }
+
+    private static Map<String, Object> user(String id, String name) {
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", id);
+        user.put("name", name);
+        user.put("email", name.toLowerCase() + "@example.com");
+        return user;
+    }
+
+    private GraphQLSchema schema() {
+        GraphQLObjectType user = GraphQLObjectType.newObject().name("User")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("id").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("email").type(GraphQLString).build())
+                .build();
+        GraphQLObjectType query = GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("user").type(user)
+                        .argument(GraphQLArgument.newArgument().name("id").type(GraphQLString).build())
+                        .dataFetcher(environment -> users.get((String) environment.getArgument("id"))).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("users").type(new GraphQLList(user))
+                        .dataFetcher(environment -> new ArrayList<>(users.values())).build())
+                .build();
+        GraphQLObjectType mutation = GraphQLObjectType.newObject().name("Mutation")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("rename").type(user)
+                        .argument(GraphQLArgument.newArgument().name("id").type(GraphQLString).build())
+                        .argument(GraphQLArgument.newArgument().name("name").type(GraphQLString).build())
+                        .dataFetcher(environment -> {
+                            Map<String, Object> renamed = users.get((String) environment.getArgument("id"));
+                            renamed.put("name", environment.getArgument("name"));
+                            return renamed;
+                        }).build())
+                .build();
+        return GraphQLSchema.newSchema().query(query).mutation(mutation).build();
+    }
+}
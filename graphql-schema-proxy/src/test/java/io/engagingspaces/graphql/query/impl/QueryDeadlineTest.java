@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.engagingspaces.graphql.schema.impl.QueryExecutor;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueryDeadline} class, and the deadline checks of query services.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class QueryDeadlineTest {
+
+    private static final String ADDRESS = "service.graphql.DeadlineQuery";
+
+    private Vertx vertx;
+    private AtomicInteger fetched;
+    private List<String> resolved;
+    private GraphQLSchema schema;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        fetched = new AtomicInteger();
+        resolved = new ArrayList<>();
+        schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("DeadlineQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("slow").type(GraphQLString)
+                        .dataFetcher(env -> {
+                            resolved.add("slow");
+                            QueryDeadline deadline = QueryDeadline.current();
+                            while (deadline != null && !deadline.isExpired()) {
+                                Thread.yield();
+                            }
+                            return "slow";
+                        }).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("next").type(GraphQLString)
+                        .dataFetcher(env -> {
+                            resolved.add("next");
+                            return "next";
+                        }).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .dataFetcher(env -> {
+                            fetched.incrementAndGet();
+                            return "world";
+                        }).build())
+                .build()).build();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Round_Trip_Remaining_Time_In_Header() {
+        DeliveryOptions deliveryOptions = QueryDeadline.addHeader(new DeliveryOptions().setSendTimeout(5000));
+        assertEquals("5000", deliveryOptions.getHeaders().get(QueryDeadline.HEADER));
+        QueryDeadline deadline = QueryDeadline.fromHeaders(deliveryOptions.getHeaders());
+        assertNotNull(deadline);
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 4000 && deadline.remainingMillis() <= 5000);
+
+        assertNull(QueryDeadline.fromHeaders(null));
+        assertNull(QueryDeadline.fromHeaders(MultiMap.caseInsensitiveMultiMap()));
+        assertNull(QueryDeadline.fromHeaders(MultiMap.caseInsensitiveMultiMap().add(QueryDeadline.HEADER, "soon")));
+    }
+
+    @Test
+    public void should_Propagate_Earliest_Deadline_To_Nested_Calls() {
+        QueryDeadline current = QueryDeadline.after(1000);
+        QueryDeadline.run(current, () -> {
+            assertSame(current, QueryDeadline.current());
+            assertSame(current, QueryDeadline.within(5000));
+            assertNotSame(current, QueryDeadline.within(10));
+            long timeout = Long.parseLong(QueryDeadline.addHeader(new DeliveryOptions().setSendTimeout(5000))
+                    .getHeaders().get(QueryDeadline.HEADER));
+            assertTrue(timeout <= 1000);
+        });
+        assertNull(QueryDeadline.current());
+    }
+
+    @Test
+    public void should_Reject_Query_That_Expired_On_Arrival(TestContext context) {
+        Async async = context.async();
+        SchemaDefinition definition = () -> schema;
+        new QueryableServiceHandler(vertx, definition).registerHandler(ADDRESS);
+        DeliveryOptions deliveryOptions = new DeliveryOptions()
+                .addHeader("action", "query").addHeader(QueryDeadline.HEADER, "0");
+        vertx.eventBus().send(ADDRESS, new JsonObject().put("graphqlQuery", "{ hello }"), deliveryOptions, res -> {
+            context.assertTrue(res.failed());
+            context.assertEquals(Queryable.QUERY_TIMEOUT, ((ReplyException) res.cause()).failureCode());
+            context.assertEquals(0, fetched.get());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void should_Abort_Execution_When_Deadline_Expires() {
+        QueryExecutor executor = QueryExecutor.forSchema(schema, new SchemaDefinitionOptions());
+        executor.execute(schema, "{ slow next }", null);
+        assertEquals(Arrays.asList("slow", "next"), resolved);
+
+        resolved.clear();
+        try {
+            QueryDeadline.call(QueryDeadline.after(500), () -> executor.execute(schema, "{ slow next }", null));
+            fail("Expected the query deadline to be exceeded");
+        } catch (ServiceException ex) {
+            assertEquals(Queryable.QUERY_TIMEOUT, ex.failureCode());
+        }
+        assertEquals(Collections.singletonList("slow"), resolved);
+    }
+}
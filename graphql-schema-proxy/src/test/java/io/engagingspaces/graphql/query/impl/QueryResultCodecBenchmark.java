@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.QueryResult.ErrorLocation;
+import io.engagingspaces.graphql.query.QueryResult.QueryError;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple benchmark that compares the wire formats of {@link QueryResultMessageCodec} on representative query result
+ * shapes. Reports the encoded size and the average time of an encode/decode round trip.
+ * <p>
+ * Run the main method with a warmed-up JVM (e.g. from the IDE), it is not part of the test suite.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryResultCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 5000;
+
+    public static void main(String[] args) {
+        Map<String, QueryResult> shapes = new LinkedHashMap<>();
+        shapes.put("single object", new QueryResult(new JsonObject().put("hero", character(2001)), true, null));
+        shapes.put("list of 1000", new QueryResult(new JsonObject().put("characters", characters(1000, 0)),
+                true, null));
+        shapes.put("nested 100x10", new QueryResult(new JsonObject().put("characters", characters(100, 10)),
+                true, null));
+        shapes.put("errors", new QueryResult(new JsonObject(), false, Collections.nCopies(10,
+                new QueryError("ValidationError", "Validation error of type FieldUndefined: Field nope is undefined",
+                        Collections.singletonList(new ErrorLocation(1, 3))))));
+
+        Map<String, QueryResultMessageCodec> codecs = new LinkedHashMap<>();
+        codecs.put("json", new QueryResultMessageCodec(false, false));
+        codecs.put("binary", new QueryResultMessageCodec(true, false));
+        codecs.put("binary+dictionary", new QueryResultMessageCodec(true, true));
+
+        System.out.printf("%-16s %-20s %12s %16s%n", "shape", "format", "bytes", "round trip (us)");
+        for (Map.Entry<String, QueryResult> shape : shapes.entrySet()) {
+            for (Map.Entry<String, QueryResultMessageCodec> codec : codecs.entrySet()) {
+                run(codec.getValue(), shape.getValue(), WARMUP_ITERATIONS);
+                long start = System.nanoTime();
+                int size = run(codec.getValue(), shape.getValue(), ITERATIONS);
+                double micros = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+                System.out.printf("%-16s %-20s %12d %16.2f%n", shape.getKey(), codec.getKey(), size, micros);
+            }
+        }
+    }
+
+    private static int run(QueryResultMessageCodec codec, QueryResult queryResult, int iterations) {
+        int size = 0;
+        for (int i = 0; i < iterations; i++) {
+            Buffer buffer = Buffer.buffer();
+            codec.encodeToWire(buffer, queryResult);
+            if (!codec.decodeFromWire(0, buffer).isSucceeded() && queryResult.isSucceeded()) {
+                throw new IllegalStateException("Round trip failed");
+            }
+            size = buffer.length();
+        }
+        return size;
+    }
+
+    private static JsonArray characters(int count, int friends) {
+        JsonArray characters = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            JsonObject character = character(1000 + i);
+            if (friends > 0) {
+                character.put("friends", characters(friends, 0));
+            }
+            characters.add(character);
+        }
+        return characters;
+    }
+
+    private static JsonObject character(int id) {
+        return new JsonObject()
+                .put("id", String.valueOf(id))
+                .put("name", "Character " + id)
+                .put("homePlanet", id % 2 == 0 ? "Tatooine" : null)
+                .put("height", 1.72)
+                .put("mass", id % 100)
+                .put("appearsIn", new JsonArray().add("NEWHOPE").add("EMPIRE").add("JEDI"));
+    }
+}
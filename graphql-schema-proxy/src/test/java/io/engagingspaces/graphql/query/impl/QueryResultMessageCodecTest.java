@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.QueryResult.ErrorLocation;
+import io.engagingspaces.graphql.query.QueryResult.QueryError;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the query result message codec and its wire formats.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryResultMessageCodecTest {
+
+    private static final QueryResult RESULT_SUCCESS = new QueryResult(new JsonObject()
+            .put("hero", new JsonObject()
+                    .put("name", "R2-D2")
+                    .put("height", 0.96)
+                    .put("credits", Long.MAX_VALUE)
+                    .put("appearsIn", new JsonArray().add("NEWHOPE").add("EMPIRE"))
+                    .put("friends", new JsonArray()
+                            .add(new JsonObject().put("name", "Luke Skywalker").put("id", 1000).putNull("ship"))
+                            .add(new JsonObject().put("name", "Han Solo").put("id", -1002).put("human", true)))),
+            true, Collections.emptyList());
+
+    private static final QueryResult RESULT_FAILURE = new QueryResult(new JsonObject(), false, Arrays.asList(
+            new QueryError("ValidationError", "Field 'nope' is undefined \u2717", Arrays.asList(
+                    new ErrorLocation(1, 3), new ErrorLocation(12, 300))),
+            new QueryError("DataFetchingException", null, null)));
+
+    @Test
+    public void should_Pass_Query_Result_By_Reference_In_Local_Delivery() {
+        assertSame(RESULT_SUCCESS, new QueryResultMessageCodec().transform(RESULT_SUCCESS));
+    }
+
+    @Test
+    public void should_Round_Trip_Query_Results_In_All_Wire_Formats() {
+        for (QueryResultMessageCodec codec : Arrays.asList(new QueryResultMessageCodec(),
+                new QueryResultMessageCodec(true, false), new QueryResultMessageCodec(false, false))) {
+            assertEquals(RESULT_SUCCESS, roundTrip(codec, RESULT_SUCCESS));
+            assertEquals(RESULT_FAILURE, roundTrip(codec, RESULT_FAILURE));
+        }
+    }
+
+    @Test
+    public void should_Round_Trip_Arbitrary_Precision_Numbers_In_Binary_Formats() {
+        BigInteger bigInteger = new BigInteger("123456789012345678901234567890");
+        BigDecimal bigDecimal = new BigDecimal("0.1000000000000000055511151231257827");
+        Map<String, Object> hero = new LinkedHashMap<>();
+        hero.put("credits", bigInteger);
+        hero.put("height", bigDecimal);
+        hero.put("scaled", new BigDecimal("1.50"));
+        QueryResult result = new QueryResult(new JsonObject().put("hero", new JsonObject(hero)), true, null);
+        for (QueryResultMessageCodec codec : Arrays.asList(new QueryResultMessageCodec(),
+                new QueryResultMessageCodec(true, false))) {
+            Map<String, Object> decoded = roundTrip(codec, result).getData().getJsonObject("hero").getMap();
+            assertEquals(bigInteger, decoded.get("credits"));
+            assertEquals(bigDecimal, decoded.get("height"));
+            assertEquals(new BigDecimal("1.50"), decoded.get("scaled"));
+        }
+    }
+
+    @Test
+    public void should_Round_Trip_Query_Result_Extensions() {
+        QueryResult result = new QueryResult(new JsonObject().put("hero", "R2-D2"), true, null,
+                new JsonObject().put("tracing", new JsonObject().put("version", 1).put("duration", 1234567L)));
+        for (QueryResultMessageCodec codec : Arrays.asList(new QueryResultMessageCodec(),
+                new QueryResultMessageCodec(false, false))) {
+            assertEquals(result.getExtensions(), roundTrip(codec, result).getExtensions());
+        }
+        assertNull(roundTrip(new QueryResultMessageCodec(), RESULT_SUCCESS).getExtensions());
+    }
+
+    @Test
+    public void should_Record_Wire_Size_Without_Encoding() {
+        QueryResult result = new QueryResult(RESULT_SUCCESS.getData(), true, null);
+        assertEquals(-1, result.getEncodedSize());
+        for (QueryResultMessageCodec codec : Arrays.asList(new QueryResultMessageCodec(),
+                new QueryResultMessageCodec(false, false))) {
+            Buffer buffer = Buffer.buffer();
+            codec.encodeToWire(buffer, result);
+            assertEquals(buffer.length(), codec.decodeFromWire(0, buffer).getEncodedSize());
+        }
+        assertEquals(result.toBuffer().length(), result.getEncodedSize());
+    }
+
+    @Test
+    public void should_Encode_Binary_Format_Once_Per_Configuration() {
+        QueryResult result = new QueryResult(RESULT_SUCCESS.getData(), true, null);
+        QueryResultMessageCodec codec = new QueryResultMessageCodec();
+        Buffer first = Buffer.buffer();
+        Buffer second = Buffer.buffer();
+        codec.encodeToWire(first, result);
+        int encodedSize = result.getEncodedSize();
+        assertEquals(first.length() - 1, encodedSize);
+        codec.encodeToWire(second, result);
+        assertEquals(first, second);
+
+        AtomicInteger encodings = new AtomicInteger();
+        Buffer cached = result.toBuffer("binary-dictionary", r -> {
+            encodings.incrementAndGet();
+            return Buffer.buffer();
+        });
+        assertEquals(0, encodings.get());
+        assertEquals(encodedSize, cached.length());
+
+        Buffer plain = Buffer.buffer();
+        new QueryResultMessageCodec(true, false).encodeToWire(plain, result);
+        assertNotEquals(first, plain);
+        assertEquals(RESULT_SUCCESS, codec.decodeFromWire(0, plain));
+    }
+
+    @Test
+    public void should_Decode_Regardless_Of_Receiver_Configuration() {
+        Buffer buffer = Buffer.buffer();
+        new QueryResultMessageCodec(true, true).encodeToWire(buffer, RESULT_SUCCESS);
+        assertEquals(RESULT_SUCCESS, new QueryResultMessageCodec(false, false).decodeFromWire(0, buffer));
+    }
+
+    @Test
+    public void should_Encode_Repeated_Field_Names_Once_With_Dictionary() {
+        JsonArray droids = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            droids.add(new JsonObject().put("primaryFunction", "Astromech").put("id", i));
+        }
+        QueryResult result = new QueryResult(new JsonObject().put("droids", droids), true, null);
+        Buffer withDictionary = Buffer.buffer();
+        Buffer withoutDictionary = Buffer.buffer();
+        new QueryResultMessageCodec(true, true).encodeToWire(withDictionary, result);
+        new QueryResultMessageCodec(true, false).encodeToWire(withoutDictionary, result);
+        assertTrue(withDictionary.length() < withoutDictionary.length() * 2 / 3);
+        assertEquals(result, new QueryResultMessageCodec().decodeFromWire(0, withDictionary));
+    }
+
+    private static QueryResult roundTrip(QueryResultMessageCodec codec, QueryResult queryResult) {
+        Buffer buffer = Buffer.buffer().appendString("header");
+        codec.encodeToWire(buffer, queryResult);
+        return codec.decodeFromWire(6, buffer);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static graphql.Scalars.GraphQLString;
+
+/**
+ * Tests for the {@link QueryableServiceDeployment} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class QueryableServiceDeploymentTest {
+
+    private static final String ADDRESS = "service.graphql.ScaledQuery";
+
+    private Vertx vertx;
+    private Set<String> threads;
+    private SchemaDefinition definition;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        threads = ConcurrentHashMap.newKeySet();
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("ScaledQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("thread").type(GraphQLString)
+                        .dataFetcher(env -> {
+                            threads.add(Thread.currentThread().getName());
+                            return Thread.currentThread().getName();
+                        }).build())
+                .build()).build();
+        definition = () -> schema;
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Execute_Queries_On_All_Instances(TestContext context) {
+        Async async = context.async();
+        AtomicInteger results = new AtomicInteger();
+        Queryable.deployService(vertx, ADDRESS, definition, 2, context.asyncAssertSuccess(deploymentId -> {
+            Queryable proxy = new QueryableServiceProxy(vertx, ADDRESS, null);
+            for (int i = 0; i < 4; i++) {
+                proxy.query("{ thread }", context.asyncAssertSuccess(result -> {
+                    context.assertTrue(result.isSucceeded());
+                    if (results.incrementAndGet() == 4) {
+                        context.assertEquals(2, threads.size());
+                        vertx.undeploy(deploymentId, context.asyncAssertSuccess(v -> {
+                            context.assertNull(LocalServiceRegistry.forVertx(vertx).lookup(ADDRESS));
+                            async.complete();
+                        }));
+                    }
+                }));
+            }
+        }));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.query.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.serviceproxy.ProxyHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static graphql.Scalars.GraphQLString;
+
+/**
+ * Tests for the replies of the {@link QueryableServiceHandler} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class QueryableServiceHandlerTest {
+
+    private static final String ADDRESS = "service.graphql.HandlerQuery";
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("HandlerQuery")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .staticValue("world").build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+        new QueryableServiceHandler(vertx, definition).registerHandler(ADDRESS);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Reply_Json_To_Requests_Without_Accept_Header(TestContext context) {
+        Async async = context.async();
+        vertx.eventBus().send(ADDRESS, new JsonObject().put("graphqlQuery", "{ hello }"),
+                new DeliveryOptions().addHeader("action", "query"), context.asyncAssertSuccess(reply -> {
+                    context.assertTrue(reply.body() instanceof JsonObject);
+                    context.assertEquals("world", new QueryResult((JsonObject) reply.body())
+                            .getData().getString("hello"));
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void should_Reply_Query_Result_To_Requests_With_Accept_Header(TestContext context) {
+        Async async = context.async();
+        DeliveryOptions deliveryOptions = new DeliveryOptions().addHeader("action", "query")
+                .addHeader(QueryResultMessageCodec.ACCEPT_HEADER, QueryResultMessageCodec.CODEC_NAME);
+        vertx.eventBus().send(ADDRESS, new JsonObject().put("graphqlQuery", "{ hello }"), deliveryOptions,
+                context.asyncAssertSuccess(reply -> {
+                    context.assertTrue(reply.body() instanceof QueryResult);
+                    context.assertEquals("world", ((QueryResult) reply.body()).getData().getString("hello"));
+                    async.complete();
+                }));
+    }
+
+    @Test
+    public void should_Serve_Generated_And_Custom_Proxies(TestContext context) {
+        Async async = context.async(2);
+        Queryable generated = ProxyHelper.createProxy(Queryable.class, vertx, ADDRESS);
+        generated.query("{ hello }", context.asyncAssertSuccess(result -> {
+            context.assertEquals("world", result.getData().getString("hello"));
+            async.countDown();
+        }));
+        new QueryableServiceProxy(vertx, ADDRESS, null).query("{ hello }", context.asyncAssertSuccess(result -> {
+            context.assertEquals("world", result.getData().getString("hello"));
+            async.countDown();
+        }));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link AdmissionController} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+@RunWith(VertxUnitRunner.class)
+public class AdmissionControllerTest {
+
+    private static final QueryResult RESULT =
+            new QueryResult(new JsonObject().put("hello", "world"), true, Collections.emptyList());
+
+    private Vertx vertx;
+    private Map<String, Handler<AsyncResult<QueryResult>>> started;
+    private List<String> completed;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        started = new LinkedHashMap<>();
+        completed = new ArrayList<>();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void should_Execute_Directly_When_Admission_Control_Is_Disabled() {
+        AdmissionController admission = new AdmissionController(0, 0);
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            admission.submit(() -> {
+                threads.add(Thread.currentThread());
+                return RESULT;
+            }, res -> completed.add(res.succeeded() ? "ok" : "failed"));
+        }
+        assertEquals(Arrays.asList(caller, caller, caller), threads);
+        assertEquals(Arrays.asList("ok", "ok", "ok"), completed);
+        assertEquals(0, admission.getRunning());
+        assertEquals(0, admission.getAdmitted());
+        assertEquals(0, admission.getRejected());
+    }
+
+    @Test
+    public void should_Limit_Concurrent_Queries_And_Reject_On_Queue_Overflow(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            AdmissionController admission = new AdmissionController(2, 1);
+            admission.submitAsync(query("first"), false, result("first"));
+            admission.submitAsync(query("second"), false, result("second"));
+            admission.submitAsync(query("third"), false, result("third"));
+            context.assertEquals(Arrays.asList("first", "second"), new ArrayList<>(started.keySet()));
+            context.assertEquals(2, admission.getRunning());
+            context.assertEquals(1, admission.getQueued());
+
+            List<Throwable> failures = new ArrayList<>();
+            admission.submitAsync(query("fourth"), false, res -> failures.add(res.cause()));
+            context.assertEquals(1, failures.size());
+            context.assertEquals(Queryable.QUERY_REJECTED, ((ServiceException) failures.get(0)).failureCode());
+            context.assertFalse(started.containsKey("fourth"));
+            context.assertEquals(1L, admission.getRejected());
+
+            started.get("first").handle(Future.succeededFuture(RESULT));
+            context.assertEquals(Arrays.asList("first", "second", "third"), new ArrayList<>(started.keySet()));
+            context.assertEquals(2, admission.getRunning());
+            context.assertEquals(0, admission.getQueued());
+
+            started.get("second").handle(Future.succeededFuture(RESULT));
+            started.get("third").handle(Future.succeededFuture(RESULT));
+            context.assertEquals(Arrays.asList("first", "second", "third"), completed);
+            context.assertEquals(0, admission.getRunning());
+            context.assertEquals(3L, admission.getAdmitted());
+            context.assertEquals(1, admission.getPeakQueued());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void should_Start_Low_Priority_Queries_After_Regular_Queries(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            AdmissionController admission = new AdmissionController(1, 3);
+            admission.submitAsync(query("running"), false, result("running"));
+            admission.submitAsync(query("expensive"), true, result("expensive"));
+            admission.submitAsync(query("regular"), false, result("regular"));
+            context.assertEquals(2, admission.getQueued());
+            context.assertEquals(1, admission.getQueuedLowPriority());
+
+            started.get("running").handle(Future.succeededFuture(RESULT));
+            context.assertEquals(Arrays.asList("running", "regular"), new ArrayList<>(started.keySet()));
+            started.get("regular").handle(Future.succeededFuture(RESULT));
+            context.assertEquals(Arrays.asList("running", "regular", "expensive"),
+                    new ArrayList<>(started.keySet()));
+            context.assertEquals(0, admission.getQueuedLowPriority());
+
+            // low priority queries share the queue capacity with regular queries
+            admission.submitAsync(query("a"), true, result("a"));
+            admission.submitAsync(query("b"), false, result("b"));
+            admission.submitAsync(query("c"), true, result("c"));
+            List<Throwable> failures = new ArrayList<>();
+            admission.submitAsync(query("d"), false, res -> failures.add(res.cause()));
+            context.assertEquals(3, admission.getQueued());
+            context.assertEquals(1, failures.size());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void should_Execute_Blocking_Queries_On_Worker_And_Reply_On_Caller_Context(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            Context caller = Vertx.currentContext();
+            AdmissionController admission = new AdmissionController(1, 1);
+            admission.submit(() -> {
+                context.assertTrue(Context.isOnWorkerThread());
+                return RESULT;
+            }, res -> {
+                context.assertTrue(res.succeeded());
+                context.assertEquals(caller, Vertx.currentContext());
+                context.assertEquals(0, admission.getRunning());
+                async.complete();
+            });
+            context.assertEquals(1, admission.getRunning());
+        });
+    }
+
+    private Consumer<Handler<AsyncResult<QueryResult>>> query(String name) {
+        return handler -> started.put(name, handler);
+    }
+
+    private Handler<AsyncResult<QueryResult>> result(String name) {
+        return res -> {
+            assertTrue(res.succeeded());
+            completed.add(name);
+        };
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.marshaller.schema.AsyncDataFetcher;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.Future;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link AsyncExecutionStrategy} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class AsyncExecutionStrategyTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void should_Resolve_Async_Data_Fetchers_Without_Blocking() throws InterruptedException {
+        ExecutionResult result = executeAsync("{ name items { name } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        Map<?, ?> data = (Map<?, ?>) result.getData();
+        assertEquals("root", data.get("name"));
+        List<?> items = (List<?>) data.get("items");
+        assertEquals(2, items.size());
+        assertEquals("item-2", ((Map<?, ?>) items.get(1)).get("name"));
+    }
+
+    @Test
+    public void should_Report_Failed_Async_Data_Fetchers_As_Errors() throws InterruptedException {
+        ExecutionResult result = executeAsync("{ name failing }");
+
+        assertEquals(1, result.getErrors().size());
+        assertEquals("root", ((Map<?, ?>) result.getData()).get("name"));
+        assertNull(((Map<?, ?>) result.getData()).get("failing"));
+    }
+
+    @Test
+    public void should_Await_Async_Data_Fetchers_In_Blocking_Execution() {
+        ExecutionResult result = new QueryExecutor(new SchemaDefinitionOptions(), "Query")
+                .execute(schema(), "{ name items { name } failing }", null);
+
+        assertEquals(1, result.getErrors().size());
+        Map<?, ?> data = (Map<?, ?>) result.getData();
+        assertEquals("root", data.get("name"));
+        assertEquals("item-1", ((Map<?, ?>) ((List<?>) data.get("items")).get(0)).get("name"));
+    }
+
+    private ExecutionResult executeAsync(String query) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<ExecutionResult> result = new AtomicReference<>();
+        new QueryExecutor(new SchemaDefinitionOptions(), "Query").executeAsync(schema(), query, null, res -> {
+            assertTrue(res.succeeded());
+            result.set(res.result());
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private GraphQLSchema schema() {
+        GraphQLObjectType item = GraphQLObjectType.newObject().name("Item")
+                .field(field("name", (AsyncDataFetcher<String>) (environment, handler) ->
+                        handler.handle(Future.succeededFuture((String) environment.getSource()))))
+                .build();
+        GraphQLObjectType query = GraphQLObjectType.newObject().name("Query")
+                .field(field("name", environment -> later("root")))
+                .field(field("failing", environment -> {
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    scheduler.schedule(() -> future.completeExceptionally(new IllegalStateException("Failed")),
+                            10, TimeUnit.MILLISECONDS);
+                    return future;
+                }))
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("items").type(new GraphQLList(item))
+                        .dataFetcher(environment -> later(Arrays.asList("item-1", "item-2"))).build())
+                .build();
+        return GraphQLSchema.newSchema().query(query).build();
+    }
+
+    private <T> CompletableFuture<T> later(T value) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(value), 10, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static GraphQLFieldDefinition field(String name, DataFetcher dataFetcher) {
+        return GraphQLFieldDefinition.newFieldDefinition().name(name).type(GraphQLString)
+                .dataFetcher(dataFetcher).build();
+    }
+}
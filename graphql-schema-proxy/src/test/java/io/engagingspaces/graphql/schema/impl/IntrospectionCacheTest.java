@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link IntrospectionCache} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class IntrospectionCacheTest {
+
+    private static final String INTROSPECTION_QUERY =
+            "query IntrospectionQuery { __schema { queryType { name } types { ...FullType } } } " +
+            "fragment FullType on __Type { kind name fields { name } }";
+
+    @Test
+    public void should_Only_Key_Introspection_Queries() {
+        IntrospectionCache cache = new IntrospectionCache();
+
+        assertNotNull(cache.keyOf(INTROSPECTION_QUERY, null));
+        assertNotNull(cache.keyOf("{ __type(name: \"Query\") { name } __typename }", null));
+        assertEquals(cache.keyOf("{__schema{types{name}}}", null),
+                cache.keyOf("{ __schema { types { name } } }", null));
+        String typeQuery = "query($n: String) { __type(name: $n) { name } }";
+        assertNotEquals(cache.keyOf(typeQuery, Collections.singletonMap("n", "A")),
+                cache.keyOf(typeQuery, Collections.singletonMap("n", "B")));
+        assertNull(cache.keyOf("{ __schema { types { name } } hello }", null));
+        assertNull(cache.keyOf("{ hello }", null));
+        assertNull(cache.keyOf("{ __schema { ", null));
+    }
+
+    @Test
+    public void should_Answer_Introspection_Queries_From_Cache() {
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .staticValue("world").build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+
+        QueryResult first = query(definition, INTROSPECTION_QUERY);
+        QueryResult second = query(definition, INTROSPECTION_QUERY);
+
+        assertTrue(first.isSucceeded());
+        assertSame(first, second);
+        assertNotSame(query(definition, "{ hello }"), query(definition, "{ hello }"));
+        assertEquals(1L, (long) definition.admissionMetrics().getLong("introspectionHits"));
+    }
+
+    @Test
+    public void should_Reply_Read_Only_Cached_Results() {
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .staticValue("world").build())
+                .build()).build();
+        SchemaDefinition definition = () -> schema;
+
+        QueryResult first = query(definition, INTROSPECTION_QUERY);
+        JsonObject expected = first.getData().copy();
+        String encoded = first.toBuffer().toString();
+        assertEquals("Query", first.getData().getJsonObject("__schema").getJsonObject("queryType").getString("name"));
+        assertUnsupported(() -> first.getData().put("hacked", true));
+        assertUnsupported(() -> first.getData().getJsonObject("__schema").remove("types"));
+        assertUnsupported(() -> first.getData().getJsonObject("__schema").getJsonArray("types").clear());
+
+        QueryResult second = query(definition, INTROSPECTION_QUERY);
+        assertSame(first, second);
+        assertEquals(expected, second.getData());
+        assertEquals(encoded, second.toBuffer().toString());
+        assertEquals(expected, new JsonObject(encoded).getJsonObject("data"));
+    }
+
+    private static void assertUnsupported(Runnable modification) {
+        try {
+            modification.run();
+            fail("Expected cached result to be read-only");
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+    private static QueryResult query(SchemaDefinition definition, String graphqlQuery) {
+        AtomicReference<QueryResult> result = new AtomicReference<>();
+        definition.queryWithVariables(graphqlQuery, new JsonObject(), res -> result.set(res.result()));
+        return result.get();
+    }
+}
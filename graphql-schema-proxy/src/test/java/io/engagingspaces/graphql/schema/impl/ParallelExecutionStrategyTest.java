@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.schema.ExecutionStrategyType;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link ParallelExecutionStrategy} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ParallelExecutionStrategyTest {
+
+    private static final long DELAY = 200;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_Resolve_Sibling_Fields_In_Parallel() {
+        QueryExecutor executor = new QueryExecutor(new SchemaDefinitionOptions()
+                .setQueryExecutionStrategy(ExecutionStrategyType.Parallel)
+                .setParallelExecutor(this.executor), "Query");
+
+        long start = System.currentTimeMillis();
+        ExecutionResult result = executor.execute(schema(), "{ a b nested { a b } }", null);
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue(result.getErrors().isEmpty());
+        Map<?, ?> data = (Map<?, ?>) result.getData();
+        assertEquals("a", data.get("a"));
+        assertEquals("b", data.get("b"));
+        assertEquals("b", ((Map<?, ?>) data.get("nested")).get("b"));
+        assertTrue("Expected parallel execution, but took " + duration + "ms", duration < 3 * DELAY);
+    }
+
+    @Test
+    public void should_Collect_Errors_And_Trace_Paths_Of_Parallel_Fields() {
+        QueryExecutor executor = new QueryExecutor(new SchemaDefinitionOptions()
+                .setQueryExecutionStrategy(ExecutionStrategyType.Parallel)
+                .setParallelExecutor(this.executor)
+                .setTracingEnabled(true), "Query");
+
+        ExecutionResult result = executor.execute(schema(), "{ failing nested { a failing } }", null);
+
+        assertEquals(2, result.getErrors().size());
+        JsonArray resolvers = ((QueryExecutionResult) result).getExtensions()
+                .getJsonObject(QueryTrace.EXTENSION_NAME).getJsonObject("execution").getJsonArray("resolvers");
+        assertTrue(resolvers.stream().anyMatch(resolver ->
+                new JsonArray().add("nested").add("failing").equals(((JsonObject) resolver).getJsonArray("path"))));
+    }
+
+    @Test
+    public void should_Resolve_Fields_On_Shared_Bounded_Executor_By_Default() {
+        SchemaDefinitionOptions options = new SchemaDefinitionOptions()
+                .setQueryExecutionStrategy(ExecutionStrategyType.Parallel);
+        assertSame(ParallelExecutionStrategy.defaultExecutor(), options.getParallelExecutor());
+        assertSame(options.getParallelExecutor(), new SchemaDefinitionOptions().getParallelExecutor());
+        assertNotSame(ForkJoinPool.commonPool(), options.getParallelExecutor());
+
+        long start = System.currentTimeMillis();
+        ExecutionResult result = new QueryExecutor(options, "Query").execute(schema(), "{ a b }", null);
+        long duration = System.currentTimeMillis() - start;
+
+        assertTrue(result.getErrors().isEmpty());
+        assertTrue("Expected parallel execution, but took " + duration + "ms", duration < 2 * DELAY);
+    }
+
+    private static GraphQLSchema schema() {
+        GraphQLObjectType nested = GraphQLObjectType.newObject().name("Nested")
+                .field(field("a", slow("a")))
+                .field(field("b", slow("b")))
+                .field(field("failing", environment -> {
+                    throw new IllegalStateException("Failed");
+                }))
+                .build();
+        GraphQLObjectType query = GraphQLObjectType.newObject().name("Query")
+                .field(field("a", slow("a")))
+                .field(field("b", slow("b")))
+                .field(field("failing", environment -> {
+                    throw new IllegalStateException("Failed");
+                }))
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("nested").type(nested)
+                        .dataFetcher(environment -> new Object()).build())
+                .build();
+        return GraphQLSchema.newSchema().query(query).build();
+    }
+
+    private static GraphQLFieldDefinition field(String name, DataFetcher dataFetcher) {
+        return GraphQLFieldDefinition.newFieldDefinition().name(name).type(GraphQLString)
+                .dataFetcher(dataFetcher).build();
+    }
+
+    private static DataFetcher slow(String value) {
+        return environment -> {
+            try {
+                Thread.sleep(DELAY);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.ExecutionResult;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.query.impl.QueryHasher;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.AsyncResult;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for persisted queries, and the {@link PersistedQueryRegistry} of the query executor.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class PersistedQueryRegistryTest {
+
+    private static final String QUERY = "{ hello }";
+
+    private GraphQLSchema schema;
+
+    @Before
+    public void setUp() {
+        schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hello").type(GraphQLString)
+                        .argument(GraphQLArgument.newArgument().name("name").type(GraphQLString).build())
+                        .dataFetcher(env -> "Hello " + (env.getArgument("name") == null ?
+                                "world" : env.getArgument("name"))).build())
+                .build()).build();
+    }
+
+    @Test
+    public void should_Execute_Persisted_Query_By_Hash_After_Registration() {
+        QueryExecutor executor = QueryExecutor.forSchema(schema, new SchemaDefinitionOptions());
+        String hash = QueryHasher.hash(QUERY);
+
+        assertEquals("Hello world", hello(executor.executePersisted(schema, hash, QUERY, null)));
+        assertEquals(1, executor.persistedQueries().size());
+        assertEquals("Hello world", hello(executor.executePersisted(schema, hash, null, null)));
+        assertEquals(1, executor.persistedQueries().size());
+    }
+
+    @Test
+    public void should_Reject_Unknown_Query_Hash() {
+        QueryExecutor executor = QueryExecutor.forSchema(schema, new SchemaDefinitionOptions());
+        assertFailureCode(Queryable.PERSISTED_QUERY_NOT_FOUND,
+                () -> executor.executePersisted(schema, QueryHasher.hash(QUERY), null, null));
+
+        SchemaDefinition definition = () -> schema;
+        List<AsyncResult<QueryResult>> results = new ArrayList<>();
+        definition.queryPersisted(QueryHasher.hash(QUERY), null, null, results::add);
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).failed());
+        assertEquals(Queryable.PERSISTED_QUERY_NOT_FOUND, ((ServiceException) results.get(0).cause()).failureCode());
+    }
+
+    @Test
+    public void should_Reject_Query_That_Does_Not_Match_Its_Hash() {
+        QueryExecutor executor = QueryExecutor.forSchema(schema, new SchemaDefinitionOptions());
+        assertFailureCode(Queryable.PERSISTED_QUERY_HASH_MISMATCH,
+                () -> executor.executePersisted(schema, QueryHasher.hash("{ other }"), QUERY, null));
+        assertEquals(0, executor.persistedQueries().size());
+    }
+
+    @Test
+    public void should_Evict_Least_Recently_Used_Query() {
+        QueryExecutor executor = QueryExecutor.forSchema(schema,
+                new SchemaDefinitionOptions().setPersistedQueryCacheSize(2));
+        String first = "{ hello(name: \"first\") }";
+        String second = "{ hello(name: \"second\") }";
+        String third = "{ hello(name: \"third\") }";
+        executor.executePersisted(schema, QueryHasher.hash(first), first, null);
+        executor.executePersisted(schema, QueryHasher.hash(second), second, null);
+        executor.executePersisted(schema, QueryHasher.hash(first), null, null);
+        executor.executePersisted(schema, QueryHasher.hash(third), third, null);
+
+        assertEquals(2, executor.persistedQueries().size());
+        assertEquals("Hello first", hello(executor.executePersisted(schema, QueryHasher.hash(first), null, null)));
+        assertEquals("Hello third", hello(executor.executePersisted(schema, QueryHasher.hash(third), null, null)));
+        assertFailureCode(Queryable.PERSISTED_QUERY_NOT_FOUND,
+                () -> executor.executePersisted(schema, QueryHasher.hash(second), null, null));
+    }
+
+    @Test
+    public void should_Share_Executor_Of_Same_Options_Instance_Only() {
+        SchemaDefinitionOptions options = new SchemaDefinitionOptions().setPersistedQueryCacheSize(10);
+        QueryExecutor executor = QueryExecutor.forSchema(schema, options);
+        assertSame(executor, QueryExecutor.forSchema(schema, options));
+        assertNotSame(executor, QueryExecutor.forSchema(schema,
+                new SchemaDefinitionOptions().setPersistedQueryCacheSize(10)));
+
+        options.setPersistedQueryCacheSize(0);
+        assertSame(executor, QueryExecutor.forSchema(schema, options));
+        assertTrue(executor.persistedQueries().isEnabled());
+        assertFalse(QueryExecutor.forSchema(schema, new SchemaDefinitionOptions().setPersistedQueryCacheSize(0))
+                .persistedQueries().isEnabled());
+    }
+
+    @Test
+    public void should_Resolve_Executor_Once_Per_Definition() {
+        SchemaDefinition definition = () -> schema;
+        QueryExecutor executor = QueryExecutor.forDefinition(definition);
+        assertSame(executor, QueryExecutor.forDefinition(definition));
+        assertNotSame(executor, QueryExecutor.forDefinition(() -> schema));
+    }
+
+    private static String hello(ExecutionResult result) {
+        assertTrue(result.getErrors().isEmpty());
+        return String.valueOf(((Map<?, ?>) result.getData()).get("hello"));
+    }
+
+    private static void assertFailureCode(int failureCode, Runnable execution) {
+        try {
+            execution.run();
+            fail("Expected a service exception with failure code " + failureCode);
+        } catch (ServiceException ex) {
+            assertEquals(failureCode, ex.failureCode());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueryCoalescer} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryCoalescerTest {
+
+    @Test
+    public void should_Share_Result_Of_Identical_Query_In_Flight() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        List<Handler<AsyncResult<QueryResult>>> executions = new ArrayList<>();
+        List<QueryResult> results = new ArrayList<>();
+
+        coalescer.submit("key", executions::add, res -> results.add(res.result()));
+        coalescer.submit("key", executions::add, res -> results.add(res.result()));
+        coalescer.submit("other", executions::add, res -> results.add(res.result()));
+        assertEquals(2, executions.size());
+        assertEquals(2, coalescer.getInFlight());
+        assertEquals(1, coalescer.getCoalesced());
+
+        QueryResult result = new QueryResult(new JsonObject().put("hello", "world"), true, Collections.emptyList());
+        executions.get(0).handle(Future.succeededFuture(result));
+        assertEquals(2, results.size());
+        assertSame(result, results.get(0));
+        assertSame(result, results.get(1));
+        assertEquals(1, coalescer.getInFlight());
+
+        coalescer.submit("key", executions::add, res -> results.add(res.result()));
+        assertEquals(3, executions.size());
+    }
+
+    @Test
+    public void should_Notify_All_Waiters_When_Result_Handlers_Fail() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        List<Handler<AsyncResult<QueryResult>>> executions = new ArrayList<>();
+        List<QueryResult> results = new ArrayList<>();
+
+        coalescer.submit("key", executions::add, res -> {
+            throw new IllegalStateException("leader");
+        });
+        coalescer.submit("key", executions::add, res -> {
+            throw new IllegalStateException("waiter");
+        });
+        coalescer.submit("key", executions::add, res -> results.add(res.result()));
+        assertEquals(1, executions.size());
+
+        QueryResult result = new QueryResult(new JsonObject().put("hello", "world"), true, Collections.emptyList());
+        try {
+            executions.get(0).handle(Future.succeededFuture(result));
+            fail("Expected the exception of the result handler");
+        } catch (IllegalStateException ex) {
+            assertEquals("leader", ex.getMessage());
+            assertEquals(1, ex.getSuppressed().length);
+            assertEquals("waiter", ex.getSuppressed()[0].getMessage());
+        }
+        assertEquals(Collections.singletonList(result), results);
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void should_Not_Complete_Twice_When_Result_Handler_Fails_During_Execution() {
+        QueryCoalescer coalescer = new QueryCoalescer();
+        List<AsyncResult<QueryResult>> results = new ArrayList<>();
+        QueryResult result = new QueryResult(new JsonObject().put("hello", "world"), true, Collections.emptyList());
+
+        try {
+            coalescer.submit("key", handler -> handler.handle(Future.succeededFuture(result)), res -> {
+                results.add(res);
+                throw new IllegalStateException("leader");
+            });
+            fail("Expected the exception of the result handler");
+        } catch (IllegalStateException ex) {
+            assertEquals("leader", ex.getMessage());
+        }
+        assertEquals(1, results.size());
+        assertSame(result, results.get(0).result());
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void should_Never_Coalesce_Mutations() {
+        QueryExecutor executor = new QueryExecutor(new SchemaDefinitionOptions().setQueryCoalescingEnabled(true), "Q");
+        assertEquals(executor.coalescingKey("{ a   b }", null), executor.coalescingKey("query { a b }", null));
+        assertNotEquals(executor.coalescingKey("{ a }", Collections.singletonMap("x", 1)),
+                executor.coalescingKey("{ a }", Collections.singletonMap("x", 2)));
+        assertNull(executor.coalescingKey("mutation { a }", null));
+        assertNull(executor.coalescingKey("{ a ", null));
+        assertNull(new QueryExecutor(new SchemaDefinitionOptions(), "Q").coalescingKey("{ a }", null));
+    }
+}
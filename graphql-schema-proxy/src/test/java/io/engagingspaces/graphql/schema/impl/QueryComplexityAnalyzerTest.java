@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.parser.Parser;
+import graphql.schema.GraphQLArgument;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeReference;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.Queryable;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static graphql.Scalars.GraphQLInt;
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueryComplexityAnalyzer} class, and the complexity budgets of the query executor.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryComplexityAnalyzerTest {
+
+    private static final int DEFAULT_LIST_SIZE = 10;
+    private static final GraphQLSchema SCHEMA = createSchema();
+
+    @Test
+    public void should_Count_Depth_And_Cost_Of_Selected_Fields() {
+        assertComplexity(3, 3, "{ user { name friends(first: 0) { name } } }");
+        assertComplexity(3, 4, "{ user { ...names } } " +
+                "fragment names on User { name user: friends(first: 1) { name } }");
+        assertComplexity(3, 4, "{ user { ... on User { name friends(first: 1) { name } } } }");
+    }
+
+    @Test
+    public void should_Multiply_Cost_Of_List_Selections_By_Expected_Size() {
+        assertComplexity(2, 1 + DEFAULT_LIST_SIZE, "{ users { name } }");
+        assertComplexity(2, 1 + 3, "{ users(first: 3) { name } }");
+        assertComplexity(2, 1 + 5, "{ users(last: 5) { name } }");
+        assertComplexity(2, 1 + 2, "{ users(limit: 2) { name } }");
+        assertComplexity(2, 1 + DEFAULT_LIST_SIZE, "query Q($n: Int) { users(first: $n) { name } }");
+        assertComplexity(3, 1 + 2 + 2 * 5, "{ users(first: 2) { friends(first: 5) { name } } }");
+    }
+
+    @Test
+    public void should_Resolve_List_Sizes_From_Variables() {
+        String query = "query Q($n: Int, $m: Int = 4) { users(first: $n) { friends(first: $m) { name } } }";
+        QueryComplexityModel model = new QueryComplexityAnalyzer(null, DEFAULT_LIST_SIZE)
+                .compile(SCHEMA, new Parser().parseDocument(query));
+        assertEquals(1 + DEFAULT_LIST_SIZE + DEFAULT_LIST_SIZE * 4, model.evaluate(null).getCost());
+        assertEquals(1 + 1000000 + 1000000 * 4,
+                model.evaluate(Collections.singletonMap("n", 1000000)).getCost());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("n", 2);
+        variables.put("m", 3L);
+        assertEquals(1 + 2 + 2 * 3, model.evaluate(variables).getCost());
+        assertEquals(3, model.evaluate(variables).getDepth());
+
+        QueryExecutor executor = QueryExecutor.forSchema(SCHEMA, new SchemaDefinitionOptions());
+        assertEquals(1 + 2 + 2 * 3, executor.analyze(SCHEMA, query, variables).getCost());
+        assertEquals(1 + 1000000 + 1000000 * 4,
+                executor.analyze(SCHEMA, query, Collections.singletonMap("n", 1000000)).getCost());
+    }
+
+    @Test
+    public void should_Apply_Field_Weights() {
+        QueryComplexityAnalyzer analyzer = new QueryComplexityAnalyzer(
+                Collections.singletonMap("User.name", 4), DEFAULT_LIST_SIZE);
+        QueryComplexity complexity = analyzer.analyze(SCHEMA, new Parser().parseDocument(
+                "{ user { name } users(first: 2) { name } }"));
+        assertEquals(1 + 4 + 1 + 2 * 4, complexity.getCost());
+    }
+
+    @Test
+    public void should_Return_Most_Complex_Operation() {
+        assertComplexity(3, 1 + 2 + 2 * 2,
+                "query A { user { name } } query B { users(first: 2) { friends(first: 2) { name } } }");
+    }
+
+    @Test
+    public void should_Saturate_Instead_Of_Overflowing() {
+        String size = String.valueOf(Integer.MAX_VALUE);
+        assertComplexity(4, Long.MAX_VALUE, "{ users(first: " + size + ") { friends(first: " + size + ") { " +
+                "friends(first: " + size + ") { name } } } }");
+        QueryComplexityAnalyzer analyzer = new QueryComplexityAnalyzer(
+                Collections.singletonMap("User.name", Integer.MAX_VALUE), Integer.MAX_VALUE);
+        QueryComplexity complexity = analyzer.analyze(SCHEMA, new Parser().parseDocument(
+                "{ users { friends { name } } a: users { friends { name } } }"));
+        assertEquals(Long.MAX_VALUE, complexity.getCost());
+    }
+
+    @Test
+    public void should_Reject_Queries_That_Exceed_The_Budgets() {
+        SchemaDefinition definition = definition(new SchemaDefinitionOptions().setMaxQueryDepth(2));
+        assertTrue(query(definition, "{ user { name } }").succeeded());
+        assertRejected(query(definition, "{ user { friends { name } } }"), "depth 3");
+
+        definition = definition(new SchemaDefinitionOptions().setMaxQueryCost(10));
+        assertTrue(query(definition, "{ users(first: 9) { name } }").succeeded());
+        assertRejected(query(definition, "{ users { name } }"), "cost 11");
+
+        String query = "query Q($n: Int) { users(first: $n) { name } }";
+        assertTrue(query(definition, query, new JsonObject().put("n", 9)).succeeded());
+        assertRejected(query(definition, query, new JsonObject().put("n", 1000000)), "cost 1000001");
+    }
+
+    private static void assertComplexity(int depth, long cost, String query) {
+        QueryComplexity complexity = new QueryComplexityAnalyzer(null, DEFAULT_LIST_SIZE)
+                .analyze(SCHEMA, new Parser().parseDocument(query));
+        assertEquals(depth, complexity.getDepth());
+        assertEquals(cost, complexity.getCost());
+    }
+
+    private static void assertRejected(AsyncResult<QueryResult> result, String reason) {
+        assertTrue(result.failed());
+        assertEquals(Queryable.QUERY_TOO_COMPLEX, ((ServiceException) result.cause()).failureCode());
+        assertTrue(result.cause().getMessage(), result.cause().getMessage().contains(reason));
+    }
+
+    private static AsyncResult<QueryResult> query(SchemaDefinition definition, String query) {
+        return query(definition, query, null);
+    }
+
+    private static AsyncResult<QueryResult> query(SchemaDefinition definition, String query, JsonObject variables) {
+        List<AsyncResult<QueryResult>> results = new ArrayList<>();
+        definition.queryWithVariables(query, variables, results::add);
+        assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    private static SchemaDefinition definition(SchemaDefinitionOptions options) {
+        GraphQLSchema schema = createSchema();
+        return new SchemaDefinition() {
+            @Override
+            public GraphQLSchema schema() {
+                return schema;
+            }
+
+            @Override
+            public SchemaDefinitionOptions options() {
+                return options;
+            }
+        };
+    }
+
+    private static GraphQLSchema createSchema() {
+        GraphQLObjectType user = GraphQLObjectType.newObject().name("User")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("friends")
+                        .type(new GraphQLList(new GraphQLTypeReference("User")))
+                        .argument(GraphQLArgument.newArgument().name("first").type(GraphQLInt).build())
+                        .build())
+                .build();
+        return GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("user").type(user).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("users").type(new GraphQLList(user))
+                        .argument(GraphQLArgument.newArgument().name("first").type(GraphQLInt).build())
+                        .argument(GraphQLArgument.newArgument().name("last").type(GraphQLInt).build())
+                        .argument(GraphQLArgument.newArgument().name("limit").type(GraphQLInt).build())
+                        .build())
+                .build()).build();
+    }
+}
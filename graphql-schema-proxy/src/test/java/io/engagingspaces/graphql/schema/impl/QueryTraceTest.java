@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeReference;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.query.impl.QueryResultMessageCodec;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import io.engagingspaces.graphql.schema.SchemaDefinitionOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link QueryTrace} of queries that are executed on a schema definition with tracing enabled.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class QueryTraceTest {
+
+    private static final long FETCH_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private SchemaDefinition definition;
+
+    @Before
+    public void setUp() {
+        GraphQLObjectType character = GraphQLObjectType.newObject().name("Character")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("friends")
+                        .type(new GraphQLList(new GraphQLTypeReference("Character"))).build())
+                .build();
+        Map<String, Object> hero = character("R2-D2");
+        hero.put("friends", Arrays.asList(character("Luke"), character("Leia")));
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("hero").type(character)
+                        .dataFetcher(environment -> {
+                            try {
+                                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(FETCH_NANOS));
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return hero;
+                        }).build())
+                .build()).build();
+        SchemaDefinitionOptions options = new SchemaDefinitionOptions().setTracingEnabled(true);
+        definition = new SchemaDefinition() {
+            @Override
+            public GraphQLSchema schema() {
+                return schema;
+            }
+
+            @Override
+            public SchemaDefinitionOptions options() {
+                return options;
+            }
+        };
+    }
+
+    @Test
+    public void should_Trace_Parse_And_Validation_Phases() {
+        JsonObject tracing = trace(definition.queryBlocking("{ hero { name } }", null));
+
+        assertEquals(1, tracing.getInteger("version").intValue());
+        assertNotNull(tracing.getString("startTime"));
+        assertNotNull(tracing.getString("endTime"));
+        JsonObject parsing = tracing.getJsonObject("parsing");
+        JsonObject validation = tracing.getJsonObject("validation");
+        assertTrue(parsing.getLong("startOffset") >= 0);
+        assertTrue(parsing.getLong("duration") > 0);
+        assertTrue(validation.getLong("startOffset") >= end(parsing));
+        assertTrue(validation.getLong("duration") > 0);
+        assertTrue(tracing.getLong("duration") >= end(validation));
+    }
+
+    @Test
+    public void should_Trace_Start_Offset_And_Duration_Of_Fields() {
+        JsonObject tracing = trace(definition.queryBlocking("{ hero { name friends { name } } }", null));
+        JsonArray resolvers = tracing.getJsonObject("execution").getJsonArray("resolvers");
+
+        JsonObject hero = resolver(resolvers, new JsonArray().add("hero"));
+        assertEquals("Query", hero.getString("parentType"));
+        assertEquals("hero", hero.getString("fieldName"));
+        assertEquals("Character", hero.getString("returnType"));
+        assertTrue(hero.getLong("startOffset") >= end(tracing.getJsonObject("validation")));
+        assertTrue(hero.getLong("fetchDuration") >= FETCH_NANOS);
+        assertTrue(hero.getLong("duration") >= hero.getLong("fetchDuration"));
+        assertTrue(tracing.getLong("duration") >= end(hero));
+
+        JsonObject friends = resolver(resolvers, new JsonArray().add("hero").add("friends"));
+        assertEquals("[Character]", friends.getString("returnType"));
+        for (JsonArray path : Arrays.asList(new JsonArray().add("hero").add("name"),
+                new JsonArray().add("hero").add("friends").add(0).add("name"),
+                new JsonArray().add("hero").add("friends").add(1).add("name"))) {
+            JsonObject name = resolver(resolvers, path);
+            assertEquals("String", name.getString("returnType"));
+            assertTrue(name.getLong("startOffset") >= hero.getLong("startOffset") + hero.getLong("fetchDuration"));
+            assertTrue(end(name) <= end(hero));
+            assertTrue(name.getLong("fetchDuration") <= name.getLong("duration"));
+        }
+        assertEquals(5, resolvers.size());
+    }
+
+    @Test
+    public void should_Keep_Trace_Through_Codec_And_Json_Round_Trip() {
+        QueryResult result = definition.queryBlocking("{ hero { name friends { name } } }", null);
+        JsonObject tracing = trace(result);
+
+        for (QueryResultMessageCodec codec : Arrays.asList(new QueryResultMessageCodec(false, false),
+                new QueryResultMessageCodec(true, false), new QueryResultMessageCodec(true, true))) {
+            Buffer buffer = Buffer.buffer();
+            codec.encodeToWire(buffer, result);
+            assertEquals(tracing, trace(codec.decodeFromWire(0, buffer)));
+        }
+        QueryResult parsed = new QueryResult(new JsonObject(result.toJson().encode()));
+        assertEquals(tracing, trace(parsed));
+    }
+
+    private static JsonObject trace(QueryResult result) {
+        assertTrue(result.isSucceeded());
+        JsonObject tracing = result.getExtensions().getJsonObject(QueryTrace.EXTENSION_NAME);
+        assertNotNull(tracing);
+        return tracing;
+    }
+
+    private static JsonObject resolver(JsonArray resolvers, JsonArray path) {
+        return resolvers.stream().map(resolver -> (JsonObject) resolver)
+                .filter(resolver -> path.equals(resolver.getJsonArray("path")))
+                .findFirst().orElseThrow(() -> new AssertionError("No resolver for " + path));
+    }
+
+    private static long end(JsonObject timing) {
+        return timing.getLong("startOffset") + timing.getLong("duration");
+    }
+
+    private static Map<String, Object> character(String name) {
+        Map<String, Object> character = new HashMap<>();
+        character.put("name", name);
+        return character;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2016 The original author or authors
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ *
+ *      The Eclipse Public License is available at
+ *      http://www.eclipse.org/legal/epl-v10.html
+ *
+ *      The Apache License v2.0 is available at
+ *      http://www.opensource.org/licenses/apache2.0.php
+ *
+ * You may elect to redistribute this code under either of these licenses.
+ */
+
+
+package io.engagingspaces.graphql.schema.impl;
+
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLInterfaceType;
+import graphql.schema.GraphQLList;
+import graphql.schema.GraphQLNonNull;
+import graphql.schema.GraphQLObjectType;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLTypeReference;
+import io.engagingspaces.graphql.query.QueryResult;
+import io.engagingspaces.graphql.schema.SchemaDefinition;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static graphql.Scalars.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link ResultSerializer} class.
+ *
+ * @author <a href="https://github.com/aschrijver/">Arnold Schrijver</a>
+ */
+public class ResultSerializerTest {
+
+    @Test
+    public void should_Encode_Same_Json_As_Query_Result() {
+        GraphQLObjectType[] itemType = new GraphQLObjectType[1];
+        GraphQLInterfaceType named = GraphQLInterfaceType.newInterface().name("Named")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .typeResolver(object -> itemType[0])
+                .build();
+        GraphQLObjectType item = GraphQLObjectType.newObject().name("Item").withInterface(named)
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("name").type(GraphQLString).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("count").type(new GraphQLNonNull(GraphQLInt))
+                        .build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("price").type(GraphQLFloat).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("available").type(GraphQLBoolean).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("related")
+                        .type(new GraphQLList(new GraphQLTypeReference("Item"))).build())
+                .build();
+        itemType[0] = item;
+        Map<String, Object> first = item("Tab\t\"quoted\" \\ caf\u00e9", -42, 1.5, true);
+        Map<String, Object> second = item("second", 7, null, false);
+        first.put("related", Arrays.asList(second, null));
+        GraphQLSchema schema = GraphQLSchema.newSchema().query(GraphQLObjectType.newObject().name("Query")
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("items").type(new GraphQLList(item))
+                        .dataFetcher(env -> Arrays.asList(first, second)).build())
+                .field(GraphQLFieldDefinition.newFieldDefinition().name("named").type(named)
+                        .dataFetcher(env -> first).build())
+                .build()).build(Collections.singleton(item));
+        SchemaDefinition definition = () -> schema;
+
+        assertSameEncoding(definition.queryBlocking("{ items { name count price available " +
+                "related { ...Details } } } fragment Details on Item { label: name count }", null));
+        assertSameEncoding(definition.queryBlocking("{ first: items { name } named { name } " +
+                "named2: named { __typename ... on Item { count } } }", null));
+    }
+
+    private static void assertSameEncoding(QueryResult result) {
+        assertTrue(result.isSucceeded());
+        // copies made before the first encoding each encode the result, sharing the plans of the serializer
+        List<QueryResult> copies = IntStream.range(0, 8).mapToObj(i -> new QueryResult(result))
+                .collect(Collectors.toList());
+        copies.parallelStream().forEach(QueryResult::toBuffer);
+        for (QueryResult copy : copies) {
+            assertEquals(result.toJson().encode(), copy.toBuffer().toString("UTF-8"));
+        }
+        assertEquals(result.toJson().encode(), result.toBuffer().toString("UTF-8"));
+        assertEquals(result.toBuffer().toString("UTF-8"), new QueryResult(result).toBuffer().toString("UTF-8"));
+    }
+
+    private static Map<String, Object> item(String name, int count, Double price, boolean available) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("count", count);
+        item.put("price", price);
+        item.put("available", available);
+        return item;
+    }
+}